@@ -1,11 +1,18 @@
 package com.bustracker.ingestion.config;
 
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.config.TopicConfig;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
 
@@ -27,6 +34,34 @@ public class KafkaConfig {
   @Value("${spring.kafka.sasl.mechanism:#{null}}")
   private String saslMechanism;
 
+  @Value("${kafka.topics.vehicle-positions-latest:}")
+  private String latestTopicName;
+
+  @Value("${kafka.topics.vehicle-positions-latest-partitions:3}")
+  private int latestTopicPartitions;
+
+  @Value("${kafka.topics.fleet-snapshots:fleet-snapshots}")
+  private String fleetSnapshotsTopicName;
+
+  @Value("${kafka.topics.trip-updates:trip-updates}")
+  private String tripUpdatesTopicName;
+
+  @Value("${kafka.topics.service-alerts:service-alerts}")
+  private String serviceAlertsTopicName;
+
+  // Producer tuning (defaults: strict one-request-at-a-time; see application-high-throughput.yml)
+  @Value("${kafka.producer.tuning.max-in-flight:1}")
+  private int maxInFlight;
+
+  @Value("${kafka.producer.tuning.linger-ms:0}")
+  private int lingerMs;
+
+  @Value("${kafka.producer.tuning.batch-size:16384}")
+  private int batchSize;
+
+  @Value("${kafka.producer.tuning.compression-type:none}")
+  private String compressionType;
+
   @Bean
   public ProducerFactory<String, byte[]> producerFactory() {
     Map<String, Object> configProps = new HashMap<>();
@@ -40,8 +75,87 @@ public class KafkaConfig {
     configProps.put(ProducerConfig.ACKS_CONFIG, "all");
     configProps.put(ProducerConfig.RETRIES_CONFIG, 3);
     configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
-    configProps.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 1);
+    // Idempotence keeps per-partition ordering with up to 5 in-flight requests
+    configProps.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, Math.max(1, Math.min(maxInFlight, 5)));
+
+    // Batching and compression
+    configProps.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+    configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+    configProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+
+    addSecurityConfig(configProps);
+
+    return new DefaultKafkaProducerFactory<>(configProps);
+  }
+
+  /**
+   * Admin client using the same connection/security settings as the producer,
+   * so topic declarations below also work against Confluent Cloud
+   */
+  @Bean
+  public KafkaAdmin kafkaAdmin() {
+    Map<String, Object> configProps = new HashMap<>();
+    configProps.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+    addSecurityConfig(configProps);
+    return new KafkaAdmin(configProps);
+  }
+
+  /**
+   * Log-compacted "latest position per vehicle" topic, keyed by vehicleId.
+   * The tracker reads it from the beginning on startup to rebuild its fleet view.
+   */
+  @Bean
+  @ConditionalOnExpression("!'${kafka.topics.vehicle-positions-latest:}'.isEmpty()")
+  public NewTopic vehiclePositionsLatestTopic() {
+    return TopicBuilder.name(latestTopicName)
+        .partitions(latestTopicPartitions)
+        .compact()
+        .build();
+  }
+
+  /**
+   * Fleet snapshot topic for the "snapshot" publish mode. A single partition keeps
+   * snapshots in order; a poll only produces a handful of records, and only the
+   * most recent snapshot matters, so retention is short.
+   */
+  @Bean
+  @ConditionalOnProperty(name = "kafka.producer.publish-mode", havingValue = "snapshot")
+  public NewTopic fleetSnapshotsTopic() {
+    return TopicBuilder.name(fleetSnapshotsTopicName)
+        .partitions(1)
+        .config(TopicConfig.RETENTION_MS_CONFIG, String.valueOf(60 * 60 * 1000))
+        .build();
+  }
 
+  /**
+   * Trip updates keyed by tripId. Compaction keeps the latest prediction per trip
+   * and time retention drops finished trips.
+   */
+  @Bean
+  @ConditionalOnExpression("!'${translink.api.endpoints.trip-updates:}'.isEmpty()")
+  public NewTopic tripUpdatesTopic() {
+    return TopicBuilder.name(tripUpdatesTopicName)
+        .partitions(3)
+        .config(TopicConfig.CLEANUP_POLICY_CONFIG,
+            TopicConfig.CLEANUP_POLICY_COMPACT + "," + TopicConfig.CLEANUP_POLICY_DELETE)
+        .config(TopicConfig.RETENTION_MS_CONFIG, String.valueOf(2 * 60 * 60 * 1000))
+        .build();
+  }
+
+  /**
+   * Service alerts: each record is the complete active set under a single key,
+   * so the compacted topic always holds exactly the current alerts
+   */
+  @Bean
+  @ConditionalOnExpression("!'${translink.api.endpoints.alerts:}'.isEmpty()")
+  public NewTopic serviceAlertsTopic() {
+    return TopicBuilder.name(serviceAlertsTopicName)
+        .partitions(1)
+        .compact()
+        .build();
+  }
+
+  private void addSecurityConfig(Map<String, Object> configProps) {
     // Security configuration - only add if not PLAINTEXT
     configProps.put("security.protocol", securityProtocol);
     if (!"PLAINTEXT".equals(securityProtocol) && saslMechanism != null) {
@@ -50,8 +164,6 @@ public class KafkaConfig {
         configProps.put("sasl.jaas.config", jaasConfig);
       }
     }
-
-    return new DefaultKafkaProducerFactory<>(configProps);
   }
 
   @Bean
@@ -6,6 +6,7 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 public class TransLinkProperties {
 
   private Api api = new Api();
+  private ChangeDetection changeDetection = new ChangeDetection();
 
   public Api getApi() {
     return api;
@@ -15,11 +16,20 @@ public class TransLinkProperties {
     this.api = api;
   }
 
+  public ChangeDetection getChangeDetection() {
+    return changeDetection;
+  }
+
+  public void setChangeDetection(ChangeDetection changeDetection) {
+    this.changeDetection = changeDetection;
+  }
+
   public static class Api {
     private String baseUrl;
     private String apiKey;
     private Endpoints endpoints = new Endpoints();
     private Polling polling = new Polling();
+    private boolean streaming = false;
 
     // Getters and Setters
     public String getBaseUrl() {
@@ -53,10 +63,20 @@ public class TransLinkProperties {
     public void setPolling(Polling polling) {
       this.polling = polling;
     }
+
+    public boolean isStreaming() {
+      return streaming;
+    }
+
+    public void setStreaming(boolean streaming) {
+      this.streaming = streaming;
+    }
   }
 
   public static class Endpoints {
     private String positions;
+    private String tripUpdates;
+    private String alerts;
 
     public String getPositions() {
       return positions;
@@ -65,11 +85,40 @@ public class TransLinkProperties {
     public void setPositions(String positions) {
       this.positions = positions;
     }
+
+    public String getTripUpdates() {
+      return tripUpdates;
+    }
+
+    public void setTripUpdates(String tripUpdates) {
+      this.tripUpdates = tripUpdates;
+    }
+
+    public String getAlerts() {
+      return alerts;
+    }
+
+    public void setAlerts(String alerts) {
+      this.alerts = alerts;
+    }
   }
 
   public static class Polling {
+    private String mode = "fixed";
     private int intervalSeconds = 30;
     private int initialDelaySeconds = 10;
+    private int minIntervalSeconds = 5;
+    private int maxBackoffSeconds = 300;
+    private int jitterMillis = 1000;
+    private int alertsIntervalSeconds = 60;
+
+    public String getMode() {
+      return mode;
+    }
+
+    public void setMode(String mode) {
+      this.mode = mode;
+    }
 
     public int getIntervalSeconds() {
       return intervalSeconds;
@@ -86,5 +135,79 @@ public class TransLinkProperties {
     public void setInitialDelaySeconds(int initialDelaySeconds) {
       this.initialDelaySeconds = initialDelaySeconds;
     }
+
+    public int getMinIntervalSeconds() {
+      return minIntervalSeconds;
+    }
+
+    public void setMinIntervalSeconds(int minIntervalSeconds) {
+      this.minIntervalSeconds = minIntervalSeconds;
+    }
+
+    public int getMaxBackoffSeconds() {
+      return maxBackoffSeconds;
+    }
+
+    public void setMaxBackoffSeconds(int maxBackoffSeconds) {
+      this.maxBackoffSeconds = maxBackoffSeconds;
+    }
+
+    public int getJitterMillis() {
+      return jitterMillis;
+    }
+
+    public void setJitterMillis(int jitterMillis) {
+      this.jitterMillis = jitterMillis;
+    }
+
+    public int getAlertsIntervalSeconds() {
+      return alertsIntervalSeconds;
+    }
+
+    public void setAlertsIntervalSeconds(int alertsIntervalSeconds) {
+      this.alertsIntervalSeconds = alertsIntervalSeconds;
+    }
+  }
+
+  /**
+   * Thresholds for suppressing vehicles that have not materially changed since last published
+   */
+  public static class ChangeDetection {
+    private boolean enabled = true;
+    private double minMovementMeters = 15.0;
+    private int maxSilenceSeconds = 90;
+    private int heartbeatSeconds = 120;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public double getMinMovementMeters() {
+      return minMovementMeters;
+    }
+
+    public void setMinMovementMeters(double minMovementMeters) {
+      this.minMovementMeters = minMovementMeters;
+    }
+
+    public int getMaxSilenceSeconds() {
+      return maxSilenceSeconds;
+    }
+
+    public void setMaxSilenceSeconds(int maxSilenceSeconds) {
+      this.maxSilenceSeconds = maxSilenceSeconds;
+    }
+
+    public int getHeartbeatSeconds() {
+      return heartbeatSeconds;
+    }
+
+    public void setHeartbeatSeconds(int heartbeatSeconds) {
+      this.heartbeatSeconds = heartbeatSeconds;
+    }
   }
 }
@@ -1,6 +1,11 @@
 package com.bustracker.ingestion.controller;
 
+import com.bustracker.ingestion.service.AdaptivePollScheduler;
+import com.bustracker.ingestion.service.TransLinkApiClient;
+import com.bustracker.ingestion.service.TransitFeedPollingService;
+import com.bustracker.ingestion.service.VehicleChangeDetector;
 import com.bustracker.ingestion.service.VehicleDataPollingService;
+import com.bustracker.ingestion.service.VehiclePositionProducer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -14,12 +19,33 @@ public class HealthController {
   @Autowired
   private VehicleDataPollingService pollingService;
 
+  @Autowired
+  private VehicleChangeDetector changeDetector;
+
+  @Autowired
+  private VehiclePositionProducer producer;
+
+  @Autowired
+  private TransLinkApiClient apiClient;
+
+  @Autowired(required = false)
+  private AdaptivePollScheduler adaptivePollScheduler;
+
+  @Autowired
+  private TransitFeedPollingService feedPollingService;
+
   @GetMapping("/health")
   public Map<String, Object> health() {
     Map<String, Object> health = new HashMap<>();
     health.put("status", "UP");
     health.put("service", "data-ingestion-service");
     health.put("polling", pollingService.getStats());
+    health.put("changeDetection", changeDetector.getStats());
+    health.put("feedFetch", apiClient.getFetchStats());
+    health.put("feedPolling", feedPollingService.getStats());
+    if (adaptivePollScheduler != null) {
+      health.put("adaptivePolling", adaptivePollScheduler.getStats());
+    }
     return health;
   }
 
@@ -27,4 +53,9 @@ public class HealthController {
   public VehicleDataPollingService.PollingStats stats() {
     return pollingService.getStats();
   }
-}
\ No newline at end of file
+
+  @GetMapping("/stats/producer")
+  public VehiclePositionProducer.ProducerMetrics producerStats() {
+    return producer.getProducerMetrics();
+  }
+}
@@ -0,0 +1,200 @@
+package com.bustracker.ingestion.service;
+
+import com.bustracker.ingestion.config.TransLinkProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Polls the vehicle feed just after each expected upstream refresh
+ *
+ * Learns the refresh period from FeedHeader.timestamp deltas (median of recent
+ * samples, so a missed refresh does not skew it) and the publish lag from feed
+ * timestamp to first sighting. The next poll is scheduled at the last feed
+ * timestamp + period + lag + jitter. Polls that find the feed unchanged retry
+ * with a growing delay from the minimum interval, and failures back off
+ * exponentially up to a cap. Until two refreshes have been seen it polls at the
+ * fixed interval.
+ */
+@Service
+@ConditionalOnProperty(prefix = "translink.api.polling", name = "mode", havingValue = "adaptive")
+public class AdaptivePollScheduler {
+
+  private static final Logger logger = LoggerFactory.getLogger(AdaptivePollScheduler.class);
+
+  private static final int PERIOD_SAMPLES = 8;
+  private static final int MIN_PERIOD_SAMPLES = 2;
+
+  // The publish lag estimate is a running minimum allowed to grow this much per refresh
+  private static final long LAG_RELAX_MILLIS = 250;
+
+  private final VehicleDataPollingService pollingService;
+  private final TransLinkApiClient apiClient;
+  private final TaskScheduler taskScheduler;
+  private final TransLinkProperties.Polling config;
+
+  // Recent refresh period samples (ring buffer)
+  private final long[] periodSamples = new long[PERIOD_SAMPLES];
+  private int periodSampleCount = 0;
+  private int nextPeriodSample = 0;
+
+  private long lastFeedTimestamp = 0; // seconds, upstream clock
+  private long publishLagMillis = -1;
+  private int unchangedPolls = 0;
+  private int consecutiveFailures = 0;
+  private volatile long nextPollAtMillis = 0;
+
+  @Autowired
+  public AdaptivePollScheduler(VehicleDataPollingService pollingService,
+      TransLinkApiClient apiClient,
+      TaskScheduler taskScheduler,
+      TransLinkProperties properties) {
+    this.pollingService = pollingService;
+    this.apiClient = apiClient;
+    this.taskScheduler = taskScheduler;
+    this.config = properties.getApi().getPolling();
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    logger.info("Adaptive polling started (min interval {}s, fallback interval {}s)",
+        config.getMinIntervalSeconds(), config.getIntervalSeconds());
+    scheduleIn(config.getInitialDelaySeconds() * 1000L);
+  }
+
+  private void scheduleIn(long delayMillis) {
+    nextPollAtMillis = System.currentTimeMillis() + delayMillis;
+    taskScheduler.schedule(this::poll, Instant.ofEpochMilli(nextPollAtMillis));
+  }
+
+  private void poll() {
+    try {
+      pollingService.runPollCycle().subscribe(
+          published -> scheduleIn(onPollSucceeded(apiClient.getVehicleFeedTimestamp(), System.currentTimeMillis())),
+          error -> scheduleIn(onPollFailed()));
+    } catch (Exception e) {
+      logger.error("Unexpected error starting adaptive poll: {}", e.getMessage(), e);
+      scheduleIn(onPollFailed());
+    }
+  }
+
+  /**
+   * Learn from a completed poll
+   * @param feedTimestamp FeedHeader.timestamp of the latest processed feed (seconds)
+   * @return delay until the next poll
+   */
+  synchronized long onPollSucceeded(long feedTimestamp, long nowMillis) {
+    consecutiveFailures = 0;
+
+    if (feedTimestamp > 0 && feedTimestamp != lastFeedTimestamp) {
+      if (lastFeedTimestamp > 0 && feedTimestamp > lastFeedTimestamp) {
+        addPeriodSample((feedTimestamp - lastFeedTimestamp) * 1000L);
+      }
+      long lag = nowMillis - feedTimestamp * 1000L;
+      publishLagMillis = publishLagMillis < 0 ? lag : Math.min(lag, publishLagMillis + LAG_RELAX_MILLIS);
+      lastFeedTimestamp = feedTimestamp;
+      unchangedPolls = 0;
+    } else {
+      unchangedPolls++;
+    }
+
+    long period = learnedPeriodMillis();
+    if (period <= 0) {
+      return config.getIntervalSeconds() * 1000L;
+    }
+
+    long minInterval = config.getMinIntervalSeconds() * 1000L;
+    if (unchangedPolls > 0) {
+      // Polled before the refresh showed up: retry soon, backing off while the feed stalls
+      long retry = minInterval << Math.min(unchangedPolls - 1, 16);
+      return Math.max(minInterval, Math.min(retry, period)) + jitter();
+    }
+    long expectedRefreshAt = lastFeedTimestamp * 1000L + period + Math.max(0, publishLagMillis);
+    return Math.max(minInterval, expectedRefreshAt - nowMillis) + jitter();
+  }
+
+  /**
+   * @return delay until the next poll, backing off exponentially
+   */
+  synchronized long onPollFailed() {
+    consecutiveFailures++;
+    long backoff = (config.getMinIntervalSeconds() * 1000L) << Math.min(consecutiveFailures - 1, 16);
+    long delay = Math.min(backoff, config.getMaxBackoffSeconds() * 1000L);
+    logger.warn("Adaptive poll failed ({} in a row), next attempt in {}ms", consecutiveFailures, delay);
+    return delay;
+  }
+
+  /**
+   * Median of recent refresh periods, or 0 while still learning
+   */
+  synchronized long learnedPeriodMillis() {
+    if (periodSampleCount < MIN_PERIOD_SAMPLES) {
+      return 0;
+    }
+    long[] samples = Arrays.copyOf(periodSamples, periodSampleCount);
+    Arrays.sort(samples);
+    return samples[samples.length / 2];
+  }
+
+  private void addPeriodSample(long periodMillis) {
+    if (periodMillis < 1000 || periodMillis > config.getMaxBackoffSeconds() * 1000L) {
+      return; // Implausible: clock step or long outage
+    }
+    periodSamples[nextPeriodSample] = periodMillis;
+    nextPeriodSample = (nextPeriodSample + 1) % PERIOD_SAMPLES;
+    periodSampleCount = Math.min(periodSampleCount + 1, PERIOD_SAMPLES);
+  }
+
+  private long jitter() {
+    return config.getJitterMillis() > 0 ? ThreadLocalRandom.current().nextLong(config.getJitterMillis()) : 0;
+  }
+
+  /**
+   * Get adaptive polling statistics
+   */
+  public synchronized AdaptivePollStats getStats() {
+    return new AdaptivePollStats(learnedPeriodMillis(), publishLagMillis, lastFeedTimestamp,
+        consecutiveFailures, nextPollAtMillis);
+  }
+
+  /**
+   * Stats class for monitoring
+   */
+  public static class AdaptivePollStats {
+    private final long learnedPeriodMillis;
+    private final long publishLagMillis;
+    private final long lastFeedTimestamp;
+    private final int consecutiveFailures;
+    private final long nextPollAtMillis;
+
+    public AdaptivePollStats(long learnedPeriodMillis, long publishLagMillis, long lastFeedTimestamp,
+        int consecutiveFailures, long nextPollAtMillis) {
+      this.learnedPeriodMillis = learnedPeriodMillis;
+      this.publishLagMillis = publishLagMillis;
+      this.lastFeedTimestamp = lastFeedTimestamp;
+      this.consecutiveFailures = consecutiveFailures;
+      this.nextPollAtMillis = nextPollAtMillis;
+    }
+
+    public long getLearnedPeriodMillis() { return learnedPeriodMillis; }
+    public long getPublishLagMillis() { return publishLagMillis; }
+    public long getLastFeedTimestamp() { return lastFeedTimestamp; }
+    public int getConsecutiveFailures() { return consecutiveFailures; }
+    public long getNextPollAtMillis() { return nextPollAtMillis; }
+
+    @Override
+    public String toString() {
+      return String.format("AdaptivePollStats{period=%dms, lag=%dms, lastFeed=%d, failures=%d}",
+          learnedPeriodMillis, publishLagMillis, lastFeedTimestamp, consecutiveFailures);
+    }
+  }
+}
@@ -7,6 +7,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -15,6 +16,9 @@ public class GtfsDataTransformer {
 
   private static final Logger logger = LoggerFactory.getLogger(GtfsDataTransformer.class);
 
+  // Flyweight records reused by transformVehiclePositionsPooled, grown to the largest fleet seen
+  private VehiclePosition[] pool = new VehiclePosition[0];
+
   /**
    * Transform GTFS FeedMessage to list of VehiclePosition objects
    */
@@ -23,8 +27,7 @@ public class GtfsDataTransformer {
         feedMessage.getEntityCount());
 
     List<VehiclePosition> vehiclePositions = feedMessage.getEntityList().stream()
-        .filter(entity -> entity.hasVehicle() && entity.getVehicle().hasPosition())
-        .map(this::transformSingleVehicle)
+        .map(this::transformEntity)
         .filter(Objects::nonNull)
         .collect(Collectors.toList());
 
@@ -32,6 +35,113 @@ public class GtfsDataTransformer {
     return vehiclePositions;
   }
 
+  /**
+   * Transform a feed into reused VehiclePosition records
+   *
+   * Same output as transformVehiclePositions, but written into a pool of records
+   * owned by this transformer: no stream pipeline, no per-entity allocation once
+   * the pool has grown to the fleet size, and boxed bearing/speed/direction are
+   * only replaced when their value changes. The returned list and its elements are
+   * only valid until the next call, so callers must finish with them (encode,
+   * publish) before the next poll; poll cycles never overlap.
+   */
+  public synchronized List<VehiclePosition> transformVehiclePositionsPooled(GtfsRealtime.FeedMessage feedMessage) {
+    int entityCount = feedMessage.getEntityCount();
+    if (pool.length < entityCount) {
+      VehiclePosition[] grown = Arrays.copyOf(pool, entityCount);
+      for (int i = pool.length; i < entityCount; i++) {
+        grown[i] = new VehiclePosition();
+      }
+      pool = grown;
+    }
+
+    long now = System.currentTimeMillis() / 1000;
+    int count = 0;
+    for (int i = 0; i < entityCount; i++) {
+      GtfsRealtime.FeedEntity entity = feedMessage.getEntity(i);
+      if (entity.hasVehicle() && entity.getVehicle().hasPosition()) {
+        fill(pool[count], entity.getVehicle(), now);
+        count++;
+      }
+    }
+
+    logger.debug("Transformed {} of {} GTFS entities into pooled vehicle positions", count, entityCount);
+    return Arrays.asList(pool).subList(0, count);
+  }
+
+  /**
+   * Overwrite every field of a pooled record, clearing the ones this vehicle does not report
+   */
+  private static void fill(VehiclePosition position, GtfsRealtime.VehiclePosition vehicle, long now) {
+    position.setVehicleId(vehicle.hasVehicle() && vehicle.getVehicle().hasId() ? vehicle.getVehicle().getId() : null);
+
+    GtfsRealtime.TripDescriptor trip = vehicle.getTrip();
+    position.setTripId(trip.hasTripId() ? trip.getTripId() : null);
+    position.setRouteId(trip.hasRouteId() ? trip.getRouteId() : null);
+    if (!trip.hasDirectionId()) {
+      position.setDirectionId(null);
+    } else if (position.getDirectionId() == null || position.getDirectionId() != trip.getDirectionId()) {
+      position.setDirectionId(trip.getDirectionId());
+    }
+
+    GtfsRealtime.Position pos = vehicle.getPosition();
+    position.setLatitude(pos.getLatitude());
+    position.setLongitude(pos.getLongitude());
+    if (!pos.hasBearing()) {
+      position.setBearing(null);
+    } else if (position.getBearing() == null || position.getBearing() != pos.getBearing()) {
+      position.setBearing(pos.getBearing());
+    }
+    if (!pos.hasSpeed()) {
+      position.setSpeed(null);
+    } else if (position.getSpeed() == null || position.getSpeed() != pos.getSpeed()) {
+      position.setSpeed(pos.getSpeed());
+    }
+
+    position.setStopId(vehicle.hasStopId() ? vehicle.getStopId() : null);
+    position.setCurrentStatus(vehicle.hasCurrentStatus() ? vehicle.getCurrentStatus().name() : null);
+    position.setTimestamp(vehicle.hasTimestamp() ? vehicle.getTimestamp() : now);
+  }
+
+  /**
+   * Extract trip update entities that can be keyed by trip
+   */
+  public List<GtfsRealtime.FeedEntity> extractTripUpdates(GtfsRealtime.FeedMessage feedMessage) {
+    List<GtfsRealtime.FeedEntity> tripUpdates = feedMessage.getEntityList().stream()
+        .filter(entity -> !entity.getIsDeleted() && entity.hasTripUpdate())
+        .filter(entity -> entity.getTripUpdate().getTrip().hasTripId())
+        .collect(Collectors.toList());
+
+    logger.debug("Extracted {} trip updates from {} entities", tripUpdates.size(), feedMessage.getEntityCount());
+    return tripUpdates;
+  }
+
+  /**
+   * Reduce an alerts feed to its header and alert entities
+   * The result is the complete set of active alerts, so consumers can replace rather than merge
+   */
+  public GtfsRealtime.FeedMessage extractAlerts(GtfsRealtime.FeedMessage feedMessage) {
+    GtfsRealtime.FeedMessage.Builder alerts = GtfsRealtime.FeedMessage.newBuilder()
+        .setHeader(feedMessage.getHeader());
+    feedMessage.getEntityList().stream()
+        .filter(entity -> !entity.getIsDeleted() && entity.hasAlert())
+        .forEach(alerts::addEntity);
+
+    logger.debug("Extracted {} alerts from {} entities", alerts.getEntityCount(), feedMessage.getEntityCount());
+    return alerts.build();
+  }
+
+  /**
+   * Transform one streamed GTFS entity
+   * @return VehiclePosition, or null if the entity has no vehicle position or is malformed
+   */
+  public VehiclePosition transformEntity(GtfsRealtime.FeedEntity entity) {
+    if (!entity.hasVehicle() || !entity.getVehicle().hasPosition()) {
+      return null;
+    }
+    return transformSingleVehicle(entity);
+  }
+
   /**
    * Transform a single GTFS vehicle entity to VehiclePosition
    */
@@ -92,7 +202,9 @@ public class GtfsDataTransformer {
         position.setTimestamp(System.currentTimeMillis() / 1000);
       }
 
-      logger.debug("Transformed vehicle: {}", position);
+      if (logger.isTraceEnabled()) {
+        logger.trace("Transformed vehicle: {}", position);
+      }
       return position;
 
     } catch (Exception e) {
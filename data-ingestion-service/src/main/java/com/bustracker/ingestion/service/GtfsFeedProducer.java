@@ -0,0 +1,77 @@
+package com.bustracker.ingestion.service;
+
+import com.bustracker.shared.gtfs.GtfsRealtime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Publishes GTFS-RT trip updates and service alerts
+ * Records carry the GTFS-RT protobuf messages as-is (the schema shared-models
+ * already compiles), so agency predictions reach the tracker without a lossy
+ * intermediate model.
+ */
+@Service
+public class GtfsFeedProducer {
+
+  private static final Logger logger = LoggerFactory.getLogger(GtfsFeedProducer.class);
+
+  // Single key for the alerts topic: every record replaces the whole active set
+  public static final String ALERTS_KEY = "alerts";
+
+  private final KafkaTemplate<String, byte[]> kafkaTemplate;
+  private final String tripUpdatesTopicName;
+  private final String serviceAlertsTopicName;
+
+  @Autowired
+  public GtfsFeedProducer(KafkaTemplate<String, byte[]> kafkaTemplate,
+      @Value("${kafka.topics.trip-updates:trip-updates}") String tripUpdatesTopicName,
+      @Value("${kafka.topics.service-alerts:service-alerts}") String serviceAlertsTopicName) {
+    this.kafkaTemplate = kafkaTemplate;
+    this.tripUpdatesTopicName = tripUpdatesTopicName;
+    this.serviceAlertsTopicName = serviceAlertsTopicName;
+  }
+
+  /**
+   * Publish trip update entities, keyed by tripId
+   * @param onPublished called with each entity once the broker acknowledged it
+   */
+  public CompletableFuture<Void> publishTripUpdates(List<GtfsRealtime.FeedEntity> tripUpdates,
+      Consumer<GtfsRealtime.FeedEntity> onPublished) {
+    logger.debug("Publishing {} trip updates to Kafka topic: {}", tripUpdates.size(), tripUpdatesTopicName);
+
+    CompletableFuture<?>[] futures = tripUpdates.stream()
+        .map(entity -> kafkaTemplate.send(tripUpdatesTopicName,
+                entity.getTripUpdate().getTrip().getTripId(), entity.toByteArray())
+            .thenAccept(result -> onPublished.accept(entity)))
+        .toArray(CompletableFuture[]::new);
+
+    return CompletableFuture.allOf(futures).whenComplete((result, throwable) -> {
+      if (throwable != null) {
+        logger.error("Failed to publish some trip updates", throwable);
+      }
+    });
+  }
+
+  /**
+   * Publish the complete set of active alerts as one record
+   */
+  public CompletableFuture<SendResult<String, byte[]>> publishAlerts(GtfsRealtime.FeedMessage alerts) {
+    logger.debug("Publishing {} service alerts to Kafka topic: {}", alerts.getEntityCount(), serviceAlertsTopicName);
+
+    return kafkaTemplate.send(serviceAlertsTopicName, ALERTS_KEY, alerts.toByteArray())
+        .whenComplete((result, ex) -> {
+          if (ex != null) {
+            logger.error("Failed to publish service alerts: {}", ex.getMessage());
+          }
+        });
+  }
+}
@@ -0,0 +1,74 @@
+package com.bustracker.ingestion.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Micrometer timers for the stages of a poll cycle (fetch, parse, transform, publish, cycle)
+ * Exported through the actuator metrics endpoint as bustracker.ingestion.poll.stage{stage=...,feed=...}
+ */
+@Component
+public class PollMetrics {
+
+  public static final String STAGE_TIMER = "bustracker.ingestion.poll.stage";
+  public static final String SKIPPED_COUNTER = "bustracker.ingestion.poll.skipped";
+
+  public static final String FETCH = "fetch";
+  public static final String PARSE = "parse";
+  public static final String TRANSFORM = "transform";
+  public static final String PUBLISH = "publish";
+  public static final String CYCLE = "cycle";
+
+  public static final String FEED_POSITIONS = "positions";
+
+  private final MeterRegistry registry;
+  private final Map<String, Timer> stageTimers = new ConcurrentHashMap<>();
+  private final Counter skippedTicks;
+
+  @Autowired
+  public PollMetrics(MeterRegistry registry) {
+    this.registry = registry;
+    this.skippedTicks = Counter.builder(SKIPPED_COUNTER)
+        .description("Poll ticks dropped because the previous cycle was still running")
+        .register(registry);
+  }
+
+  public Timer.Sample start() {
+    return Timer.start(registry);
+  }
+
+  public void stop(Timer.Sample sample, String stage) {
+    stop(sample, stage, FEED_POSITIONS);
+  }
+
+  public void stop(Timer.Sample sample, String stage, String feed) {
+    sample.stop(stageTimer(stage, feed));
+  }
+
+  public <T> T record(String stage, Supplier<T> work) {
+    return record(stage, FEED_POSITIONS, work);
+  }
+
+  public <T> T record(String stage, String feed, Supplier<T> work) {
+    return stageTimer(stage, feed).record(work);
+  }
+
+  public void recordSkippedTick() {
+    skippedTicks.increment();
+  }
+
+  private Timer stageTimer(String stage, String feed) {
+    return stageTimers.computeIfAbsent(stage + ":" + feed, key -> Timer.builder(STAGE_TIMER)
+        .description("Duration of a feed poll stage")
+        .tag("stage", stage)
+        .tag("feed", feed)
+        .register(registry));
+  }
+}
@@ -2,31 +2,57 @@ package com.bustracker.ingestion.service;
 
 import com.bustracker.ingestion.config.TransLinkProperties;
 import com.bustracker.shared.gtfs.GtfsRealtime;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.WireFormat;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import reactor.util.retry.Retry;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class TransLinkApiClient {
 
   private static final Logger logger = LoggerFactory.getLogger(TransLinkApiClient.class);
 
+  // Largest response body held in memory (same bound as the WebClient codecs)
+  private static final int MAX_BODY_BYTES = 10 * 1024 * 1024;
+
   private final WebClient webClient;
   private final TransLinkProperties properties;
+  private final PollMetrics pollMetrics;
+
+  // endpoint -> validators and feed timestamp of the last processed response
+  private final Map<String, FeedFetchState> fetchStates = new ConcurrentHashMap<>();
 
   @Autowired
-  public TransLinkApiClient(TransLinkProperties properties) {
+  public TransLinkApiClient(TransLinkProperties properties, PollMetrics pollMetrics) {
     this.properties = properties;
+    this.pollMetrics = pollMetrics;
     this.webClient = WebClient.builder()
         .baseUrl(properties.getApi().getBaseUrl())
-        .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(10 * 1024 * 1024)) // 10MB buffer
+        .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(MAX_BODY_BYTES))
         .build();
 
     logger.info("TransLink API Client initialized with base URL: {}", properties.getApi().getBaseUrl());
@@ -34,43 +60,211 @@ public class TransLinkApiClient {
 
   /**
    * Fetch vehicle positions from TransLink GTFS API
-   * @return Mono containing parsed GTFS FeedMessage
+   * Conditional: completes empty when the feed has not changed since the last
+   * successful fetch (HTTP 304, or the same FeedHeader.timestamp)
+   * @return Mono containing parsed GTFS FeedMessage, or empty if unchanged
    */
   public Mono<GtfsRealtime.FeedMessage> fetchVehiclePositions() {
     String endpoint = properties.getApi().getEndpoints().getPositions();
+    // Committed on parse: a position missed on a failed send is superseded by the next feed within seconds
+    return fetchFeed(PollMetrics.FEED_POSITIONS, endpoint)
+        .map(FeedFetch::commit)
+        .doOnSuccess(feedMessage -> {
+          if (feedMessage != null) {
+            logger.debug("Successfully fetched {} vehicle entities",
+                feedMessage.getEntityCount());
+          }
+        })
+        .doOnError(error -> logger.error("Error fetching vehicle positions: {}", error.getMessage()));
+  }
+
+  /**
+   * Fetch trip updates (agency arrival predictions) from TransLink GTFS API
+   * The caller commits the fetch once the feed is published; until then the
+   * next fetch returns the same feed again
+   * @return Mono containing the uncommitted fetch, or empty if unchanged
+   */
+  public Mono<FeedFetch> fetchTripUpdates() {
+    return fetchFeed("trip-updates", properties.getApi().getEndpoints().getTripUpdates())
+        .doOnError(error -> logger.error("Error fetching trip updates: {}", error.getMessage()));
+  }
+
+  /**
+   * Fetch service alerts from TransLink GTFS API
+   * The caller commits the fetch once the alert set is published
+   * @return Mono containing the uncommitted fetch, or empty if unchanged
+   */
+  public Mono<FeedFetch> fetchAlerts() {
+    return fetchFeed("alerts", properties.getApi().getEndpoints().getAlerts())
+        .doOnError(error -> logger.error("Error fetching service alerts: {}", error.getMessage()));
+  }
+
+  /**
+   * Stream vehicle entities from TransLink GTFS API as they are decoded
+   * The body is joined into one data buffer and decoded from it one FeedEntity
+   * at a time on a single worker thread, so the decoded feed is never held in
+   * memory as a whole. Completes without emitting when the feed is unchanged
+   * (HTTP 304, or the same FeedHeader.timestamp).
+   */
+  public Flux<GtfsRealtime.FeedEntity> streamVehicleEntities() {
+    String endpoint = properties.getApi().getEndpoints().getPositions();
+    FeedFetchState state = fetchStates.computeIfAbsent(endpoint, k -> new FeedFetchState());
+
+    return conditionalGet(endpoint, state)
+        .exchangeToFlux(response -> {
+          if (response.statusCode().value() == HttpStatus.NOT_MODIFIED.value()) {
+            state.notModifiedCount.incrementAndGet();
+            logger.debug("Feed {} not modified (HTTP 304)", endpoint);
+            return response.releaseBody().thenMany(Flux.<GtfsRealtime.FeedEntity>empty());
+          }
+          if (response.statusCode().isError()) {
+            return response.<GtfsRealtime.FeedEntity>createError().flux();
+          }
+          HttpHeaders headers = response.headers().asHttpHeaders();
+          FetchedFeed validators = new FetchedFeed(null, headers.getETag(),
+              headers.getFirst(HttpHeaders.LAST_MODIFIED));
+          return DataBufferUtils.join(response.bodyToFlux(DataBuffer.class), MAX_BODY_BYTES)
+              .flatMapMany(body -> Flux.<GtfsRealtime.FeedEntity, FeedEntityReader>generate(
+                  // The reader's stream releases the buffer when closed
+                  () -> new FeedEntityReader(endpoint, body.asInputStream(true), state, validators),
+                  (reader, sink) -> {
+                    try {
+                      GtfsRealtime.FeedEntity entity = reader.next();
+                      if (entity != null) {
+                        sink.next(entity);
+                      } else {
+                        sink.complete();
+                      }
+                    } catch (IOException e) {
+                      sink.error(new UncheckedIOException("Failed to decode GTFS feed stream", e));
+                    }
+                    return reader;
+                  },
+                  FeedEntityReader::close)
+                  // Every request is served on the same worker, never on the event loop
+                  // or on the Kafka callback threads that replenish downstream demand
+                  .subscribeOn(Schedulers.boundedElastic()));
+        })
+        // Only retry failures before the body was read, entities may already be published
+        .retryWhen(Retry.backoff(3, Duration.ofSeconds(2))
+            .filter(error -> !(error instanceof UncheckedIOException) && isRetryableException(error)))
+        .doOnError(error -> logger.error("Error streaming vehicle positions: {}", error.getMessage()));
+  }
+
+  /**
+   * Conditionally fetch and parse a GTFS-RT feed endpoint
+   * The validators and feed timestamp only advance when the returned fetch is committed
+   */
+  private Mono<FeedFetch> fetchFeed(String feed, String endpoint) {
+    FeedFetchState state = fetchStates.computeIfAbsent(endpoint, k -> new FeedFetchState());
+
+    return Mono.defer(() -> {
+          Timer.Sample fetchSample = pollMetrics.start();
+          return conditionalGet(endpoint, state)
+              .exchangeToMono(response -> {
+                if (response.statusCode().value() == HttpStatus.NOT_MODIFIED.value()) {
+                  state.notModifiedCount.incrementAndGet();
+                  logger.debug("Feed {} not modified (HTTP 304)", endpoint);
+                  return response.releaseBody().then(Mono.<FetchedFeed>empty());
+                }
+                if (response.statusCode().isError()) {
+                  return response.createError();
+                }
+                HttpHeaders headers = response.headers().asHttpHeaders();
+                String eTag = headers.getETag();
+                String lastModified = headers.getFirst(HttpHeaders.LAST_MODIFIED);
+                return response.bodyToMono(byte[].class)
+                    .map(bytes -> new FetchedFeed(bytes, eTag, lastModified));
+              })
+              .doFinally(signal -> pollMetrics.stop(fetchSample, PollMetrics.FETCH, feed));
+        })
+        .retryWhen(Retry.backoff(3, Duration.ofSeconds(2))
+            .filter(this::isRetryableException))
+        .flatMap(fetched -> {
+          logger.debug("Received response bytes: {}", fetched.bytes.length);
+
+          // Cheap header peek before the full parse
+          long feedTimestamp = peekFeedTimestamp(fetched.bytes);
+          if (feedTimestamp > 0 && feedTimestamp == state.feedTimestamp) {
+            state.updateValidators(fetched);
+            state.unchangedTimestampCount.incrementAndGet();
+            logger.debug("Feed {} timestamp {} unchanged, skipping parse", endpoint, feedTimestamp);
+            return Mono.empty();
+          }
+
+          return parseProtobufResponse(feed, fetched.bytes)
+              .map(feedMessage -> {
+                state.parsedCount.incrementAndGet();
+                return new FeedFetch(feedMessage, () -> {
+                  state.updateValidators(fetched);
+                  state.feedTimestamp = feedTimestamp;
+                });
+              });
+        });
+  }
+
+  /**
+   * GET request for a feed endpoint carrying the validators of the last processed response
+   */
+  private WebClient.RequestHeadersSpec<?> conditionalGet(String endpoint, FeedFetchState state) {
     String apiKey = properties.getApi().getApiKey();
 
-    logger.debug("Fetching vehicle positions from: {}{}", properties.getApi().getBaseUrl(), endpoint);
+    logger.debug("Fetching feed from: {}{}", properties.getApi().getBaseUrl(), endpoint);
 
     return webClient.get()
         .uri(uriBuilder -> uriBuilder
             .path(endpoint)
             .queryParam("apikey", apiKey)
             .build())
-        .retrieve()
-        .bodyToMono(byte[].class)
-        .doOnNext(responseBytes -> {
-          // Add a breakpoint here or log
-          logger.debug("Received response bytes: {}", responseBytes.length);
-          // You can also inspect 'responseBytes' in the debugger
-        })
-        .flatMap(this::parseProtobufResponse)
-        .retryWhen(Retry.backoff(3, Duration.ofSeconds(2))
-            .filter(this::isRetryableException))
-        .doOnSuccess(feedMessage -> {
-          if (feedMessage != null) {
-            logger.debug("Successfully fetched {} vehicle entities",
-                feedMessage.getEntityCount());
+        .headers(headers -> {
+          // Validators from the last feed we actually processed
+          if (state.eTag != null) {
+            headers.setIfNoneMatch(state.eTag);
           }
-        })
-        .doOnError(error -> logger.error("Error fetching vehicle positions: {}", error.getMessage()));
+          if (state.lastModified != null) {
+            headers.set(HttpHeaders.IF_MODIFIED_SINCE, state.lastModified);
+          }
+        });
+  }
+
+  /**
+   * Read FeedMessage.header.timestamp without parsing the entities
+   * The header is field 1 and is written first by every producer we know of;
+   * entities before it are skipped without being materialized.
+   * @return feed timestamp, or 0 if absent or unreadable
+   */
+  static long peekFeedTimestamp(byte[] feedBytes) {
+    try {
+      CodedInputStream input = CodedInputStream.newInstance(feedBytes);
+      while (!input.isAtEnd()) {
+        int tag = input.readTag();
+        if (WireFormat.getTagFieldNumber(tag) != GtfsRealtime.FeedMessage.HEADER_FIELD_NUMBER) {
+          input.skipField(tag);
+          continue;
+        }
+        int limit = input.pushLimit(input.readRawVarint32());
+        while (!input.isAtEnd()) {
+          int headerTag = input.readTag();
+          if (WireFormat.getTagFieldNumber(headerTag) == GtfsRealtime.FeedHeader.TIMESTAMP_FIELD_NUMBER) {
+            return input.readUInt64();
+          }
+          input.skipField(headerTag);
+        }
+        input.popLimit(limit);
+        return 0;
+      }
+    } catch (IOException e) {
+      logger.debug("Could not peek feed timestamp: {}", e.getMessage());
+    }
+    return 0;
   }
 
   /**
    * Parse raw protobuf bytes into GTFS FeedMessage
    */
-  private Mono<GtfsRealtime.FeedMessage> parseProtobufResponse(byte[] responseBytes) {
+  private Mono<GtfsRealtime.FeedMessage> parseProtobufResponse(String feed, byte[] responseBytes) {
     return Mono.fromCallable(() -> {
+      Timer.Sample parseSample = pollMetrics.start();
       try {
         logger.debug("Parsing protobuf response, size: {} bytes", responseBytes.length);
 
@@ -86,10 +280,32 @@ public class TransLinkApiClient {
       } catch (Exception e) {
         logger.error("Failed to parse protobuf response", e);
         throw new RuntimeException("Failed to parse GTFS protobuf data", e);
+      } finally {
+        // Failed parses are timed too, so slow corrupt payloads show up in the stage timer
+        pollMetrics.stop(parseSample, PollMetrics.PARSE, feed);
       }
     });
   }
 
+  /**
+   * FeedHeader.timestamp of the last processed vehicle positions feed (0 if none yet)
+   */
+  public long getVehicleFeedTimestamp() {
+    FeedFetchState state = fetchStates.get(properties.getApi().getEndpoints().getPositions());
+    return state != null ? state.feedTimestamp : 0;
+  }
+
+  /**
+   * Get conditional fetch statistics per endpoint
+   */
+  public Map<String, FetchStats> getFetchStats() {
+    Map<String, FetchStats> stats = new TreeMap<>();
+    fetchStates.forEach((endpoint, state) -> stats.put(endpoint, new FetchStats(
+        state.parsedCount.get(), state.notModifiedCount.get(), state.unchangedTimestampCount.get(),
+        state.feedTimestamp)));
+    return stats;
+  }
+
   /**
    * Determine if an exception should trigger a retry
    */
@@ -119,6 +335,159 @@ public class TransLinkApiClient {
           logger.info("API connection test result: {}", isValid ? "SUCCESS" : "FAILED");
           return isValid;
         })
+        .defaultIfEmpty(true) // Feed unchanged since last fetch - still a successful round trip
         .onErrorReturn(false);
   }
+
+  private static class FetchedFeed {
+    private final byte[] bytes;
+    private final String eTag;
+    private final String lastModified;
+
+    private FetchedFeed(byte[] bytes, String eTag, String lastModified) {
+      this.bytes = bytes;
+      this.eTag = eTag;
+      this.lastModified = lastModified;
+    }
+  }
+
+  /**
+   * A parsed feed whose conditional request state has not been advanced yet
+   * Until commit() is called the endpoint keeps sending the previous validators,
+   * so a feed that failed downstream is served and processed again.
+   */
+  public static class FeedFetch {
+    private final GtfsRealtime.FeedMessage feedMessage;
+    private final Runnable commit;
+
+    private FeedFetch(GtfsRealtime.FeedMessage feedMessage, Runnable commit) {
+      this.feedMessage = feedMessage;
+      this.commit = commit;
+    }
+
+    public GtfsRealtime.FeedMessage getFeedMessage() { return feedMessage; }
+
+    /**
+     * Record this feed's validators and timestamp as processed
+     * @return the feed message
+     */
+    public GtfsRealtime.FeedMessage commit() {
+      commit.run();
+      return feedMessage;
+    }
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    try {
+      closeable.close();
+    } catch (IOException e) {
+      logger.debug("Failed to close feed stream: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Incremental decoder over a feed body stream
+   * Reads top-level FeedMessage fields one at a time: the header is checked for
+   * an unchanged timestamp, each entity is parsed and handed out on its own.
+   */
+  private static class FeedEntityReader {
+    private final String endpoint;
+    private final InputStream body;
+    private final CodedInputStream input;
+    private final FeedFetchState state;
+    private final FetchedFeed validators;
+    private long feedTimestamp;
+    private int entityCount;
+
+    private FeedEntityReader(String endpoint, InputStream body, FeedFetchState state, FetchedFeed validators) {
+      this.endpoint = endpoint;
+      this.body = body;
+      this.input = CodedInputStream.newInstance(body);
+      this.state = state;
+      this.validators = validators;
+    }
+
+    /**
+     * @return next entity, or null when the feed is exhausted or unchanged
+     */
+    private GtfsRealtime.FeedEntity next() throws IOException {
+      while (true) {
+        int tag = input.readTag();
+        if (tag == 0) {
+          state.updateValidators(validators);
+          state.feedTimestamp = feedTimestamp;
+          state.parsedCount.incrementAndGet();
+          logger.debug("Streamed {} entities from feed {}", entityCount, endpoint);
+          return null;
+        }
+        switch (WireFormat.getTagFieldNumber(tag)) {
+          case GtfsRealtime.FeedMessage.HEADER_FIELD_NUMBER -> {
+            feedTimestamp = input.readMessage(GtfsRealtime.FeedHeader.parser(),
+                ExtensionRegistryLite.getEmptyRegistry()).getTimestamp();
+            if (feedTimestamp > 0 && feedTimestamp == state.feedTimestamp) {
+              state.updateValidators(validators);
+              state.unchangedTimestampCount.incrementAndGet();
+              logger.debug("Feed {} timestamp {} unchanged, skipping entities", endpoint, feedTimestamp);
+              return null;
+            }
+          }
+          case GtfsRealtime.FeedMessage.ENTITY_FIELD_NUMBER -> {
+            input.resetSizeCounter();
+            entityCount++;
+            return input.readMessage(GtfsRealtime.FeedEntity.parser(), ExtensionRegistryLite.getEmptyRegistry());
+          }
+          default -> input.skipField(tag);
+        }
+      }
+    }
+
+    private void close() {
+      closeQuietly(body);
+    }
+  }
+
+  /**
+   * Conditional request state for one feed endpoint
+   */
+  private static class FeedFetchState {
+    private volatile String eTag;
+    private volatile String lastModified;
+    private volatile long feedTimestamp;
+    private final AtomicLong parsedCount = new AtomicLong();
+    private final AtomicLong notModifiedCount = new AtomicLong();
+    private final AtomicLong unchangedTimestampCount = new AtomicLong();
+
+    private void updateValidators(FetchedFeed fetched) {
+      eTag = fetched.eTag;
+      lastModified = fetched.lastModified;
+    }
+  }
+
+  /**
+   * Stats class for monitoring
+   */
+  public static class FetchStats {
+    private final long parsed;
+    private final long notModified;
+    private final long unchangedTimestamp;
+    private final long lastFeedTimestamp;
+
+    public FetchStats(long parsed, long notModified, long unchangedTimestamp, long lastFeedTimestamp) {
+      this.parsed = parsed;
+      this.notModified = notModified;
+      this.unchangedTimestamp = unchangedTimestamp;
+      this.lastFeedTimestamp = lastFeedTimestamp;
+    }
+
+    public long getParsed() { return parsed; }
+    public long getNotModified() { return notModified; }
+    public long getUnchangedTimestamp() { return unchangedTimestamp; }
+    public long getLastFeedTimestamp() { return lastFeedTimestamp; }
+
+    @Override
+    public String toString() {
+      return String.format("FetchStats{parsed=%d, notModified=%d, unchangedTimestamp=%d, lastFeedTimestamp=%d}",
+          parsed, notModified, unchangedTimestamp, lastFeedTimestamp);
+    }
+  }
 }
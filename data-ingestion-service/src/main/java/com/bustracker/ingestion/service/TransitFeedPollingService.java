@@ -0,0 +1,234 @@
+package com.bustracker.ingestion.service;
+
+import com.bustracker.ingestion.config.TransLinkProperties;
+import com.bustracker.shared.gtfs.GtfsRealtime;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Fetch-transform-publish pipelines for the trip updates and service alerts feeds
+ * Each runs on its own schedule, independent of vehicle positions. An endpoint
+ * left empty in configuration disables its pipeline.
+ */
+@Service
+public class TransitFeedPollingService {
+
+  private static final Logger logger = LoggerFactory.getLogger(TransitFeedPollingService.class);
+
+  private final TransLinkApiClient apiClient;
+  private final GtfsDataTransformer transformer;
+  private final GtfsFeedProducer producer;
+  private final TransLinkProperties properties;
+  private final boolean tripUpdatesEnabled;
+  private final boolean alertsEnabled;
+
+  // tripId -> TripUpdate.timestamp last acknowledged by Kafka; trips absent from a poll are dropped
+  private final Map<String, Long> publishedTripTimestamps = new ConcurrentHashMap<>();
+
+  private final AtomicInteger tripUpdatePolls = new AtomicInteger();
+  private final AtomicInteger alertPolls = new AtomicInteger();
+  private final AtomicLong tripUpdatesPublished = new AtomicLong();
+  private final AtomicLong alertSetsPublished = new AtomicLong();
+
+  private Disposable tripUpdatesPipeline;
+  private Disposable alertsPipeline;
+
+  @Autowired
+  public TransitFeedPollingService(TransLinkApiClient apiClient,
+      GtfsDataTransformer transformer,
+      GtfsFeedProducer producer,
+      TransLinkProperties properties) {
+    this.apiClient = apiClient;
+    this.transformer = transformer;
+    this.producer = producer;
+    this.properties = properties;
+    this.tripUpdatesEnabled = isConfigured(properties.getApi().getEndpoints().getTripUpdates());
+    this.alertsEnabled = isConfigured(properties.getApi().getEndpoints().getAlerts());
+  }
+
+  @PostConstruct
+  public void init() {
+    logger.info("TransitFeedPollingService initialized - trip updates: {}, alerts: {}",
+        tripUpdatesEnabled ? "enabled" : "disabled", alertsEnabled ? "enabled" : "disabled");
+  }
+
+  /**
+   * Start the poll pipelines; like vehicle positions, a tick that arrives while
+   * the previous cycle of the same feed is still running is dropped, so cycles
+   * never overlap. Trip updates change with vehicle movement, so they follow the
+   * positions interval; alerts have their own.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void startPolling() {
+    var polling = properties.getApi().getPolling();
+    if (tripUpdatesEnabled) {
+      tripUpdatesPipeline = pollingPipeline("Trip updates", polling.getIntervalSeconds(), this::pollTripUpdates);
+    }
+    if (alertsEnabled) {
+      alertsPipeline = pollingPipeline("Alerts", polling.getAlertsIntervalSeconds(), this::pollAlerts);
+    }
+  }
+
+  @PreDestroy
+  public void stopPolling() {
+    if (tripUpdatesPipeline != null) {
+      tripUpdatesPipeline.dispose();
+    }
+    if (alertsPipeline != null) {
+      alertsPipeline.dispose();
+    }
+  }
+
+  private Disposable pollingPipeline(String feed, int intervalSeconds, Supplier<Mono<Integer>> cycle) {
+    return Flux.interval(Duration.ofSeconds(properties.getApi().getPolling().getInitialDelaySeconds()),
+            Duration.ofSeconds(intervalSeconds))
+        .onBackpressureDrop(tick -> logger.warn("{} poll still running, skipping tick #{}", feed, tick))
+        // No prefetch: a tick is only requested once the previous cycle completed
+        .concatMap(tick -> cycle.get().onErrorResume(error -> Mono.just(0)), 0)
+        .subscribe();
+  }
+
+  /**
+   * Run one trip updates cycle, publishing only trips whose update changed
+   * @return Mono with the number of trip updates published
+   */
+  public Mono<Integer> pollTripUpdates() {
+    int pollNumber = tripUpdatePolls.incrementAndGet();
+
+    return apiClient.fetchTripUpdates()
+        .flatMap(fetch -> {
+          List<GtfsRealtime.FeedEntity> changed =
+              filterChangedTrips(transformer.extractTripUpdates(fetch.getFeedMessage()));
+          Mono<Integer> published = changed.isEmpty()
+              ? Mono.just(0)
+              : Mono.fromFuture(producer.publishTripUpdates(changed, this::recordPublished)).thenReturn(changed.size());
+          // Only an acknowledged cycle lets the next fetch skip this feed
+          return published.doOnNext(count -> fetch.commit());
+        })
+        .doOnNext(published -> {
+          tripUpdatesPublished.addAndGet(published);
+          logger.info("Trip updates poll #{} completed: Published {} trip updates to Kafka", pollNumber, published);
+        })
+        .doOnError(error -> logger.error("Trip updates poll #{} failed: {}", pollNumber, error.getMessage(), error))
+        .defaultIfEmpty(0);
+  }
+
+  /**
+   * Run one alerts cycle
+   * @return Mono with the number of active alerts published (0 when the set is unchanged)
+   */
+  public Mono<Integer> pollAlerts() {
+    int pollNumber = alertPolls.incrementAndGet();
+
+    // Conditional fetch completes empty when the alert set is unchanged since it was last published
+    return apiClient.fetchAlerts()
+        .flatMap(fetch -> {
+          GtfsRealtime.FeedMessage alerts = transformer.extractAlerts(fetch.getFeedMessage());
+          return Mono.fromFuture(producer.publishAlerts(alerts))
+              .doOnSuccess(result -> fetch.commit())
+              .thenReturn(alerts.getEntityCount());
+        })
+        .doOnNext(alertCount -> {
+          alertSetsPublished.incrementAndGet();
+          logger.info("Alerts poll #{} completed: Published {} active alerts to Kafka", pollNumber, alertCount);
+        })
+        .doOnError(error -> logger.error("Alerts poll #{} failed: {}", pollNumber, error.getMessage(), error))
+        .defaultIfEmpty(0);
+  }
+
+  /**
+   * Keep only trips whose update timestamp changed since last published
+   * Timestamps are recorded when Kafka acknowledges the send (recordPublished),
+   * and a cycle with a failed send is not committed, so the next poll fetches
+   * the same feed again and republishes the trips whose send failed.
+   */
+  private List<GtfsRealtime.FeedEntity> filterChangedTrips(List<GtfsRealtime.FeedEntity> tripUpdates) {
+    Set<String> present = new HashSet<>(tripUpdates.size() * 2);
+    List<GtfsRealtime.FeedEntity> changed = new ArrayList<>();
+    for (GtfsRealtime.FeedEntity entity : tripUpdates) {
+      GtfsRealtime.TripUpdate tripUpdate = entity.getTripUpdate();
+      String tripId = tripUpdate.getTrip().getTripId();
+      Long previous = publishedTripTimestamps.get(tripId);
+      if (!tripUpdate.hasTimestamp() || previous == null || previous != tripUpdate.getTimestamp()) {
+        changed.add(entity);
+      }
+      present.add(tripId);
+    }
+    publishedTripTimestamps.keySet().retainAll(present);
+    return changed;
+  }
+
+  private void recordPublished(GtfsRealtime.FeedEntity entity) {
+    GtfsRealtime.TripUpdate tripUpdate = entity.getTripUpdate();
+    if (tripUpdate.hasTimestamp()) {
+      publishedTripTimestamps.put(tripUpdate.getTrip().getTripId(), tripUpdate.getTimestamp());
+    }
+  }
+
+  private static boolean isConfigured(String endpoint) {
+    return endpoint != null && !endpoint.isBlank();
+  }
+
+  /**
+   * Get current feed polling statistics
+   */
+  public FeedPollingStats getStats() {
+    return new FeedPollingStats(tripUpdatesEnabled, tripUpdatePolls.get(), tripUpdatesPublished.get(),
+        alertsEnabled, alertPolls.get(), alertSetsPublished.get());
+  }
+
+  /**
+   * Simple stats class for monitoring
+   */
+  public static class FeedPollingStats {
+    private final boolean tripUpdatesEnabled;
+    private final int tripUpdatePolls;
+    private final long tripUpdatesPublished;
+    private final boolean alertsEnabled;
+    private final int alertPolls;
+    private final long alertSetsPublished;
+
+    public FeedPollingStats(boolean tripUpdatesEnabled, int tripUpdatePolls, long tripUpdatesPublished,
+        boolean alertsEnabled, int alertPolls, long alertSetsPublished) {
+      this.tripUpdatesEnabled = tripUpdatesEnabled;
+      this.tripUpdatePolls = tripUpdatePolls;
+      this.tripUpdatesPublished = tripUpdatesPublished;
+      this.alertsEnabled = alertsEnabled;
+      this.alertPolls = alertPolls;
+      this.alertSetsPublished = alertSetsPublished;
+    }
+
+    public boolean isTripUpdatesEnabled() { return tripUpdatesEnabled; }
+    public int getTripUpdatePolls() { return tripUpdatePolls; }
+    public long getTripUpdatesPublished() { return tripUpdatesPublished; }
+    public boolean isAlertsEnabled() { return alertsEnabled; }
+    public int getAlertPolls() { return alertPolls; }
+    public long getAlertSetsPublished() { return alertSetsPublished; }
+
+    @Override
+    public String toString() {
+      return String.format("FeedPollingStats{tripUpdates=%s/%d polls/%d published, alerts=%s/%d polls/%d published}",
+          tripUpdatesEnabled, tripUpdatePolls, tripUpdatesPublished, alertsEnabled, alertPolls, alertSetsPublished);
+    }
+  }
+}
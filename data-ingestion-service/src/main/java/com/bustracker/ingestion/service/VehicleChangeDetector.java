@@ -0,0 +1,298 @@
+package com.bustracker.ingestion.service;
+
+import com.bustracker.ingestion.config.TransLinkProperties;
+import com.bustracker.shared.model.VehiclePosition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Change-detection stage between the transformer and the producer
+ *
+ * Remembers the last published state of every vehicle and suppresses vehicles
+ * that have not materially changed (moved less than the threshold, same trip
+ * and status, and last published recently). Parked buses at layovers then cost
+ * nothing downstream. A periodic heartbeat publishes the full fleet so the
+ * tracker's freshness window never expires for stationary vehicles.
+ *
+ * State is kept in an open-addressing table over parallel arrays (16 bytes of
+ * primitives per vehicle plus the id, trip and status references), rebuilt on
+ * every heartbeat so vehicles that left the feed are dropped. A vehicle whose
+ * send fails is rolled back (publishFailed) and published again on the next poll.
+ */
+@Service
+public class VehicleChangeDetector {
+
+  private static final Logger logger = LoggerFactory.getLogger(VehicleChangeDetector.class);
+
+  private static final double METERS_PER_MICRODEGREE = Math.toRadians(1e-6) * 6371000.0;
+  private static final int MIN_CAPACITY = 1024; // power of two
+
+  // Timestamp of a tracked vehicle whose last publish failed: always counts as changed
+  private static final long NOT_PUBLISHED = Long.MIN_VALUE;
+
+  private final TransLinkProperties.ChangeDetection config;
+
+  // Last published state, indexed by slot
+  private String[] vehicleIds;
+  private int[] latE6;
+  private int[] lonE6;
+  private long[] timestamps;
+  private String[] tripIds;
+  private String[] statuses;
+  private int size;
+
+  private long lastHeartbeatMillis = Long.MIN_VALUE;
+  private long publishedCount = 0;
+  private long suppressedCount = 0;
+
+  @Autowired
+  public VehicleChangeDetector(TransLinkProperties properties) {
+    this.config = properties.getChangeDetection();
+    allocate(MIN_CAPACITY);
+
+    if (config.getHeartbeatSeconds() >= 300) {
+      logger.warn("Change detection heartbeat ({}s) is not below the tracker's 300s freshness window; " +
+          "stationary vehicles may drop off arrivals between heartbeats", config.getHeartbeatSeconds());
+    }
+  }
+
+  /**
+   * Filter a polled fleet down to the vehicles that should be published
+   * @param fleet All vehicles from the current poll
+   * @return Vehicles that changed materially (the whole fleet on a heartbeat)
+   */
+  public List<VehiclePosition> filterChanged(List<VehiclePosition> fleet) {
+    return filterChanged(fleet, System.currentTimeMillis());
+  }
+
+  synchronized List<VehiclePosition> filterChanged(List<VehiclePosition> fleet, long nowMillis) {
+    if (!config.isEnabled()) {
+      return fleet;
+    }
+
+    boolean heartbeat = beginCycle(nowMillis, fleet.size());
+    List<VehiclePosition> changed = new ArrayList<>(heartbeat ? fleet.size() : 64);
+    for (VehiclePosition vehicle : fleet) {
+      if (accept(vehicle, heartbeat)) {
+        changed.add(vehicle);
+      }
+    }
+
+    logger.debug("Change detection{}: {} of {} vehicles changed, {} suppressed",
+        heartbeat ? " (heartbeat)" : "", changed.size(), fleet.size(), fleet.size() - changed.size());
+    return changed;
+  }
+
+  /**
+   * Start a poll cycle for vehicles that arrive one at a time (streaming mode)
+   */
+  public Cycle startCycle() {
+    return new Cycle(System.currentTimeMillis());
+  }
+
+  /**
+   * One poll's worth of per-vehicle decisions
+   * The heartbeat decision is taken on the first vehicle, so a poll that turns
+   * out to be unchanged does not consume a heartbeat.
+   */
+  public class Cycle {
+    private final long nowMillis;
+    private Boolean heartbeat;
+
+    private Cycle(long nowMillis) {
+      this.nowMillis = nowMillis;
+    }
+
+    /**
+     * @return true if the vehicle should be published
+     */
+    public boolean shouldPublish(VehiclePosition vehicle) {
+      if (!config.isEnabled()) {
+        return true;
+      }
+      synchronized (VehicleChangeDetector.this) {
+        if (heartbeat == null) {
+          heartbeat = beginCycle(nowMillis, size); // Last fleet size as the sizing hint
+        }
+        return accept(vehicle, heartbeat);
+      }
+    }
+  }
+
+  /**
+   * @return true if this cycle is a heartbeat (table rebuilt, everything published)
+   */
+  private boolean beginCycle(long nowMillis, int expectedVehicles) {
+    boolean heartbeat = lastHeartbeatMillis == Long.MIN_VALUE
+        || nowMillis - lastHeartbeatMillis >= config.getHeartbeatSeconds() * 1000L;
+    if (heartbeat) {
+      allocate(tableSizeFor(expectedVehicles));
+      lastHeartbeatMillis = nowMillis;
+    }
+    return heartbeat;
+  }
+
+  private boolean accept(VehiclePosition vehicle, boolean heartbeat) {
+    if (vehicle.getVehicleId() == null) {
+      publishedCount++;
+      return true; // Cannot track it, never suppress
+    }
+    if ((size + 1) * 2 > vehicleIds.length) {
+      resize();
+    }
+    int slot = findSlot(vehicle.getVehicleId());
+    boolean isNew = vehicleIds[slot] == null;
+    if (heartbeat || isNew || hasChanged(slot, vehicle)) {
+      record(slot, vehicle, isNew);
+      publishedCount++;
+      return true;
+    }
+    suppressedCount++;
+    return false;
+  }
+
+  /**
+   * Roll back a vehicle whose publish failed, so the next poll publishes it again
+   * Kept when a newer report was recorded since (or the table was rebuilt)
+   */
+  public synchronized void publishFailed(VehiclePosition vehicle) {
+    if (!config.isEnabled() || vehicle.getVehicleId() == null) {
+      return;
+    }
+    int slot = findSlot(vehicle.getVehicleId());
+    if (vehicleIds[slot] != null && timestamps[slot] == vehicle.getTimestamp()) {
+      timestamps[slot] = NOT_PUBLISHED;
+    }
+  }
+
+  /**
+   * Get change detection statistics
+   */
+  public synchronized ChangeDetectionStats getStats() {
+    return new ChangeDetectionStats(config.isEnabled(), size, publishedCount, suppressedCount);
+  }
+
+  private boolean hasChanged(int slot, VehiclePosition vehicle) {
+    if (timestamps[slot] == NOT_PUBLISHED
+        || !Objects.equals(tripIds[slot], vehicle.getTripId())
+        || !Objects.equals(statuses[slot], vehicle.getCurrentStatus())) {
+      return true;
+    }
+    long sinceLastPublished = vehicle.getTimestamp() - timestamps[slot];
+    if (sinceLastPublished <= 0) {
+      return false; // Same (or older) report as the one already published
+    }
+    if (sinceLastPublished >= config.getMaxSilenceSeconds()) {
+      return true;
+    }
+
+    double dy = (toE6(vehicle.getLatitude()) - latE6[slot]) * METERS_PER_MICRODEGREE;
+    double dx = (toE6(vehicle.getLongitude()) - lonE6[slot]) * METERS_PER_MICRODEGREE
+        * Math.cos(Math.toRadians(vehicle.getLatitude()));
+    return dx * dx + dy * dy >= config.getMinMovementMeters() * config.getMinMovementMeters();
+  }
+
+  private void record(int slot, VehiclePosition vehicle, boolean isNew) {
+    if (isNew) {
+      vehicleIds[slot] = vehicle.getVehicleId();
+      size++;
+    }
+    latE6[slot] = toE6(vehicle.getLatitude());
+    lonE6[slot] = toE6(vehicle.getLongitude());
+    timestamps[slot] = vehicle.getTimestamp();
+    tripIds[slot] = vehicle.getTripId();
+    statuses[slot] = vehicle.getCurrentStatus();
+  }
+
+  /**
+   * Linear probing: slot holding vehicleId, or the empty slot where it belongs
+   */
+  private int findSlot(String vehicleId) {
+    int mask = vehicleIds.length - 1;
+    int hash = vehicleId.hashCode();
+    int slot = (hash ^ (hash >>> 16)) & mask;
+    while (vehicleIds[slot] != null && !vehicleIds[slot].equals(vehicleId)) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void resize() {
+    String[] oldIds = vehicleIds;
+    int[] oldLat = latE6;
+    int[] oldLon = lonE6;
+    long[] oldTimestamps = timestamps;
+    String[] oldTrips = tripIds;
+    String[] oldStatuses = statuses;
+
+    allocate(oldIds.length * 2);
+    for (int i = 0; i < oldIds.length; i++) {
+      if (oldIds[i] != null) {
+        int slot = findSlot(oldIds[i]);
+        vehicleIds[slot] = oldIds[i];
+        latE6[slot] = oldLat[i];
+        lonE6[slot] = oldLon[i];
+        timestamps[slot] = oldTimestamps[i];
+        tripIds[slot] = oldTrips[i];
+        statuses[slot] = oldStatuses[i];
+        size++;
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    vehicleIds = new String[capacity];
+    latE6 = new int[capacity];
+    lonE6 = new int[capacity];
+    timestamps = new long[capacity];
+    tripIds = new String[capacity];
+    statuses = new String[capacity];
+    size = 0;
+  }
+
+  private static int tableSizeFor(int vehicles) {
+    int capacity = MIN_CAPACITY;
+    while (capacity < vehicles * 2) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  private static int toE6(double degrees) {
+    return (int) Math.round(degrees * 1e6);
+  }
+
+  /**
+   * Stats class for monitoring
+   */
+  public static class ChangeDetectionStats {
+    private final boolean enabled;
+    private final int trackedVehicles;
+    private final long published;
+    private final long suppressed;
+
+    public ChangeDetectionStats(boolean enabled, int trackedVehicles, long published, long suppressed) {
+      this.enabled = enabled;
+      this.trackedVehicles = trackedVehicles;
+      this.published = published;
+      this.suppressed = suppressed;
+    }
+
+    public boolean isEnabled() { return enabled; }
+    public int getTrackedVehicles() { return trackedVehicles; }
+    public long getPublished() { return published; }
+    public long getSuppressed() { return suppressed; }
+
+    @Override
+    public String toString() {
+      return String.format("ChangeDetectionStats{enabled=%s, tracked=%d, published=%d, suppressed=%d}",
+          enabled, trackedVehicles, published, suppressed);
+    }
+  }
+}
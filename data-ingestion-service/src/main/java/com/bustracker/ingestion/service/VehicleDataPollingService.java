@@ -1,14 +1,22 @@
 package com.bustracker.ingestion.service;
 
 import com.bustracker.ingestion.config.TransLinkProperties;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
 @Service
 public class VehicleDataPollingService {
 
@@ -17,85 +25,177 @@ public class VehicleDataPollingService {
   private final TransLinkApiClient apiClient;
   private final GtfsDataTransformer transformer;
   private final VehiclePositionProducer producer;
+  private final VehicleChangeDetector changeDetector;
+  private final PollMetrics pollMetrics;
   private final TransLinkProperties properties;
 
-  private boolean isPollingEnabled = true;
-  private int pollCount = 0;
+  // Max in-flight Kafka sends while streaming entities
+  private static final int STREAMING_PUBLISH_CONCURRENCY = 256;
+
+  private final boolean streaming;
+  private final boolean adaptive;
+
+  private volatile boolean isPollingEnabled = true;
+  private final AtomicInteger pollCount = new AtomicInteger();
+  private Disposable pollingPipeline;
 
   @Autowired
   public VehicleDataPollingService(
       TransLinkApiClient apiClient,
       GtfsDataTransformer transformer,
       VehiclePositionProducer producer,
+      VehicleChangeDetector changeDetector,
+      PollMetrics pollMetrics,
       TransLinkProperties properties) {
     this.apiClient = apiClient;
     this.transformer = transformer;
     this.producer = producer;
+    this.changeDetector = changeDetector;
+    this.pollMetrics = pollMetrics;
     this.properties = properties;
+    // Snapshot publishing needs the whole fleet at once
+    this.streaming = properties.getApi().isStreaming() && !producer.isSnapshotMode();
+    this.adaptive = "adaptive".equalsIgnoreCase(properties.getApi().getPolling().getMode());
   }
 
   @PostConstruct
   public void init() {
     logger.info("VehicleDataPollingService initialized");
+    logger.info("Polling mode: {}", adaptive ? "adaptive" : "fixed");
     logger.info("Polling interval: {} seconds", properties.getApi().getPolling().getIntervalSeconds());
     logger.info("Initial delay: {} seconds", properties.getApi().getPolling().getInitialDelaySeconds());
+    if (properties.getApi().isStreaming() && !streaming) {
+      logger.warn("Streaming feed decoding is not available in snapshot publish mode, buffering whole feed");
+    }
+    logger.info("Feed decoding: {}", streaming ? "streaming" : "buffered");
   }
 
   /**
-   * Scheduled method that runs every 30 seconds (configurable)
-   * Fetches vehicle positions from TransLink API and publishes to Kafka
+   * Start the fixed-rate poll pipeline: every 30 seconds (configurable) fetch
+   * vehicle positions from TransLink API and publish them to Kafka
+   * Ticks that arrive while a cycle (including its fetch retries) is still
+   * running are dropped, so at most one cycle is ever in flight and cycles
+   * publish in order. In adaptive polling mode AdaptivePollScheduler drives
+   * cycles instead.
    */
-  @Scheduled(fixedRateString = "#{${translink.api.polling.interval-seconds} * 1000}",
-      initialDelayString = "#{${translink.api.polling.initial-delay-seconds} * 1000}")
-  public void pollVehiclePositions() {
-    if (!isPollingEnabled) {
-      logger.debug("Polling is disabled, skipping this cycle");
+  @EventListener(ApplicationReadyEvent.class)
+  public void startPolling() {
+    if (adaptive) {
       return;
     }
+    var polling = properties.getApi().getPolling();
+    pollingPipeline = Flux.interval(Duration.ofSeconds(polling.getInitialDelaySeconds()),
+            Duration.ofSeconds(polling.getIntervalSeconds()))
+        .onBackpressureDrop(tick -> {
+          pollMetrics.recordSkippedTick();
+          logger.warn("Previous polling cycle still running, skipping tick #{}", tick);
+        })
+        // No prefetch: a tick is only requested once the previous cycle completed
+        // (failures are logged by the cycle; continue polling even if one cycle fails)
+        .concatMap(tick -> runPollCycle().onErrorResume(error -> Mono.just(0)), 0)
+        .subscribe();
+  }
 
-    pollCount++;
-    logger.debug("Starting polling cycle #{}", pollCount);
-
-    try {
-      apiClient.fetchVehiclePositions()
-          .map(feedMessage -> {
-            logger.debug("Received GTFS feed with {} entities", feedMessage.getEntityCount());
-            return transformer.transformVehiclePositions(feedMessage);
-          })
-          .flatMap(vehiclePositions -> {
-            logger.debug("Transformed {} vehicle positions", vehiclePositions.size());
-
-            if (vehiclePositions.isEmpty()) {
-              logger.warn("No vehicle positions found in polling cycle: {}", pollCount);
-              return Mono.just(vehiclePositions);
-            }
-
-            // Log sample data less frequently and only in DEBUG mode
-            if (pollCount % 20 == 0 && logger.isDebugEnabled()) {
-              logger.debug("Sample vehicles from poll #{}:", pollCount);
-              vehiclePositions.stream()
-                  .limit(2)
-                  .forEach(vehicle -> logger.debug("  {}", vehicle));
-            }
-
-            // Publish to Kafka
-            return Mono.fromFuture(producer.publishVehiclePositions(vehiclePositions))
-                .thenReturn(vehiclePositions);
-          })
-          .subscribe(
-              vehiclePositions -> {
-                logger.info("Poll #{} completed: Published {} vehicles to Kafka",
-                    pollCount, vehiclePositions.size());
-              },
-              error -> {
-                logger.error("Poll #{} failed: {}", pollCount, error.getMessage(), error);
-                // Continue polling even if one cycle fails
-              }
-          );
-
-    } catch (Exception e) {
-      logger.error("Unexpected error in polling cycle #{}: {}", pollCount, e.getMessage(), e);
+  @PreDestroy
+  public void stopPolling() {
+    if (pollingPipeline != null) {
+      pollingPipeline.dispose();
+    }
+  }
+
+  /**
+   * Run one fetch-transform-publish cycle
+   * Callers must not overlap cycles (the fixed-rate pipeline and AdaptivePollScheduler both wait for completion)
+   * @return Mono with the number of vehicles published (0 when the feed was unchanged)
+   */
+  public Mono<Integer> runPollCycle() {
+    if (!isPollingEnabled) {
+      logger.debug("Polling is disabled, skipping this cycle");
+      return Mono.just(0);
     }
+
+    int pollNumber = pollCount.incrementAndGet();
+    logger.debug("Starting polling cycle #{}", pollNumber);
+
+    return Mono.defer(() -> {
+          Timer.Sample cycleSample = pollMetrics.start();
+          return (streaming ? streamingCycle(pollNumber) : bufferedCycle(pollNumber))
+              .doFinally(signal -> pollMetrics.stop(cycleSample, PollMetrics.CYCLE));
+        })
+        .doOnError(error -> logger.error("Poll #{} failed: {}", pollNumber, error.getMessage(), error));
+  }
+
+  private Mono<Integer> bufferedCycle(int pollNumber) {
+    return apiClient.fetchVehiclePositions()
+        .map(feedMessage -> {
+          logger.debug("Received GTFS feed with {} entities", feedMessage.getEntityCount());
+          return pollMetrics.record(PollMetrics.TRANSFORM, () -> transformer.transformVehiclePositionsPooled(feedMessage));
+        })
+        .flatMap(vehiclePositions -> {
+          logger.debug("Transformed {} vehicle positions", vehiclePositions.size());
+
+          if (vehiclePositions.isEmpty()) {
+            logger.warn("No vehicle positions found in polling cycle: {}", pollNumber);
+            return Mono.just(vehiclePositions);
+          }
+
+          // Log sample data less frequently and only in DEBUG mode
+          if (pollNumber % 20 == 0 && logger.isDebugEnabled()) {
+            logger.debug("Sample vehicles from poll #{}:", pollNumber);
+            vehiclePositions.stream()
+                .limit(2)
+                .forEach(vehicle -> logger.debug("  {}", vehicle));
+          }
+
+          // Only vehicles that materially changed (whole fleet on heartbeats); snapshot
+          // chunks must carry the complete vehicle set of their routes, so they are not filtered
+          var changedPositions = producer.isSnapshotMode()
+              ? vehiclePositions
+              : changeDetector.filterChanged(vehiclePositions);
+          if (changedPositions.isEmpty()) {
+            return Mono.just(changedPositions);
+          }
+
+          // Publish to Kafka
+          return Mono.defer(() -> {
+                Timer.Sample publishSample = pollMetrics.start();
+                // A vehicle whose send failed is rolled back, so the next poll publishes it again
+                return Mono.fromFuture(producer.publishVehiclePositions(changedPositions, changeDetector::publishFailed))
+                    .doFinally(signal -> pollMetrics.stop(publishSample, PollMetrics.PUBLISH));
+              })
+              .thenReturn(changedPositions);
+        })
+        .map(vehiclePositions -> {
+          logger.info("Poll #{} completed: Published {} vehicles to Kafka",
+              pollNumber, vehiclePositions.size());
+          return vehiclePositions.size();
+        })
+        // Empty when the feed is unchanged since the last poll (304 / same feed timestamp)
+        .switchIfEmpty(Mono.fromCallable(() -> {
+          logger.debug("Poll #{} completed: feed unchanged, nothing published", pollNumber);
+          return 0;
+        }));
+  }
+
+  /**
+   * Streaming poll: each entity is transformed, change-filtered and handed to the
+   * producer as soon as it is decoded, without materializing the feed or the fleet
+   * (stages interleave here, so only the whole cycle is timed)
+   */
+  private Mono<Integer> streamingCycle(int pollNumber) {
+    VehicleChangeDetector.Cycle changeCycle = changeDetector.startCycle();
+
+    return apiClient.streamVehicleEntities()
+        .mapNotNull(transformer::transformEntity)
+        .filter(changeCycle::shouldPublish)
+        .flatMap(vehicle -> Mono.fromFuture(producer.publishSingleVehiclePosition(vehicle))
+                .doOnError(error -> changeDetector.publishFailed(vehicle)),
+            STREAMING_PUBLISH_CONCURRENCY)
+        .count()
+        .map(published -> {
+          logger.info("Poll #{} completed: Published {} vehicles to Kafka (streamed)", pollNumber, published);
+          return published.intValue();
+        });
   }
 
   /**
@@ -110,7 +210,7 @@ public class VehicleDataPollingService {
    * Get current polling statistics
    */
   public PollingStats getStats() {
-    return new PollingStats(pollCount, isPollingEnabled,
+    return new PollingStats(pollCount.get(), isPollingEnabled,
         properties.getApi().getPolling().getIntervalSeconds());
   }
 
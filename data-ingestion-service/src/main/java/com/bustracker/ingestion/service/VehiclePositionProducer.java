@@ -1,8 +1,11 @@
 package com.bustracker.ingestion.service;
 
+import com.bustracker.shared.codec.FleetSnapshotChunk;
+import com.bustracker.shared.codec.FleetSnapshotCodec;
+import com.bustracker.shared.codec.VehiclePositionCodec;
 import com.bustracker.shared.model.VehiclePosition;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,8 +14,17 @@ import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 @Service
 public class VehiclePositionProducer {
@@ -20,29 +32,87 @@ public class VehiclePositionProducer {
   private static final Logger logger = LoggerFactory.getLogger(VehiclePositionProducer.class);
 
   private final KafkaTemplate<String, byte[]> kafkaTemplate;
-  private final ObjectMapper objectMapper;
+  private final VehiclePositionCodec codec;
+  private final VehiclePositionCodec.Format format;
   private final String topicName;
+  private final String latestTopicName;
+
+  // Snapshot publish mode: the whole fleet as a few compressed, route-grouped records
+  private final boolean snapshotMode;
+  private final String snapshotTopicName;
+  private final int snapshotChunkVehicles;
+  private final FleetSnapshotCodec snapshotCodec = new FleetSnapshotCodec();
+  private final AtomicLong lastSnapshotSeq = new AtomicLong();
+  // Routes with vehicles in the last snapshot, published once more (empty) after their last vehicle leaves
+  private Set<String> lastSnapshotRoutes = Set.of();
+
+  public VehiclePositionProducer(KafkaTemplate<String, byte[]> kafkaTemplate, String topicName) {
+    this(kafkaTemplate, topicName, null, VehiclePositionCodec.Format.JSON.getHeaderValue(),
+        "per-vehicle", null, 500);
+  }
 
   @Autowired
   public VehiclePositionProducer(KafkaTemplate<String, byte[]> kafkaTemplate,
-      @Value("${kafka.topics.vehicle-positions}") String topicName) {
+      @Value("${kafka.topics.vehicle-positions}") String topicName,
+      @Value("${kafka.topics.vehicle-positions-latest:}") String latestTopicName,
+      @Value("${kafka.producer.vehicle-position-format:json}") String format,
+      @Value("${kafka.producer.publish-mode:per-vehicle}") String publishMode,
+      @Value("${kafka.topics.fleet-snapshots:fleet-snapshots}") String snapshotTopicName,
+      @Value("${kafka.producer.snapshot-chunk-vehicles:500}") int snapshotChunkVehicles) {
     this.kafkaTemplate = kafkaTemplate;
     this.topicName = topicName;
-    this.objectMapper = new ObjectMapper();
+    this.latestTopicName = latestTopicName == null || latestTopicName.isBlank() ? null : latestTopicName;
+    this.codec = new VehiclePositionCodec();
+    this.format = VehiclePositionCodec.Format.fromHeader(format);
+    this.snapshotMode = "snapshot".equalsIgnoreCase(publishMode);
+    this.snapshotTopicName = snapshotTopicName;
+    this.snapshotChunkVehicles = Math.max(1, snapshotChunkVehicles);
+
+    if (snapshotMode) {
+      logger.info("VehiclePositionProducer initialized in snapshot mode for topic: {} (up to {} vehicles per chunk)",
+          snapshotTopicName, this.snapshotChunkVehicles);
+    } else {
+      logger.info("VehiclePositionProducer initialized for topic: {} (latest-state topic: {}, format: {})",
+          topicName, this.latestTopicName != null ? this.latestTopicName : "disabled", this.format.getHeaderValue());
+    }
+  }
 
-    logger.info("VehiclePositionProducer initialized for topic: {}", topicName);
+  /**
+   * True when the whole fleet is published as one snapshot (needs the full poll)
+   */
+  public boolean isSnapshotMode() {
+    return snapshotMode;
   }
 
   /**
    * Publish a list of vehicle positions to Kafka
    */
   public CompletableFuture<Void> publishVehiclePositions(List<VehiclePosition> vehiclePositions) {
+    return publishVehiclePositions(vehiclePositions, vehiclePosition -> { });
+  }
+
+  /**
+   * Publish a list of vehicle positions to Kafka
+   * @param onFailed called with each position whose send failed, before the returned future completes
+   *                 (not called in snapshot mode, where chunks carry whole routes)
+   */
+  public CompletableFuture<Void> publishVehiclePositions(List<VehiclePosition> vehiclePositions,
+      Consumer<VehiclePosition> onFailed) {
+    if (snapshotMode) {
+      return publishFleetSnapshot(vehiclePositions);
+    }
+
     logger.debug("Publishing {} vehicle positions to Kafka topic: {}",
         vehiclePositions.size(), topicName);
 
     // Create a list of futures for all publish operations
     List<CompletableFuture<SendResult<String, byte[]>>> futures = vehiclePositions.stream()
-        .map(this::publishSingleVehiclePosition)
+        .map(vehiclePosition -> publishSingleVehiclePosition(vehiclePosition)
+            .whenComplete((result, ex) -> {
+              if (ex != null) {
+                onFailed.accept(vehiclePosition);
+              }
+            }))
         .toList();
 
     // Combine all futures into one
@@ -59,33 +129,128 @@ public class VehiclePositionProducer {
     });
   }
 
+  /**
+   * Publish the whole fleet as one snapshot, split by route into compressed chunks
+   * Each chunk carries the complete vehicle set of its routes, so the tracker can
+   * apply it on its own; a few records replace one record per vehicle.
+   */
+  public CompletableFuture<Void> publishFleetSnapshot(List<VehiclePosition> vehiclePositions) {
+    long snapshotSeq = nextSnapshotSeq();
+    List<FleetSnapshotChunk> chunks = buildSnapshotChunks(snapshotSeq, vehiclePositions);
+
+    List<CompletableFuture<SendResult<String, byte[]>>> futures = new ArrayList<>(chunks.size());
+    long totalBytes = 0;
+    for (FleetSnapshotChunk chunk : chunks) {
+      byte[] messageValue = snapshotCodec.encode(chunk);
+      totalBytes += messageValue.length;
+
+      ProducerRecord<String, byte[]> record = new ProducerRecord<>(
+          snapshotTopicName, "chunk-" + chunk.getChunkIndex(), messageValue);
+      record.headers().add(new RecordHeader("snapshot-seq",
+          String.valueOf(snapshotSeq).getBytes(StandardCharsets.UTF_8)));
+      record.headers().add(new RecordHeader("snapshot-chunk",
+          ((chunk.getChunkIndex() + 1) + "/" + chunk.getChunkCount()).getBytes(StandardCharsets.UTF_8)));
+      futures.add(kafkaTemplate.send(record));
+    }
+
+    logger.debug("Publishing fleet snapshot #{}: {} vehicles in {} chunks ({} bytes compressed)",
+        snapshotSeq, vehiclePositions.size(), chunks.size(), totalBytes);
+
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+        .whenComplete((result, throwable) -> {
+          if (throwable != null) {
+            logger.error("Failed to publish fleet snapshot #{}", snapshotSeq, throwable);
+          }
+        });
+  }
+
+  /**
+   * Group vehicles by route and pack whole routes into chunks of roughly snapshotChunkVehicles
+   * Routes that had vehicles in the previous snapshot but none now are included
+   * with no vehicles, so the tracker clears them.
+   */
+  private synchronized List<FleetSnapshotChunk> buildSnapshotChunks(long snapshotSeq, List<VehiclePosition> vehiclePositions) {
+    Map<String, List<VehiclePosition>> byRoute = new TreeMap<>();
+    for (VehiclePosition vehicle : vehiclePositions) {
+      String routeId = vehicle.getRouteId() != null ? vehicle.getRouteId() : "";
+      byRoute.computeIfAbsent(routeId, k -> new ArrayList<>()).add(vehicle);
+    }
+    Set<String> servedRoutes = Set.copyOf(byRoute.keySet());
+    for (String routeId : lastSnapshotRoutes) {
+      byRoute.putIfAbsent(routeId, List.of());
+    }
+    lastSnapshotRoutes = servedRoutes;
+
+    List<List<String>> chunkRoutes = new ArrayList<>();
+    List<List<VehiclePosition>> chunkVehicles = new ArrayList<>();
+    List<String> routes = new ArrayList<>();
+    List<VehiclePosition> vehicles = new ArrayList<>();
+    for (Map.Entry<String, List<VehiclePosition>> entry : byRoute.entrySet()) {
+      if (!vehicles.isEmpty() && vehicles.size() + entry.getValue().size() > snapshotChunkVehicles) {
+        chunkRoutes.add(routes);
+        chunkVehicles.add(vehicles);
+        routes = new ArrayList<>();
+        vehicles = new ArrayList<>();
+      }
+      routes.add(entry.getKey());
+      vehicles.addAll(entry.getValue());
+    }
+    chunkRoutes.add(routes);
+    chunkVehicles.add(vehicles);
+
+    long createdAt = System.currentTimeMillis() / 1000;
+    List<FleetSnapshotChunk> chunks = new ArrayList<>(chunkRoutes.size());
+    for (int i = 0; i < chunkRoutes.size(); i++) {
+      chunks.add(new FleetSnapshotChunk(snapshotSeq, i, chunkRoutes.size(), createdAt,
+          chunkRoutes.get(i), chunkVehicles.get(i)));
+    }
+    return chunks;
+  }
+
+  /**
+   * Sequence numbers follow the clock so they keep increasing across restarts
+   */
+  private long nextSnapshotSeq() {
+    return lastSnapshotSeq.updateAndGet(last -> Math.max(last + 1, System.currentTimeMillis()));
+  }
+
   /**
    * Publish a single vehicle position to Kafka
    */
   public CompletableFuture<SendResult<String, byte[]>> publishSingleVehiclePosition(VehiclePosition vehiclePosition) {
     try {
-      // Use vehicleId as the message key for partitioning
+      // Use vehicleId as the message key for partitioning; callbacks log the key,
+      // not the record, which may be a pooled instance reused by the next poll
       String messageKey = vehiclePosition.getVehicleId();
 
-      // Serialize the vehicle position to JSON bytes
-      byte[] messageValue = objectMapper.writeValueAsBytes(vehiclePosition);
+      // Serialize the vehicle position in the configured wire format
+      byte[] messageValue = codec.encode(vehiclePosition, format);
 
       logger.debug("Publishing vehicle {} to topic {}",
           vehiclePosition.getVehicleId(), topicName);
 
       // Send to Kafka
-      CompletableFuture<SendResult<String, byte[]>> future = kafkaTemplate.send(
-          topicName, messageKey, messageValue
-      );
+      CompletableFuture<SendResult<String, byte[]>> future = send(topicName, messageKey, messageValue);
+
+      // Mirror to the compacted latest-state topic used by tracker bootstrap
+      if (latestTopicName != null) {
+        send(latestTopicName, messageKey, messageValue)
+            .whenComplete((result, ex) -> {
+              if (ex != null) {
+                logger.warn("Failed to publish latest state for vehicle {}: {}",
+                    messageKey, ex.getMessage());
+              }
+            });
+      }
 
       // Add success/failure callbacks
       future.whenComplete((result, ex) -> {
         if (ex != null) {
           logger.error("Failed to publish vehicle position for vehicle {}: {}",
-              vehiclePosition.getVehicleId(), ex.getMessage());
+              messageKey, ex.getMessage());
         } else {
           logger.debug("Successfully published vehicle {} to partition {} offset {}",
-              vehiclePosition.getVehicleId(),
+              messageKey,
               result.getRecordMetadata().partition(),
               result.getRecordMetadata().offset());
         }
@@ -93,7 +258,7 @@ public class VehiclePositionProducer {
 
       return future;
 
-    } catch (JsonProcessingException e) {
+    } catch (IOException e) {
       logger.error("Failed to serialize vehicle position for vehicle {}: {}",
           vehiclePosition.getVehicleId(), e.getMessage());
 
@@ -104,6 +269,20 @@ public class VehiclePositionProducer {
     }
   }
 
+  /**
+   * Send a record, tagging it with the format header when not JSON
+   * (records without the header are read as JSON by every consumer version)
+   */
+  private CompletableFuture<SendResult<String, byte[]>> send(String topic, String key, byte[] value) {
+    if (format == VehiclePositionCodec.Format.JSON) {
+      return kafkaTemplate.send(topic, key, value);
+    }
+    ProducerRecord<String, byte[]> record = new ProducerRecord<>(topic, key, value);
+    record.headers().add(new RecordHeader(VehiclePositionCodec.FORMAT_HEADER,
+        format.getHeaderValue().getBytes(StandardCharsets.UTF_8)));
+    return kafkaTemplate.send(record);
+  }
+
   /**
    * Test method to publish a single test message
    */
@@ -125,11 +304,61 @@ public class VehiclePositionProducer {
 
   /**
    * Get producer metrics for monitoring
+   * Client-side averages over the Kafka metrics sample window (30s by default)
+   */
+  public ProducerMetrics getProducerMetrics() {
+    Map<String, Double> values = new HashMap<>();
+    kafkaTemplate.metrics().forEach((name, metric) -> {
+      if ("producer-metrics".equals(name.group()) && metric.metricValue() instanceof Double value) {
+        values.put(name.name(), value);
+      }
+    });
+
+    return new ProducerMetrics(
+        values.getOrDefault("record-send-rate", Double.NaN),
+        values.getOrDefault("batch-size-avg", Double.NaN),
+        values.getOrDefault("records-per-request-avg", Double.NaN),
+        values.getOrDefault("request-latency-avg", Double.NaN),
+        values.getOrDefault("request-rate", Double.NaN),
+        values.getOrDefault("compression-rate-avg", Double.NaN),
+        values.getOrDefault("record-error-rate", Double.NaN));
+  }
+
+  /**
+   * Snapshot of the producer client's own metrics
    */
-  public void logProducerMetrics() {
-    // Log basic producer information
-    logger.info("Kafka Producer Metrics:");
-    logger.info("  Topic: {}", topicName);
-    logger.info("  Template: {}", kafkaTemplate.getClass().getSimpleName());
+  public static class ProducerMetrics {
+    private final double recordSendRate;
+    private final double batchSizeAvg;
+    private final double recordsPerRequestAvg;
+    private final double requestLatencyAvgMs;
+    private final double requestRate;
+    private final double compressionRateAvg;
+    private final double recordErrorRate;
+
+    public ProducerMetrics(double recordSendRate, double batchSizeAvg, double recordsPerRequestAvg,
+        double requestLatencyAvgMs, double requestRate, double compressionRateAvg, double recordErrorRate) {
+      this.recordSendRate = recordSendRate;
+      this.batchSizeAvg = batchSizeAvg;
+      this.recordsPerRequestAvg = recordsPerRequestAvg;
+      this.requestLatencyAvgMs = requestLatencyAvgMs;
+      this.requestRate = requestRate;
+      this.compressionRateAvg = compressionRateAvg;
+      this.recordErrorRate = recordErrorRate;
+    }
+
+    public double getRecordSendRate() { return recordSendRate; }
+    public double getBatchSizeAvg() { return batchSizeAvg; }
+    public double getRecordsPerRequestAvg() { return recordsPerRequestAvg; }
+    public double getRequestLatencyAvgMs() { return requestLatencyAvgMs; }
+    public double getRequestRate() { return requestRate; }
+    public double getCompressionRateAvg() { return compressionRateAvg; }
+    public double getRecordErrorRate() { return recordErrorRate; }
+
+    @Override
+    public String toString() {
+      return String.format("ProducerMetrics{sendRate=%.1f/s, batchAvg=%.0fB, recordsPerRequest=%.1f, latencyAvg=%.1fms, compression=%.2f}",
+          recordSendRate, batchSizeAvg, recordsPerRequestAvg, requestLatencyAvgMs, compressionRateAvg);
+    }
   }
-}
\ No newline at end of file
+}
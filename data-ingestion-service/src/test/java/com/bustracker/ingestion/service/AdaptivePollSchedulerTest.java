@@ -0,0 +1,100 @@
+package com.bustracker.ingestion.service;
+
+import com.bustracker.ingestion.config.TransLinkProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.TaskScheduler;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+public class AdaptivePollSchedulerTest {
+
+  private static final long FEED_START = 1_760_000_000L;
+
+  @Mock
+  private VehicleDataPollingService pollingService;
+
+  @Mock
+  private TransLinkApiClient apiClient;
+
+  @Mock
+  private TaskScheduler taskScheduler;
+
+  private AdaptivePollScheduler scheduler;
+
+  @BeforeEach
+  void setUp() {
+    TransLinkProperties properties = new TransLinkProperties();
+    properties.getApi().getPolling().setIntervalSeconds(30);
+    properties.getApi().getPolling().setMinIntervalSeconds(5);
+    properties.getApi().getPolling().setMaxBackoffSeconds(300);
+    properties.getApi().getPolling().setJitterMillis(0);
+    scheduler = new AdaptivePollScheduler(pollingService, apiClient, taskScheduler, properties);
+  }
+
+  @Test
+  public void testPollsJustAfterLearnedRefresh() {
+    // Arrange: feed refreshes every 20s and becomes visible 1.5s after its timestamp
+    long delay = 0;
+
+    // Act
+    for (int i = 0; i < 4; i++) {
+      long feedTimestamp = FEED_START + i * 20L;
+      delay = scheduler.onPollSucceeded(feedTimestamp, feedTimestamp * 1000 + 1500);
+    }
+
+    // Assert
+    assertEquals(20_000, scheduler.learnedPeriodMillis());
+    assertEquals(20_000, delay);
+  }
+
+  @Test
+  public void testFallsBackToFixedIntervalWhileLearning() {
+    // Act
+    long delay = scheduler.onPollSucceeded(FEED_START, FEED_START * 1000 + 1500);
+
+    // Assert
+    assertEquals(0, scheduler.learnedPeriodMillis());
+    assertEquals(30_000, delay);
+  }
+
+  @Test
+  public void testUnchangedFeedRetriesSoonThenBacksOff() {
+    // Arrange
+    for (int i = 0; i < 3; i++) {
+      long feedTimestamp = FEED_START + i * 20L;
+      scheduler.onPollSucceeded(feedTimestamp, feedTimestamp * 1000 + 1500);
+    }
+    long now = (FEED_START + 60) * 1000;
+
+    // Act: refresh is late, same feed timestamp keeps coming back
+    long first = scheduler.onPollSucceeded(FEED_START + 40, now);
+    long second = scheduler.onPollSucceeded(FEED_START + 40, now + first);
+    long third = scheduler.onPollSucceeded(FEED_START + 40, now + first + second);
+
+    // Assert
+    assertEquals(5_000, first);
+    assertEquals(10_000, second);
+    assertEquals(20_000, third); // capped at the learned period
+  }
+
+  @Test
+  public void testFailuresBackOffExponentiallyUpToCap() {
+    // Act
+    long first = scheduler.onPollFailed();
+    long second = scheduler.onPollFailed();
+    for (int i = 0; i < 10; i++) {
+      scheduler.onPollFailed();
+    }
+    long capped = scheduler.onPollFailed();
+
+    // Assert
+    assertEquals(5_000, first);
+    assertEquals(10_000, second);
+    assertEquals(300_000, capped);
+  }
+}
@@ -0,0 +1,78 @@
+package com.bustracker.ingestion.service;
+
+import com.bustracker.shared.gtfs.GtfsRealtime;
+import com.bustracker.shared.model.VehiclePosition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocating vs pooled transformation of a recorded TransLink vehicle feed
+ * The 25-vehicle fixture is replicated up to the requested fleet size (vehicle ids
+ * made unique). Not part of the test suite; run the main method from the IDE or
+ * with the test classpath, adding -prof gc to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GtfsDataTransformerBenchmark {
+
+  @Param({"25", "1500"})
+  private int fleetSize;
+
+  private final GtfsDataTransformer transformer = new GtfsDataTransformer();
+
+  private GtfsRealtime.FeedMessage feed;
+
+  @Setup
+  public void setUp() throws IOException {
+    GtfsRealtime.FeedMessage recorded;
+    try (InputStream in = GtfsDataTransformerBenchmark.class.getResourceAsStream("/gtfs/vehicle-positions.pb")) {
+      recorded = GtfsRealtime.FeedMessage.parseFrom(in);
+    }
+
+    GtfsRealtime.FeedMessage.Builder builder = GtfsRealtime.FeedMessage.newBuilder().setHeader(recorded.getHeader());
+    for (int i = 0; i < fleetSize; i++) {
+      GtfsRealtime.FeedEntity.Builder entity = recorded.getEntity(i % recorded.getEntityCount()).toBuilder();
+      entity.setId(entity.getId() + "-" + i);
+      entity.getVehicleBuilder().getVehicleBuilder().setId(entity.getVehicle().getVehicle().getId() + "-" + i);
+      builder.addEntity(entity);
+    }
+    feed = builder.build();
+  }
+
+  @Benchmark
+  public List<VehiclePosition> transformAllocating() {
+    return transformer.transformVehiclePositions(feed);
+  }
+
+  @Benchmark
+  public List<VehiclePosition> transformPooled() {
+    return transformer.transformVehiclePositionsPooled(feed);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(GtfsDataTransformerBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+}
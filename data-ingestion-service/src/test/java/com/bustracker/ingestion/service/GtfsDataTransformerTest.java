@@ -0,0 +1,81 @@
+package com.bustracker.ingestion.service;
+
+import com.bustracker.shared.codec.VehiclePositionCodec;
+import com.bustracker.shared.gtfs.GtfsRealtime;
+import com.bustracker.shared.model.VehiclePosition;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GtfsDataTransformerTest {
+
+  private final GtfsDataTransformer transformer = new GtfsDataTransformer();
+  private final VehiclePositionCodec codec = new VehiclePositionCodec();
+
+  @Test
+  public void testPooledMatchesAllocatingTransform() throws IOException {
+    // Arrange
+    GtfsRealtime.FeedMessage feed;
+    try (InputStream in = getClass().getResourceAsStream("/gtfs/vehicle-positions.pb")) {
+      feed = GtfsRealtime.FeedMessage.parseFrom(in);
+    }
+
+    // Act
+    List<VehiclePosition> expected = transformer.transformVehiclePositions(feed);
+    List<VehiclePosition> pooled = transformer.transformVehiclePositionsPooled(feed);
+
+    // Assert
+    assertEquals(expected.size(), pooled.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(json(expected.get(i)), json(pooled.get(i)));
+    }
+  }
+
+  @Test
+  public void testPooledRecordsAreClearedOnReuse() {
+    // Arrange
+    GtfsRealtime.FeedMessage full = feedOf(GtfsRealtime.VehiclePosition.newBuilder()
+        .setVehicle(GtfsRealtime.VehicleDescriptor.newBuilder().setId("V1"))
+        .setTrip(GtfsRealtime.TripDescriptor.newBuilder().setTripId("T1").setRouteId("R1").setDirectionId(1))
+        .setPosition(GtfsRealtime.Position.newBuilder().setLatitude(49.2f).setLongitude(-123.1f)
+            .setBearing(90f).setSpeed(8f))
+        .setStopId("S1")
+        .setCurrentStatus(GtfsRealtime.VehiclePosition.VehicleStopStatus.STOPPED_AT)
+        .setTimestamp(1_760_000_000L));
+    GtfsRealtime.FeedMessage sparse = feedOf(GtfsRealtime.VehiclePosition.newBuilder()
+        .setVehicle(GtfsRealtime.VehicleDescriptor.newBuilder().setId("V2"))
+        .setPosition(GtfsRealtime.Position.newBuilder().setLatitude(49.3f).setLongitude(-123.0f))
+        .setTimestamp(1_760_000_030L));
+
+    // Act
+    VehiclePosition first = transformer.transformVehiclePositionsPooled(full).get(0);
+    VehiclePosition second = transformer.transformVehiclePositionsPooled(sparse).get(0);
+
+    // Assert
+    assertSame(first, second);
+    assertEquals("V2", second.getVehicleId());
+    assertNull(second.getTripId());
+    assertNull(second.getRouteId());
+    assertNull(second.getDirectionId());
+    assertNull(second.getBearing());
+    assertNull(second.getSpeed());
+    assertNull(second.getStopId());
+    assertNull(second.getCurrentStatus());
+    assertEquals(1_760_000_030L, second.getTimestamp());
+  }
+
+  private String json(VehiclePosition vehicle) throws IOException {
+    return new String(codec.encode(vehicle, VehiclePositionCodec.Format.JSON));
+  }
+
+  private static GtfsRealtime.FeedMessage feedOf(GtfsRealtime.VehiclePosition.Builder vehicle) {
+    return GtfsRealtime.FeedMessage.newBuilder()
+        .setHeader(GtfsRealtime.FeedHeader.newBuilder().setGtfsRealtimeVersion("2.0"))
+        .addEntity(GtfsRealtime.FeedEntity.newBuilder().setId("E1").setVehicle(vehicle))
+        .build();
+  }
+}
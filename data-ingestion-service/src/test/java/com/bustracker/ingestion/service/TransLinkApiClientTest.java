@@ -0,0 +1,167 @@
+package com.bustracker.ingestion.service;
+
+import com.bustracker.ingestion.config.TransLinkProperties;
+import com.bustracker.shared.gtfs.GtfsRealtime;
+import com.sun.net.httpserver.HttpExchange;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransLinkApiClientTest {
+
+  private static final String POSITIONS_PATH = "/gtfsposition";
+
+  private HttpServer server;
+  private TransLinkApiClient client;
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  // What the stub serves
+  private volatile byte[] feedBytes;
+  private volatile String eTag;
+  private final List<String> receivedIfNoneMatch = new CopyOnWriteArrayList<>();
+
+  @BeforeEach
+  void setUp() throws IOException {
+    feedBytes = loadFixture("/gtfs/vehicle-positions.pb");
+
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext(POSITIONS_PATH, this::serveFeed);
+    server.start();
+
+    TransLinkProperties properties = new TransLinkProperties();
+    properties.getApi().setBaseUrl("http://localhost:" + server.getAddress().getPort());
+    properties.getApi().setApiKey("test-key");
+    properties.getApi().getEndpoints().setPositions(POSITIONS_PATH);
+    client = new TransLinkApiClient(properties, new PollMetrics(registry));
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testNotModifiedResponseCompletesEmpty() {
+    // Arrange
+    eTag = "\"feed-v1\"";
+
+    // Act
+    GtfsRealtime.FeedMessage first = client.fetchVehiclePositions().block();
+    GtfsRealtime.FeedMessage second = client.fetchVehiclePositions().block();
+
+    // Assert
+    assertNotNull(first);
+    assertEquals(25, first.getEntityCount());
+    assertNull(second);
+    assertEquals("\"feed-v1\"", receivedIfNoneMatch.get(1));
+    assertEquals(1, client.getFetchStats().get(POSITIONS_PATH).getNotModified());
+  }
+
+  @Test
+  public void testSameFeedTimestampIsSkippedWithoutValidators() throws IOException {
+    // Arrange: server ignores conditional headers and keeps serving the same feed
+    eTag = null;
+
+    // Act
+    GtfsRealtime.FeedMessage first = client.fetchVehiclePositions().block();
+    GtfsRealtime.FeedMessage repeated = client.fetchVehiclePositions().block();
+    feedBytes = withFeedTimestamp(feedBytes, 1760000030L);
+    GtfsRealtime.FeedMessage updated = client.fetchVehiclePositions().block();
+
+    // Assert
+    assertNotNull(first);
+    assertNull(repeated);
+    assertNotNull(updated);
+    assertEquals(1760000030L, updated.getHeader().getTimestamp());
+    TransLinkApiClient.FetchStats stats = client.getFetchStats().get(POSITIONS_PATH);
+    assertEquals(2, stats.getParsed());
+    assertEquals(1, stats.getUnchangedTimestamp());
+  }
+
+  @Test
+  public void testStreamingDecodesEntitiesAndSkipsUnchangedFeed() throws IOException {
+    // Arrange
+    eTag = null;
+    GtfsRealtime.FeedMessage expected = GtfsRealtime.FeedMessage.parseFrom(feedBytes);
+
+    // Act
+    List<GtfsRealtime.FeedEntity> streamed = client.streamVehicleEntities().collectList().block();
+    List<GtfsRealtime.FeedEntity> repeated = client.streamVehicleEntities().collectList().block();
+
+    // Assert
+    assertEquals(expected.getEntityList(), streamed);
+    assertTrue(repeated.isEmpty());
+    assertEquals(1, client.getFetchStats().get(POSITIONS_PATH).getUnchangedTimestamp());
+  }
+
+  @Test
+  public void testFailedParseIsStillTimed() {
+    // Arrange
+    eTag = null;
+    feedBytes = new byte[] {0x0a, 0x7f};
+
+    // Act + Assert
+    assertThrows(RuntimeException.class, () -> client.fetchVehiclePositions().block());
+    assertEquals(1, registry.get(PollMetrics.STAGE_TIMER).tag("stage", PollMetrics.PARSE).timer().count());
+  }
+
+  @Test
+  public void testPeekFeedTimestampReadsHeaderOnly() throws IOException {
+    // Arrange
+    byte[] bytes = loadFixture("/gtfs/vehicle-positions.pb");
+
+    // Act
+    long timestamp = TransLinkApiClient.peekFeedTimestamp(bytes);
+
+    // Assert
+    assertEquals(GtfsRealtime.FeedMessage.parseFrom(bytes).getHeader().getTimestamp(), timestamp);
+    assertEquals(0, TransLinkApiClient.peekFeedTimestamp(new byte[] {0x0a, 0x7f}));
+  }
+
+  private void serveFeed(HttpExchange exchange) throws IOException {
+    String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+    receivedIfNoneMatch.add(String.valueOf(ifNoneMatch));
+
+    if (eTag != null && eTag.equals(ifNoneMatch)) {
+      exchange.sendResponseHeaders(304, -1);
+      exchange.close();
+      return;
+    }
+
+    byte[] body = feedBytes;
+    exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+    if (eTag != null) {
+      exchange.getResponseHeaders().set("ETag", eTag);
+    }
+    exchange.sendResponseHeaders(200, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  private static byte[] loadFixture(String resource) throws IOException {
+    try (InputStream in = TransLinkApiClientTest.class.getResourceAsStream(resource)) {
+      assertNotNull(in, "Missing fixture " + resource);
+      return in.readAllBytes();
+    }
+  }
+
+  private static byte[] withFeedTimestamp(byte[] bytes, long timestamp) throws IOException {
+    GtfsRealtime.FeedMessage feed = GtfsRealtime.FeedMessage.parseFrom(bytes);
+    return feed.toBuilder()
+        .setHeader(feed.getHeader().toBuilder().setTimestamp(timestamp))
+        .build()
+        .toByteArray();
+  }
+}
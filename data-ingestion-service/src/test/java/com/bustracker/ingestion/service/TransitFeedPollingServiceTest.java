@@ -0,0 +1,91 @@
+package com.bustracker.ingestion.service;
+
+import com.bustracker.ingestion.config.TransLinkProperties;
+import com.bustracker.shared.gtfs.GtfsRealtime;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TransitFeedPollingServiceTest {
+
+  private static final String ALERTS_PATH = "/gtfsalerts";
+  private static final String ETAG = "\"alerts-v1\"";
+
+  private HttpServer server;
+  private final GtfsFeedProducer producer = mock(GtfsFeedProducer.class);
+  private TransitFeedPollingService service;
+
+  private final byte[] alertsFeed = GtfsRealtime.FeedMessage.newBuilder()
+      .setHeader(GtfsRealtime.FeedHeader.newBuilder().setGtfsRealtimeVersion("2.0").setTimestamp(1760000000L))
+      .addEntity(GtfsRealtime.FeedEntity.newBuilder().setId("A1")
+          .setAlert(GtfsRealtime.Alert.newBuilder()))
+      .build()
+      .toByteArray();
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext(ALERTS_PATH, this::serveAlerts);
+    server.start();
+
+    TransLinkProperties properties = new TransLinkProperties();
+    properties.getApi().setBaseUrl("http://localhost:" + server.getAddress().getPort());
+    properties.getApi().setApiKey("test-key");
+    properties.getApi().getEndpoints().setAlerts(ALERTS_PATH);
+    TransLinkApiClient client = new TransLinkApiClient(properties, new PollMetrics(new SimpleMeterRegistry()));
+    service = new TransitFeedPollingService(client, new GtfsDataTransformer(), producer, properties);
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testAlertsAreRepublishedAfterAFailedPublish() {
+    // Arrange - the first send fails, later ones are acknowledged
+    when(producer.publishAlerts(any()))
+        .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker unavailable")))
+        .thenReturn(CompletableFuture.completedFuture(null));
+
+    // Act
+    assertThrows(RuntimeException.class, () -> service.pollAlerts().block());
+    Integer republished = service.pollAlerts().block();
+    Integer unchanged = service.pollAlerts().block();
+
+    // Assert - the failed set is fetched and sent again, then the acknowledged one is skipped
+    assertEquals(1, republished);
+    assertEquals(0, unchanged);
+    verify(producer, times(2)).publishAlerts(any());
+  }
+
+  private void serveAlerts(HttpExchange exchange) throws IOException {
+    if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+      exchange.sendResponseHeaders(304, -1);
+      exchange.close();
+      return;
+    }
+
+    exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+    exchange.getResponseHeaders().set("ETag", ETAG);
+    exchange.sendResponseHeaders(200, alertsFeed.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(alertsFeed);
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package com.bustracker.ingestion.service;
+
+import com.bustracker.ingestion.config.TransLinkProperties;
+import com.bustracker.shared.model.VehiclePosition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VehicleChangeDetectorTest {
+
+  private static final long START_MILLIS = 1_700_000_000_000L;
+
+  private VehicleChangeDetector detector;
+
+  @BeforeEach
+  void setUp() {
+    TransLinkProperties properties = new TransLinkProperties();
+    properties.getChangeDetection().setMinMovementMeters(15.0);
+    properties.getChangeDetection().setMaxSilenceSeconds(90);
+    properties.getChangeDetection().setHeartbeatSeconds(120);
+    detector = new VehicleChangeDetector(properties);
+  }
+
+  @Test
+  public void testStationaryVehicleIsSuppressedAfterFirstPublish() {
+    // Arrange
+    detector.filterChanged(List.of(createVehicle("V1", 49.2827, -123.1207, 1000, "TRIP-1")), START_MILLIS);
+
+    // Act
+    List<VehiclePosition> changed = detector.filterChanged(
+        List.of(createVehicle("V1", 49.28271, -123.12071, 1030, "TRIP-1")), START_MILLIS + 30_000);
+
+    // Assert
+    assertTrue(changed.isEmpty());
+    assertEquals(1, detector.getStats().getSuppressed());
+  }
+
+  @Test
+  public void testMovedOrRetrippedVehiclesArePublished() {
+    // Arrange
+    detector.filterChanged(List.of(
+        createVehicle("V1", 49.2827, -123.1207, 1000, "TRIP-1"),
+        createVehicle("V2", 49.2500, -123.0000, 1000, "TRIP-2")), START_MILLIS);
+
+    // Act: V1 moved ~110m north, V2 started a new trip in place
+    List<VehiclePosition> changed = detector.filterChanged(List.of(
+        createVehicle("V1", 49.2837, -123.1207, 1030, "TRIP-1"),
+        createVehicle("V2", 49.2500, -123.0000, 1030, "TRIP-3")), START_MILLIS + 30_000);
+
+    // Assert
+    assertEquals(2, changed.size());
+  }
+
+  @Test
+  public void testSilentVehicleIsRepublishedAfterMaxSilence() {
+    // Arrange
+    detector.filterChanged(List.of(createVehicle("V1", 49.2827, -123.1207, 1000, "TRIP-1")), START_MILLIS);
+
+    // Act
+    List<VehiclePosition> changed = detector.filterChanged(
+        List.of(createVehicle("V1", 49.2827, -123.1207, 1090, "TRIP-1")), START_MILLIS + 90_000);
+
+    // Assert
+    assertEquals(1, changed.size());
+  }
+
+  @Test
+  public void testHeartbeatPublishesWholeFleet() {
+    // Arrange
+    List<VehiclePosition> fleet = new ArrayList<>();
+    for (int i = 0; i < 3000; i++) {
+      fleet.add(createVehicle("V" + i, 49.2, -123.1, 1000, "TRIP-" + i));
+    }
+    detector.filterChanged(fleet, START_MILLIS);
+    assertTrue(detector.filterChanged(fleet, START_MILLIS + 30_000).isEmpty());
+
+    // Act
+    List<VehiclePosition> changed = detector.filterChanged(fleet, START_MILLIS + 120_000);
+
+    // Assert
+    assertEquals(3000, changed.size());
+    assertEquals(3000, detector.getStats().getTrackedVehicles());
+  }
+
+  @Test
+  public void testVehicleWhoseSendFailedIsPublishedAgain() {
+    // Arrange - V1 published, but its send failed
+    VehiclePosition first = createVehicle("V1", 49.2827, -123.1207, 1000, "TRIP-1");
+    detector.filterChanged(List.of(first), START_MILLIS);
+    detector.publishFailed(first);
+
+    // Act - the same unmoved report on the next poll, then once more after it went out
+    List<VehiclePosition> retried = detector.filterChanged(List.of(first), START_MILLIS + 30_000);
+    List<VehiclePosition> settled = detector.filterChanged(List.of(first), START_MILLIS + 60_000);
+
+    // Assert
+    assertEquals(1, retried.size());
+    assertTrue(settled.isEmpty());
+  }
+
+  @Test
+  public void testFailureOfAnOlderSendKeepsTheNewerState() {
+    // Arrange
+    VehiclePosition older = createVehicle("V1", 49.2827, -123.1207, 1000, "TRIP-1");
+    detector.filterChanged(List.of(older), START_MILLIS);
+    detector.filterChanged(List.of(createVehicle("V1", 49.2837, -123.1207, 1030, "TRIP-1")), START_MILLIS + 30_000);
+
+    // Act - the failure of the first send is reported late
+    detector.publishFailed(older);
+    List<VehiclePosition> changed = detector.filterChanged(
+        List.of(createVehicle("V1", 49.2837, -123.1207, 1060, "TRIP-1")), START_MILLIS + 60_000);
+
+    // Assert
+    assertTrue(changed.isEmpty());
+  }
+
+  @Test
+  public void testTripChangeWithCollidingHashIsPublished() {
+    // Arrange - "Aa" and "BB" share a String hash code
+    detector.filterChanged(List.of(createVehicle("V1", 49.2827, -123.1207, 1000, "Aa")), START_MILLIS);
+
+    // Act
+    List<VehiclePosition> changed = detector.filterChanged(
+        List.of(createVehicle("V1", 49.2827, -123.1207, 1030, "BB")), START_MILLIS + 30_000);
+
+    // Assert
+    assertEquals("Aa".hashCode(), "BB".hashCode());
+    assertEquals(1, changed.size());
+  }
+
+  private VehiclePosition createVehicle(String vehicleId, double lat, double lon, long timestamp, String tripId) {
+    VehiclePosition vehicle = new VehiclePosition(vehicleId, tripId, "ROUTE-001", lat, lon, timestamp);
+    vehicle.setCurrentStatus("IN_TRANSIT_TO");
+    return vehicle;
+  }
+}
@@ -9,6 +9,8 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -62,6 +64,22 @@ public class VehiclePositionProducerTest {
     verify(kafkaTemplate).send(eq(topicName), anyString(), any(byte[].class));
   }
 
+  @Test
+  public void testFailedSendIsReportedBeforeTheBatchCompletes() {
+    // Arrange
+    VehiclePosition vehicle = createTestVehicle();
+    when(kafkaTemplate.send(eq(topicName), eq(vehicle.getVehicleId()), any(byte[].class)))
+        .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker unavailable")));
+    List<VehiclePosition> failed = new ArrayList<>();
+
+    // Act
+    CompletableFuture<Void> result = producer.publishVehiclePositions(List.of(vehicle), failed::add);
+
+    // Assert
+    assertTrue(result.isCompletedExceptionally());
+    assertEquals(List.of(vehicle), failed);
+  }
+
   private VehiclePosition createTestVehicle() {
     VehiclePosition vehicle = new VehiclePosition();
     vehicle.setVehicleId("TEST-001");
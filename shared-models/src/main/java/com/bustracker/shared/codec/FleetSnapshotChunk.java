@@ -0,0 +1,42 @@
+package com.bustracker.shared.codec;
+
+import com.bustracker.shared.model.VehiclePosition;
+
+import java.util.List;
+
+/**
+ * One chunk of a fleet snapshot: the complete vehicle set of a group of routes
+ * at a given snapshot sequence number
+ */
+public class FleetSnapshotChunk {
+
+  private final long snapshotSeq;
+  private final int chunkIndex;
+  private final int chunkCount;
+  private final long createdAt;
+  private final List<String> routeIds;
+  private final List<VehiclePosition> vehicles;
+
+  public FleetSnapshotChunk(long snapshotSeq, int chunkIndex, int chunkCount, long createdAt,
+      List<String> routeIds, List<VehiclePosition> vehicles) {
+    this.snapshotSeq = snapshotSeq;
+    this.chunkIndex = chunkIndex;
+    this.chunkCount = chunkCount;
+    this.createdAt = createdAt;
+    this.routeIds = routeIds;
+    this.vehicles = vehicles;
+  }
+
+  public long getSnapshotSeq() { return snapshotSeq; }
+  public int getChunkIndex() { return chunkIndex; }
+  public int getChunkCount() { return chunkCount; }
+  public long getCreatedAt() { return createdAt; }
+  public List<String> getRouteIds() { return routeIds; }
+  public List<VehiclePosition> getVehicles() { return vehicles; }
+
+  @Override
+  public String toString() {
+    return String.format("FleetSnapshotChunk{seq=%d, chunk=%d/%d, routes=%d, vehicles=%d}",
+        snapshotSeq, chunkIndex + 1, chunkCount, routeIds.size(), vehicles.size());
+  }
+}
@@ -0,0 +1,107 @@
+package com.bustracker.shared.codec;
+
+import com.bustracker.shared.model.VehiclePosition;
+import com.bustracker.shared.proto.VehiclePositionProtos.FleetSnapshotChunkMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Serializer/deserializer for fleet snapshot chunks
+ *
+ * Layout: one schema-version byte followed by a deflate-compressed
+ * FleetSnapshotChunkMessage protobuf (vehicle-position.proto). Vehicle records
+ * repeat the same route ids, statuses and coordinate prefixes, so they compress
+ * well once batched.
+ */
+public class FleetSnapshotCodec {
+
+  public static final byte SCHEMA_VERSION = 1;
+
+  // Decompressed chunks are bounded well below this; guards against corrupt input
+  private static final int MAX_DECOMPRESSED_BYTES = 16 * 1024 * 1024;
+
+  /**
+   * Serialize and compress one snapshot chunk
+   */
+  public byte[] encode(FleetSnapshotChunk chunk) {
+    FleetSnapshotChunkMessage.Builder builder = FleetSnapshotChunkMessage.newBuilder()
+        .setSnapshotSeq(chunk.getSnapshotSeq())
+        .setChunkIndex(chunk.getChunkIndex())
+        .setChunkCount(chunk.getChunkCount())
+        .setCreatedAt(chunk.getCreatedAt())
+        .addAllRouteIds(chunk.getRouteIds());
+    for (VehiclePosition vehicle : chunk.getVehicles()) {
+      builder.addVehicles(VehiclePositionCodec.toMessage(vehicle));
+    }
+
+    byte[] raw = builder.build().toByteArray();
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(raw);
+      deflater.finish();
+
+      ByteArrayOutputStream output = new ByteArrayOutputStream(raw.length / 3 + 16);
+      output.write(SCHEMA_VERSION);
+      byte[] buffer = new byte[8192];
+      while (!deflater.finished()) {
+        int length = deflater.deflate(buffer);
+        output.write(buffer, 0, length);
+      }
+      return output.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Decompress and deserialize one snapshot chunk
+   * @throws IOException on malformed payloads or an unsupported schema version
+   */
+  public FleetSnapshotChunk decode(byte[] payload) throws IOException {
+    if (payload.length == 0) {
+      throw new IOException("Empty fleet snapshot payload");
+    }
+    if (payload[0] != SCHEMA_VERSION) {
+      throw new IOException("Unsupported fleet snapshot schema version: " + payload[0]);
+    }
+
+    FleetSnapshotChunkMessage message = FleetSnapshotChunkMessage.parseFrom(inflate(payload));
+
+    List<VehiclePosition> vehicles = new ArrayList<>(message.getVehiclesCount());
+    for (var vehicle : message.getVehiclesList()) {
+      vehicles.add(VehiclePositionCodec.fromMessage(vehicle));
+    }
+    return new FleetSnapshotChunk(message.getSnapshotSeq(), message.getChunkIndex(), message.getChunkCount(),
+        message.getCreatedAt(), List.copyOf(message.getRouteIdsList()), vehicles);
+  }
+
+  private byte[] inflate(byte[] payload) throws IOException {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(payload, 1, payload.length - 1);
+      ByteArrayOutputStream output = new ByteArrayOutputStream(payload.length * 4);
+      byte[] buffer = new byte[8192];
+      while (!inflater.finished()) {
+        int length = inflater.inflate(buffer);
+        if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new IOException("Truncated fleet snapshot payload");
+        }
+        output.write(buffer, 0, length);
+        if (output.size() > MAX_DECOMPRESSED_BYTES) {
+          throw new IOException("Fleet snapshot payload exceeds " + MAX_DECOMPRESSED_BYTES + " bytes");
+        }
+      }
+      return output.toByteArray();
+    } catch (DataFormatException e) {
+      throw new IOException("Corrupt fleet snapshot payload", e);
+    } finally {
+      inflater.end();
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package com.bustracker.shared.codec;
+
+import com.bustracker.shared.model.VehiclePosition;
+import com.bustracker.shared.proto.VehiclePositionProtos.VehiclePositionMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serializer/deserializer pair for VehiclePosition Kafka payloads
+ *
+ * The format of a record is carried in the {@link #FORMAT_HEADER} Kafka header,
+ * so JSON and binary producers and consumers can coexist during a rollout.
+ * Records without the header are JSON (the original format).
+ *
+ * Binary layout: one schema-version byte followed by a VehiclePositionMessage
+ * protobuf (vehicle-position.proto).
+ */
+public class VehiclePositionCodec {
+
+  public static final String FORMAT_HEADER = "vp-format";
+
+  public static final byte PROTO_SCHEMA_VERSION = 1;
+
+  private final ObjectMapper objectMapper;
+
+  public VehiclePositionCodec() {
+    this.objectMapper = new ObjectMapper();
+    this.objectMapper.registerModule(new JavaTimeModule()); // Handle Java 8 time types
+  }
+
+  /**
+   * Wire formats, identified by the value of the format header
+   */
+  public enum Format {
+    JSON("json"),
+    PROTO("proto");
+
+    private final String headerValue;
+
+    Format(String headerValue) {
+      this.headerValue = headerValue;
+    }
+
+    public String getHeaderValue() {
+      return headerValue;
+    }
+
+    /**
+     * Resolve a format from a header value; a missing header means JSON
+     */
+    public static Format fromHeader(String headerValue) {
+      if (headerValue == null || headerValue.isEmpty()) {
+        return JSON;
+      }
+      for (Format format : values()) {
+        if (format.headerValue.equalsIgnoreCase(headerValue)) {
+          return format;
+        }
+      }
+      throw new IllegalArgumentException("Unknown vehicle position format: " + headerValue);
+    }
+
+    /**
+     * Resolve a format from raw header bytes (as read from a Kafka record)
+     */
+    public static Format fromHeader(byte[] headerValue) {
+      return fromHeader(headerValue != null ? new String(headerValue, StandardCharsets.UTF_8) : null);
+    }
+  }
+
+  /**
+   * Serialize a vehicle position in the given format
+   */
+  public byte[] encode(VehiclePosition position, Format format) throws IOException {
+    return format == Format.PROTO ? encodeProto(position) : objectMapper.writeValueAsBytes(position);
+  }
+
+  /**
+   * Deserialize a vehicle position payload written in the given format
+   * @throws IOException on malformed payloads or an unsupported schema version
+   */
+  public VehiclePosition decode(byte[] payload, Format format) throws IOException {
+    return format == Format.PROTO ? decodeProto(payload) : objectMapper.readValue(payload, VehiclePosition.class);
+  }
+
+  private byte[] encodeProto(VehiclePosition position) throws IOException {
+    VehiclePositionMessage message = toMessage(position);
+    byte[] payload = new byte[1 + message.getSerializedSize()];
+    payload[0] = PROTO_SCHEMA_VERSION;
+    CodedOutputStream output = CodedOutputStream.newInstance(payload, 1, payload.length - 1);
+    message.writeTo(output);
+    output.checkNoSpaceLeft();
+    return payload;
+  }
+
+  private VehiclePosition decodeProto(byte[] payload) throws IOException {
+    if (payload.length == 0) {
+      throw new IOException("Empty vehicle position payload");
+    }
+    if (payload[0] != PROTO_SCHEMA_VERSION) {
+      throw new IOException("Unsupported vehicle position schema version: " + payload[0]);
+    }
+    return fromMessage(VehiclePositionMessage.parseFrom(
+        CodedInputStream.newInstance(payload, 1, payload.length - 1)));
+  }
+
+  static VehiclePositionMessage toMessage(VehiclePosition position) {
+    VehiclePositionMessage.Builder builder = VehiclePositionMessage.newBuilder()
+        .setLatitude(position.getLatitude())
+        .setLongitude(position.getLongitude())
+        .setTimestamp(position.getTimestamp());
+
+    // Optional fields: only present ones go on the wire
+    if (position.getVehicleId() != null) builder.setVehicleId(position.getVehicleId());
+    if (position.getTripId() != null) builder.setTripId(position.getTripId());
+    if (position.getRouteId() != null) builder.setRouteId(position.getRouteId());
+    if (position.getBearing() != null) builder.setBearing(position.getBearing());
+    if (position.getSpeed() != null) builder.setSpeed(position.getSpeed());
+    if (position.getStopId() != null) builder.setStopId(position.getStopId());
+    if (position.getCurrentStatus() != null) builder.setCurrentStatus(position.getCurrentStatus());
+    if (position.getDirectionId() != null) builder.setDirectionId(position.getDirectionId());
+    return builder.build();
+  }
+
+  static VehiclePosition fromMessage(VehiclePositionMessage message) {
+    VehiclePosition position = new VehiclePosition();
+    position.setVehicleId(message.hasVehicleId() ? message.getVehicleId() : null);
+    position.setLatitude(message.getLatitude());
+    position.setLongitude(message.getLongitude());
+    position.setTimestamp(message.getTimestamp());
+    position.setTripId(message.hasTripId() ? message.getTripId() : null);
+    position.setRouteId(message.hasRouteId() ? message.getRouteId() : null);
+    position.setBearing(message.hasBearing() ? message.getBearing() : null);
+    position.setSpeed(message.hasSpeed() ? message.getSpeed() : null);
+    position.setStopId(message.hasStopId() ? message.getStopId() : null);
+    position.setCurrentStatus(message.hasCurrentStatus() ? message.getCurrentStatus() : null);
+    position.setDirectionId(message.hasDirectionId() ? message.getDirectionId() : null);
+    return position;
+  }
+}
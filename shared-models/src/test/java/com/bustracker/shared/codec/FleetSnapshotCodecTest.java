@@ -0,0 +1,57 @@
+package com.bustracker.shared.codec;
+
+import com.bustracker.shared.model.VehiclePosition;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FleetSnapshotCodecTest {
+
+  private final FleetSnapshotCodec codec = new FleetSnapshotCodec();
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    // Arrange
+    List<VehiclePosition> vehicles = createVehicles(200);
+    FleetSnapshotChunk chunk = new FleetSnapshotChunk(42L, 1, 3, 1700000000L, List.of("6612", "6635"), vehicles);
+
+    // Act
+    FleetSnapshotChunk decoded = codec.decode(codec.encode(chunk));
+
+    // Assert
+    assertEquals(42L, decoded.getSnapshotSeq());
+    assertEquals(1, decoded.getChunkIndex());
+    assertEquals(3, decoded.getChunkCount());
+    assertEquals(List.of("6612", "6635"), decoded.getRouteIds());
+    assertEquals(200, decoded.getVehicles().size());
+    assertEquals(vehicles.get(17).getVehicleId(), decoded.getVehicles().get(17).getVehicleId());
+    assertEquals(vehicles.get(17).getLatitude(), decoded.getVehicles().get(17).getLatitude());
+  }
+
+  @Test
+  public void testCorruptPayloadIsRejected() {
+    // Arrange
+    byte[] payload = codec.encode(new FleetSnapshotChunk(1L, 0, 1, 0L, List.of("6635"), createVehicles(10)));
+    byte[] truncated = Arrays.copyOf(payload, payload.length / 2);
+
+    // Act & Assert
+    assertThrows(IOException.class, () -> codec.decode(truncated));
+  }
+
+  private List<VehiclePosition> createVehicles(int count) {
+    List<VehiclePosition> vehicles = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      VehiclePosition vehicle = new VehiclePosition("V" + i, "TRIP-" + i, i % 2 == 0 ? "6612" : "6635",
+          49.2 + i * 0.0001, -123.1 - i * 0.0001, 1700000000L + i);
+      vehicle.setCurrentStatus("IN_TRANSIT_TO");
+      vehicle.setDirectionId(i % 2);
+      vehicles.add(vehicle);
+    }
+    return vehicles;
+  }
+}
@@ -0,0 +1,78 @@
+package com.bustracker.shared.codec;
+
+import com.bustracker.shared.model.VehiclePosition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON vs proto encode/decode cost for a single vehicle position
+ * Not part of the test suite; run the main method from the IDE or with
+ * the test classpath. Payload sizes are covered by VehiclePositionCodecTest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VehiclePositionCodecBenchmark {
+
+  private final VehiclePositionCodec codec = new VehiclePositionCodec();
+
+  private VehiclePosition vehicle;
+  private byte[] jsonPayload;
+  private byte[] protoPayload;
+
+  @Setup
+  public void setUp() throws IOException {
+    vehicle = new VehiclePosition("18394", "14533627", "6635", 49.2266, -123.0031, 1750933815L);
+    vehicle.setBearing(270.0f);
+    vehicle.setSpeed(9.7f);
+    vehicle.setStopId("1607");
+    vehicle.setCurrentStatus("IN_TRANSIT_TO");
+    vehicle.setDirectionId(0);
+
+    jsonPayload = codec.encode(vehicle, VehiclePositionCodec.Format.JSON);
+    protoPayload = codec.encode(vehicle, VehiclePositionCodec.Format.PROTO);
+  }
+
+  @Benchmark
+  public byte[] encodeJson() throws IOException {
+    return codec.encode(vehicle, VehiclePositionCodec.Format.JSON);
+  }
+
+  @Benchmark
+  public byte[] encodeProto() throws IOException {
+    return codec.encode(vehicle, VehiclePositionCodec.Format.PROTO);
+  }
+
+  @Benchmark
+  public VehiclePosition decodeJson() throws IOException {
+    return codec.decode(jsonPayload, VehiclePositionCodec.Format.JSON);
+  }
+
+  @Benchmark
+  public VehiclePosition decodeProto() throws IOException {
+    return codec.decode(protoPayload, VehiclePositionCodec.Format.PROTO);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(VehiclePositionCodecBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+}
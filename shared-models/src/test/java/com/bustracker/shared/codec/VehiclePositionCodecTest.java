@@ -0,0 +1,97 @@
+package com.bustracker.shared.codec;
+
+import com.bustracker.shared.model.VehiclePosition;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VehiclePositionCodecTest {
+
+  private final VehiclePositionCodec codec = new VehiclePositionCodec();
+
+  @Test
+  public void testProtoRoundTripWithAllFields() throws IOException {
+    // Arrange
+    VehiclePosition vehicle = createTestVehicle();
+
+    // Act
+    VehiclePosition decoded = codec.decode(codec.encode(vehicle, VehiclePositionCodec.Format.PROTO),
+        VehiclePositionCodec.Format.PROTO);
+
+    // Assert
+    assertEquals(vehicle.getVehicleId(), decoded.getVehicleId());
+    assertEquals(vehicle.getTripId(), decoded.getTripId());
+    assertEquals(vehicle.getRouteId(), decoded.getRouteId());
+    assertEquals(vehicle.getLatitude(), decoded.getLatitude());
+    assertEquals(vehicle.getLongitude(), decoded.getLongitude());
+    assertEquals(vehicle.getBearing(), decoded.getBearing());
+    assertEquals(vehicle.getSpeed(), decoded.getSpeed());
+    assertEquals(vehicle.getStopId(), decoded.getStopId());
+    assertEquals(vehicle.getCurrentStatus(), decoded.getCurrentStatus());
+    assertEquals(vehicle.getTimestamp(), decoded.getTimestamp());
+    assertEquals(vehicle.getDirectionId(), decoded.getDirectionId());
+  }
+
+  @Test
+  public void testProtoRoundTripKeepsMissingFieldsNull() throws IOException {
+    // Arrange
+    VehiclePosition vehicle = new VehiclePosition(null, null, null, 49.2827, -123.1207, 1700000000L);
+
+    // Act
+    VehiclePosition decoded = codec.decode(codec.encode(vehicle, VehiclePositionCodec.Format.PROTO),
+        VehiclePositionCodec.Format.PROTO);
+
+    // Assert
+    assertNull(decoded.getVehicleId());
+    assertNull(decoded.getTripId());
+    assertNull(decoded.getRouteId());
+    assertNull(decoded.getBearing());
+    assertNull(decoded.getSpeed());
+    assertNull(decoded.getStopId());
+    assertNull(decoded.getCurrentStatus());
+    assertNull(decoded.getDirectionId());
+    assertEquals(1700000000L, decoded.getTimestamp());
+  }
+
+  @Test
+  public void testProtoPayloadIsSmallerThanJson() throws IOException {
+    // Arrange
+    VehiclePosition vehicle = createTestVehicle();
+
+    // Act
+    int jsonSize = codec.encode(vehicle, VehiclePositionCodec.Format.JSON).length;
+    int protoSize = codec.encode(vehicle, VehiclePositionCodec.Format.PROTO).length;
+
+    // Assert
+    assertTrue(protoSize * 2 < jsonSize, "proto " + protoSize + "B vs json " + jsonSize + "B");
+  }
+
+  @Test
+  public void testUnsupportedSchemaVersionIsRejected() throws IOException {
+    // Arrange
+    byte[] payload = codec.encode(createTestVehicle(), VehiclePositionCodec.Format.PROTO);
+    payload[0] = 99;
+
+    // Act & Assert
+    assertThrows(IOException.class, () -> codec.decode(payload, VehiclePositionCodec.Format.PROTO));
+  }
+
+  @Test
+  public void testMissingHeaderMeansJson() {
+    // Act & Assert
+    assertEquals(VehiclePositionCodec.Format.JSON, VehiclePositionCodec.Format.fromHeader((String) null));
+    assertEquals(VehiclePositionCodec.Format.PROTO, VehiclePositionCodec.Format.fromHeader("proto"));
+  }
+
+  private VehiclePosition createTestVehicle() {
+    VehiclePosition vehicle = new VehiclePosition("TEST-001", "TRIP-001", "ROUTE-001", 49.2827, -123.1207, 1700000000L);
+    vehicle.setBearing(182.5f);
+    vehicle.setSpeed(8.3f);
+    vehicle.setStopId("STOP-001");
+    vehicle.setCurrentStatus("IN_TRANSIT_TO");
+    vehicle.setDirectionId(1);
+    return vehicle;
+  }
+}
@@ -1,17 +1,29 @@
 package com.bustracker.tracker;
 
+import com.bustracker.tracker.consumer.VehicleStateBootstrapService;
 import com.bustracker.tracker.loader.GtfsFileLoader;
 import com.bustracker.tracker.repository.GtfsRepository;
+import com.bustracker.tracker.service.ServiceCalendarService;
+import com.bustracker.tracker.service.DailyTimetableService;
+import com.bustracker.tracker.service.StopDepartureIndex;
+import com.bustracker.tracker.service.TripGeometryService;
+import com.bustracker.tracker.service.VehicleSnapshotService;
+import com.bustracker.tracker.service.VehicleStateService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
 import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.time.Clock;
 
 @SpringBootApplication
 @EnableKafka
+@EnableScheduling
 public class TransitTrackerApplication implements CommandLineRunner {
 
   private static final Logger logger = LoggerFactory.getLogger(TransitTrackerApplication.class);
@@ -22,13 +34,57 @@ public class TransitTrackerApplication implements CommandLineRunner {
   @Autowired
   private GtfsRepository gtfsRepository;
 
+  @Autowired
+  private TripGeometryService tripGeometryService;
+
+  @Autowired
+  private ServiceCalendarService serviceCalendarService;
+
+  @Autowired
+  private StopDepartureIndex stopDepartureIndex;
+
+  @Autowired
+  private DailyTimetableService dailyTimetableService;
+
+  @Autowired
+  private VehicleSnapshotService vehicleSnapshotService;
+
+  @Autowired
+  private VehicleStateBootstrapService vehicleStateBootstrapService;
+
+  @Autowired
+  private VehicleStateService vehicleStateService;
+
   public static void main(String[] args) {
     SpringApplication.run(TransitTrackerApplication.class, args);
   }
 
+  /**
+   * Wall clock for schedule comparisons, so tests can pin "now"
+   */
+  @Bean
+  public Clock clock() {
+    return Clock.systemUTC();
+  }
+
   @Override
   public void run(String... args) throws Exception {
     loadGtfsData();
+    // Positions consumed while the dataset was loading may have cached geometry
+    // for half-loaded trips (e.g. trips without their stop times yet)
+    tripGeometryService.clear();
+    serviceCalendarService.rebuildServiceDays();
+    stopDepartureIndex.rebuild();
+    dailyTimetableService.rebuild();
+
+    // Runners complete before the application reports ready, so the fleet view
+    // is populated before the first request is routed to this instance.
+    // Local snapshot first (fast), then Kafka fills in anything newer.
+    vehicleSnapshotService.restore();
+    vehicleStateBootstrapService.bootstrap();
+
+    // Bulk loads bypass the consumer, so derive matched state for them here
+    vehicleStateService.rebuildFromStorage();
   }
   
   private void loadGtfsData() {
@@ -0,0 +1,131 @@
+package com.bustracker.tracker.consumer;
+
+import com.bustracker.shared.codec.FleetSnapshotChunk;
+import com.bustracker.shared.codec.FleetSnapshotCodec;
+import com.bustracker.shared.model.VehiclePosition;
+import com.bustracker.tracker.service.VehicleStateService;
+import com.bustracker.tracker.service.VehicleStorageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Consumes fleet snapshots published by the ingestion service in snapshot mode
+ *
+ * Each chunk holds the complete vehicle set of its routes. A chunk is decoded
+ * in full before anything is stored, and each route is only applied if the
+ * chunk is newer than the last snapshot applied for that route, so a late or
+ * redelivered chunk can never roll a route back. Applying a route replaces its
+ * vehicle set: vehicles of the previous snapshot of the route that are absent
+ * from this one are removed, unless they have since been stored on another route.
+ */
+@Service
+@ConditionalOnProperty(name = "tracker.fleet-snapshots.enabled", havingValue = "true")
+public class FleetSnapshotConsumer {
+
+  private static final Logger logger = LoggerFactory.getLogger(FleetSnapshotConsumer.class);
+
+  private final FleetSnapshotCodec codec = new FleetSnapshotCodec();
+  private final VehicleStorageService storageService;
+  private final VehicleStateService vehicleStateService;
+
+  // routeId -> sequence number of the last snapshot applied for it
+  private final Map<String, Long> appliedSeqByRoute = new HashMap<>();
+  // routeId -> vehicleIds in the last snapshot applied for it
+  private final Map<String, Set<String>> vehicleIdsByRoute = new HashMap<>();
+  private int chunkCount = 0;
+
+  @Autowired
+  public FleetSnapshotConsumer(VehicleStorageService storageService, VehicleStateService vehicleStateService) {
+    this.storageService = storageService;
+    this.vehicleStateService = vehicleStateService;
+  }
+
+  @KafkaListener(topics = "${kafka.topics.fleet-snapshots}")
+  public void consumeSnapshotChunk(String key, byte[] message) {
+    try {
+      chunkCount++;
+      FleetSnapshotChunk chunk = codec.decode(message);
+      applyChunk(chunk);
+    } catch (Exception e) {
+      logger.error("Error processing fleet snapshot chunk {}: {}", chunkCount, e.getMessage());
+    }
+  }
+
+  private synchronized void applyChunk(FleetSnapshotChunk chunk) {
+    Set<String> acceptedRoutes = new HashSet<>();
+    for (String routeId : chunk.getRouteIds()) {
+      Long appliedSeq = appliedSeqByRoute.get(routeId);
+      if (appliedSeq == null || chunk.getSnapshotSeq() > appliedSeq) {
+        acceptedRoutes.add(routeId);
+      }
+    }
+    if (acceptedRoutes.isEmpty()) {
+      logger.debug("Skipping stale {}", chunk);
+      return;
+    }
+
+    List<VehiclePosition> updated = new ArrayList<>();
+    Map<String, Set<String>> snapshotVehicleIds = new HashMap<>();
+    for (String routeId : acceptedRoutes) {
+      snapshotVehicleIds.put(routeId, new HashSet<>());
+    }
+    for (VehiclePosition vehicle : chunk.getVehicles()) {
+      String routeId = routeKey(vehicle);
+      if (acceptedRoutes.contains(routeId)) {
+        snapshotVehicleIds.get(routeId).add(vehicle.getVehicleId());
+        if (storageService.storeIfNewer(vehicle)) {
+          updated.add(vehicle);
+        }
+      }
+    }
+
+    int removed = 0;
+    for (String routeId : acceptedRoutes) {
+      Set<String> vehicleIds = snapshotVehicleIds.get(routeId);
+      for (String vehicleId : vehicleIdsByRoute.getOrDefault(routeId, Set.of())) {
+        if (!vehicleIds.contains(vehicleId) && removeFromRoute(vehicleId, routeId)) {
+          removed++;
+        }
+      }
+      vehicleIdsByRoute.put(routeId, vehicleIds);
+      appliedSeqByRoute.put(routeId, chunk.getSnapshotSeq());
+    }
+
+    // Refresh derived state (what arrivals read) once the whole chunk is stored
+    updated.forEach(vehicleStateService::process);
+
+    logger.debug("Applied {}: {} routes, {} vehicles updated, {} removed",
+        chunk, acceptedRoutes.size(), updated.size(), removed);
+  }
+
+  /**
+   * Remove a vehicle that left a route's snapshot, unless it is now stored on another route
+   */
+  private boolean removeFromRoute(String vehicleId, String routeId) {
+    VehiclePosition stored = storageService.getVehicle(vehicleId);
+    if (stored == null || !routeId.equals(routeKey(stored)) || !storageService.removeVehicle(stored)) {
+      return false;
+    }
+    vehicleStateService.remove(vehicleId);
+    return true;
+  }
+
+  private static String routeKey(VehiclePosition vehicle) {
+    return vehicle.getRouteId() != null ? vehicle.getRouteId() : "";
+  }
+
+  public int getChunkCount() {
+    return chunkCount;
+  }
+}
@@ -0,0 +1,42 @@
+package com.bustracker.tracker.consumer;
+
+import com.bustracker.shared.gtfs.GtfsRealtime;
+import com.bustracker.tracker.service.ServiceAlertStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.PartitionOffset;
+import org.springframework.kafka.annotation.TopicPartition;
+import org.springframework.stereotype.Service;
+
+/**
+ * Consumes the service alerts topic; each record is the complete active alert set
+ */
+@Service
+@ConditionalOnProperty(name = "tracker.service-alerts.enabled", havingValue = "true")
+public class ServiceAlertConsumer {
+
+  private static final Logger logger = LoggerFactory.getLogger(ServiceAlertConsumer.class);
+
+  private final ServiceAlertStore serviceAlertStore;
+
+  @Autowired
+  public ServiceAlertConsumer(ServiceAlertStore serviceAlertStore) {
+    this.serviceAlertStore = serviceAlertStore;
+  }
+
+  // Compacted single-partition topic with a single key: assigned manually and read
+  // from the beginning on every start so alerts are known at startup (every
+  // instance needs the whole set, so there is no group rebalancing to share)
+  @KafkaListener(topicPartitions = @TopicPartition(topic = "${kafka.topics.service-alerts}",
+      partitionOffsets = @PartitionOffset(partition = "0", initialOffset = "0")))
+  public void consumeAlerts(String key, byte[] message) {
+    try {
+      serviceAlertStore.replaceAll(GtfsRealtime.FeedMessage.parseFrom(message));
+    } catch (Exception e) {
+      logger.error("Error processing service alerts: {}", e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package com.bustracker.tracker.consumer;
+
+import com.bustracker.shared.gtfs.GtfsRealtime;
+import com.bustracker.tracker.service.TripUpdateStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * Consumes GTFS-RT trip updates (agency arrival predictions) into the TripUpdateStore
+ */
+@Service
+@ConditionalOnProperty(name = "tracker.trip-updates.enabled", havingValue = "true")
+public class TripUpdateConsumer {
+
+  private static final Logger logger = LoggerFactory.getLogger(TripUpdateConsumer.class);
+
+  private final TripUpdateStore tripUpdateStore;
+  private int messageCount = 0;
+
+  @Autowired
+  public TripUpdateConsumer(TripUpdateStore tripUpdateStore) {
+    this.tripUpdateStore = tripUpdateStore;
+  }
+
+  @KafkaListener(topics = "${kafka.topics.trip-updates}")
+  public void consumeTripUpdate(String key, byte[] message) {
+    try {
+      messageCount++;
+
+      GtfsRealtime.FeedEntity entity = GtfsRealtime.FeedEntity.parseFrom(message);
+      if (entity.hasTripUpdate()) {
+        tripUpdateStore.update(entity.getTripUpdate());
+      }
+
+      if (messageCount % 500 == 0) {
+        logger.info("Consumed trip update #{}: trip {} - {} trips predicted",
+            messageCount, key, tripUpdateStore.size());
+      }
+
+    } catch (Exception e) {
+      logger.error("Error processing trip update {}: {}", messageCount, e.getMessage());
+    }
+  }
+
+  public int getMessageCount() {
+    return messageCount;
+  }
+}
@@ -1,12 +1,14 @@
 package com.bustracker.tracker.consumer;
 
+import com.bustracker.shared.codec.VehiclePositionCodec;
 import com.bustracker.shared.model.VehiclePosition;
+import com.bustracker.tracker.service.VehicleStateService;
 import com.bustracker.tracker.service.VehicleStorageService;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -14,28 +16,33 @@ public class VehiclePositionConsumer {
 
   private static final Logger logger = LoggerFactory.getLogger(VehiclePositionConsumer.class);
 
-  private final ObjectMapper objectMapper;
+  private final VehiclePositionCodec codec;
   private final VehicleStorageService storageService;
+  private final VehicleStateService vehicleStateService;
   private int messageCount = 0;
 
   @Autowired
-  public VehiclePositionConsumer(VehicleStorageService storageService) {
+  public VehiclePositionConsumer(VehicleStorageService storageService, VehicleStateService vehicleStateService) {
     this.storageService = storageService;
-    this.objectMapper = new ObjectMapper();
-    this.objectMapper.findAndRegisterModules(); // Handle Java 8 time types
+    this.vehicleStateService = vehicleStateService;
+    this.codec = new VehiclePositionCodec();
   }
 
   @KafkaListener(topics = "${kafka.topics.vehicle-positions}")
-  public void consumeVehiclePosition(String key, byte[] message) {
+  public void consumeVehiclePosition(String key, byte[] message,
+      @Header(name = VehiclePositionCodec.FORMAT_HEADER, required = false) byte[] format) {
     try {
       messageCount++;
 
-      // Parse JSON message to VehiclePosition
-      VehiclePosition vehiclePosition = objectMapper.readValue(message, VehiclePosition.class);
+      // Decode in whatever format the producer tagged (JSON when untagged)
+      VehiclePosition vehiclePosition = codec.decode(message, VehiclePositionCodec.Format.fromHeader(format));
 
       // Store in memory
       storageService.storeVehiclePosition(vehiclePosition);
 
+      // Map-match and compute delay once here instead of on every arrivals request
+      vehicleStateService.process(vehiclePosition);
+
       // Log every 500th message to avoid spam
       if (messageCount % 500 == 0) {
         logger.info("Consumed & stored message #{}: Vehicle {} on route {} - Storage: {}",
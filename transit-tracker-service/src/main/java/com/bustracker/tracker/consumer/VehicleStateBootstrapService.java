@@ -0,0 +1,201 @@
+package com.bustracker.tracker.consumer;
+
+import com.bustracker.shared.codec.VehiclePositionCodec;
+import com.bustracker.shared.model.VehiclePosition;
+import com.bustracker.tracker.service.VehicleStorageService;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Rebuilds the in-memory fleet view on startup, before the service reports ready
+ *
+ * The regular listener starts at the latest offset, so without this a freshly
+ * started (or scaled-out) tracker shows no buses until the next poll cycle.
+ *
+ * Modes (tracker.bootstrap.mode):
+ * - compacted: read the log-compacted latest-state topic from the beginning
+ * - replay:    read the last N seconds of the main topic via offsets-for-times
+ * - none:      skip bootstrapping
+ */
+@Service
+public class VehicleStateBootstrapService {
+
+  private static final Logger logger = LoggerFactory.getLogger(VehicleStateBootstrapService.class);
+
+  private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+
+  private final ConsumerFactory<String, byte[]> consumerFactory;
+  private final VehicleStorageService storageService;
+  private final VehiclePositionCodec codec;
+
+  private final String mode;
+  private final String positionsTopic;
+  private final String latestTopic;
+  private final long replaySeconds;
+  private final long timeoutSeconds;
+
+  @Autowired
+  public VehicleStateBootstrapService(ConsumerFactory<String, byte[]> consumerFactory,
+      VehicleStorageService storageService,
+      @Value("${tracker.bootstrap.mode:compacted}") String mode,
+      @Value("${kafka.topics.vehicle-positions}") String positionsTopic,
+      @Value("${kafka.topics.vehicle-positions-latest:vehicle-positions-latest}") String latestTopic,
+      @Value("${tracker.bootstrap.replay-seconds:120}") long replaySeconds,
+      @Value("${tracker.bootstrap.timeout-seconds:20}") long timeoutSeconds) {
+    this.consumerFactory = consumerFactory;
+    this.storageService = storageService;
+    this.mode = mode.trim().toLowerCase();
+    this.positionsTopic = positionsTopic;
+    this.latestTopic = latestTopic;
+    this.replaySeconds = replaySeconds;
+    this.timeoutSeconds = timeoutSeconds;
+    this.codec = new VehiclePositionCodec();
+  }
+
+  /**
+   * Bulk-load the vehicle store from Kafka according to the configured mode
+   * Failures are logged and never prevent startup - live consumption still fills the store
+   * @return number of vehicles loaded
+   */
+  public int bootstrap() {
+    switch (mode) {
+      case "none":
+        logger.info("Vehicle state bootstrap disabled");
+        return 0;
+      case "compacted":
+        return bootstrapFrom(latestTopic, false);
+      case "replay":
+        return bootstrapFrom(positionsTopic, true);
+      default:
+        logger.warn("Unknown tracker.bootstrap.mode '{}', skipping vehicle state bootstrap", mode);
+        return 0;
+    }
+  }
+
+  private int bootstrapFrom(String topic, boolean replayWindow) {
+    long startedAt = System.currentTimeMillis();
+    logger.info("Bootstrapping vehicle state from topic {} ({})", topic,
+        replayWindow ? "last " + replaySeconds + "s" : "from beginning");
+
+    // Manual assignment, no offset commits: this reader must never touch the listener's group offsets
+    Properties overrides = new Properties();
+    overrides.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+    overrides.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, "2000");
+
+    try (Consumer<String, byte[]> consumer = consumerFactory.createConsumer(null, null, "-bootstrap", overrides)) {
+      List<PartitionInfo> partitionInfos = consumer.partitionsFor(topic, Duration.ofSeconds(timeoutSeconds));
+      if (partitionInfos == null || partitionInfos.isEmpty()) {
+        logger.warn("Topic {} not found, skipping vehicle state bootstrap", topic);
+        return 0;
+      }
+
+      List<TopicPartition> partitions = partitionInfos.stream()
+          .map(info -> new TopicPartition(info.topic(), info.partition()))
+          .toList();
+      consumer.assign(partitions);
+
+      if (replayWindow) {
+        seekToReplayWindow(consumer, partitions);
+      } else {
+        consumer.seekToBeginning(partitions);
+      }
+
+      Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+      Map<String, VehiclePosition> latestByVehicle = readUntil(consumer, endOffsets, startedAt);
+
+      int loaded = storageService.loadVehiclePositions(latestByVehicle.values());
+      logger.info("Vehicle state bootstrap finished in {}ms: {} vehicles loaded from {}",
+          System.currentTimeMillis() - startedAt, loaded, topic);
+      return loaded;
+
+    } catch (Exception e) {
+      logger.error("Vehicle state bootstrap from {} failed: {}", topic, e.getMessage(), e);
+      return 0;
+    }
+  }
+
+  private void seekToReplayWindow(Consumer<String, byte[]> consumer, List<TopicPartition> partitions) {
+    long fromTimestamp = System.currentTimeMillis() - replaySeconds * 1000;
+
+    Map<TopicPartition, Long> timestamps = new HashMap<>();
+    partitions.forEach(partition -> timestamps.put(partition, fromTimestamp));
+
+    Map<TopicPartition, OffsetAndTimestamp> offsets = consumer.offsetsForTimes(timestamps);
+    Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+
+    for (TopicPartition partition : partitions) {
+      OffsetAndTimestamp offset = offsets.get(partition);
+      // No record newer than the window start: nothing to replay on this partition
+      consumer.seek(partition, offset != null ? offset.offset() : endOffsets.get(partition));
+    }
+  }
+
+  /**
+   * Poll until every partition reached the end offset captured at start, or the timeout expires
+   */
+  private Map<String, VehiclePosition> readUntil(Consumer<String, byte[]> consumer,
+      Map<TopicPartition, Long> endOffsets, long startedAt) {
+    Map<String, VehiclePosition> latestByVehicle = new HashMap<>();
+    long deadline = startedAt + timeoutSeconds * 1000;
+    int recordCount = 0;
+
+    while (!caughtUp(consumer, endOffsets)) {
+      if (System.currentTimeMillis() > deadline) {
+        logger.warn("Vehicle state bootstrap timed out after {}s, continuing with {} vehicles",
+            timeoutSeconds, latestByVehicle.size());
+        break;
+      }
+
+      ConsumerRecords<String, byte[]> records = consumer.poll(POLL_TIMEOUT);
+      for (ConsumerRecord<String, byte[]> record : records) {
+        recordCount++;
+        if (record.value() == null) {
+          // Tombstone: the vehicle was deleted after any value read before it
+          if (record.key() != null) {
+            latestByVehicle.remove(record.key());
+          }
+          continue;
+        }
+        try {
+          var formatHeader = record.headers().lastHeader(VehiclePositionCodec.FORMAT_HEADER);
+          VehiclePosition position = codec.decode(record.value(),
+              VehiclePositionCodec.Format.fromHeader(formatHeader != null ? formatHeader.value() : null));
+          latestByVehicle.merge(position.getVehicleId(), position,
+              (existing, incoming) -> incoming.getTimestamp() >= existing.getTimestamp() ? incoming : existing);
+        } catch (Exception e) {
+          logger.debug("Skipping undecodable bootstrap record at {}-{}@{}: {}",
+              record.topic(), record.partition(), record.offset(), e.getMessage());
+        }
+      }
+    }
+
+    logger.debug("Read {} bootstrap records for {} distinct vehicles", recordCount, latestByVehicle.size());
+    return latestByVehicle;
+  }
+
+  private boolean caughtUp(Consumer<String, byte[]> consumer, Map<TopicPartition, Long> endOffsets) {
+    for (Map.Entry<TopicPartition, Long> entry : endOffsets.entrySet()) {
+      if (consumer.position(entry.getKey()) < entry.getValue()) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
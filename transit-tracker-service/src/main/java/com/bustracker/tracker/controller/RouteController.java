@@ -6,21 +6,22 @@ import com.bustracker.tracker.dto.RouteDto;
 import com.bustracker.tracker.dto.DirectionDto;
 import com.bustracker.tracker.dto.StopDto;
 import com.bustracker.tracker.dto.ArrivalsResponseDto;
-import com.bustracker.tracker.dto.RealTimeBusDto;
-import com.bustracker.tracker.dto.ScheduledBusDto;
-import com.bustracker.tracker.domain.StopTime;
+import com.bustracker.tracker.dto.TimetableTripDto;
 import com.bustracker.tracker.repository.GtfsRepository;
 import com.bustracker.tracker.service.VehicleCorrelationService;
-import com.bustracker.tracker.service.ScheduledArrivalService;
-import com.bustracker.tracker.service.ServiceCalendarService;
+import com.bustracker.tracker.service.ArrivalsBoardService;
+import com.bustracker.tracker.service.DailyTimetableService;
+import com.bustracker.tracker.service.HeadwayAnalyticsService;
+import com.bustracker.tracker.service.ServiceAlert;
+import com.bustracker.tracker.service.ServiceAlertStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.LocalTime;
-import java.time.ZoneId;
+import java.time.Clock;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
@@ -36,23 +37,28 @@ import java.util.stream.Collectors;
 @CrossOrigin(origins = "*") // Allow frontend access
 public class RouteController {
 
-  // Vancouver timezone for GTFS data
-  private static final ZoneId VANCOUVER_TIMEZONE = ZoneId.of("America/Vancouver");
-
   private static final Logger logger = LoggerFactory.getLogger(RouteController.class);
 
   private final GtfsRepository gtfsRepository;
   private final VehicleCorrelationService vehicleCorrelationService;
-  private final ScheduledArrivalService scheduledArrivalService;
-  private final ServiceCalendarService serviceCalendarService;
+  private final ArrivalsBoardService arrivalsBoardService;
+  private final ServiceAlertStore serviceAlertStore;
+  private final DailyTimetableService dailyTimetableService;
+  private final HeadwayAnalyticsService headwayAnalyticsService;
+  private final Clock clock;
 
   @Autowired
   public RouteController(GtfsRepository gtfsRepository, VehicleCorrelationService vehicleCorrelationService,
-                        ScheduledArrivalService scheduledArrivalService, ServiceCalendarService serviceCalendarService) {
+                        ArrivalsBoardService arrivalsBoardService, ServiceAlertStore serviceAlertStore,
+                        DailyTimetableService dailyTimetableService, HeadwayAnalyticsService headwayAnalyticsService,
+                        Clock clock) {
     this.gtfsRepository = gtfsRepository;
     this.vehicleCorrelationService = vehicleCorrelationService;
-    this.scheduledArrivalService = scheduledArrivalService;
-    this.serviceCalendarService = serviceCalendarService;
+    this.arrivalsBoardService = arrivalsBoardService;
+    this.serviceAlertStore = serviceAlertStore;
+    this.dailyTimetableService = dailyTimetableService;
+    this.headwayAnalyticsService = headwayAnalyticsService;
+    this.clock = clock;
   }
 
   /**
@@ -254,6 +260,38 @@ public class RouteController {
     }
   }
 
+  /**
+   * GET /api/routes/{routeId}/directions/{directionId}/timetable
+   * Trips of a route and direction still to run today (including last night's overnight trips
+   * that have not finished), read from the materialized daily timetable
+   */
+  @GetMapping("/{routeId}/directions/{directionId}/timetable")
+  public ResponseEntity<List<TimetableTripDto>> getTimetableForRouteAndDirection(
+      @PathVariable("routeId") String routeId,
+      @PathVariable("directionId") int directionId) {
+    logger.debug("Fetching today's timetable for route {} direction {}", routeId, directionId);
+
+    if (gtfsRepository.findRouteById(routeId).isEmpty()) {
+      logger.warn("Route not found: {}", routeId);
+      return ResponseEntity.notFound().build();
+    }
+
+    long now = clock.instant().getEpochSecond();
+    var trips = dailyTimetableService.getTrips(routeId, directionId, now).stream()
+        .filter(trip -> trip.getLastArrivalEpochSecond() >= now)
+        .map(RouteController::toTimetableTripDto)
+        .toList();
+    return ResponseEntity.ok(trips);
+  }
+
+  private static TimetableTripDto toTimetableTripDto(DailyTimetableService.TimetableTrip trip) {
+    List<TimetableTripDto.StopArrivalDto> stops = new ArrayList<>(trip.getStopCount());
+    for (int i = 0; i < trip.getStopCount(); i++) {
+      stops.add(new TimetableTripDto.StopArrivalDto(trip.getStopId(i), trip.getArrivalEpochSecond(i)));
+    }
+    return new TimetableTripDto(trip.getTripId(), trip.getServiceDate(), stops);
+  }
+
   /**
    * GET /api/routes/{routeId}/directions/{directionId}/stops/{stopId}/arrivals
    * THE MAIN ENDPOINT - Returns real-time + scheduled arrivals for a specific stop
@@ -292,12 +330,19 @@ public class RouteController {
   public ResponseEntity<ArrivalsResponseDto> getArrivalsForStop(
       @PathVariable("routeId") String routeId,
       @PathVariable("directionId") int directionId,
-      @PathVariable("stopId") String stopId) {
+      @PathVariable("stopId") String stopId,
+      @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
 
     logger.debug("Fetching arrivals for route {} direction {} stop {}",
         routeId, directionId, stopId);
 
     try {
+      // Fast path: a board is already maintained (and was validated) for this stop
+      var existingBoard = arrivalsBoardService.getBoard(routeId, directionId, stopId);
+      if (existingBoard.isPresent()) {
+        return boardResponse(existingBoard.get(), ifNoneMatch);
+      }
+
       // Step 1: Validate route exists
       var routeOpt = gtfsRepository.findRouteById(routeId);
       if (routeOpt.isEmpty()) {
@@ -341,20 +386,14 @@ public class RouteController {
       var routeInfo = new ArrivalsResponseDto.RouteInfoDto(route.getRouteShortName(), friendlyDirectionName);
       var stopInfo = new ArrivalsResponseDto.StopInfoDto(stop.getStopId(), stop.getStopName());
 
-      // Step 6: Get real-time buses from Kafka vehicle positions
-      List<RealTimeBusDto> realTimeBuses = getRealTimeBuses(routeId, directionId, stopId);
+      // Step 6: Build the board (real-time + scheduled), kept current from here on
+      var board = arrivalsBoardService.createBoard(routeId, directionId, stop, routeInfo);
 
-      // Step 7: Get scheduled buses (simplified for now)
-      List<ScheduledBusDto> scheduledBuses = getScheduledArrivals(routeId, directionId, stopId);
-
-      // Step 8: Build response
-      var response = new ArrivalsResponseDto(routeInfo, stopInfo, realTimeBuses, scheduledBuses);
-
-      logger.debug("Successfully returned arrivals for stop {} on route {} direction {} - {} real-time, {} scheduled",
+      logger.debug("Created arrivals board for stop {} on route {} direction {} - {} real-time, {} scheduled",
           stop.getStopName(), route.getRouteShortName(), directionId,
-          realTimeBuses.size(), scheduledBuses.size());
+          board.getResponse().getRealTimeBuses().size(), board.getResponse().getScheduledBuses().size());
 
-      return ResponseEntity.ok(response);
+      return boardResponse(board, ifNoneMatch);
 
     } catch (Exception e) {
       logger.error("Error fetching arrivals for route {} direction {} stop {}", routeId, directionId, stopId, e);
@@ -363,119 +402,13 @@ public class RouteController {
   }
 
   /**
-   * Get real-time buses approaching the specified stop
-   */
-  private List<RealTimeBusDto> getRealTimeBuses(String routeId, int directionId, String stopId) {
-    try {
-      // Use vehicle correlation service to find buses approaching this stop
-      var approachingVehicles = vehicleCorrelationService.findVehiclesApproachingStop(routeId, directionId, stopId);
-
-      // Convert to DTOs with scheduled time correlation
-      var realTimeBuses = approachingVehicles.stream()
-          .map(av -> {
-            var vehicle = av.getVehicle();
-            var etaResult = av.getEtaResult();
-
-            // Get enhanced vehicle info with scheduled correlation
-            var enhancedInfo = scheduledArrivalService.createEnhancedVehicleInfo(
-                vehicle, stopId, etaResult.getEtaSeconds());
-
-            // Extract scheduled time information
-            var scheduledArrival = enhancedInfo.hasScheduledTime() ? 
-                enhancedInfo.getScheduledArrival().getScheduledArrival() : null;
-            var delayMinutes = enhancedInfo.hasDelayInfo() ? 
-                enhancedInfo.getDelayInfo().getDelayMinutes() : null;
-            var delayStatus = enhancedInfo.hasDelayInfo() ? 
-                enhancedInfo.getDelayInfo().getStatus().getDisplayName() : null;
-
-            return new RealTimeBusDto(
-                vehicle.getVehicleId(),
-                vehicle.getTripId(),
-                etaResult.getEtaMinutes(),
-                etaResult.getEtaSeconds(),
-                etaResult.getDistanceMeters(),
-                vehicle.getCurrentStatus(),
-                av.getCalculatedAt(),
-                scheduledArrival,
-                delayMinutes,
-                delayStatus
-            );
-          })
-          .collect(Collectors.toList());
-
-      logger.debug("Found {} real-time buses approaching stop {}", realTimeBuses.size(), stopId);
-      return realTimeBuses;
-
-    } catch (Exception e) {
-      logger.error("Error getting real-time buses for stop {}", stopId, e);
-      return new ArrayList<>(); // Return empty list on error
-    }
-  }
-
-  /**
-   * Helper method to get scheduled arrivals for a stop using stop_times.txt
-   * Filters by active services using calendar.txt + calendar_dates.txt
-   */
-  private List<ScheduledBusDto> getScheduledArrivals(String routeId, int directionId, String stopId) {
-    logger.debug("Getting scheduled arrivals for stop {} in next hour (active services only)", stopId);
-    
-    try {
-      LocalTime currentTime = LocalTime.now(VANCOUVER_TIMEZONE);
-      LocalTime endTime = currentTime.plusHours(1); // Show next 1 hour of scheduled arrivals
-      
-      // Get all stop times for this stop
-      List<StopTime> stopTimes = gtfsRepository.findStopTimesByStopId(stopId);
-      
-      // Step 1: Filter by active services using calendar validation
-      List<StopTime> activeStopTimes = serviceCalendarService.filterActiveStopTimes(stopTimes);
-      
-      logger.debug("Filtered {} stop times to {} active services for stop {}", 
-          stopTimes.size(), activeStopTimes.size(), stopId);
-      
-      // Step 2: Filter for next hour and convert to DTOs
-      List<ScheduledBusDto> scheduledBuses = activeStopTimes.stream()
-          .filter(stopTime -> {
-            LocalTime arrivalTime = stopTime.getArrivalTime();
-            return isWithinTimeWindow(arrivalTime, currentTime, endTime);
-          })
-          .map(stopTime -> {
-            LocalTime scheduledTime = stopTime.getArrivalTime();
-            int etaMinutes = (int) java.time.Duration.between(currentTime, scheduledTime).toMinutes();
-            
-            // Handle overnight schedules
-            if (etaMinutes < 0) {
-              etaMinutes += 24 * 60; // Add 24 hours in minutes
-            }
-            
-            return new ScheduledBusDto(scheduledTime, etaMinutes, false);
-          })
-          .filter(bus -> bus.getEtaMinutes() >= 0 && bus.getEtaMinutes() <= 60) // Next 1 hour only
-          .sorted((ScheduledBusDto a, ScheduledBusDto b) -> Integer.compare(a.getEtaMinutes(), b.getEtaMinutes()))
-          .limit(20) // Limit to next 20 scheduled arrivals
-          .collect(Collectors.toList());
-      
-      logger.debug("Found {} active scheduled arrivals at stop {} in next hour", 
-          scheduledBuses.size(), stopId);
-      
-      return scheduledBuses;
-      
-    } catch (Exception e) {
-      logger.error("Error getting scheduled arrivals for stop {}", stopId, e);
-      return new ArrayList<>(); // Return empty list on error
-    }
-  }
-
-  /**
-   * Check if a time is within the specified window (handles overnight times)
+   * Serve a board snapshot, or 304 if the client already has this version
    */
-  private boolean isWithinTimeWindow(LocalTime time, LocalTime fromTime, LocalTime toTime) {
-    if (fromTime.isBefore(toTime)) {
-      // Normal case: from 08:00 to 09:00
-      return !time.isBefore(fromTime) && !time.isAfter(toTime);
-    } else {
-      // Overnight case: from 23:00 to 01:00
-      return !time.isBefore(fromTime) || !time.isAfter(toTime);
+  private ResponseEntity<ArrivalsResponseDto> boardResponse(ArrivalsBoardService.BoardSnapshot board, String ifNoneMatch) {
+    if (board.matches(ifNoneMatch)) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(board.getETag()).build();
     }
+    return ResponseEntity.ok().eTag(board.getETag()).body(board.getResponse());
   }
 
   /**
@@ -505,4 +438,66 @@ public class RouteController {
       return ResponseEntity.internalServerError().build();
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * GET /api/routes/{routeId}/delays
+   * Schedule adherence of every vehicle on a route at its next stop, for delay dashboards
+   */
+  @GetMapping("/{routeId}/delays")
+  public ResponseEntity<VehicleCorrelationService.RouteDelays> getDelaysForRoute(@PathVariable("routeId") String routeId) {
+    logger.debug("Getting delays for route {}", routeId);
+
+    try {
+      if (gtfsRepository.findRouteById(routeId).isEmpty()) {
+        logger.warn("Route not found: {}", routeId);
+        return ResponseEntity.notFound().build();
+      }
+
+      var delays = vehicleCorrelationService.getRouteDelays(routeId);
+      logger.debug("Delays for route {}: {}", routeId, delays);
+      return ResponseEntity.ok(delays);
+
+    } catch (Exception e) {
+      logger.error("Error getting delays for route {}", routeId, e);
+      return ResponseEntity.internalServerError().build();
+    }
+  }
+
+  /**
+   * GET /api/routes/{routeId}/headways
+   * Live gaps between consecutive vehicles per direction, with bunching against the scheduled headway
+   */
+  @GetMapping("/{routeId}/headways")
+  public ResponseEntity<HeadwayAnalyticsService.RouteHeadways> getHeadwaysForRoute(@PathVariable("routeId") String routeId) {
+    logger.debug("Getting headways for route {}", routeId);
+
+    try {
+      if (gtfsRepository.findRouteById(routeId).isEmpty()) {
+        logger.warn("Route not found: {}", routeId);
+        return ResponseEntity.notFound().build();
+      }
+      return ResponseEntity.ok(headwayAnalyticsService.getRouteHeadways(routeId));
+
+    } catch (Exception e) {
+      logger.error("Error getting headways for route {}", routeId, e);
+      return ResponseEntity.internalServerError().build();
+    }
+  }
+
+  /**
+   * GET /api/routes/{routeId}/alerts?stopId=...
+   * Active service alerts for a route (and optionally one of its stops), including agency-wide alerts
+   */
+  @GetMapping("/{routeId}/alerts")
+  public ResponseEntity<List<ServiceAlert>> getAlertsForRoute(
+      @PathVariable("routeId") String routeId,
+      @RequestParam(value = "stopId", required = false) String stopId) {
+    logger.debug("Getting alerts for route {} stop {}", routeId, stopId);
+
+    if (gtfsRepository.findRouteById(routeId).isEmpty()) {
+      logger.warn("Route not found: {}", routeId);
+      return ResponseEntity.notFound().build();
+    }
+    return ResponseEntity.ok(serviceAlertStore.getActiveAlerts(routeId, stopId));
+  }
+}
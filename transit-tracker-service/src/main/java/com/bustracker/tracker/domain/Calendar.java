@@ -102,6 +102,19 @@ public class Calendar {
     public boolean isSaturday() { return saturday; }
     public boolean isSunday() { return sunday; }
 
+    /**
+     * Service days as a bitmask, bit (DayOfWeek.getValue() - 1) set for each day the service runs
+     */
+    public int getDayOfWeekMask() {
+        return (monday ? 1 : 0)
+            | (tuesday ? 1 << 1 : 0)
+            | (wednesday ? 1 << 2 : 0)
+            | (thursday ? 1 << 3 : 0)
+            | (friday ? 1 << 4 : 0)
+            | (saturday ? 1 << 5 : 0)
+            | (sunday ? 1 << 6 : 0);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
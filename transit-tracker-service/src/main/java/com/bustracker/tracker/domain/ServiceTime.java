@@ -0,0 +1,104 @@
+package com.bustracker.tracker.domain;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+
+/**
+ * GTFS service-day times as plain int seconds
+ *
+ * GTFS measures stop times from "noon minus 12h" of the service date, which is
+ * midnight except on daylight-saving change days, and lets them run past 24:00
+ * for trips that finish after midnight. Keeping that value as an int (instead
+ * of a LocalTime wrapped at 24h) makes times within a service day compare with
+ * plain integer comparison, and converts exactly to an instant once the service
+ * date is known.
+ */
+public final class ServiceTime {
+
+  public static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+  private ServiceTime() {}
+
+  /**
+   * Parse GTFS time format (H:mm:ss or HH:mm:ss) keeping the day offset, e.g. "25:30:00" is 91800
+   * @return seconds, or -1 if the field is empty
+   */
+  public static int parse(String timeStr) {
+    if (timeStr == null || timeStr.trim().isEmpty()) {
+      return -1;
+    }
+
+    String[] parts = timeStr.trim().split(":");
+    if (parts.length != 3) {
+      throw new IllegalArgumentException("Invalid time format: " + timeStr);
+    }
+
+    int hours = Integer.parseInt(parts[0]);
+    int minutes = Integer.parseInt(parts[1]);
+    int seconds = Integer.parseInt(parts[2]);
+    if (hours < 0 || minutes < 0 || minutes > 59 || seconds < 0 || seconds > 59) {
+      throw new IllegalArgumentException("Invalid time format: " + timeStr);
+    }
+
+    return hours * 3600 + minutes * 60 + seconds;
+  }
+
+  /**
+   * Epoch second of the service date's reference point (noon minus 12h, local time)
+   */
+  public static long dayStartEpochSecond(LocalDate serviceDate, ZoneId zone) {
+    return serviceDate.atTime(LocalTime.NOON).atZone(zone).minusHours(12).toEpochSecond();
+  }
+
+  public static long toEpochSecond(int serviceSeconds, LocalDate serviceDate, ZoneId zone) {
+    return dayStartEpochSecond(serviceDate, zone) + serviceSeconds;
+  }
+
+  public static Instant toInstant(int serviceSeconds, LocalDate serviceDate, ZoneId zone) {
+    return Instant.ofEpochSecond(toEpochSecond(serviceSeconds, serviceDate, zone));
+  }
+
+  /**
+   * Service-day seconds of an instant relative to a service date (negative before it, past 24h after)
+   */
+  public static int fromEpochSecond(long epochSecond, LocalDate serviceDate, ZoneId zone) {
+    return (int) (epochSecond - dayStartEpochSecond(serviceDate, zone));
+  }
+
+  /**
+   * The service date (the local date of the instant, or the day before or after) on which
+   * a service-day time falls closest to the instant
+   * Resolves which run of a trip a live vehicle or prediction refers to around midnight,
+   * e.g. a 25:30 arrival seen at 01:20 belongs to yesterday's service date.
+   */
+  public static LocalDate nearestServiceDate(int serviceSeconds, long epochSecond, ZoneId zone) {
+    LocalDate date = LocalDate.ofInstant(Instant.ofEpochSecond(epochSecond), zone);
+    LocalDate best = date;
+    long bestDistance = Math.abs(toEpochSecond(serviceSeconds, date, zone) - epochSecond);
+    for (int offset = -1; offset <= 1; offset += 2) {
+      LocalDate candidate = date.plusDays(offset);
+      long distance = Math.abs(toEpochSecond(serviceSeconds, candidate, zone) - epochSecond);
+      if (distance < bestDistance) {
+        best = candidate;
+        bestDistance = distance;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Wall-clock time of day of a service-day time (wraps after 24:00)
+   */
+  public static LocalTime toLocalTime(int serviceSeconds) {
+    return LocalTime.ofSecondOfDay(Math.floorMod(serviceSeconds, SECONDS_PER_DAY));
+  }
+
+  /**
+   * GTFS notation, keeping hours past 24 (e.g. "25:30:00")
+   */
+  public static String format(int serviceSeconds) {
+    return String.format("%02d:%02d:%02d", serviceSeconds / 3600, serviceSeconds / 60 % 60, serviceSeconds % 60);
+  }
+}
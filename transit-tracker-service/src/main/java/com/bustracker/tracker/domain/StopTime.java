@@ -12,18 +12,33 @@ public class StopTime {
 
   private final String tripId;
   private final String stopId;
-  private final LocalTime arrivalTime;
-  private final LocalTime departureTime;
+  // GTFS service-day times (see ServiceTime); may exceed 24h for trips
+  // running past midnight, which a LocalTime cannot represent
+  private final int arrivalSeconds;
+  private final int departureSeconds;
   private final int stopSequence;
 
   public StopTime(String tripId, String stopId, LocalTime arrivalTime,
       LocalTime departureTime, int stopSequence) {
+    this(tripId, stopId,
+        Objects.requireNonNull(arrivalTime, "Arrival time cannot be null").toSecondOfDay(),
+        departureTime != null ? departureTime.toSecondOfDay() : -1,
+        stopSequence);
+  }
+
+  /**
+   * @param departureSeconds negative to default to the arrival time
+   */
+  public StopTime(String tripId, String stopId, int arrivalSeconds, int departureSeconds, int stopSequence) {
     this.tripId = Objects.requireNonNull(tripId, "Trip ID cannot be null");
     this.stopId = Objects.requireNonNull(stopId, "Stop ID cannot be null");
-    this.arrivalTime = Objects.requireNonNull(arrivalTime, "Arrival time cannot be null");
-    this.departureTime = departureTime != null ? departureTime : arrivalTime; // Default to arrival time
+    this.arrivalSeconds = arrivalSeconds;
+    this.departureSeconds = departureSeconds >= 0 ? departureSeconds : arrivalSeconds; // Default to arrival time
     this.stopSequence = stopSequence;
 
+    if (arrivalSeconds < 0) {
+      throw new IllegalArgumentException("Arrival time cannot be negative: " + arrivalSeconds);
+    }
     if (stopSequence < 0) {
       throw new IllegalArgumentException("Stop sequence must be non-negative: " + stopSequence);
     }
@@ -37,12 +52,32 @@ public class StopTime {
     return stopId;
   }
 
+  /**
+   * Arrival as wall-clock time of day (wraps after midnight)
+   */
   public LocalTime getArrivalTime() {
-    return arrivalTime;
+    return ServiceTime.toLocalTime(arrivalSeconds);
   }
 
+  /**
+   * Departure as wall-clock time of day (wraps after midnight)
+   */
   public LocalTime getDepartureTime() {
-    return departureTime;
+    return ServiceTime.toLocalTime(departureSeconds);
+  }
+
+  /**
+   * Arrival in service-day seconds (e.g. 25:30:00 = 91800), see ServiceTime
+   */
+  public int getArrivalSeconds() {
+    return arrivalSeconds;
+  }
+
+  /**
+   * Departure in service-day seconds, see ServiceTime
+   */
+  public int getDepartureSeconds() {
+    return departureSeconds;
   }
 
   public int getStopSequence() {
@@ -54,23 +89,22 @@ public class StopTime {
    * e.g., "25:30:00" means 1:30 AM next day
    */
   public static LocalTime parseGtfsTime(String timeStr) {
-    if (timeStr == null || timeStr.trim().isEmpty()) {
+    int seconds = parseGtfsSeconds(timeStr);
+    if (seconds < 0) {
       return null;
     }
 
-    String[] parts = timeStr.split(":");
-    if (parts.length != 3) {
-      throw new IllegalArgumentException("Invalid time format: " + timeStr);
-    }
-
-    int hours = Integer.parseInt(parts[0]);
-    int minutes = Integer.parseInt(parts[1]);
-    int seconds = Integer.parseInt(parts[2]);
-
     // Handle times beyond 24 hours (GTFS allows this)
-    hours = hours % 24;
+    return ServiceTime.toLocalTime(seconds);
+  }
 
-    return LocalTime.of(hours, minutes, seconds);
+  /**
+   * Parse GTFS time format (H:mm:ss or HH:mm:ss) to seconds after the start of the service day
+   * keeping the day offset, e.g. "25:30:00" is 91800
+   * @return seconds, or -1 if the field is empty
+   */
+  public static int parseGtfsSeconds(String timeStr) {
+    return ServiceTime.parse(timeStr);
   }
 
   @Override
@@ -90,6 +124,6 @@ public class StopTime {
   @Override
   public String toString() {
     return String.format("StopTime{tripId='%s', stopId='%s', seq=%d, arrival=%s}",
-        tripId, stopId, stopSequence, arrivalTime);
+        tripId, stopId, stopSequence, ServiceTime.format(arrivalSeconds));
   }
 }
\ No newline at end of file
@@ -0,0 +1,74 @@
+package com.bustracker.tracker.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Data Transfer Object for one trip of a route direction's daily timetable
+ * Stops are in stop sequence order, arrivals as epoch seconds
+ */
+public class TimetableTripDto {
+
+  private String tripId;
+  private LocalDate serviceDate;
+  private List<StopArrivalDto> stops;
+
+  // Default constructor
+  public TimetableTripDto() {}
+
+  public TimetableTripDto(String tripId, LocalDate serviceDate, List<StopArrivalDto> stops) {
+    this.tripId = tripId;
+    this.serviceDate = serviceDate;
+    this.stops = stops;
+  }
+
+  public String getTripId() {
+    return tripId;
+  }
+
+  public void setTripId(String tripId) {
+    this.tripId = tripId;
+  }
+
+  public LocalDate getServiceDate() {
+    return serviceDate;
+  }
+
+  public void setServiceDate(LocalDate serviceDate) {
+    this.serviceDate = serviceDate;
+  }
+
+  public List<StopArrivalDto> getStops() {
+    return stops;
+  }
+
+  public void setStops(List<StopArrivalDto> stops) {
+    this.stops = stops;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("TimetableTripDto{tripId='%s', serviceDate=%s, stops=%d}",
+        tripId, serviceDate, stops != null ? stops.size() : 0);
+  }
+
+  /**
+   * Nested DTO for one scheduled stop arrival of the trip
+   */
+  public static class StopArrivalDto {
+    private String stopId;
+    private long arrivalEpochSecond;
+
+    public StopArrivalDto() {}
+
+    public StopArrivalDto(String stopId, long arrivalEpochSecond) {
+      this.stopId = stopId;
+      this.arrivalEpochSecond = arrivalEpochSecond;
+    }
+
+    public String getStopId() { return stopId; }
+    public void setStopId(String stopId) { this.stopId = stopId; }
+    public long getArrivalEpochSecond() { return arrivalEpochSecond; }
+    public void setArrivalEpochSecond(long arrivalEpochSecond) { this.arrivalEpochSecond = arrivalEpochSecond; }
+  }
+}
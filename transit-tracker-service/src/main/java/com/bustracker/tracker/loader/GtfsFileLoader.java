@@ -146,11 +146,12 @@ public class GtfsFileLoader {
           String departureTimeStr = record.get("departure_time");
           int stopSequence = Integer.parseInt(record.get("stop_sequence"));
 
-          var arrivalTime = StopTime.parseGtfsTime(arrivalTimeStr);
-          var departureTime = StopTime.parseGtfsTime(departureTimeStr);
+          // Keep the service-day offset of times past 24:00
+          int arrivalSeconds = StopTime.parseGtfsSeconds(arrivalTimeStr);
+          int departureSeconds = StopTime.parseGtfsSeconds(departureTimeStr);
 
-          if (arrivalTime != null) {
-            StopTime stopTime = new StopTime(tripId, stopId, arrivalTime, departureTime, stopSequence);
+          if (arrivalSeconds >= 0) {
+            StopTime stopTime = new StopTime(tripId, stopId, arrivalSeconds, departureSeconds, stopSequence);
             stopTimes.add(stopTime);
           } else {
             skippedRecords++;
@@ -27,6 +27,9 @@ public class InMemoryGtfsRepository implements GtfsRepository {
 
   private static final Logger logger = LoggerFactory.getLogger(InMemoryGtfsRepository.class);
 
+  // Free slot of a trip's stop table (no stop ordinal is negative)
+  private static final long EMPTY_SLOT = -1L;
+
   // Primary storage - thread-safe concurrent maps
   private final Map<String, Route> routesById = new ConcurrentHashMap<>();
   private final Map<String, Stop> stopsById = new ConcurrentHashMap<>();
@@ -44,6 +47,9 @@ public class InMemoryGtfsRepository implements GtfsRepository {
   private final Map<String, Map<Integer, List<Trip>>> tripsByRouteAndDirection = new ConcurrentHashMap<>();
   private final Map<String, List<DirectionName>> directionNamesByRoute = new ConcurrentHashMap<>();
 
+  // (trip, stop) -> stop time, rebuilt off to the side and swapped in whole on each load
+  private volatile TripStopIndex tripStopIndex = new TripStopIndex(Map.of(), Map.of(), Map.of());
+
   private volatile long lastLoadTime = 0;
 
   // Route operations
@@ -145,11 +151,25 @@ public class InMemoryGtfsRepository implements GtfsRepository {
     return stopTimesByStopId.getOrDefault(stopId, Collections.emptyList());
   }
 
+  /**
+   * First visit (lowest stop sequence) of a trip to a stop, by a constant-time probe of the trip's table
+   */
   @Override
   public Optional<StopTime> findStopTimeByTripIdAndStopId(String tripId, String stopId) {
-    return findStopTimesByTripId(tripId).stream()
-        .filter(stopTime -> stopId.equals(stopTime.getStopId()))
-        .findFirst();
+    TripStopIndex current = tripStopIndex;
+    Integer stopOrdinal = current.stopOrdinals.get(stopId);
+    long[] table = stopOrdinal != null ? current.positions.get(tripId) : null;
+    if (table == null) {
+      return Optional.empty();
+    }
+
+    int mask = table.length - 1;
+    for (int slot = slotFor(stopOrdinal, mask); table[slot] != EMPTY_SLOT; slot = (slot + 1) & mask) {
+      if ((int) (table[slot] >>> 32) == stopOrdinal) {
+        return Optional.of(current.stopTimes.get(tripId).get((int) table[slot]));
+      }
+    }
+    return Optional.empty();
   }
 
   @Override
@@ -335,10 +355,46 @@ public class InMemoryGtfsRepository implements GtfsRepository {
     stopTimesByTripId.values().forEach(tripStopTimes ->
         tripStopTimes.sort(Comparator.comparingInt(StopTime::getStopSequence)));
 
+    buildTripStopIndex();
+
     lastLoadTime = System.currentTimeMillis();
     logger.info("Loaded {} stop times for {} trips", stopTimes.size(), stopTimesByTripId.size());
   }
 
+  /**
+   * Index every trip's stop times by stop ordinal in a linear-probing table at most
+   * half full; only the first visit is stored, so loop routes resolve to it
+   */
+  private void buildTripStopIndex() {
+    Map<String, Integer> ordinals = new HashMap<>();
+    Map<String, long[]> positions = new HashMap<>();
+    Map<String, List<StopTime>> stopTimes = new HashMap<>();
+    for (Map.Entry<String, List<StopTime>> entry : stopTimesByTripId.entrySet()) {
+      List<StopTime> tripStopTimes = entry.getValue();
+      long[] table = new long[Integer.highestOneBit(Math.max(1, tripStopTimes.size())) * 4];
+      Arrays.fill(table, EMPTY_SLOT);
+      int mask = table.length - 1;
+      for (int i = 0; i < tripStopTimes.size(); i++) {
+        int stopOrdinal = ordinals.computeIfAbsent(tripStopTimes.get(i).getStopId(), k -> ordinals.size());
+        int slot = slotFor(stopOrdinal, mask);
+        while (table[slot] != EMPTY_SLOT && (int) (table[slot] >>> 32) != stopOrdinal) {
+          slot = (slot + 1) & mask;
+        }
+        if (table[slot] == EMPTY_SLOT) {
+          table[slot] = ((long) stopOrdinal << 32) | i;
+        }
+      }
+      positions.put(entry.getKey(), table);
+      stopTimes.put(entry.getKey(), tripStopTimes);
+    }
+    tripStopIndex = new TripStopIndex(ordinals, positions, stopTimes);
+  }
+
+  private static int slotFor(int stopOrdinal, int mask) {
+    int hash = stopOrdinal * 0x9E3779B9; // Dense ordinals: scramble before masking
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+
   @Override
   public void loadShapePoints(List<ShapePoint> shapePoints) {
     logger.debug("Loading {} shape points into repository", shapePoints.size());
@@ -420,4 +476,22 @@ public class InMemoryGtfsRepository implements GtfsRepository {
         lastLoadTime
     );
   }
-}
\ No newline at end of file
+
+  /**
+   * Stop IDs as dense ints, and per trip an open-addressing table of
+   * (stopOrdinal << 32 | position in the trip's stop time list) entries
+   * together with the list they point into; never mutated once published
+   */
+  private static class TripStopIndex {
+    private final Map<String, Integer> stopOrdinals;
+    private final Map<String, long[]> positions;
+    private final Map<String, List<StopTime>> stopTimes;
+
+    TripStopIndex(Map<String, Integer> stopOrdinals, Map<String, long[]> positions,
+        Map<String, List<StopTime>> stopTimes) {
+      this.stopOrdinals = stopOrdinals;
+      this.positions = positions;
+      this.stopTimes = stopTimes;
+    }
+  }
+}
@@ -0,0 +1,388 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.shared.model.VehiclePosition;
+import com.bustracker.tracker.domain.ServiceTime;
+import com.bustracker.tracker.domain.Stop;
+import com.bustracker.tracker.dto.ArrivalsResponseDto;
+import com.bustracker.tracker.dto.RealTimeBusDto;
+import com.bustracker.tracker.dto.ScheduledBusDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maintains a precomputed arrivals board per (route, direction, stop)
+ *
+ * A board is built on the first request for a stop, then kept current by
+ * derived vehicle state updates: only the changed vehicle's entry is
+ * recomputed and a new immutable snapshot is published. Requests read the
+ * published snapshot, so serving a board costs two map lookups regardless of
+ * how many users poll the same stop. Boards nobody asks for are evicted.
+ * A snapshot's version (and ETag) is a hash of its rows, so it only changes
+ * when what a client would see changes.
+ */
+@Service
+public class ArrivalsBoardService implements VehicleStateListener {
+
+  private static final Logger logger = LoggerFactory.getLogger(ArrivalsBoardService.class);
+
+  // Vancouver timezone for GTFS data
+  private static final ZoneId VANCOUVER_TIMEZONE = ZoneId.of("America/Vancouver");
+
+  private static final int SCHEDULE_WINDOW_SECONDS = 3600; // Show next 1 hour of scheduled arrivals
+  private static final int MAX_SCHEDULED_ARRIVALS = 20;
+
+  private final VehicleCorrelationService vehicleCorrelationService;
+  private final ScheduledArrivalService scheduledArrivalService;
+  private final StopDepartureIndex stopDepartureIndex;
+  private final long idleMillis;
+
+  // routeId:directionId -> stopId -> board, so a vehicle update only visits its own route's boards
+  private final Map<String, Map<String, Board>> boardsByRouteDirection = new ConcurrentHashMap<>();
+
+  @Autowired
+  public ArrivalsBoardService(VehicleCorrelationService vehicleCorrelationService,
+      ScheduledArrivalService scheduledArrivalService,
+      StopDepartureIndex stopDepartureIndex,
+      VehicleStateService vehicleStateService,
+      @Value("${tracker.arrivals-board.idle-seconds:600}") long idleSeconds) {
+    this.vehicleCorrelationService = vehicleCorrelationService;
+    this.scheduledArrivalService = scheduledArrivalService;
+    this.stopDepartureIndex = stopDepartureIndex;
+    this.idleMillis = idleSeconds * 1000;
+    vehicleStateService.addListener(this);
+  }
+
+  /**
+   * Get the current snapshot of an existing board
+   * @return snapshot, or empty if no board is maintained for this stop yet
+   */
+  public Optional<BoardSnapshot> getBoard(String routeId, int directionId, String stopId) {
+    Map<String, Board> boards = boardsByRouteDirection.get(routeDirectionKey(routeId, directionId));
+    Board board = boards != null ? boards.get(stopId) : null;
+    BoardSnapshot snapshot = board != null ? board.snapshot : null;
+    if (snapshot == null) {
+      return Optional.empty(); // none yet, or still being built
+    }
+    board.lastAccessMillis = System.currentTimeMillis();
+    return Optional.of(snapshot);
+  }
+
+  /**
+   * Create (or return the existing) board for a validated route/direction/stop
+   * The empty board is registered before it is built, under its own lock, so
+   * vehicle updates that arrive meanwhile wait for the build and then apply on
+   * top of it instead of being lost.
+   */
+  public BoardSnapshot createBoard(String routeId, int directionId, Stop stop,
+      ArrivalsResponseDto.RouteInfoDto routeInfo) {
+    Map<String, Board> boards = boardsByRouteDirection
+        .computeIfAbsent(routeDirectionKey(routeId, directionId), k -> new ConcurrentHashMap<>());
+    Board board = boards.get(stop.getStopId());
+    if (board == null) {
+      Board created = new Board(routeId, directionId, stop, routeInfo);
+      synchronized (created) {
+        board = boards.putIfAbsent(stop.getStopId(), created);
+        if (board == null) {
+          board = created;
+          try {
+            buildBoard(created);
+          } catch (RuntimeException e) {
+            boards.remove(stop.getStopId(), created); // let the next request retry
+            throw e;
+          }
+        }
+      }
+    }
+    // Waits for a build still running on another thread
+    synchronized (board) {
+      board.lastAccessMillis = System.currentTimeMillis();
+      return board.snapshot;
+    }
+  }
+
+  @Override
+  public void onVehicleStateChanged(VehicleState previous, VehicleState current) {
+    String vehicleId = current.getVehicleId();
+    String currentKey = routeDirectionKey(current.getRouteId(), current.getDirectionId());
+
+    // Vehicle switched route or direction (new trip) - drop it from its old boards
+    if (previous != null) {
+      String previousKey = routeDirectionKey(previous.getRouteId(), previous.getDirectionId());
+      Map<String, Board> oldBoards = boardsByRouteDirection.get(previousKey);
+      if (oldBoards != null && !previousKey.equals(currentKey)) {
+        for (Board board : oldBoards.values()) {
+          synchronized (board) {
+            if (board.entries.remove(vehicleId) != null) {
+              publish(board);
+            }
+          }
+        }
+      }
+    }
+
+    // Most updates are for route-directions nobody is watching
+    Map<String, Board> boards = boardsByRouteDirection.get(currentKey);
+    if (boards == null || boards.isEmpty()) {
+      return;
+    }
+
+    // Evaluate the vehicle against every board first, then correlate all approaches with the schedule at once
+    List<Board> affected = new ArrayList<>(boards.size());
+    List<VehicleCorrelationService.ApproachingVehicle> approaches = new ArrayList<>(boards.size());
+    ScheduledArrivalService.DelayBatch delays = new ScheduledArrivalService.DelayBatch(boards.size());
+    for (Board board : boards.values()) {
+      var approach = vehicleCorrelationService.findApproach(current, board.stop);
+      affected.add(board);
+      approaches.add(approach.orElse(null));
+      if (approach.isPresent()) {
+        addToBatch(delays, approach.get(), board.stop.getStopId());
+      }
+    }
+    scheduledArrivalService.calculateDelays(delays);
+
+    int index = 0;
+    for (int i = 0; i < affected.size(); i++) {
+      Board board = affected.get(i);
+      var approach = approaches.get(i);
+      synchronized (board) {
+        if (approach != null) {
+          board.entries.put(vehicleId, new Entry(toRealTimeBus(approach, delays, index++), current.getPosition()));
+        } else if (board.entries.remove(vehicleId) == null) {
+          continue;
+        }
+        publish(board);
+      }
+    }
+  }
+
+  /**
+   * Once a minute: evict idle boards, drop vehicles that stopped reporting and
+   * roll the scheduled part of every board forward
+   */
+  @Scheduled(cron = "0 * * * * *")
+  public void refreshBoards() {
+    long now = System.currentTimeMillis();
+    int evicted = 0;
+    int refreshed = 0;
+
+    for (Map<String, Board> boards : boardsByRouteDirection.values()) {
+      for (var iterator = boards.values().iterator(); iterator.hasNext(); ) {
+        Board board = iterator.next();
+        if (now - board.lastAccessMillis > idleMillis) {
+          iterator.remove();
+          evicted++;
+          continue;
+        }
+        List<ScheduledBusDto> scheduledBuses = getScheduledArrivals(board.routeId, board.directionId, board.stop.getStopId());
+        synchronized (board) {
+          board.entries.values().removeIf(entry ->
+              !vehicleCorrelationService.isVehicleDataFresh(entry.position));
+          board.scheduledBuses = scheduledBuses;
+          publish(board);
+        }
+        refreshed++;
+      }
+    }
+
+    if (evicted > 0 || refreshed > 0) {
+      logger.debug("Arrivals boards: refreshed {}, evicted {} idle", refreshed, evicted);
+    }
+  }
+
+  /**
+   * Fill a new board from the current vehicle states and the schedule (caller holds the board lock)
+   */
+  private void buildBoard(Board board) {
+    String routeId = board.routeId;
+    int directionId = board.directionId;
+    Stop stop = board.stop;
+    var approachingVehicles = vehicleCorrelationService.findVehiclesApproachingStop(routeId, directionId, stop.getStopId());
+    ScheduledArrivalService.DelayBatch delays = new ScheduledArrivalService.DelayBatch(approachingVehicles.size());
+    for (var approachingVehicle : approachingVehicles) {
+      addToBatch(delays, approachingVehicle, stop.getStopId());
+    }
+    scheduledArrivalService.calculateDelays(delays);
+    for (int i = 0; i < approachingVehicles.size(); i++) {
+      var approachingVehicle = approachingVehicles.get(i);
+      board.entries.put(approachingVehicle.getVehicle().getVehicleId(),
+          new Entry(toRealTimeBus(approachingVehicle, delays, i), approachingVehicle.getVehicle()));
+    }
+    board.scheduledBuses = getScheduledArrivals(routeId, directionId, stop.getStopId());
+    publish(board);
+
+    logger.debug("Created arrivals board for stop {} on route {} direction {} ({} real-time)",
+        stop.getStopName(), routeId, directionId, board.entries.size());
+  }
+
+  /**
+   * Publish a new immutable snapshot of a board, unless its rows are unchanged (caller holds the board lock)
+   */
+  private void publish(Board board) {
+    List<RealTimeBusDto> realTimeBuses = board.entries.values().stream()
+        .map(entry -> entry.bus)
+        .sorted(Comparator.comparingDouble(RealTimeBusDto::getDistanceMeters))
+        .toList();
+    long version = contentHash(realTimeBuses, board.scheduledBuses);
+    if (board.snapshot != null && board.snapshot.getVersion() == version) {
+      return;
+    }
+    var response = new ArrivalsResponseDto(board.routeInfo, board.stopInfo, realTimeBuses, board.scheduledBuses);
+    board.snapshot = new BoardSnapshot(response, version);
+  }
+
+  /**
+   * 64-bit hash of every field of a board's rows (route and stop info are fixed per board)
+   */
+  static long contentHash(List<RealTimeBusDto> realTimeBuses, List<ScheduledBusDto> scheduledBuses) {
+    long hash = 1125899906842597L;
+    for (RealTimeBusDto bus : realTimeBuses) {
+      hash = 31 * hash + Objects.hash(bus.getVehicleId(), bus.getTripId(), bus.getEtaMinutes(), bus.getEtaSeconds(),
+          bus.getDistanceMeters(), bus.getCurrentStatus(), bus.getLastUpdated(), bus.getScheduledArrival(),
+          bus.getDelayMinutes(), bus.getDelayStatus());
+    }
+    hash = 31 * hash + realTimeBuses.size();
+    for (ScheduledBusDto bus : scheduledBuses) {
+      hash = 31 * hash + Objects.hash(bus.getScheduledArrival(), bus.getEtaMinutes(), bus.isRealTime());
+    }
+    return 31 * hash + scheduledBuses.size();
+  }
+
+  private static void addToBatch(ScheduledArrivalService.DelayBatch delays,
+      VehicleCorrelationService.ApproachingVehicle av, String stopId) {
+    delays.add(av.getVehicle().getTripId(), stopId,
+        av.hasScheduledArrival() ? av.getScheduledArrival().getScheduledSeconds() : ScheduledArrivalService.DelayBatch.UNSCHEDULED,
+        av.getEtaResult().getEtaSeconds());
+  }
+
+  /**
+   * Convert an approaching vehicle to its DTO, with its schedule correlation from a computed delay batch
+   */
+  private RealTimeBusDto toRealTimeBus(VehicleCorrelationService.ApproachingVehicle av,
+      ScheduledArrivalService.DelayBatch delays, int index) {
+    var vehicle = av.getVehicle();
+    var etaResult = av.getEtaResult();
+
+    // Extract scheduled time information
+    boolean scheduled = delays.hasSchedule(index);
+    var scheduledArrival = scheduled ? ServiceTime.toLocalTime(delays.getScheduledSeconds(index)) : null;
+    var delayMinutes = scheduled ? Integer.valueOf(delays.getDelayMinutes(index)) : null;
+    var delayStatus = scheduled ? delays.getStatus(index).getDisplayName() : null;
+
+    return new RealTimeBusDto(
+        vehicle.getVehicleId(),
+        vehicle.getTripId(),
+        etaResult.getEtaMinutes(),
+        etaResult.getEtaSeconds(),
+        etaResult.getDistanceMeters(),
+        vehicle.getCurrentStatus(),
+        av.getCalculatedAt(),
+        scheduledArrival,
+        delayMinutes,
+        delayStatus
+    );
+  }
+
+  /**
+   * Scheduled arrivals of this route and direction at a stop in the next hour, from the
+   * departure index built at load time (other routes serving the stop are not scanned)
+   * Only trips whose service runs on their service date (calendar.txt + calendar_dates.txt)
+   */
+  private List<ScheduledBusDto> getScheduledArrivals(String routeId, int directionId, String stopId) {
+    logger.debug("Getting scheduled arrivals for route {} direction {} at stop {} in next hour (active services only)",
+        routeId, directionId, stopId);
+
+    try {
+      List<ScheduledBusDto> scheduledBuses = new ArrayList<>();
+      for (var departure : stopDepartureIndex.findDepartures(routeId, directionId, stopId,
+          ZonedDateTime.now(VANCOUVER_TIMEZONE), SCHEDULE_WINDOW_SECONDS, MAX_SCHEDULED_ARRIVALS)) {
+        LocalTime scheduledTime = LocalTime.ofInstant(ServiceTime.toInstant(
+            departure.getStopTime().getArrivalSeconds(), departure.getServiceDate(), VANCOUVER_TIMEZONE), VANCOUVER_TIMEZONE);
+        scheduledBuses.add(new ScheduledBusDto(scheduledTime, departure.getSecondsUntil() / 60, false));
+      }
+      return scheduledBuses;
+
+    } catch (Exception e) {
+      logger.error("Error getting scheduled arrivals for route {} direction {} at stop {}", routeId, directionId, stopId, e);
+      return new ArrayList<>(); // Return empty list on error
+    }
+  }
+
+  private static String routeDirectionKey(String routeId, Integer directionId) {
+    return routeId + ":" + directionId;
+  }
+
+  /**
+   * Mutable board state; only the published snapshot is visible to readers
+   */
+  private static class Board {
+    private final String routeId;
+    private final int directionId;
+    private final Stop stop;
+    private final ArrivalsResponseDto.RouteInfoDto routeInfo;
+    private final ArrivalsResponseDto.StopInfoDto stopInfo;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private List<ScheduledBusDto> scheduledBuses = List.of();
+    private volatile BoardSnapshot snapshot;
+    private volatile long lastAccessMillis = System.currentTimeMillis();
+
+    private Board(String routeId, int directionId, Stop stop, ArrivalsResponseDto.RouteInfoDto routeInfo) {
+      this.routeId = routeId;
+      this.directionId = directionId;
+      this.stop = stop;
+      this.routeInfo = routeInfo;
+      this.stopInfo = new ArrivalsResponseDto.StopInfoDto(stop.getStopId(), stop.getStopName());
+    }
+  }
+
+  private static class Entry {
+    private final RealTimeBusDto bus;
+    private final VehiclePosition position;
+
+    private Entry(RealTimeBusDto bus, VehiclePosition position) {
+      this.bus = bus;
+      this.position = position;
+    }
+  }
+
+  /**
+   * Immutable published version of a board
+   */
+  public static class BoardSnapshot {
+    private final ArrivalsResponseDto response;
+    private final long version;
+    private final String eTag;
+
+    public BoardSnapshot(ArrivalsResponseDto response, long version) {
+      this.response = response;
+      this.version = version;
+      this.eTag = "\"" + Long.toHexString(version) + "\"";
+    }
+
+    /**
+     * True if an If-None-Match header value matches this snapshot
+     */
+    public boolean matches(String ifNoneMatch) {
+      return ifNoneMatch != null && (ifNoneMatch.trim().equals("*") || ifNoneMatch.contains(eTag));
+    }
+
+    public ArrivalsResponseDto getResponse() { return response; }
+    public long getVersion() { return version; }
+    public String getETag() { return eTag; }
+  }
+}
@@ -0,0 +1,185 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.tracker.domain.Calendar;
+import com.bustracker.tracker.domain.CalendarDate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * calendar.txt and calendar_dates.txt compiled per service ordinal
+ *
+ * Dates are epoch days (ints), the weekly pattern is a 7-bit day-of-week mask,
+ * and exceptions are sorted epoch-day arrays searched by binary search, so
+ * evaluating a service for a date allocates nothing. Services from calendar.txt
+ * take ordinals [0, calendarServiceCount); services that only appear in
+ * calendar_dates.txt follow. Immutable once compiled.
+ */
+public final class CompiledCalendars {
+
+  private static final int[] NO_DAYS = new int[0];
+
+  private final Map<String, Integer> ordinals;
+  private final int calendarServiceCount;
+  private final int[] startDays;
+  private final int[] endDays;
+  private final byte[] dayMasks;
+  private final int[][] addedDays;
+  private final int[][] removedDays;
+  private final int[] exceptionDays;
+
+  private CompiledCalendars(Map<String, Integer> ordinals, int calendarServiceCount, int[] startDays, int[] endDays,
+      byte[] dayMasks, int[][] addedDays, int[][] removedDays, int[] exceptionDays) {
+    this.ordinals = ordinals;
+    this.calendarServiceCount = calendarServiceCount;
+    this.startDays = startDays;
+    this.endDays = endDays;
+    this.dayMasks = dayMasks;
+    this.addedDays = addedDays;
+    this.removedDays = removedDays;
+    this.exceptionDays = exceptionDays;
+  }
+
+  public static CompiledCalendars compile(List<Calendar> calendars, List<CalendarDate> calendarDates) {
+    Map<String, Integer> ordinals = new HashMap<>();
+    List<Calendar> regular = new ArrayList<>(calendars.size());
+    for (Calendar calendar : calendars) {
+      if (ordinals.putIfAbsent(calendar.getServiceId(), ordinals.size()) == null) {
+        regular.add(calendar);
+      }
+    }
+    int calendarServiceCount = ordinals.size();
+    for (CalendarDate calendarDate : calendarDates) {
+      ordinals.putIfAbsent(calendarDate.getServiceId(), ordinals.size());
+    }
+
+    int serviceCount = ordinals.size();
+    int[] startDays = new int[serviceCount];
+    int[] endDays = new int[serviceCount];
+    byte[] dayMasks = new byte[serviceCount];
+    // Exception-only services never match the weekly pattern: empty range
+    Arrays.fill(startDays, Integer.MAX_VALUE);
+    Arrays.fill(endDays, Integer.MIN_VALUE);
+    for (int i = 0; i < regular.size(); i++) {
+      Calendar calendar = regular.get(i);
+      startDays[i] = (int) calendar.getStartDate().toEpochDay();
+      endDays[i] = (int) calendar.getEndDate().toEpochDay();
+      dayMasks[i] = (byte) calendar.getDayOfWeekMask();
+    }
+
+    int[] addedCounts = new int[serviceCount];
+    int[] removedCounts = new int[serviceCount];
+    for (CalendarDate calendarDate : calendarDates) {
+      int ordinal = ordinals.get(calendarDate.getServiceId());
+      if (calendarDate.isServiceAdded()) {
+        addedCounts[ordinal]++;
+      } else {
+        removedCounts[ordinal]++;
+      }
+    }
+    int[][] addedDays = new int[serviceCount][];
+    int[][] removedDays = new int[serviceCount][];
+    for (int i = 0; i < serviceCount; i++) {
+      addedDays[i] = addedCounts[i] == 0 ? NO_DAYS : new int[addedCounts[i]];
+      removedDays[i] = removedCounts[i] == 0 ? NO_DAYS : new int[removedCounts[i]];
+    }
+    Arrays.fill(addedCounts, 0);
+    Arrays.fill(removedCounts, 0);
+    int[] exceptionDays = new int[calendarDates.size()];
+    int exceptionCount = 0;
+    for (CalendarDate calendarDate : calendarDates) {
+      int ordinal = ordinals.get(calendarDate.getServiceId());
+      int day = (int) calendarDate.getDate().toEpochDay();
+      if (calendarDate.isServiceAdded()) {
+        addedDays[ordinal][addedCounts[ordinal]++] = day;
+      } else {
+        removedDays[ordinal][removedCounts[ordinal]++] = day;
+      }
+      exceptionDays[exceptionCount++] = day;
+    }
+    for (int i = 0; i < serviceCount; i++) {
+      Arrays.sort(addedDays[i]);
+      Arrays.sort(removedDays[i]);
+    }
+    Arrays.sort(exceptionDays);
+
+    return new CompiledCalendars(Map.copyOf(ordinals), calendarServiceCount, startDays, endDays, dayMasks,
+        addedDays, removedDays, exceptionDays);
+  }
+
+  /**
+   * Ordinal of a service, or -1 if it appears in neither file
+   */
+  public int ordinal(String serviceId) {
+    Integer ordinal = ordinals.get(serviceId);
+    return ordinal == null ? -1 : ordinal;
+  }
+
+  public boolean isActive(String serviceId, LocalDate date) {
+    int ordinal = ordinal(serviceId);
+    return ordinal >= 0 && isActive(ordinal, (int) date.toEpochDay(), dayBit(date));
+  }
+
+  /**
+   * Evaluate every service for a date into the bitset (cleared first), indexed by ordinal
+   */
+  public void evaluate(LocalDate date, BitSet activeServices) {
+    activeServices.clear();
+    int day = (int) date.toEpochDay();
+    int dayBit = dayBit(date);
+    for (int ordinal = 0; ordinal < startDays.length; ordinal++) {
+      if (isActive(ordinal, day, dayBit)) {
+        activeServices.set(ordinal);
+      }
+    }
+  }
+
+  /**
+   * Number of calendar_dates.txt exceptions on a date
+   */
+  public int countExceptions(LocalDate date) {
+    int day = (int) date.toEpochDay();
+    return lowerBound(exceptionDays, day + 1) - lowerBound(exceptionDays, day);
+  }
+
+  /**
+   * Ordinals of every compiled service, shared (read-only)
+   */
+  public Map<String, Integer> getOrdinals() { return ordinals; }
+  public int getServiceCount() { return startDays.length; }
+  public int getCalendarServiceCount() { return calendarServiceCount; }
+
+  private boolean isActive(int ordinal, int day, int dayBit) {
+    // Exceptions take precedence over the weekly pattern
+    if (Arrays.binarySearch(removedDays[ordinal], day) >= 0) {
+      return false;
+    }
+    if (Arrays.binarySearch(addedDays[ordinal], day) >= 0) {
+      return true;
+    }
+    return day >= startDays[ordinal] & day <= endDays[ordinal] & (dayMasks[ordinal] & dayBit) != 0;
+  }
+
+  private static int dayBit(LocalDate date) {
+    return 1 << (date.getDayOfWeek().getValue() - 1);
+  }
+
+  private static int lowerBound(int[] days, int day) {
+    int low = 0;
+    int high = days.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (days[mid] < day) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
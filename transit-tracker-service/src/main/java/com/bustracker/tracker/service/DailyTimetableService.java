@@ -0,0 +1,302 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.tracker.domain.ServiceTime;
+import com.bustracker.tracker.domain.StopTime;
+import com.bustracker.tracker.domain.Trip;
+import com.bustracker.tracker.repository.GtfsRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Today's timetable, materialized per route and direction
+ *
+ * Once per service day the trips that run on that date are resolved against
+ * calendar.txt / calendar_dates.txt and their stop times converted to absolute
+ * epoch seconds. The build runs on a background thread at midnight and is
+ * swapped in whole; the previous day is kept alongside it until its last
+ * overnight trip (times past 24:00) has finished, then released.
+ * Readers never lock and never evaluate calendars. Schedule queries (the
+ * stop departure index behind the arrivals boards) ask this service which
+ * trips run on a date; only dates other than the materialized ones fall
+ * back to ServiceCalendarService.
+ */
+@Service
+public class DailyTimetableService {
+
+  private static final Logger logger = LoggerFactory.getLogger(DailyTimetableService.class);
+
+  private static final ZoneId VANCOUVER_TIMEZONE = ZoneId.of("America/Vancouver");
+
+  private final GtfsRepository gtfsRepository;
+  private final ServiceCalendarService serviceCalendarService;
+  private final ExecutorService builder = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "timetable-builder");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private volatile Timetables timetables = Timetables.EMPTY;
+
+  @Autowired
+  public DailyTimetableService(GtfsRepository gtfsRepository, ServiceCalendarService serviceCalendarService) {
+    this.gtfsRepository = gtfsRepository;
+    this.serviceCalendarService = serviceCalendarService;
+  }
+
+  /**
+   * Build today's and yesterday's timetables (after GTFS load)
+   */
+  public void rebuild() {
+    rebuild(LocalDate.now(VANCOUVER_TIMEZONE), System.currentTimeMillis() / 1000);
+  }
+
+  void rebuild(LocalDate today, long nowEpochSecond) {
+    DailyTimetable yesterday = build(today.minusDays(1));
+    DailyTimetable current = build(today);
+    synchronized (this) {
+      timetables = new Timetables(current, yesterday.getLastArrivalEpochSecond() >= nowEpochSecond ? yesterday : null);
+    }
+  }
+
+  /**
+   * Materialize the new service date off the scheduler thread
+   */
+  @Scheduled(cron = "0 0 0 * * *", zone = "America/Vancouver")
+  public void scheduleRollover() {
+    LocalDate today = LocalDate.now(VANCOUVER_TIMEZONE);
+    builder.execute(() -> {
+      try {
+        rollover(today);
+      } catch (Exception e) {
+        logger.error("Failed to build timetable for {}", today, e);
+      }
+    });
+  }
+
+  void rollover(LocalDate today) {
+    if (today.equals(timetables.current.getServiceDate())) {
+      return;
+    }
+    DailyTimetable next = build(today);
+    synchronized (this) {
+      timetables = new Timetables(next, timetables.current);
+    }
+  }
+
+  /**
+   * Drop the previous service day once its last overnight trip has arrived
+   */
+  @Scheduled(fixedDelay = 60_000, initialDelay = 60_000)
+  public void releaseFinishedDay() {
+    releaseFinishedDay(System.currentTimeMillis() / 1000);
+  }
+
+  synchronized void releaseFinishedDay(long nowEpochSecond) {
+    DailyTimetable previous = timetables.previous;
+    if (previous != null && previous.getLastArrivalEpochSecond() < nowEpochSecond) {
+      timetables = new Timetables(timetables.current, null);
+      logger.info("Released timetable for {} after its last overnight trip", previous.getServiceDate());
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    builder.shutdownNow();
+  }
+
+  /**
+   * Trips of a route and direction that have not finished yet: the rest of the
+   * previous service day's overnight tail, then today's trips, by first departure
+   */
+  public List<TimetableTrip> getTrips(String routeId, int directionId, long nowEpochSecond) {
+    Timetables current = timetables;
+    String key = key(routeId, directionId);
+
+    List<TimetableTrip> result = new ArrayList<>();
+    if (current.previous != null) {
+      for (TimetableTrip trip : current.previous.byRouteDirection.getOrDefault(key, List.of())) {
+        if (trip.getLastArrivalEpochSecond() >= nowEpochSecond) {
+          result.add(trip);
+        }
+      }
+    }
+    result.addAll(current.current.byRouteDirection.getOrDefault(key, List.of()));
+    return result;
+  }
+
+  /**
+   * Check if a trip runs on a service date, from the materialized day when it is
+   * today or the previous day still held, otherwise from the service calendar
+   */
+  public boolean isTripActiveOnDate(String tripId, LocalDate serviceDate) {
+    Timetables current = timetables;
+    if (serviceDate.equals(current.current.serviceDate)) {
+      return current.current.activeTripIds.contains(tripId);
+    }
+    if (current.previous != null && serviceDate.equals(current.previous.serviceDate)) {
+      return current.previous.activeTripIds.contains(tripId);
+    }
+    return serviceCalendarService.isTripActiveOnDate(tripId, serviceDate);
+  }
+
+  /**
+   * Today's materialized timetable (read-only)
+   */
+  public DailyTimetable getCurrent() {
+    return timetables.current;
+  }
+
+  /**
+   * Previous service day, or null once its overnight tail has ended
+   */
+  public DailyTimetable getPrevious() {
+    return timetables.previous;
+  }
+
+  DailyTimetable build(LocalDate serviceDate) {
+    long start = System.currentTimeMillis();
+
+    Map<String, List<TimetableTrip>> byRouteDirection = new HashMap<>();
+    Set<String> activeTripIds = new HashSet<>();
+    long lastArrival = Long.MIN_VALUE;
+    int tripCount = 0;
+    for (Trip trip : gtfsRepository.findAllTrips()) {
+      if (!serviceCalendarService.isTripActiveOnDate(trip.getTripId(), serviceDate)) {
+        continue;
+      }
+      activeTripIds.add(trip.getTripId());
+      List<StopTime> stopTimes = gtfsRepository.findStopTimesByTripId(trip.getTripId());
+      if (stopTimes.isEmpty()) {
+        continue;
+      }
+
+      String[] stopIds = new String[stopTimes.size()];
+      long[] arrivals = new long[stopTimes.size()];
+      for (int i = 0; i < stopIds.length; i++) {
+        StopTime stopTime = stopTimes.get(i);
+        stopIds[i] = stopTime.getStopId();
+        arrivals[i] = ServiceTime.toEpochSecond(stopTime.getArrivalSeconds(), serviceDate, VANCOUVER_TIMEZONE);
+      }
+      TimetableTrip timetableTrip = new TimetableTrip(trip.getTripId(), trip.getRouteId(), trip.getDirectionId(),
+          serviceDate, stopIds, arrivals);
+      byRouteDirection.computeIfAbsent(key(trip.getRouteId(), trip.getDirectionId()), k -> new ArrayList<>())
+          .add(timetableTrip);
+      lastArrival = Math.max(lastArrival, timetableTrip.getLastArrivalEpochSecond());
+      tripCount++;
+    }
+
+    byRouteDirection.replaceAll((key, trips) -> {
+      trips.sort(Comparator.comparingLong(TimetableTrip::getFirstDepartureEpochSecond));
+      return List.copyOf(trips);
+    });
+
+    DailyTimetable timetable = new DailyTimetable(serviceDate, byRouteDirection, activeTripIds, tripCount,
+        lastArrival);
+    logger.info("Built timetable for {} in {}ms: {} trips on {} route/directions",
+        serviceDate, System.currentTimeMillis() - start, tripCount, byRouteDirection.size());
+    return timetable;
+  }
+
+  private static String key(String routeId, int directionId) {
+    return routeId + ":" + directionId;
+  }
+
+  /**
+   * Active trips of one service date, grouped by route and direction
+   */
+  public static class DailyTimetable {
+    private static final DailyTimetable EMPTY = new DailyTimetable(null, Map.of(), Set.of(), 0, Long.MIN_VALUE);
+
+    private final LocalDate serviceDate;
+    private final Map<String, List<TimetableTrip>> byRouteDirection;
+    private final Set<String> activeTripIds; // including active trips without stop times
+    private final int tripCount;
+    private final long lastArrivalEpochSecond;
+
+    private DailyTimetable(LocalDate serviceDate, Map<String, List<TimetableTrip>> byRouteDirection,
+        Set<String> activeTripIds, int tripCount, long lastArrivalEpochSecond) {
+      this.serviceDate = serviceDate;
+      this.byRouteDirection = byRouteDirection;
+      this.activeTripIds = activeTripIds;
+      this.tripCount = tripCount;
+      this.lastArrivalEpochSecond = lastArrivalEpochSecond;
+    }
+
+    public List<TimetableTrip> getTrips(String routeId, int directionId) {
+      return byRouteDirection.getOrDefault(key(routeId, directionId), List.of());
+    }
+
+    public LocalDate getServiceDate() { return serviceDate; }
+    public int getTripCount() { return tripCount; }
+    public long getLastArrivalEpochSecond() { return lastArrivalEpochSecond; }
+
+    @Override
+    public String toString() {
+      return String.format("DailyTimetable{date=%s, trips=%d, routeDirections=%d}",
+          serviceDate, tripCount, byRouteDirection.size());
+    }
+  }
+
+  /**
+   * One trip on one service date, stop arrivals as epoch seconds in stop sequence order
+   */
+  public static class TimetableTrip {
+    private final String tripId;
+    private final String routeId;
+    private final int directionId;
+    private final LocalDate serviceDate;
+    private final String[] stopIds;
+    private final long[] arrivalEpochSeconds;
+
+    private TimetableTrip(String tripId, String routeId, int directionId, LocalDate serviceDate,
+        String[] stopIds, long[] arrivalEpochSeconds) {
+      this.tripId = tripId;
+      this.routeId = routeId;
+      this.directionId = directionId;
+      this.serviceDate = serviceDate;
+      this.stopIds = stopIds;
+      this.arrivalEpochSeconds = arrivalEpochSeconds;
+    }
+
+    public String getTripId() { return tripId; }
+    public String getRouteId() { return routeId; }
+    public int getDirectionId() { return directionId; }
+    public LocalDate getServiceDate() { return serviceDate; }
+    public int getStopCount() { return stopIds.length; }
+    public String getStopId(int index) { return stopIds[index]; }
+    public long getArrivalEpochSecond(int index) { return arrivalEpochSeconds[index]; }
+    public long getFirstDepartureEpochSecond() { return arrivalEpochSeconds[0]; }
+    public long getLastArrivalEpochSecond() { return arrivalEpochSeconds[arrivalEpochSeconds.length - 1]; }
+  }
+
+  /**
+   * Current and (until its overnight tail ends) previous day, swapped as one
+   */
+  private static class Timetables {
+    private static final Timetables EMPTY = new Timetables(DailyTimetable.EMPTY, null);
+
+    private final DailyTimetable current;
+    private final DailyTimetable previous;
+
+    private Timetables(DailyTimetable current, DailyTimetable previous) {
+      this.current = current;
+      this.previous = previous;
+    }
+  }
+}
@@ -0,0 +1,333 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.tracker.domain.ServiceTime;
+import com.bustracker.tracker.repository.GtfsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Live headways and bunching per route and direction
+ *
+ * Fed by derived vehicle states: each route-direction keeps its matched vehicles
+ * ordered by distance along the shape, so a position update is a remove and an
+ * insert in a sorted set (O(log n)). Distances are only comparable along one
+ * shape, so branches and short turns of a route-direction are ordered
+ * separately and no headway is reported between them. Headways between
+ * consecutive vehicles are derived on read and compared with the scheduled
+ * headway of the two trips at the follower's next stop (stop_times.txt).
+ */
+@Service
+public class HeadwayAnalyticsService implements VehicleStateListener {
+
+  private static final Logger logger = LoggerFactory.getLogger(HeadwayAnalyticsService.class);
+
+  private static final ZoneId VANCOUVER_TIMEZONE = ZoneId.of("America/Vancouver");
+
+  // Actual/scheduled headway ratios outside these bounds are reported as bunched or gapped
+  private static final double BUNCHED_RATIO = 0.5;
+  private static final double GAP_RATIO = 1.5;
+
+  private static final Comparator<Progress> BY_PROGRESS = Comparator
+      .comparingDouble((Progress progress) -> progress.shapeDistanceM)
+      .thenComparing(progress -> progress.state.getVehicleId());
+
+  private final GtfsRepository gtfsRepository;
+  private final VehicleCorrelationService vehicleCorrelationService;
+  private final EtaCalculationService etaCalculationService;
+  // routeId:directionId -> shapeId -> vehicles on that shape by progress
+  private final Map<String, Map<String, ShapeOrder>> routeDirections = new ConcurrentHashMap<>();
+
+  @Autowired
+  public HeadwayAnalyticsService(GtfsRepository gtfsRepository, VehicleStateService vehicleStateService,
+      VehicleCorrelationService vehicleCorrelationService, EtaCalculationService etaCalculationService) {
+    this.gtfsRepository = gtfsRepository;
+    this.vehicleCorrelationService = vehicleCorrelationService;
+    this.etaCalculationService = etaCalculationService;
+    vehicleStateService.addListener(this);
+  }
+
+  @Override
+  public void onVehicleStateChanged(VehicleState previous, VehicleState current) {
+    boolean ordered = isOrdered(current);
+    if (previous != null && isOrdered(previous) && (!ordered
+        || !key(previous.getRouteId(), previous.getDirectionId()).equals(key(current.getRouteId(), current.getDirectionId()))
+        || !shapeKey(previous).equals(shapeKey(current)))) {
+      ShapeOrder old = findOrder(previous);
+      if (old != null) {
+        old.remove(current.getVehicleId());
+      }
+    }
+    if (ordered) {
+      routeDirections.computeIfAbsent(key(current.getRouteId(), current.getDirectionId()), k -> new ConcurrentHashMap<>())
+          .computeIfAbsent(shapeKey(current), k -> new ShapeOrder())
+          .update(current);
+    }
+  }
+
+  @Override
+  public void onVehicleStateRemoved(VehicleState last) {
+    ShapeOrder order = isOrdered(last) ? findOrder(last) : null;
+    if (order != null) {
+      order.remove(last.getVehicleId(), last);
+    }
+  }
+
+  /**
+   * Headways of both directions of a route, leading vehicle first (per shape)
+   */
+  public RouteHeadways getRouteHeadways(String routeId) {
+    return getRouteHeadways(routeId, System.currentTimeMillis() / 1000);
+  }
+
+  RouteHeadways getRouteHeadways(String routeId, long nowEpochSecond) {
+    List<DirectionHeadways> directions = new ArrayList<>(2);
+    for (int directionId = 0; directionId <= 1; directionId++) {
+      Map<String, ShapeOrder> shapes = routeDirections.get(key(routeId, directionId));
+      if (shapes != null) {
+        directions.add(computeHeadways(directionId, shapes.values(), nowEpochSecond));
+      }
+    }
+    RouteHeadways routeHeadways = new RouteHeadways(routeId, nowEpochSecond, directions);
+    logger.debug("Computed {}", routeHeadways);
+    return routeHeadways;
+  }
+
+  private DirectionHeadways computeHeadways(int directionId, Collection<ShapeOrder> shapes, long nowEpochSecond) {
+    List<Headway> headways = new ArrayList<>();
+    int vehicleCount = 0;
+    int bunched = 0;
+    int gaps = 0;
+    for (ShapeOrder shape : shapes) {
+      // Evicted vehicles leave via onVehicleStateRemoved; ones that merely went quiet are skipped here
+      List<VehicleState> fresh = new ArrayList<>();
+      for (VehicleState state : shape.snapshotLeadingFirst()) {
+        if (vehicleCorrelationService.isVehicleDataFresh(state.getPosition())) {
+          fresh.add(state);
+        }
+      }
+
+      vehicleCount += fresh.size();
+      for (int i = 1; i < fresh.size(); i++) {
+        Headway headway = headway(fresh.get(i - 1), fresh.get(i), nowEpochSecond);
+        if (headway.getStatus() == HeadwayStatus.BUNCHED) {
+          bunched++;
+        } else if (headway.getStatus() == HeadwayStatus.GAP) {
+          gaps++;
+        }
+        headways.add(headway);
+      }
+    }
+    return new DirectionHeadways(directionId, vehicleCount, bunched, gaps, headways);
+  }
+
+  private Headway headway(VehicleState leader, VehicleState follower, long nowEpochSecond) {
+    double distanceM = Math.max(0.0, leader.getShapeDistanceM() - follower.getShapeDistanceM());
+
+    // Scheduled gap between the two trips at the stop the follower reaches next
+    Integer scheduledSeconds = null;
+    TripGeometry followerGeometry = follower.getGeometry();
+    int stopIndex = follower.getNextStopIndex();
+    if (stopIndex < followerGeometry.getStopCount()) {
+      String stopId = followerGeometry.getStopId(stopIndex);
+      // Each trip on its own service date, so a late-night leader and an after-midnight follower compare
+      long followerScheduled = scheduledEpochSecond(followerGeometry.getScheduledArrivalSeconds(stopIndex), nowEpochSecond);
+      scheduledSeconds = gtfsRepository.findStopTimeByTripIdAndStopId(leader.getTripId(), stopId)
+          .map(leaderStopTime -> (int) (followerScheduled
+              - scheduledEpochSecond(leaderStopTime.getArrivalSeconds(), nowEpochSecond)))
+          .filter(seconds -> seconds > 0)
+          .orElse(null);
+    }
+
+    // Scheduled headway corrected by the two delays when known, otherwise travel time over the gap
+    int actualSeconds = scheduledSeconds != null && leader.getDelaySeconds() != null && follower.getDelaySeconds() != null
+        ? Math.max(0, scheduledSeconds + follower.getDelaySeconds() - leader.getDelaySeconds())
+        : etaCalculationService.calculateEtaSeconds(distanceM);
+
+    HeadwayStatus status = HeadwayStatus.UNKNOWN;
+    if (scheduledSeconds != null) {
+      double ratio = (double) actualSeconds / scheduledSeconds;
+      status = ratio < BUNCHED_RATIO ? HeadwayStatus.BUNCHED : ratio > GAP_RATIO ? HeadwayStatus.GAP : HeadwayStatus.NORMAL;
+    }
+    return new Headway(leader.getVehicleId(), follower.getVehicleId(), distanceM, actualSeconds, scheduledSeconds, status);
+  }
+
+  private static long scheduledEpochSecond(int serviceSeconds, long nowEpochSecond) {
+    return ServiceTime.toEpochSecond(serviceSeconds,
+        ServiceTime.nearestServiceDate(serviceSeconds, nowEpochSecond, VANCOUVER_TIMEZONE), VANCOUVER_TIMEZONE);
+  }
+
+  private static boolean isOrdered(VehicleState state) {
+    return state.isOnShape() && state.getDirectionId() != null;
+  }
+
+  private ShapeOrder findOrder(VehicleState state) {
+    Map<String, ShapeOrder> shapes = routeDirections.get(key(state.getRouteId(), state.getDirectionId()));
+    return shapes != null ? shapes.get(shapeKey(state)) : null;
+  }
+
+  private static String key(String routeId, int directionId) {
+    return routeId + ":" + directionId;
+  }
+
+  private static String shapeKey(VehicleState state) {
+    String shapeId = state.getGeometry().getTrip().getShapeId();
+    return shapeId != null ? shapeId : "";
+  }
+
+  /**
+   * Vehicles on one shape of a route-direction ordered by progress, guarded by its own lock
+   */
+  private static class ShapeOrder {
+    private final TreeSet<Progress> ordered = new TreeSet<>(BY_PROGRESS);
+    private final Map<String, Progress> byVehicle = new HashMap<>();
+
+    synchronized void update(VehicleState state) {
+      Progress old = byVehicle.remove(state.getVehicleId());
+      if (old != null) {
+        ordered.remove(old);
+      }
+      Progress progress = new Progress(state);
+      ordered.add(progress);
+      byVehicle.put(state.getVehicleId(), progress);
+    }
+
+    synchronized void remove(String vehicleId) {
+      Progress old = byVehicle.remove(vehicleId);
+      if (old != null) {
+        ordered.remove(old);
+      }
+    }
+
+    /**
+     * Remove a vehicle only if it has not been updated since the given state was read
+     */
+    synchronized void remove(String vehicleId, VehicleState expected) {
+      Progress current = byVehicle.get(vehicleId);
+      if (current != null && current.state == expected) {
+        remove(vehicleId);
+      }
+    }
+
+    synchronized List<VehicleState> snapshotLeadingFirst() {
+      List<VehicleState> states = new ArrayList<>(ordered.size());
+      for (Progress progress : ordered.descendingSet()) {
+        states.add(progress.state);
+      }
+      return states;
+    }
+  }
+
+  private static class Progress {
+    private final VehicleState state;
+    private final double shapeDistanceM;
+
+    private Progress(VehicleState state) {
+      this.state = state;
+      this.shapeDistanceM = state.getShapeDistanceM();
+    }
+  }
+
+  public enum HeadwayStatus {
+    NORMAL,
+    BUNCHED,
+    GAP,
+    UNKNOWN
+  }
+
+  /**
+   * Gap between a vehicle and the one ahead of it
+   */
+  public static class Headway {
+    private final String leaderVehicleId;
+    private final String followerVehicleId;
+    private final double distanceM;
+    private final int actualSeconds;
+    private final Integer scheduledSeconds;
+    private final HeadwayStatus status;
+
+    public Headway(String leaderVehicleId, String followerVehicleId, double distanceM, int actualSeconds,
+        Integer scheduledSeconds, HeadwayStatus status) {
+      this.leaderVehicleId = leaderVehicleId;
+      this.followerVehicleId = followerVehicleId;
+      this.distanceM = distanceM;
+      this.actualSeconds = actualSeconds;
+      this.scheduledSeconds = scheduledSeconds;
+      this.status = status;
+    }
+
+    public String getLeaderVehicleId() { return leaderVehicleId; }
+    public String getFollowerVehicleId() { return followerVehicleId; }
+    public double getDistanceM() { return distanceM; }
+    public int getActualSeconds() { return actualSeconds; }
+    public Integer getScheduledSeconds() { return scheduledSeconds; }
+    public HeadwayStatus getStatus() { return status; }
+
+    @Override
+    public String toString() {
+      return String.format("Headway{%s->%s, distance=%.0fm, actual=%ds, scheduled=%s, status=%s}",
+          leaderVehicleId, followerVehicleId, distanceM, actualSeconds,
+          scheduledSeconds != null ? scheduledSeconds + "s" : "N/A", status);
+    }
+  }
+
+  /**
+   * Headways of one direction, leading vehicle first on each shape
+   */
+  public static class DirectionHeadways {
+    private final int directionId;
+    private final int vehicleCount;
+    private final int bunchedCount;
+    private final int gapCount;
+    private final List<Headway> headways;
+
+    public DirectionHeadways(int directionId, int vehicleCount, int bunchedCount, int gapCount, List<Headway> headways) {
+      this.directionId = directionId;
+      this.vehicleCount = vehicleCount;
+      this.bunchedCount = bunchedCount;
+      this.gapCount = gapCount;
+      this.headways = headways;
+    }
+
+    public int getDirectionId() { return directionId; }
+    public int getVehicleCount() { return vehicleCount; }
+    public int getBunchedCount() { return bunchedCount; }
+    public int getGapCount() { return gapCount; }
+    public List<Headway> getHeadways() { return headways; }
+  }
+
+  /**
+   * Headway view of a route
+   */
+  public static class RouteHeadways {
+    private final String routeId;
+    private final long computedAt;
+    private final List<DirectionHeadways> directions;
+
+    public RouteHeadways(String routeId, long computedAt, List<DirectionHeadways> directions) {
+      this.routeId = routeId;
+      this.computedAt = computedAt;
+      this.directions = directions;
+    }
+
+    public String getRouteId() { return routeId; }
+    public long getComputedAt() { return computedAt; }
+    public List<DirectionHeadways> getDirections() { return directions; }
+
+    @Override
+    public String toString() {
+      return String.format("RouteHeadways{route=%s, directions=%d}", routeId, directions.size());
+    }
+  }
+}
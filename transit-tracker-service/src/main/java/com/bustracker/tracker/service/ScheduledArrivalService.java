@@ -1,6 +1,7 @@
 package com.bustracker.tracker.service;
 
 import com.bustracker.shared.model.VehiclePosition;
+import com.bustracker.tracker.domain.ServiceTime;
 import com.bustracker.tracker.domain.StopTime;
 import com.bustracker.tracker.repository.GtfsRepository;
 import org.slf4j.Logger;
@@ -8,11 +9,16 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.ZoneId;
-import java.time.temporal.ChronoUnit;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Service
@@ -23,11 +29,18 @@ public class ScheduledArrivalService {
     
     private static final Logger logger = LoggerFactory.getLogger(ScheduledArrivalService.class);
     
+    private static final int MISS_DIAGNOSTIC_SAMPLE_RATE = 100;
+    
     private final GtfsRepository gtfsRepository;
+    private final StopDepartureIndex stopDepartureIndex;
+    private final Clock clock;
+    private final AtomicLong scheduleMisses = new AtomicLong();
 
     @Autowired
-    public ScheduledArrivalService(GtfsRepository gtfsRepository) {
+    public ScheduledArrivalService(GtfsRepository gtfsRepository, StopDepartureIndex stopDepartureIndex, Clock clock) {
         this.gtfsRepository = gtfsRepository;
+        this.stopDepartureIndex = stopDepartureIndex;
+        this.clock = clock;
     }
 
     /**
@@ -42,39 +55,39 @@ public class ScheduledArrivalService {
         Optional<StopTime> stopTimeOpt = gtfsRepository.findStopTimeByTripIdAndStopId(tripId, stopId);
         
         if (stopTimeOpt.isEmpty()) {
-            logger.warn("No scheduled time found for trip {} at stop {} - checking if trip/stop exist", tripId, stopId);
-            
-            // Debug: Check if trip exists
-            var tripExists = gtfsRepository.findTripById(tripId);
-            logger.debug("Trip {} exists: {}", tripId, tripExists.isPresent());
-            
-            // Debug: Check if stop exists  
-            var stopExists = gtfsRepository.findStopById(stopId);
-            logger.debug("Stop {} exists: {}", stopId, stopExists.isPresent());
-            
-            // Debug: Check what stop times exist for this trip
-            var tripStopTimes = gtfsRepository.findStopTimesByTripId(tripId);
-            logger.debug("Trip {} has {} stop times", tripId, tripStopTimes.size());
-            if (!tripStopTimes.isEmpty()) {
-                logger.debug("First few stops for trip {}: {}", tripId, 
-                    tripStopTimes.stream().limit(3).map(StopTime::getStopId).toList());
+            // Misses are routine (vehicles on trips that do not serve the stop); only
+            // a sample gets the extra diagnostic lookups, and only with debug logging
+            long misses = scheduleMisses.incrementAndGet();
+            if (logger.isDebugEnabled() && misses % MISS_DIAGNOSTIC_SAMPLE_RATE == 1) {
+                logMissDiagnostics(tripId, stopId, misses);
             }
-            
             return Optional.empty();
         }
         
         StopTime stopTime = stopTimeOpt.get();
-        logger.debug("Found scheduled arrival for trip {} at stop {}: {}", 
-            tripId, stopId, stopTime.getArrivalTime());
+        logger.debug("Found scheduled arrival for trip {} at stop {}: {}", tripId, stopId, stopTime);
         
         return Optional.of(new ScheduledArrival(
             tripId,
             stopId,
-            stopTime.getArrivalTime(),
+            stopTime.getArrivalSeconds(),
             stopTime.getStopSequence()
         ));
     }
 
+    private void logMissDiagnostics(String tripId, String stopId, long misses) {
+        logger.debug("No scheduled time found for trip {} at stop {} ({} misses so far)", tripId, stopId, misses);
+        logger.debug("Trip {} exists: {}, stop {} exists: {}", tripId, gtfsRepository.findTripById(tripId).isPresent(),
+            stopId, gtfsRepository.findStopById(stopId).isPresent());
+        
+        var tripStopTimes = gtfsRepository.findStopTimesByTripId(tripId);
+        logger.debug("Trip {} has {} stop times", tripId, tripStopTimes.size());
+        if (!tripStopTimes.isEmpty()) {
+            logger.debug("First few stops for trip {}: {}", tripId,
+                tripStopTimes.stream().limit(3).map(StopTime::getStopId).toList());
+        }
+    }
+
     /**
      * Calculate delay between scheduled and real-time arrival
      * @param scheduledArrival Scheduled arrival information
@@ -82,33 +95,23 @@ public class ScheduledArrivalService {
      * @return DelayInfo with delay calculation
      */
     public DelayInfo calculateDelay(ScheduledArrival scheduledArrival, int realTimeEtaSeconds) {
-        LocalTime now = LocalTime.now(VANCOUVER_TIMEZONE);
-        LocalTime scheduledTime = scheduledArrival.getScheduledArrival();
-        LocalTime predictedArrival = now.plusSeconds(realTimeEtaSeconds);
+        long predictedEpoch = clock.millis() / 1000 + realTimeEtaSeconds;
+        int scheduledSeconds = scheduledArrival.getScheduledSeconds();
         
-        // Calculate delay in minutes (positive = late, negative = early)
-        long delayMinutes = ChronoUnit.MINUTES.between(scheduledTime, predictedArrival);
+        // Resolve the trip run the vehicle is on (the service date whose scheduled time is nearest
+        // the prediction), then compare absolute times - correct across midnight and 24:00+ times
+        LocalDate serviceDate = ServiceTime.nearestServiceDate(scheduledSeconds, predictedEpoch, VANCOUVER_TIMEZONE);
+        long scheduledEpoch = ServiceTime.toEpochSecond(scheduledSeconds, serviceDate, VANCOUVER_TIMEZONE);
         
-        // Handle cross-midnight boundary issues (GTFS times can span midnight)
-        // If delay is more than 12 hours, it's likely a cross-midnight calculation error
-        if (delayMinutes > 12 * 60) {
-            delayMinutes -= 24 * 60;  // Subtract 24 hours
-        } else if (delayMinutes < -12 * 60) {
-            delayMinutes += 24 * 60;  // Add 24 hours
-        }
+        // Calculate delay in minutes (positive = late, negative = early)
+        long delayMinutes = (predictedEpoch - scheduledEpoch) / 60;
         
-        // Determine delay status
-        DelayStatus status;
-        if (Math.abs(delayMinutes) <= 1) {
-            status = DelayStatus.ON_TIME;
-        } else if (delayMinutes > 1) {
-            status = DelayStatus.DELAYED;
-        } else {
-            status = DelayStatus.EARLY;
-        }
+        DelayStatus status = DelayStatus.forDelayMinutes(delayMinutes);
         
-        logger.debug("Delay calculation: scheduled={}, predicted={}, delay={}min, status={}", 
-            scheduledTime, predictedArrival, delayMinutes, status);
+        LocalTime scheduledTime = LocalTime.ofInstant(Instant.ofEpochSecond(scheduledEpoch), VANCOUVER_TIMEZONE);
+        LocalTime predictedArrival = LocalTime.ofInstant(Instant.ofEpochSecond(predictedEpoch), VANCOUVER_TIMEZONE);
+        logger.debug("Delay calculation: scheduled={} ({}), predicted={}, delay={}min, status={}", 
+            ServiceTime.format(scheduledSeconds), serviceDate, predictedArrival, delayMinutes, status);
         
         return new DelayInfo(
             scheduledTime,
@@ -119,26 +122,59 @@ public class ScheduledArrivalService {
     }
 
     /**
-     * Get all scheduled arrivals for a specific stop within a time window
+     * Calculate delays for every entry of a batch against a single clock reading
+     * Entries without a resolved scheduled time are looked up by trip and stop;
+     * results are written into the batch's primitive arrays.
+     * @param batch Vehicles with their target stops and real-time ETAs
+     */
+    public void calculateDelays(DelayBatch batch) {
+        long now = clock.millis() / 1000;
+
+        for (int i = 0; i < batch.size; i++) {
+            int scheduledSeconds = batch.scheduledSeconds[i];
+            if (scheduledSeconds == DelayBatch.UNSCHEDULED && batch.tripIds[i] != null) {
+                Optional<StopTime> stopTime = gtfsRepository.findStopTimeByTripIdAndStopId(batch.tripIds[i], batch.stopIds[i]);
+                if (stopTime.isPresent()) {
+                    scheduledSeconds = stopTime.get().getArrivalSeconds();
+                    batch.scheduledSeconds[i] = scheduledSeconds;
+                } else {
+                    scheduleMisses.incrementAndGet();
+                }
+            }
+            if (scheduledSeconds == DelayBatch.UNSCHEDULED) {
+                continue;
+            }
+
+            // Nearest run to the prediction, as in calculateDelay
+            long predicted = now + batch.etaSeconds[i];
+            long scheduled = ServiceTime.toEpochSecond(scheduledSeconds,
+                ServiceTime.nearestServiceDate(scheduledSeconds, predicted, VANCOUVER_TIMEZONE), VANCOUVER_TIMEZONE);
+            batch.delaySeconds[i] = (int) (predicted - scheduled);
+        }
+        batch.computedAtEpochSecond = now;
+    }
+
+    /**
+     * Get all scheduled arrivals for a specific stop within a time window today
+     * Windows that cross midnight (e.g. 23:00 to 01:00) continue into the next day
      * @param stopId GTFS stop ID
      * @param fromTime Start of time window
      * @param toTime End of time window
-     * @return List of scheduled arrivals within the time window
+     * @return List of scheduled arrivals within the time window, of trips running that day, soonest first
      */
     public List<ScheduledArrival> getScheduledArrivalsForStop(String stopId, LocalTime fromTime, LocalTime toTime) {
         logger.debug("Getting scheduled arrivals for stop {} between {} and {}", stopId, fromTime, toTime);
         
-        List<StopTime> stopTimes = gtfsRepository.findStopTimesByStopId(stopId);
+        ZonedDateTime from = LocalDate.now(clock.withZone(VANCOUVER_TIMEZONE)).atTime(fromTime).atZone(VANCOUVER_TIMEZONE);
+        int windowSeconds = Math.floorMod(toTime.toSecondOfDay() - fromTime.toSecondOfDay(), 24 * 60 * 60);
         
-        return stopTimes.stream()
-            .filter(stopTime -> isWithinTimeWindow(stopTime.getArrivalTime(), fromTime, toTime))
-            .map(stopTime -> new ScheduledArrival(
-                stopTime.getTripId(),
-                stopTime.getStopId(),
-                stopTime.getArrivalTime(),
-                stopTime.getStopSequence()
+        return stopDepartureIndex.findDepartures(stopId, from, windowSeconds, Integer.MAX_VALUE).stream()
+            .map(departure -> new ScheduledArrival(
+                departure.getStopTime().getTripId(),
+                departure.getStopTime().getStopId(),
+                departure.getStopTime().getArrivalSeconds(),
+                departure.getStopTime().getStopSequence()
             ))
-            .sorted((a, b) -> a.getScheduledArrival().compareTo(b.getScheduledArrival()))
             .collect(Collectors.toList());
     }
 
@@ -180,16 +216,15 @@ public class ScheduledArrivalService {
     }
 
     /**
-     * Check if a time is within the specified window
+     * Create enhanced vehicle information from an already-resolved scheduled arrival
+     * @param vehicle Real-time vehicle position
+     * @param scheduledArrival Scheduled arrival of the vehicle's trip at the stop
+     * @param etaSeconds Real-time ETA in seconds
+     * @return Enhanced vehicle info with scheduled correlation
      */
-    private boolean isWithinTimeWindow(LocalTime time, LocalTime fromTime, LocalTime toTime) {
-        if (fromTime.isBefore(toTime)) {
-            // Normal case: from 08:00 to 10:00
-            return !time.isBefore(fromTime) && !time.isAfter(toTime);
-        } else {
-            // Overnight case: from 23:00 to 01:00
-            return !time.isBefore(fromTime) || !time.isAfter(toTime);
-        }
+    public EnhancedVehicleInfo createEnhancedVehicleInfo(VehiclePosition vehicle, ScheduledArrival scheduledArrival,
+                                                         int etaSeconds) {
+        return new EnhancedVehicleInfo(vehicle, scheduledArrival, calculateDelay(scheduledArrival, etaSeconds));
     }
 
     /**
@@ -198,25 +233,26 @@ public class ScheduledArrivalService {
     public static class ScheduledArrival {
         private final String tripId;
         private final String stopId;
-        private final LocalTime scheduledArrival;
+        private final int scheduledSeconds; // service-day seconds, see ServiceTime
         private final int stopSequence;
 
-        public ScheduledArrival(String tripId, String stopId, LocalTime scheduledArrival, int stopSequence) {
+        public ScheduledArrival(String tripId, String stopId, int scheduledSeconds, int stopSequence) {
             this.tripId = tripId;
             this.stopId = stopId;
-            this.scheduledArrival = scheduledArrival;
+            this.scheduledSeconds = scheduledSeconds;
             this.stopSequence = stopSequence;
         }
 
         public String getTripId() { return tripId; }
         public String getStopId() { return stopId; }
-        public LocalTime getScheduledArrival() { return scheduledArrival; }
+        public int getScheduledSeconds() { return scheduledSeconds; }
+        public LocalTime getScheduledArrival() { return ServiceTime.toLocalTime(scheduledSeconds); }
         public int getStopSequence() { return stopSequence; }
 
         @Override
         public String toString() {
             return String.format("ScheduledArrival{trip='%s', stop='%s', time=%s, seq=%d}",
-                tripId, stopId, scheduledArrival, stopSequence);
+                tripId, stopId, ServiceTime.format(scheduledSeconds), stopSequence);
         }
     }
 
@@ -276,6 +312,59 @@ public class ScheduledArrivalService {
         }
     }
 
+    /**
+     * Batch of vehicles to correlate with the schedule, held in parallel primitive arrays
+     */
+    public static class DelayBatch {
+        public static final int UNSCHEDULED = Integer.MIN_VALUE;
+
+        private int size;
+        private String[] tripIds;
+        private String[] stopIds;
+        private int[] scheduledSeconds;
+        private int[] etaSeconds;
+        private int[] delaySeconds;
+        private long computedAtEpochSecond;
+
+        public DelayBatch(int capacity) {
+            int length = Math.max(1, capacity);
+            tripIds = new String[length];
+            stopIds = new String[length];
+            scheduledSeconds = new int[length];
+            etaSeconds = new int[length];
+            delaySeconds = new int[length];
+        }
+
+        /**
+         * Add a vehicle heading to a stop
+         * @param scheduledSeconds service-day arrival at the stop if already known, otherwise UNSCHEDULED
+         * @return index of the entry
+         */
+        public int add(String tripId, String stopId, int scheduledSeconds, int etaSeconds) {
+            if (size == tripIds.length) {
+                int length = size * 2;
+                tripIds = Arrays.copyOf(tripIds, length);
+                stopIds = Arrays.copyOf(stopIds, length);
+                this.scheduledSeconds = Arrays.copyOf(this.scheduledSeconds, length);
+                this.etaSeconds = Arrays.copyOf(this.etaSeconds, length);
+                delaySeconds = Arrays.copyOf(delaySeconds, length);
+            }
+            tripIds[size] = tripId;
+            stopIds[size] = stopId;
+            this.scheduledSeconds[size] = scheduledSeconds;
+            this.etaSeconds[size] = etaSeconds;
+            return size++;
+        }
+
+        public int size() { return size; }
+        public boolean hasSchedule(int index) { return scheduledSeconds[index] != UNSCHEDULED; }
+        public int getScheduledSeconds(int index) { return scheduledSeconds[index]; }
+        public int getDelaySeconds(int index) { return delaySeconds[index]; }
+        public int getDelayMinutes(int index) { return delaySeconds[index] / 60; }
+        public DelayStatus getStatus(int index) { return DelayStatus.forDelayMinutes(getDelayMinutes(index)); }
+        public long getComputedAtEpochSecond() { return computedAtEpochSecond; }
+    }
+
     /**
      * Delay status enumeration
      */
@@ -293,5 +382,15 @@ public class ScheduledArrivalService {
         public String getDisplayName() {
             return displayName;
         }
+
+        /**
+         * Within a minute either way is on time (positive = late)
+         */
+        public static DelayStatus forDelayMinutes(long delayMinutes) {
+            if (Math.abs(delayMinutes) <= 1) {
+                return ON_TIME;
+            }
+            return delayMinutes > 1 ? DELAYED : EARLY;
+        }
     }
 }
\ No newline at end of file
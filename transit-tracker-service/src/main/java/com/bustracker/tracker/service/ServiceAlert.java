@@ -0,0 +1,126 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.shared.gtfs.GtfsRealtime;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A service alert flattened from GTFS-RT, with the entities it informs
+ */
+public class ServiceAlert {
+
+  private final String alertId;
+  private final String cause;
+  private final String effect;
+  private final String headerText;
+  private final String descriptionText;
+  private final String url;
+  private final long[] activeStarts; // epoch seconds, 0 = open
+  private final long[] activeEnds; // epoch seconds, 0 = open
+  private final boolean agencyWide;
+  private final List<String> routeIds;
+  private final List<String> stopIds;
+  private final List<String> tripIds;
+
+  private ServiceAlert(String alertId, String cause, String effect, String headerText, String descriptionText,
+      String url, long[] activeStarts, long[] activeEnds, boolean agencyWide,
+      List<String> routeIds, List<String> stopIds, List<String> tripIds) {
+    this.alertId = alertId;
+    this.cause = cause;
+    this.effect = effect;
+    this.headerText = headerText;
+    this.descriptionText = descriptionText;
+    this.url = url;
+    this.activeStarts = activeStarts;
+    this.activeEnds = activeEnds;
+    this.agencyWide = agencyWide;
+    this.routeIds = routeIds;
+    this.stopIds = stopIds;
+    this.tripIds = tripIds;
+  }
+
+  public static ServiceAlert from(GtfsRealtime.FeedEntity entity) {
+    GtfsRealtime.Alert alert = entity.getAlert();
+
+    int periods = alert.getActivePeriodCount();
+    long[] starts = new long[periods];
+    long[] ends = new long[periods];
+    for (int i = 0; i < periods; i++) {
+      starts[i] = alert.getActivePeriod(i).getStart();
+      ends[i] = alert.getActivePeriod(i).getEnd();
+    }
+
+    boolean agencyWide = false;
+    List<String> routeIds = new ArrayList<>();
+    List<String> stopIds = new ArrayList<>();
+    List<String> tripIds = new ArrayList<>();
+    for (GtfsRealtime.EntitySelector selector : alert.getInformedEntityList()) {
+      if (selector.hasRouteId()) {
+        routeIds.add(selector.getRouteId());
+      }
+      if (selector.hasStopId()) {
+        stopIds.add(selector.getStopId());
+      }
+      if (selector.hasTrip() && selector.getTrip().hasTripId()) {
+        tripIds.add(selector.getTrip().getTripId());
+      }
+      if (!selector.hasRouteId() && !selector.hasStopId() && !selector.hasTrip() && selector.hasAgencyId()) {
+        agencyWide = true;
+      }
+    }
+
+    return new ServiceAlert(entity.getId(),
+        alert.hasCause() ? alert.getCause().name() : null,
+        alert.hasEffect() ? alert.getEffect().name() : null,
+        firstTranslation(alert.getHeaderText()),
+        firstTranslation(alert.getDescriptionText()),
+        firstTranslation(alert.getUrl()),
+        starts, ends, agencyWide, List.copyOf(routeIds), List.copyOf(stopIds), List.copyOf(tripIds));
+  }
+
+  /**
+   * True if the alert is in effect at the given time (no active periods means always)
+   */
+  public boolean isActiveAt(long epochSeconds) {
+    if (activeStarts.length == 0) {
+      return true;
+    }
+    for (int i = 0; i < activeStarts.length; i++) {
+      if ((activeStarts[i] == 0 || activeStarts[i] <= epochSeconds)
+          && (activeEnds[i] == 0 || epochSeconds < activeEnds[i])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String firstTranslation(GtfsRealtime.TranslatedString text) {
+    if (text.getTranslationCount() == 0) {
+      return null;
+    }
+    for (GtfsRealtime.TranslatedString.Translation translation : text.getTranslationList()) {
+      if (!translation.hasLanguage() || translation.getLanguage().startsWith("en")) {
+        return translation.getText();
+      }
+    }
+    return text.getTranslation(0).getText();
+  }
+
+  public String getAlertId() { return alertId; }
+  public String getCause() { return cause; }
+  public String getEffect() { return effect; }
+  public String getHeaderText() { return headerText; }
+  public String getDescriptionText() { return descriptionText; }
+  public String getUrl() { return url; }
+  public boolean isAgencyWide() { return agencyWide; }
+  public List<String> getRouteIds() { return routeIds; }
+  public List<String> getStopIds() { return stopIds; }
+  public List<String> getTripIds() { return tripIds; }
+
+  @Override
+  public String toString() {
+    return String.format("ServiceAlert{id='%s', effect=%s, routes=%d, stops=%d, header='%s'}",
+        alertId, effect, routeIds.size(), stopIds.size(), headerText);
+  }
+}
@@ -0,0 +1,86 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.shared.gtfs.GtfsRealtime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Current set of service alerts, indexed by route and stop
+ * Each alerts record carries the complete active set, so an update builds a new
+ * index and swaps it in; readers never see a half-applied set.
+ */
+@Service
+public class ServiceAlertStore {
+
+  private static final Logger logger = LoggerFactory.getLogger(ServiceAlertStore.class);
+
+  private volatile AlertIndex index = new AlertIndex(List.of(), 0);
+
+  /**
+   * Replace all alerts with the set in this feed
+   */
+  public void replaceAll(GtfsRealtime.FeedMessage alertsFeed) {
+    long feedTimestamp = alertsFeed.getHeader().getTimestamp();
+    if (feedTimestamp > 0 && feedTimestamp < index.feedTimestamp) {
+      logger.debug("Ignoring alerts feed from {} (have {})", feedTimestamp, index.feedTimestamp);
+      return;
+    }
+
+    List<ServiceAlert> alerts = new ArrayList<>(alertsFeed.getEntityCount());
+    for (GtfsRealtime.FeedEntity entity : alertsFeed.getEntityList()) {
+      if (entity.hasAlert() && !entity.getIsDeleted()) {
+        alerts.add(ServiceAlert.from(entity));
+      }
+    }
+    index = new AlertIndex(alerts, feedTimestamp);
+    logger.info("Loaded {} service alerts", alerts.size());
+  }
+
+  /**
+   * Alerts in effect now that apply to a route, a stop, or the whole agency
+   * @param stopId optional, null for route-level alerts only
+   */
+  public List<ServiceAlert> getActiveAlerts(String routeId, String stopId) {
+    AlertIndex current = index;
+    long now = System.currentTimeMillis() / 1000;
+
+    Set<ServiceAlert> matching = new LinkedHashSet<>(current.agencyWide);
+    matching.addAll(current.byRoute.getOrDefault(routeId, List.of()));
+    if (stopId != null) {
+      matching.addAll(current.byStop.getOrDefault(stopId, List.of()));
+    }
+    return matching.stream().filter(alert -> alert.isActiveAt(now)).toList();
+  }
+
+  public int size() {
+    return index.alerts.size();
+  }
+
+  private static class AlertIndex {
+    private final List<ServiceAlert> alerts;
+    private final long feedTimestamp;
+    private final List<ServiceAlert> agencyWide = new ArrayList<>();
+    private final Map<String, List<ServiceAlert>> byRoute = new HashMap<>();
+    private final Map<String, List<ServiceAlert>> byStop = new HashMap<>();
+
+    private AlertIndex(List<ServiceAlert> alerts, long feedTimestamp) {
+      this.alerts = alerts;
+      this.feedTimestamp = feedTimestamp;
+      for (ServiceAlert alert : alerts) {
+        if (alert.isAgencyWide()) {
+          agencyWide.add(alert);
+        }
+        alert.getRouteIds().forEach(routeId -> byRoute.computeIfAbsent(routeId, k -> new ArrayList<>()).add(alert));
+        alert.getStopIds().forEach(stopId -> byStop.computeIfAbsent(stopId, k -> new ArrayList<>()).add(alert));
+      }
+    }
+  }
+}
@@ -8,14 +8,30 @@ import com.bustracker.tracker.repository.GtfsRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
+/**
+ * Answers "does this service / trip run on this date"
+ *
+ * Active services and trips are precomputed as bitmaps for yesterday (overnight
+ * trips of the previous service day), today and a short look-ahead, and rebuilt
+ * after GTFS load and at midnight in Vancouver. Filtering a stop time is then a
+ * trip-ordinal lookup and one bit test; dates outside the window are evaluated
+ * against the compiled calendars (see CompiledCalendars).
+ */
 @Service
 public class ServiceCalendarService {
 
@@ -25,10 +41,69 @@ public class ServiceCalendarService {
     private static final Logger logger = LoggerFactory.getLogger(ServiceCalendarService.class);
     
     private final GtfsRepository gtfsRepository;
+    private final int lookaheadDays;
+
+    private volatile ServiceIndex serviceIndex = ServiceIndex.EMPTY;
 
     @Autowired
-    public ServiceCalendarService(GtfsRepository gtfsRepository) {
+    public ServiceCalendarService(GtfsRepository gtfsRepository,
+                                  @Value("${tracker.service-calendar.lookahead-days:2}") int lookaheadDays) {
         this.gtfsRepository = gtfsRepository;
+        this.lookaheadDays = Math.max(0, lookaheadDays);
+    }
+
+    /**
+     * Rebuild the per-date bitmaps (after GTFS load, and at the start of each service date)
+     */
+    @Scheduled(cron = "0 0 0 * * *", zone = "America/Vancouver")
+    public void rebuildServiceDays() {
+        rebuildServiceDays(LocalDate.now(VANCOUVER_TIMEZONE));
+    }
+
+    synchronized void rebuildServiceDays(LocalDate today) {
+        long start = System.currentTimeMillis();
+
+        // Dense ordinals for every service (compiled calendars) and trip
+        CompiledCalendars calendars = CompiledCalendars.compile(
+            gtfsRepository.findAllCalendars(), gtfsRepository.findAllCalendarDates());
+        Map<String, Integer> serviceOrdinals = new HashMap<>(calendars.getOrdinals());
+        List<Trip> trips = gtfsRepository.findAllTrips();
+        Map<String, Integer> tripOrdinals = new HashMap<>(trips.size() * 2);
+        int[] tripServices = new int[trips.size()];
+        for (Trip trip : trips) {
+            // Services with no calendar rows get an ordinal past the compiled ones and are never active
+            int serviceOrdinal = serviceOrdinals.computeIfAbsent(trip.getServiceId(), k -> serviceOrdinals.size());
+            tripServices[tripOrdinals.size()] = serviceOrdinal;
+            tripOrdinals.put(trip.getTripId(), tripOrdinals.size());
+        }
+
+        Map<LocalDate, ServiceDay> days = new LinkedHashMap<>();
+        for (LocalDate date = today.minusDays(1); !date.isAfter(today.plusDays(lookaheadDays)); date = date.plusDays(1)) {
+            BitSet activeServices = new BitSet(serviceOrdinals.size());
+            calendars.evaluate(date, activeServices);
+
+            BitSet activeTrips = new BitSet(tripServices.length);
+            for (int trip = 0; trip < tripServices.length; trip++) {
+                if (activeServices.get(tripServices[trip])) {
+                    activeTrips.set(trip);
+                }
+            }
+            days.put(date, new ServiceDay(date, serviceOrdinals, tripOrdinals, activeServices, activeTrips));
+        }
+
+        serviceIndex = new ServiceIndex(days, calendars);
+        ServiceDay todayIndex = days.get(today);
+        logger.info("Built service calendar for {} days from {} in {}ms: {} of {} services and {} of {} trips active today",
+            days.size(), today.minusDays(1), System.currentTimeMillis() - start,
+            todayIndex.activeServices.cardinality(), serviceOrdinals.size(),
+            todayIndex.activeTrips.cardinality(), tripOrdinals.size());
+    }
+
+    /**
+     * Precomputed service day for a date, or null if the date is outside the built window
+     */
+    public ServiceDay getServiceDay(LocalDate date) {
+        return serviceIndex.days.get(date);
     }
 
     /**
@@ -39,6 +114,14 @@ public class ServiceCalendarService {
      * @return true if service is active on this date
      */
     public boolean isServiceActiveOnDate(String serviceId, LocalDate date) {
+        ServiceIndex index = serviceIndex;
+        ServiceDay serviceDay = index.days.get(date);
+        if (serviceDay != null) {
+            return serviceDay.isServiceActive(serviceId);
+        }
+        if (index.calendars != null) {
+            return index.calendars.isActive(serviceId, date);
+        }
         logger.debug("Checking if service {} is active on {}", serviceId, date);
 
         // Step 1: Check calendar_dates.txt for exceptions FIRST (highest priority)
@@ -63,6 +146,19 @@ public class ServiceCalendarService {
         return false;
     }
 
+    /**
+     * Check if a trip runs on a specific service date
+     */
+    public boolean isTripActiveOnDate(String tripId, LocalDate date) {
+        ServiceDay serviceDay = getServiceDay(date);
+        if (serviceDay != null) {
+            return serviceDay.isTripActive(tripId);
+        }
+        return gtfsRepository.findTripById(tripId)
+            .map(trip -> isServiceActiveOnDate(trip.getServiceId(), date))
+            .orElse(false);
+    }
+
     /**
      * Check if a service is active today
      * @param serviceId GTFS service ID
@@ -79,6 +175,10 @@ public class ServiceCalendarService {
      */
     public List<String> filterActiveTripIds(List<String> tripIds) {
         LocalDate today = LocalDate.now(VANCOUVER_TIMEZONE);
+        ServiceDay serviceDay = getServiceDay(today);
+        if (serviceDay != null) {
+            return tripIds.stream().filter(serviceDay::isTripActive).collect(Collectors.toList());
+        }
         
         return tripIds.stream()
             .filter(tripId -> {
@@ -107,6 +207,16 @@ public class ServiceCalendarService {
      */
     public List<StopTime> filterActiveStopTimes(List<StopTime> stopTimes) {
         LocalDate today = LocalDate.now(VANCOUVER_TIMEZONE);
+        ServiceDay serviceDay = getServiceDay(today);
+        if (serviceDay != null) {
+            List<StopTime> active = new ArrayList<>(stopTimes.size());
+            for (StopTime stopTime : stopTimes) {
+                if (serviceDay.isTripActive(stopTime.getTripId())) {
+                    active.add(stopTime);
+                }
+            }
+            return active;
+        }
         
         return stopTimes.stream()
             .filter(stopTime -> {
@@ -135,6 +245,17 @@ public class ServiceCalendarService {
      */
     public ServiceStats getServiceStats() {
         LocalDate today = LocalDate.now(VANCOUVER_TIMEZONE);
+
+        CompiledCalendars calendars = serviceIndex.calendars;
+        if (calendars != null) {
+            // calendar.txt services are the first ordinals
+            BitSet active = new BitSet(calendars.getServiceCount());
+            calendars.evaluate(today, active);
+            int totalServices = calendars.getCalendarServiceCount();
+            int activeServices = active.get(0, totalServices).cardinality();
+            return new ServiceStats(totalServices, activeServices, totalServices - activeServices,
+                calendars.countExceptions(today));
+        }
         
         List<Calendar> allCalendars = gtfsRepository.findAllCalendars();
         
@@ -159,6 +280,55 @@ public class ServiceCalendarService {
         return new ServiceStats(totalServices, activeServices, inactiveServices, exceptionsToday);
     }
 
+    /**
+     * Active services and trips on one service date, as bitmaps over dense ordinals
+     */
+    public static class ServiceDay {
+        private final LocalDate date;
+        private final Map<String, Integer> serviceOrdinals;
+        private final Map<String, Integer> tripOrdinals;
+        private final BitSet activeServices;
+        private final BitSet activeTrips;
+
+        private ServiceDay(LocalDate date, Map<String, Integer> serviceOrdinals, Map<String, Integer> tripOrdinals,
+                           BitSet activeServices, BitSet activeTrips) {
+            this.date = date;
+            this.serviceOrdinals = serviceOrdinals;
+            this.tripOrdinals = tripOrdinals;
+            this.activeServices = activeServices;
+            this.activeTrips = activeTrips;
+        }
+
+        public boolean isServiceActive(String serviceId) {
+            Integer ordinal = serviceOrdinals.get(serviceId);
+            return ordinal != null && activeServices.get(ordinal);
+        }
+
+        public boolean isTripActive(String tripId) {
+            Integer ordinal = tripOrdinals.get(tripId);
+            return ordinal != null && activeTrips.get(ordinal);
+        }
+
+        public LocalDate getDate() { return date; }
+        public int getActiveServiceCount() { return activeServices.cardinality(); }
+        public int getActiveTripCount() { return activeTrips.cardinality(); }
+    }
+
+    /**
+     * Immutable set of built service days and the calendars they were compiled from, swapped whole on rebuild
+     */
+    private static class ServiceIndex {
+        private static final ServiceIndex EMPTY = new ServiceIndex(Map.of(), null);
+
+        private final Map<LocalDate, ServiceDay> days;
+        private final CompiledCalendars calendars;
+
+        private ServiceIndex(Map<LocalDate, ServiceDay> days, CompiledCalendars calendars) {
+            this.days = days;
+            this.calendars = calendars;
+        }
+    }
+
     /**
      * Service statistics for monitoring
      */
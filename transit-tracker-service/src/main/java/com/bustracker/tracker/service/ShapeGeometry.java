@@ -0,0 +1,133 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.tracker.domain.ShapePoint;
+
+import java.util.List;
+
+/**
+ * Precomputed polyline for one GTFS shape
+ * Points are stored in local equirectangular meters so projecting a position
+ * onto the shape is plain arithmetic (no trigonometry per segment).
+ * Accurate to well under a meter at metro-area scale.
+ */
+public class ShapeGeometry {
+
+  private static final double EARTH_RADIUS_M = 6371000.0;
+  private static final double METERS_PER_DEGREE = Math.toRadians(1) * EARTH_RADIUS_M;
+
+  private final String shapeId;
+  private final double referenceLatCos;
+  private final double[] x;
+  private final double[] y;
+  private final double[] cumulativeDistanceM;
+
+  public ShapeGeometry(String shapeId, List<ShapePoint> orderedPoints) {
+    if (orderedPoints.size() < 2) {
+      throw new IllegalArgumentException("Shape " + shapeId + " needs at least 2 points");
+    }
+    this.shapeId = shapeId;
+    this.referenceLatCos = Math.cos(Math.toRadians(orderedPoints.get(0).getShapePtLat()));
+
+    int n = orderedPoints.size();
+    this.x = new double[n];
+    this.y = new double[n];
+    this.cumulativeDistanceM = new double[n];
+
+    for (int i = 0; i < n; i++) {
+      ShapePoint point = orderedPoints.get(i);
+      x[i] = toX(point.getShapePtLon());
+      y[i] = toY(point.getShapePtLat());
+      if (i > 0) {
+        cumulativeDistanceM[i] = cumulativeDistanceM[i - 1] + Math.hypot(x[i] - x[i - 1], y[i] - y[i - 1]);
+      }
+    }
+  }
+
+  /**
+   * Project a position onto the shape, considering only segments from fromSegment onwards
+   * @return projection with distance along the shape and distance from it
+   */
+  public Projection project(double lat, double lon, int fromSegment) {
+    double px = toX(lon);
+    double py = toY(lat);
+
+    double bestDistanceSq = Double.MAX_VALUE;
+    double bestAlong = 0.0;
+    int bestSegment = -1;
+
+    for (int i = Math.max(0, fromSegment); i < x.length - 1; i++) {
+      double dx = x[i + 1] - x[i];
+      double dy = y[i + 1] - y[i];
+      double lengthSq = dx * dx + dy * dy;
+
+      double t = lengthSq == 0 ? 0.0 : ((px - x[i]) * dx + (py - y[i]) * dy) / lengthSq;
+      t = Math.max(0.0, Math.min(1.0, t));
+
+      double ex = x[i] + t * dx - px;
+      double ey = y[i] + t * dy - py;
+      double distanceSq = ex * ex + ey * ey;
+
+      if (distanceSq < bestDistanceSq) {
+        bestDistanceSq = distanceSq;
+        bestAlong = cumulativeDistanceM[i] + t * (cumulativeDistanceM[i + 1] - cumulativeDistanceM[i]);
+        bestSegment = i;
+      }
+    }
+
+    return new Projection(bestAlong, Math.sqrt(bestDistanceSq), bestSegment);
+  }
+
+  /**
+   * Index of the segment containing the given distance along the shape
+   */
+  public int segmentAt(double distanceAlongM) {
+    int low = 0;
+    int high = cumulativeDistanceM.length - 2;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (cumulativeDistanceM[mid] <= distanceAlongM) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  public String getShapeId() { return shapeId; }
+  public double getTotalLengthM() { return cumulativeDistanceM[cumulativeDistanceM.length - 1]; }
+  public int getPointCount() { return x.length; }
+
+  private double toX(double lon) {
+    return lon * METERS_PER_DEGREE * referenceLatCos;
+  }
+
+  private double toY(double lat) {
+    return lat * METERS_PER_DEGREE;
+  }
+
+  /**
+   * Result of projecting a position onto the shape
+   */
+  public static class Projection {
+    private final double distanceAlongM;
+    private final double distanceFromShapeM;
+    private final int segmentIndex;
+
+    public Projection(double distanceAlongM, double distanceFromShapeM, int segmentIndex) {
+      this.distanceAlongM = distanceAlongM;
+      this.distanceFromShapeM = distanceFromShapeM;
+      this.segmentIndex = segmentIndex;
+    }
+
+    public double getDistanceAlongM() { return distanceAlongM; }
+    public double getDistanceFromShapeM() { return distanceFromShapeM; }
+    public int getSegmentIndex() { return segmentIndex; }
+
+    @Override
+    public String toString() {
+      return String.format("Projection{along=%.0fm, off=%.0fm, segment=%d}",
+          distanceAlongM, distanceFromShapeM, segmentIndex);
+    }
+  }
+}
@@ -0,0 +1,193 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.tracker.domain.ServiceTime;
+import com.bustracker.tracker.domain.StopTime;
+import com.bustracker.tracker.domain.Trip;
+import com.bustracker.tracker.repository.GtfsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stop times per stop, and per stop/route/direction, sorted by scheduled arrival
+ *
+ * Arrival times are GTFS service-day seconds (see ServiceTime), so trips past
+ * 24:00 sort after the evening ones instead of wrapping. A "next departures"
+ * query binary-searches today's service day and, for trips still running after
+ * midnight, yesterday's, then scans forward until the window or limit is reached.
+ * Which trips run on a date comes from the materialized daily timetable.
+ * Built once after GTFS load; read without locking.
+ */
+@Service
+public class StopDepartureIndex {
+
+  private static final Logger logger = LoggerFactory.getLogger(StopDepartureIndex.class);
+
+  private final GtfsRepository gtfsRepository;
+  private final DailyTimetableService dailyTimetableService;
+
+  private volatile Map<String, Departures> byStop = Map.of();
+  private volatile Map<String, Departures> byStopRouteDirection = Map.of();
+
+  @Autowired
+  public StopDepartureIndex(GtfsRepository gtfsRepository, DailyTimetableService dailyTimetableService) {
+    this.gtfsRepository = gtfsRepository;
+    this.dailyTimetableService = dailyTimetableService;
+  }
+
+  /**
+   * Build the sorted arrays from the loaded stop times
+   */
+  public synchronized void rebuild() {
+    long start = System.currentTimeMillis();
+
+    Map<String, List<StopTime>> stopTimesByStop = new HashMap<>();
+    Map<String, List<StopTime>> stopTimesByStopRouteDirection = new HashMap<>();
+    for (Trip trip : gtfsRepository.findAllTrips()) {
+      for (StopTime stopTime : gtfsRepository.findStopTimesByTripId(trip.getTripId())) {
+        stopTimesByStop.computeIfAbsent(stopTime.getStopId(), k -> new ArrayList<>()).add(stopTime);
+        stopTimesByStopRouteDirection.computeIfAbsent(
+            key(trip.getRouteId(), trip.getDirectionId(), stopTime.getStopId()), k -> new ArrayList<>()).add(stopTime);
+      }
+    }
+
+    Map<String, Departures> stops = new HashMap<>(stopTimesByStop.size() * 2);
+    stopTimesByStop.forEach((stopId, stopTimes) -> stops.put(stopId, new Departures(stopTimes)));
+    Map<String, Departures> routeStops = new HashMap<>(stopTimesByStopRouteDirection.size() * 2);
+    stopTimesByStopRouteDirection.forEach((key, stopTimes) -> routeStops.put(key, new Departures(stopTimes)));
+
+    byStop = stops;
+    byStopRouteDirection = routeStops;
+    logger.info("Built departure index for {} stops and {} stop/route/directions in {}ms",
+        stops.size(), routeStops.size(), System.currentTimeMillis() - start);
+  }
+
+  /**
+   * Scheduled arrivals at a stop (all routes) within the window after now, soonest first
+   */
+  public List<Departure> findDepartures(String stopId, ZonedDateTime now, int windowSeconds, int limit) {
+    return findDepartures(byStop.get(stopId), now, windowSeconds, limit);
+  }
+
+  /**
+   * Scheduled arrivals at a stop for one route and direction within the window after now, soonest first
+   */
+  public List<Departure> findDepartures(String routeId, int directionId, String stopId, ZonedDateTime now,
+      int windowSeconds, int limit) {
+    return findDepartures(byStopRouteDirection.get(key(routeId, directionId, stopId)), now, windowSeconds, limit);
+  }
+
+  private List<Departure> findDepartures(Departures departures, ZonedDateTime now, int windowSeconds, int limit) {
+    if (departures == null || limit <= 0) {
+      return List.of();
+    }
+
+    LocalDate today = now.toLocalDate();
+    List<Departure> result = new ArrayList<>();
+    // Yesterday's service day only matters for trips scheduled past 24:00
+    collect(departures, today, now, windowSeconds, limit, result);
+    collect(departures, today.minusDays(1), now, windowSeconds, limit, result);
+
+    if (result.size() > 1) {
+      result.sort(Comparator.comparingInt(Departure::getSecondsUntil));
+    }
+    return result.size() > limit ? result.subList(0, limit) : result;
+  }
+
+  private void collect(Departures departures, LocalDate serviceDate, ZonedDateTime now, int windowSeconds, int limit,
+      List<Departure> result) {
+    int from = ServiceTime.fromEpochSecond(now.toEpochSecond(), serviceDate, now.getZone());
+    if (from > departures.lastSeconds()) {
+      return;
+    }
+    long to = (long) from + windowSeconds;
+
+    int found = 0;
+    for (int i = departures.lowerBound(from); i < departures.seconds.length && departures.seconds[i] <= to; i++) {
+      StopTime stopTime = departures.stopTimes[i];
+      if (dailyTimetableService.isTripActiveOnDate(stopTime.getTripId(), serviceDate)) {
+        result.add(new Departure(stopTime, serviceDate, departures.seconds[i] - from));
+        if (++found == limit) {
+          return;
+        }
+      }
+    }
+  }
+
+  private static String key(String routeId, int directionId, String stopId) {
+    return routeId + ":" + directionId + ":" + stopId;
+  }
+
+  /**
+   * Stop times sorted by arrival, with the arrival seconds in a parallel array for the search
+   */
+  private static class Departures {
+    private final int[] seconds;
+    private final StopTime[] stopTimes;
+
+    private Departures(List<StopTime> unsorted) {
+      stopTimes = unsorted.toArray(new StopTime[0]);
+      Arrays.sort(stopTimes, Comparator.comparingInt(StopTime::getArrivalSeconds));
+      seconds = new int[stopTimes.length];
+      for (int i = 0; i < stopTimes.length; i++) {
+        seconds[i] = stopTimes[i].getArrivalSeconds();
+      }
+    }
+
+    private int lastSeconds() {
+      return seconds.length > 0 ? seconds[seconds.length - 1] : -1;
+    }
+
+    /**
+     * Index of the first arrival at or after the given seconds
+     */
+    private int lowerBound(int from) {
+      int low = 0;
+      int high = seconds.length;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (seconds[mid] < from) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
+
+  /**
+   * One scheduled arrival of a trip on a given service date
+   */
+  public static class Departure {
+    private final StopTime stopTime;
+    private final LocalDate serviceDate;
+    private final int secondsUntil;
+
+    public Departure(StopTime stopTime, LocalDate serviceDate, int secondsUntil) {
+      this.stopTime = stopTime;
+      this.serviceDate = serviceDate;
+      this.secondsUntil = secondsUntil;
+    }
+
+    public StopTime getStopTime() { return stopTime; }
+    public LocalDate getServiceDate() { return serviceDate; }
+    public int getSecondsUntil() { return secondsUntil; }
+
+    @Override
+    public String toString() {
+      return String.format("Departure{trip='%s', serviceDate=%s, in=%ds}",
+          stopTime.getTripId(), serviceDate, secondsUntil);
+    }
+  }
+}
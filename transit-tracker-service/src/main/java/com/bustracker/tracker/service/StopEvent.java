@@ -0,0 +1,64 @@
+package com.bustracker.tracker.service;
+
+/**
+ * A vehicle reaching or leaving a stop, as observed from consecutive positions
+ */
+public class StopEvent {
+
+  public static final String LOG_HEADER =
+      "epochSecond,type,vehicleId,tripId,routeId,directionId,stopId,stopSequence,scheduledEpochSecond,delaySeconds";
+
+  public enum Type {
+    ARRIVED,
+    DEPARTED
+  }
+
+  private final Type type;
+  private final long epochSecond; // interpolated between the two positions
+  private final String vehicleId;
+  private final String tripId;
+  private final String routeId;
+  private final Integer directionId;
+  private final String stopId;
+  private final int stopSequence;
+  private final long scheduledEpochSecond; // scheduled arrival at the stop, or departure for DEPARTED
+
+  public StopEvent(Type type, long epochSecond, String vehicleId, String tripId, String routeId, Integer directionId,
+      String stopId, int stopSequence, long scheduledEpochSecond) {
+    this.type = type;
+    this.epochSecond = epochSecond;
+    this.vehicleId = vehicleId;
+    this.tripId = tripId;
+    this.routeId = routeId;
+    this.directionId = directionId;
+    this.stopId = stopId;
+    this.stopSequence = stopSequence;
+    this.scheduledEpochSecond = scheduledEpochSecond;
+  }
+
+  public Type getType() { return type; }
+  public long getEpochSecond() { return epochSecond; }
+  public String getVehicleId() { return vehicleId; }
+  public String getTripId() { return tripId; }
+  public String getRouteId() { return routeId; }
+  public Integer getDirectionId() { return directionId; }
+  public String getStopId() { return stopId; }
+  public int getStopSequence() { return stopSequence; }
+  public long getScheduledEpochSecond() { return scheduledEpochSecond; }
+  public long getDelaySeconds() { return epochSecond - scheduledEpochSecond; }
+
+  /**
+   * One CSV line in LOG_HEADER column order, newline-terminated
+   */
+  public String toLogLine() {
+    return epochSecond + "," + type + "," + vehicleId + "," + tripId + "," + routeId + ","
+        + (directionId != null ? directionId : "") + "," + stopId + "," + stopSequence + ","
+        + scheduledEpochSecond + "," + getDelaySeconds() + "\n";
+  }
+
+  @Override
+  public String toString() {
+    return String.format("StopEvent{%s vehicle=%s trip=%s stop=%s seq=%d at=%d delay=%ds}",
+        type, vehicleId, tripId, stopId, stopSequence, epochSecond, getDelaySeconds());
+  }
+}
@@ -0,0 +1,163 @@
+package com.bustracker.tracker.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only log of stop arrival/departure events, in memory-mapped segments
+ *
+ * Each segment is a file of fixed capacity mapped once; appends are copies into
+ * the mapping, with no write syscall per event. The page cache keeps appended
+ * events if the process dies, so only a machine crash can lose the unflushed
+ * tail. A segment is closed (flushed and truncated to its content) when it
+ * fills up, on the rollover schedule (hourly by default) and at shutdown; the
+ * next event opens a new one. Segments are CSV with a header line (see
+ * StopEvent.LOG_HEADER) named stop-events-<openedAtMillis>.csv, never reopened.
+ */
+@Service
+public class StopEventLog {
+
+  private static final Logger logger = LoggerFactory.getLogger(StopEventLog.class);
+
+  private static final byte[] HEADER = (StopEvent.LOG_HEADER + "\n").getBytes(StandardCharsets.UTF_8);
+
+  private final boolean enabled;
+  private final Path directory;
+  private final int segmentBytes;
+
+  private FileChannel channel;
+  private MappedByteBuffer buffer;
+  private Path segmentPath;
+  private long segmentEvents;
+  private long appendedEvents;
+
+  @Autowired
+  public StopEventLog(@Value("${tracker.stop-events.enabled:true}") boolean enabled,
+      @Value("${tracker.stop-events.directory:state/stop-events}") String directory,
+      @Value("${tracker.stop-events.segment-bytes:16777216}") int segmentBytes) {
+    this.enabled = enabled;
+    this.directory = Paths.get(directory);
+    this.segmentBytes = Math.max(segmentBytes, 4096);
+  }
+
+  /**
+   * Append one event, opening or rolling a segment as needed
+   * @return true if the event was written
+   */
+  public synchronized boolean append(StopEvent event) {
+    if (!enabled) {
+      return false;
+    }
+
+    byte[] line = event.toLogLine().getBytes(StandardCharsets.UTF_8);
+    try {
+      if (buffer != null && buffer.remaining() < line.length) {
+        closeSegment();
+      }
+      if (buffer == null) {
+        openSegment();
+      }
+      if (buffer.remaining() < line.length) {
+        logger.warn("Dropping stop event larger than a segment: {}", event);
+        return false;
+      }
+      buffer.put(line);
+      segmentEvents++;
+      appendedEvents++;
+      return true;
+
+    } catch (IOException e) {
+      logger.error("Failed to append stop event to {}: {}", segmentPath, e.getMessage());
+      closeQuietly();
+      return false;
+    }
+  }
+
+  /**
+   * Close the current segment so the next event starts a new one
+   */
+  @Scheduled(cron = "${tracker.stop-events.rollover-cron:0 0 * * * *}")
+  public synchronized void rollover() {
+    if (buffer == null) {
+      return;
+    }
+    try {
+      closeSegment();
+    } catch (IOException e) {
+      logger.error("Failed to close stop event segment {}: {}", segmentPath, e.getMessage());
+      closeQuietly();
+    }
+  }
+
+  @PreDestroy
+  public void close() {
+    rollover();
+  }
+
+  /**
+   * Segment currently being appended to, or null if none is open
+   */
+  public synchronized Path getCurrentSegment() {
+    return buffer != null ? segmentPath : null;
+  }
+
+  public synchronized long getAppendedEvents() {
+    return appendedEvents;
+  }
+
+  private void openSegment() throws IOException {
+    Files.createDirectories(directory);
+    long openedAt = System.currentTimeMillis();
+    Path path = directory.resolve("stop-events-" + openedAt + ".csv");
+    while (Files.exists(path)) {
+      path = directory.resolve("stop-events-" + (++openedAt) + ".csv");
+    }
+
+    channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+    buffer.put(HEADER);
+    segmentPath = path;
+    segmentEvents = 0;
+    logger.info("Opened stop event segment {}", path);
+  }
+
+  private void closeSegment() throws IOException {
+    int written = buffer.position();
+    buffer.force();
+    buffer = null;
+    try {
+      // Drop the unused, zero-filled tail of the mapping
+      channel.truncate(written);
+    } finally {
+      channel.close();
+      channel = null;
+    }
+    logger.info("Closed stop event segment {} with {} events ({} bytes)", segmentPath, segmentEvents, written);
+  }
+
+  private void closeQuietly() {
+    buffer = null;
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException ignored) {
+        // already failing; the next append opens a fresh segment
+      }
+      channel = null;
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.tracker.domain.ServiceTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Detects stop arrivals and departures from consecutive vehicle states
+ *
+ * A vehicle arrives at a stop when its distance along the shape crosses the
+ * stop's offset minus STOP_RADIUS_M, and departs when it crosses the offset plus
+ * that radius. The event time is interpolated linearly between the two position
+ * timestamps. Only moves forward on the same trip count; a jump over several
+ * stops yields an arrival and departure for each of them, in order.
+ */
+@Service
+public class StopPassingDetector implements VehicleStateListener {
+
+  private static final Logger logger = LoggerFactory.getLogger(StopPassingDetector.class);
+
+  private static final ZoneId VANCOUVER_TIMEZONE = ZoneId.of("America/Vancouver");
+
+  // Distance either side of a stop's offset that counts as being at the stop (in meters)
+  static final double STOP_RADIUS_M = 30.0;
+
+  // Positions further apart than this are an outage, not a trajectory to interpolate (in seconds)
+  private static final long MAX_INTERPOLATION_GAP_SECONDS = 600;
+
+  private final StopEventLog stopEventLog;
+
+  @Autowired
+  public StopPassingDetector(VehicleStateService vehicleStateService, StopEventLog stopEventLog) {
+    this.stopEventLog = stopEventLog;
+    vehicleStateService.addListener(this);
+  }
+
+  @Override
+  public void onVehicleStateChanged(VehicleState previous, VehicleState current) {
+    for (StopEvent event : detect(previous, current)) {
+      logger.debug("{}", event);
+      stopEventLog.append(event);
+    }
+  }
+
+  /**
+   * Stop events between two consecutive states of a vehicle, in time order
+   */
+  List<StopEvent> detect(VehicleState previous, VehicleState current) {
+    if (previous == null || !previous.isOnShape() || !current.isOnShape()
+        || !previous.getGeometry().getTripId().equals(current.getGeometry().getTripId())) {
+      return List.of();
+    }
+    double from = previous.getShapeDistanceM();
+    double to = current.getShapeDistanceM();
+    long fromTime = previous.getPosition().getTimestamp();
+    long toTime = current.getPosition().getTimestamp();
+    if (!(to > from) || toTime <= fromTime || toTime - fromTime > MAX_INTERPOLATION_GAP_SECONDS) {
+      return List.of();
+    }
+
+    TripGeometry geometry = current.getGeometry();
+    List<StopEvent> events = null;
+    // First stop whose departure threshold is still ahead of the previous position
+    for (int i = geometry.nextStopIndex(from, STOP_RADIUS_M); i < geometry.getStopCount(); i++) {
+      double offset = geometry.getStopOffsetM(i);
+      if (offset - STOP_RADIUS_M > to) {
+        break;
+      }
+      if (events == null) {
+        events = new ArrayList<>(2);
+      }
+      if (crosses(from, to, offset - STOP_RADIUS_M)) {
+        events.add(event(StopEvent.Type.ARRIVED, current, geometry, i,
+            interpolate(from, to, fromTime, toTime, offset - STOP_RADIUS_M)));
+      }
+      if (crosses(from, to, offset + STOP_RADIUS_M)) {
+        events.add(event(StopEvent.Type.DEPARTED, current, geometry, i,
+            interpolate(from, to, fromTime, toTime, offset + STOP_RADIUS_M)));
+      }
+    }
+    return events != null ? events : List.of();
+  }
+
+  private static boolean crosses(double from, double to, double threshold) {
+    return from < threshold && threshold <= to;
+  }
+
+  private static long interpolate(double from, double to, long fromTime, long toTime, double at) {
+    return fromTime + Math.round((at - from) / (to - from) * (toTime - fromTime));
+  }
+
+  private static StopEvent event(StopEvent.Type type, VehicleState state, TripGeometry geometry, int stopIndex,
+      long epochSecond) {
+    int scheduledSeconds = type == StopEvent.Type.DEPARTED
+        ? geometry.getScheduledDepartureSeconds(stopIndex)
+        : geometry.getScheduledArrivalSeconds(stopIndex);
+    long scheduledEpoch = ServiceTime.toEpochSecond(scheduledSeconds,
+        ServiceTime.nearestServiceDate(scheduledSeconds, epochSecond, VANCOUVER_TIMEZONE), VANCOUVER_TIMEZONE);
+    return new StopEvent(type, epochSecond, state.getVehicleId(), geometry.getTripId(), state.getRouteId(),
+        state.getDirectionId(), geometry.getStopId(stopIndex), geometry.getStopSequence(stopIndex), scheduledEpoch);
+  }
+}
@@ -0,0 +1,77 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.tracker.domain.Trip;
+
+/**
+ * A trip's stop pattern laid onto its shape
+ * Stop offsets (distance along the shape) are computed once per trip so that
+ * ETA-to-stop becomes a subtraction against the vehicle's projected progress.
+ */
+public class TripGeometry {
+
+  private final Trip trip;
+  private final ShapeGeometry shape;
+  private final String[] stopIds;
+  private final int[] stopSequences;
+  private final double[] stopOffsetsM;
+  private final int[] scheduledArrivals; // service-day seconds
+  private final int[] scheduledDepartures; // service-day seconds, the arrival where stop_times has none
+
+  public TripGeometry(Trip trip, ShapeGeometry shape, String[] stopIds, int[] stopSequences,
+      double[] stopOffsetsM, int[] scheduledArrivals, int[] scheduledDepartures) {
+    this.trip = trip;
+    this.shape = shape;
+    this.stopIds = stopIds;
+    this.stopSequences = stopSequences;
+    this.stopOffsetsM = stopOffsetsM;
+    this.scheduledArrivals = scheduledArrivals;
+    this.scheduledDepartures = scheduledDepartures;
+  }
+
+  /**
+   * Index of the first occurrence of stopId at or after fromIndex, or -1
+   */
+  public int indexOfStop(String stopId, int fromIndex) {
+    for (int i = Math.max(0, fromIndex); i < stopIds.length; i++) {
+      if (stopIds[i].equals(stopId)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Index of the first stop not yet reached at the given progress
+   * A stop counts as reached once the vehicle is within toleranceM of it
+   * @return stop index, or getStopCount() when the trip is complete
+   */
+  public int nextStopIndex(double distanceAlongM, double toleranceM) {
+    int low = 0;
+    int high = stopOffsetsM.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (stopOffsetsM[mid] + toleranceM <= distanceAlongM) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  public Trip getTrip() { return trip; }
+  public String getTripId() { return trip.getTripId(); }
+  public ShapeGeometry getShape() { return shape; }
+  public int getStopCount() { return stopIds.length; }
+  public String getStopId(int index) { return stopIds[index]; }
+  public int getStopSequence(int index) { return stopSequences[index]; }
+  public double getStopOffsetM(int index) { return stopOffsetsM[index]; }
+  public int getScheduledArrivalSeconds(int index) { return scheduledArrivals[index]; }
+  public int getScheduledDepartureSeconds(int index) { return scheduledDepartures[index]; }
+
+  @Override
+  public String toString() {
+    return String.format("TripGeometry{tripId='%s', shapeId='%s', stops=%d, length=%.0fm}",
+        trip.getTripId(), shape.getShapeId(), stopIds.length, shape.getTotalLengthM());
+  }
+}
@@ -0,0 +1,129 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.tracker.domain.ShapePoint;
+import com.bustracker.tracker.domain.Stop;
+import com.bustracker.tracker.domain.StopTime;
+import com.bustracker.tracker.domain.Trip;
+import com.bustracker.tracker.repository.GtfsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lazily builds and caches shape polylines and per-trip stop offsets
+ * Built on first use of a trip (the first vehicle seen on it), then reused for
+ * every subsequent position update and arrivals query on that trip.
+ */
+@Service
+public class TripGeometryService {
+
+  private static final Logger logger = LoggerFactory.getLogger(TripGeometryService.class);
+
+  private final GtfsRepository gtfsRepository;
+
+  private final Map<String, Optional<ShapeGeometry>> shapesById = new ConcurrentHashMap<>();
+  private final Map<String, Optional<TripGeometry>> tripsById = new ConcurrentHashMap<>();
+
+  @Autowired
+  public TripGeometryService(GtfsRepository gtfsRepository) {
+    this.gtfsRepository = gtfsRepository;
+  }
+
+  /**
+   * Get the geometry for a trip
+   * @return geometry, or empty if the trip is unknown, has no shape or no stop times
+   */
+  public Optional<TripGeometry> getTripGeometry(String tripId) {
+    if (tripId == null) {
+      return Optional.empty();
+    }
+    Optional<TripGeometry> cached = tripsById.get(tripId);
+    if (cached != null) {
+      return cached;
+    }
+
+    // Unknown trips are not cached: GTFS data may simply not be loaded yet
+    Optional<Trip> tripOpt = gtfsRepository.findTripById(tripId);
+    if (tripOpt.isEmpty()) {
+      return Optional.empty();
+    }
+
+    Optional<TripGeometry> geometry = buildTripGeometry(tripOpt.get());
+    tripsById.put(tripId, geometry);
+    return geometry;
+  }
+
+  /**
+   * Drop all cached geometry (after a GTFS reload)
+   */
+  public void clear() {
+    shapesById.clear();
+    tripsById.clear();
+  }
+
+  private Optional<TripGeometry> buildTripGeometry(Trip trip) {
+    if (!trip.hasShape()) {
+      return Optional.empty();
+    }
+
+    Optional<ShapeGeometry> shapeOpt = shapesById.computeIfAbsent(trip.getShapeId(), this::buildShapeGeometry);
+    if (shapeOpt.isEmpty()) {
+      return Optional.empty();
+    }
+    ShapeGeometry shape = shapeOpt.get();
+
+    // Stop times are already ordered by stop sequence in the repository
+    List<StopTime> stopTimes = gtfsRepository.findStopTimesByTripId(trip.getTripId());
+    if (stopTimes.isEmpty()) {
+      return Optional.empty();
+    }
+
+    int n = stopTimes.size();
+    String[] stopIds = new String[n];
+    int[] stopSequences = new int[n];
+    double[] stopOffsets = new double[n];
+    int[] scheduledArrivals = new int[n];
+    int[] scheduledDepartures = new int[n];
+
+    // Project stops in order, never searching behind the previous stop,
+    // so loops and out-and-back shapes keep stop offsets monotonic
+    int fromSegment = 0;
+    for (int i = 0; i < n; i++) {
+      StopTime stopTime = stopTimes.get(i);
+      stopIds[i] = stopTime.getStopId();
+      stopSequences[i] = stopTime.getStopSequence();
+      scheduledArrivals[i] = stopTime.getArrivalSeconds();
+      int departure = stopTime.getDepartureSeconds();
+      scheduledDepartures[i] = departure >= 0 ? departure : stopTime.getArrivalSeconds();
+
+      Optional<Stop> stop = gtfsRepository.findStopById(stopTime.getStopId());
+      if (stop.isEmpty()) {
+        stopOffsets[i] = i > 0 ? stopOffsets[i - 1] : 0.0;
+        continue;
+      }
+      ShapeGeometry.Projection projection = shape.project(stop.get().getStopLat(), stop.get().getStopLon(), fromSegment);
+      stopOffsets[i] = Math.max(projection.getDistanceAlongM(), i > 0 ? stopOffsets[i - 1] : 0.0);
+      fromSegment = projection.getSegmentIndex();
+    }
+
+    TripGeometry geometry = new TripGeometry(trip, shape, stopIds, stopSequences, stopOffsets, scheduledArrivals,
+        scheduledDepartures);
+    logger.debug("Built {}", geometry);
+    return Optional.of(geometry);
+  }
+
+  private Optional<ShapeGeometry> buildShapeGeometry(String shapeId) {
+    List<ShapePoint> points = gtfsRepository.findShapePointsByShapeId(shapeId);
+    if (points.size() < 2) {
+      logger.warn("Shape {} has {} points, cannot build geometry", shapeId, points.size());
+      return Optional.empty();
+    }
+    return Optional.of(new ShapeGeometry(shapeId, points));
+  }
+}
@@ -0,0 +1,156 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.shared.gtfs.GtfsRealtime;
+
+import java.util.List;
+
+/**
+ * Agency-provided predictions for one trip, flattened from a GTFS-RT TripUpdate
+ * Stop time updates are kept in parallel arrays ordered by stop sequence. A
+ * delay given for a stop applies to the following stops until the next update
+ * (GTFS-RT delay propagation); the trip-level delay applies where no stop
+ * delay does, including updates that carry no stop time updates at all.
+ */
+public class TripPrediction {
+
+  private static final int NO_DELAY = Integer.MIN_VALUE;
+
+  private final String tripId;
+  private final String routeId;
+  private final Integer directionId;
+  private final String vehicleId;
+  private final boolean canceled;
+  private final long timestamp;
+  private final int tripDelay; // seconds, NO_DELAY if not given
+
+  private final int[] stopSequences;
+  private final String[] stopIds;
+  private final long[] arrivalTimes; // epoch seconds, 0 if not given
+  private final int[] delays; // seconds, NO_DELAY if not given
+  private final boolean[] skipped;
+
+  private TripPrediction(String tripId, String routeId, Integer directionId, String vehicleId,
+      boolean canceled, long timestamp, int tripDelay, int[] stopSequences, String[] stopIds,
+      long[] arrivalTimes, int[] delays, boolean[] skipped) {
+    this.tripId = tripId;
+    this.routeId = routeId;
+    this.directionId = directionId;
+    this.vehicleId = vehicleId;
+    this.canceled = canceled;
+    this.timestamp = timestamp;
+    this.tripDelay = tripDelay;
+    this.stopSequences = stopSequences;
+    this.stopIds = stopIds;
+    this.arrivalTimes = arrivalTimes;
+    this.delays = delays;
+    this.skipped = skipped;
+  }
+
+  /**
+   * Flatten a TripUpdate
+   * @param receivedAtSeconds used as the timestamp when the update carries none
+   */
+  public static TripPrediction from(GtfsRealtime.TripUpdate update, long receivedAtSeconds) {
+    GtfsRealtime.TripDescriptor trip = update.getTrip();
+    List<GtfsRealtime.TripUpdate.StopTimeUpdate> updates = update.getStopTimeUpdateList();
+
+    int n = updates.size();
+    int[] stopSequences = new int[n];
+    String[] stopIds = new String[n];
+    long[] arrivalTimes = new long[n];
+    int[] delays = new int[n];
+    boolean[] skipped = new boolean[n];
+
+    for (int i = 0; i < n; i++) {
+      GtfsRealtime.TripUpdate.StopTimeUpdate stu = updates.get(i);
+      stopSequences[i] = stu.hasStopSequence() ? stu.getStopSequence() : -1;
+      stopIds[i] = stu.hasStopId() ? stu.getStopId() : null;
+      skipped[i] = stu.getScheduleRelationship()
+          == GtfsRealtime.TripUpdate.StopTimeUpdate.ScheduleRelationship.SKIPPED;
+
+      // Prefer arrival, fall back to departure (first stops often only have departures)
+      GtfsRealtime.TripUpdate.StopTimeEvent event = stu.hasArrival() ? stu.getArrival()
+          : stu.hasDeparture() ? stu.getDeparture() : null;
+      arrivalTimes[i] = event != null && event.hasTime() ? event.getTime() : 0;
+      delays[i] = event != null && event.hasDelay() ? event.getDelay() : NO_DELAY;
+    }
+
+    return new TripPrediction(trip.getTripId(),
+        trip.hasRouteId() ? trip.getRouteId() : null,
+        trip.hasDirectionId() ? trip.getDirectionId() : null,
+        update.hasVehicle() && update.getVehicle().hasId() ? update.getVehicle().getId() : null,
+        trip.getScheduleRelationship() == GtfsRealtime.TripDescriptor.ScheduleRelationship.CANCELED,
+        update.hasTimestamp() ? update.getTimestamp() : receivedAtSeconds,
+        update.hasDelay() ? update.getDelay() : NO_DELAY,
+        stopSequences, stopIds, arrivalTimes, delays, skipped);
+  }
+
+  /**
+   * Predicted arrival given explicitly for this stop
+   * @return epoch seconds, or 0 if the agency gave no absolute time for it
+   */
+  public long getArrivalTimeAt(int stopSequence, String stopId) {
+    int index = indexOf(stopSequence, stopId);
+    return index >= 0 ? arrivalTimes[index] : 0;
+  }
+
+  /**
+   * Delay at this stop: its own, propagated from the closest earlier stop that has
+   * one, or else the trip-level delay
+   * @return delay in seconds, or null if no delay applies
+   */
+  public Integer getDelayAt(int stopSequence, String stopId) {
+    int index = indexOf(stopSequence, stopId);
+    int last = index >= 0 ? index : lastIndexBefore(stopSequence);
+    for (int i = last; i >= 0; i--) {
+      if (delays[i] != NO_DELAY) {
+        return delays[i];
+      }
+    }
+    return tripDelay != NO_DELAY ? tripDelay : null;
+  }
+
+  /**
+   * True if the agency says this trip will not serve the stop
+   */
+  public boolean isSkippedAt(int stopSequence, String stopId) {
+    int index = indexOf(stopSequence, stopId);
+    return canceled || (index >= 0 && skipped[index]);
+  }
+
+  /**
+   * Update for exactly this stop: by sequence when the feed gives one, else by stop id
+   */
+  private int indexOf(int stopSequence, String stopId) {
+    for (int i = 0; i < stopSequences.length; i++) {
+      if (stopSequences[i] >= 0 ? stopSequences[i] == stopSequence : stopIds[i] != null && stopIds[i].equals(stopId)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int lastIndexBefore(int stopSequence) {
+    int last = -1;
+    for (int i = 0; i < stopSequences.length && stopSequences[i] < stopSequence; i++) {
+      if (stopSequences[i] >= 0) {
+        last = i;
+      }
+    }
+    return last;
+  }
+
+  public String getTripId() { return tripId; }
+  public String getRouteId() { return routeId; }
+  public Integer getDirectionId() { return directionId; }
+  public String getVehicleId() { return vehicleId; }
+  public boolean isCanceled() { return canceled; }
+  public long getTimestamp() { return timestamp; }
+  public int getStopTimeUpdateCount() { return stopSequences.length; }
+
+  @Override
+  public String toString() {
+    return String.format("TripPrediction{tripId='%s', routeId='%s', canceled=%s, updates=%d, timestamp=%d}",
+        tripId, routeId, canceled, stopSequences.length, timestamp);
+  }
+}
@@ -0,0 +1,109 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.shared.gtfs.GtfsRealtime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latest agency prediction per trip, indexed by trip and by route/direction
+ * Fed by the trip-updates topic; predictions not refreshed within the
+ * retention window (finished or dropped trips) are evicted.
+ */
+@Service
+public class TripUpdateStore {
+
+  private static final Logger logger = LoggerFactory.getLogger(TripUpdateStore.class);
+
+  private final long retentionSeconds;
+
+  private final Map<String, TripPrediction> predictionsByTrip = new ConcurrentHashMap<>();
+  private final Map<String, Map<String, TripPrediction>> predictionsByRouteDirection = new ConcurrentHashMap<>();
+
+  @Autowired
+  public TripUpdateStore(@Value("${tracker.trip-updates.retention-seconds:900}") long retentionSeconds) {
+    this.retentionSeconds = retentionSeconds;
+  }
+
+  /**
+   * Store a trip update, ignoring it if an equal or newer one is already stored
+   * @return true if stored
+   */
+  public boolean update(GtfsRealtime.TripUpdate tripUpdate) {
+    TripPrediction prediction = TripPrediction.from(tripUpdate, System.currentTimeMillis() / 1000);
+    // The route index is maintained inside compute so updates of one trip apply in order
+    TripPrediction stored = predictionsByTrip.compute(prediction.getTripId(), (tripId, previous) -> {
+      if (previous != null && previous.getTimestamp() >= prediction.getTimestamp()) {
+        return previous;
+      }
+      if (previous != null && !routeDirectionKey(previous).equals(routeDirectionKey(prediction))) {
+        removeFromRouteIndex(previous);
+      }
+      predictionsByRouteDirection
+          .computeIfAbsent(routeDirectionKey(prediction), k -> new ConcurrentHashMap<>())
+          .put(tripId, prediction);
+      return prediction;
+    });
+    return stored == prediction;
+  }
+
+  private void remove(TripPrediction stale) {
+    // Only if not refreshed since the eviction scan read it
+    if (predictionsByTrip.remove(stale.getTripId(), stale)) {
+      removeFromRouteIndex(stale);
+    }
+  }
+
+  public TripPrediction getPrediction(String tripId) {
+    return tripId != null ? predictionsByTrip.get(tripId) : null;
+  }
+
+  /**
+   * Predictions for all trips on a route and direction
+   */
+  public Collection<TripPrediction> getPredictions(String routeId, int directionId) {
+    Map<String, TripPrediction> group = predictionsByRouteDirection.get(routeId + ":" + directionId);
+    return group != null ? group.values() : Collections.emptyList();
+  }
+
+  /**
+   * Evict predictions that have not been refreshed within the retention window
+   */
+  @Scheduled(cron = "30 * * * * *")
+  public void evictStale() {
+    long cutoff = System.currentTimeMillis() / 1000 - retentionSeconds;
+    int before = predictionsByTrip.size();
+    predictionsByTrip.values().stream()
+        .filter(prediction -> prediction.getTimestamp() < cutoff)
+        .toList()
+        .forEach(this::remove);
+
+    int evicted = before - predictionsByTrip.size();
+    if (evicted > 0) {
+      logger.debug("Evicted {} stale trip predictions, {} remaining", evicted, predictionsByTrip.size());
+    }
+  }
+
+  public int size() {
+    return predictionsByTrip.size();
+  }
+
+  private void removeFromRouteIndex(TripPrediction prediction) {
+    Map<String, TripPrediction> group = predictionsByRouteDirection.get(routeDirectionKey(prediction));
+    if (group != null) {
+      group.remove(prediction.getTripId(), prediction);
+    }
+  }
+
+  private static String routeDirectionKey(TripPrediction prediction) {
+    return prediction.getRouteId() + ":" + prediction.getDirectionId();
+  }
+}
@@ -1,6 +1,7 @@
 package com.bustracker.tracker.service;
 
 import com.bustracker.shared.model.VehiclePosition;
+import com.bustracker.tracker.domain.ServiceTime;
 import com.bustracker.tracker.domain.Stop;
 import com.bustracker.tracker.repository.GtfsRepository;
 import org.slf4j.Logger;
@@ -9,7 +10,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
@@ -28,20 +32,32 @@ public class VehicleCorrelationService {
   private static final double MIN_MEANINGFUL_DISTANCE_M = 50.0; // 50m
   private static final int MIN_MEANINGFUL_ETA_SECONDS = 30; // 30 seconds
 
+  // Vancouver timezone for GTFS data
+  private static final ZoneId VANCOUVER_TIMEZONE = ZoneId.of("America/Vancouver");
+
   // Maximum age of vehicle position data to consider (in seconds)
   private static final long MAX_POSITION_AGE_SECONDS = 300; // 5 minutes
 
   private final GtfsRepository gtfsRepository;
   private final VehicleStorageService vehicleStorageService;
   private final EtaCalculationService etaCalculationService;
+  private final VehicleStateService vehicleStateService;
+  private final TripUpdateStore tripUpdateStore;
+  private final ScheduledArrivalService scheduledArrivalService;
 
   @Autowired
   public VehicleCorrelationService(GtfsRepository gtfsRepository,
       VehicleStorageService vehicleStorageService,
-      EtaCalculationService etaCalculationService) {
+      EtaCalculationService etaCalculationService,
+      VehicleStateService vehicleStateService,
+      TripUpdateStore tripUpdateStore,
+      ScheduledArrivalService scheduledArrivalService) {
     this.gtfsRepository = gtfsRepository;
     this.vehicleStorageService = vehicleStorageService;
     this.etaCalculationService = etaCalculationService;
+    this.vehicleStateService = vehicleStateService;
+    this.tripUpdateStore = tripUpdateStore;
+    this.scheduledArrivalService = scheduledArrivalService;
   }
 
   /**
@@ -62,42 +78,120 @@ public class VehicleCorrelationService {
     }
     var targetStop = stopOpt.get();
 
-    // Get all current vehicle positions
-    var allVehicles = vehicleStorageService.getAllVehicles();
-
-    // Filter vehicles for this route and direction
-    var routeVehicles = allVehicles.stream()
-        .filter(vehicle -> routeId.equals(vehicle.getRouteId()))
-        .filter(vehicle -> vehicle.getDirectionId() != null && vehicle.getDirectionId() == directionId)
-        .filter(this::isVehicleDataFresh)
+    // Derived states are maintained at ingest time by VehicleStateService,
+    // so this is a lookup plus arithmetic per vehicle on the route
+    var routeStates = vehicleStateService.getVehicleStates(routeId, directionId).stream()
+        .filter(state -> isVehicleDataFresh(state.getPosition()))
         .toList();
 
-    logger.debug("Found {} vehicles on route {} direction {} (total vehicles: {})",
-        routeVehicles.size(), routeId, directionId, allVehicles.size());
+    logger.debug("Found {} vehicles on route {} direction {}", routeStates.size(), routeId, directionId);
 
     // Calculate distance and ETA for each vehicle to the target stop
-    var approachingVehicles = routeVehicles.stream()
-        .map(vehicle -> {
-          var etaResult = etaCalculationService.calculateEta(vehicle, targetStop);
-          return new ApproachingVehicle(vehicle, targetStop, etaResult);
-        })
-        .filter(av -> av.getEtaResult().getDistanceMeters() <= MAX_APPROACH_DISTANCE_M)
-        .filter(this::isMeaningfulArrival)
+    var approachingVehicles = routeStates.stream()
+        .map(state -> toApproachingVehicle(state, targetStop))
+        .filter(av -> av != null && isApproaching(av))
         .sorted((a, b) -> Double.compare(a.getEtaResult().getDistanceMeters(), b.getEtaResult().getDistanceMeters()))
         .collect(Collectors.toList());
 
     logger.debug("Found {} meaningful vehicles approaching stop {} (filtered from {} total vehicles on route)",
-        approachingVehicles.size(), targetStop.getStopName(), routeVehicles.size());
+        approachingVehicles.size(), targetStop.getStopName(), routeStates.size());
 
     return approachingVehicles;
   }
 
+  /**
+   * Evaluate a single vehicle against a stop (used for incremental updates)
+   * @param state Derived vehicle state
+   * @param targetStop Target stop
+   * @return approaching vehicle, or empty if stale, too far, passed or already at the stop
+   */
+  public Optional<ApproachingVehicle> findApproach(VehicleState state, Stop targetStop) {
+    if (!isVehicleDataFresh(state.getPosition())) {
+      return Optional.empty();
+    }
+    ApproachingVehicle approachingVehicle = toApproachingVehicle(state, targetStop);
+    return approachingVehicle != null && isApproaching(approachingVehicle)
+        ? Optional.of(approachingVehicle)
+        : Optional.empty();
+  }
+
+  private boolean isApproaching(ApproachingVehicle approachingVehicle) {
+    return approachingVehicle.getEtaResult().getDistanceMeters() <= MAX_APPROACH_DISTANCE_M
+        && isMeaningfulArrival(approachingVehicle);
+  }
+
+  /**
+   * Build the approaching-vehicle view of a derived state for one stop
+   * @return approaching vehicle, or null if the vehicle has already passed the stop
+   */
+  private ApproachingVehicle toApproachingVehicle(VehicleState state, Stop targetStop) {
+    if (!state.isOnShape()) {
+      // No usable geometry for this vehicle - fall back to per-request calculation
+      return new ApproachingVehicle(state.getPosition(), targetStop,
+          etaCalculationService.calculateEta(state.getPosition(), targetStop));
+    }
+
+    TripGeometry geometry = state.getGeometry();
+    int stopIndex = geometry.indexOfStop(targetStop.getStopId(), state.getNextStopIndex());
+    if (stopIndex < 0) {
+      logger.debug("Vehicle {} has already passed stop {} (or its trip does not serve it)",
+          state.getVehicleId(), targetStop.getStopId());
+      return null;
+    }
+
+    TripPrediction prediction = tripUpdateStore.getPrediction(geometry.getTripId());
+    if (prediction != null && prediction.isSkippedAt(geometry.getStopSequence(stopIndex), targetStop.getStopId())) {
+      logger.debug("Trip {} will not serve stop {} (agency prediction)", geometry.getTripId(), targetStop.getStopId());
+      return null;
+    }
+
+    // Agency prediction when there is one, otherwise distance over speed
+    double distance = state.distanceToStopM(stopIndex);
+    Integer predictedEta = prediction != null ? predictedEtaSeconds(prediction, geometry, stopIndex) : null;
+    int etaSeconds = predictedEta != null ? predictedEta : etaCalculationService.calculateEtaSeconds(distance);
+    var etaResult = new EtaCalculationService.EtaResult(distance, etaSeconds,
+        etaCalculationService.calculateEtaMinutes(etaSeconds));
+
+    var scheduledArrival = new ScheduledArrivalService.ScheduledArrival(geometry.getTripId(), targetStop.getStopId(),
+        geometry.getScheduledArrivalSeconds(stopIndex), geometry.getStopSequence(stopIndex));
+
+    return new ApproachingVehicle(state.getPosition(), targetStop, etaResult, scheduledArrival);
+  }
+
+  /**
+   * ETA from an agency prediction: its absolute arrival time for the stop, or the
+   * scheduled arrival shifted by the (propagated) delay
+   * @return seconds from now, or null if the prediction does not cover the stop
+   *         or says the vehicle is already past it
+   */
+  private Integer predictedEtaSeconds(TripPrediction prediction, TripGeometry geometry, int stopIndex) {
+    int stopSequence = geometry.getStopSequence(stopIndex);
+    String stopId = geometry.getStopId(stopIndex);
+
+    long now = System.currentTimeMillis() / 1000;
+    long eta;
+    long arrivalTime = prediction.getArrivalTimeAt(stopSequence, stopId);
+    if (arrivalTime > 0) {
+      eta = arrivalTime - now;
+    } else {
+      Integer delay = prediction.getDelayAt(stopSequence, stopId);
+      if (delay == null) {
+        return null;
+      }
+      int predicted = geometry.getScheduledArrivalSeconds(stopIndex) + delay;
+      eta = ServiceTime.toEpochSecond(predicted,
+          ServiceTime.nearestServiceDate(predicted, now, VANCOUVER_TIMEZONE), VANCOUVER_TIMEZONE) - now;
+    }
+    // A prediction already in the past disagrees with the position; trust the position
+    return eta >= 0 ? (int) eta : null;
+  }
+
   /**
    * Check if vehicle position data is fresh enough to use
    * @param vehicle Vehicle position
    * @return true if data is fresh
    */
-  private boolean isVehicleDataFresh(VehiclePosition vehicle) {
+  public boolean isVehicleDataFresh(VehiclePosition vehicle) {
     long currentTime = System.currentTimeMillis() / 1000; // Current time in seconds
     long vehicleTime = vehicle.getTimestamp();
     long ageSeconds = currentTime - vehicleTime;
@@ -163,6 +257,56 @@ public class VehicleCorrelationService {
         (int) direction0Count, (int) direction1Count);
   }
 
+  /**
+   * Schedule adherence of every vehicle on a route, measured at each vehicle's next stop
+   * All vehicles are correlated in one batch against a single clock reading.
+   * @param routeId GTFS route ID
+   * @return RouteDelays with per-vehicle delays and on-time/early/delayed counts
+   */
+  public RouteDelays getRouteDelays(String routeId) {
+    List<VehicleState> states = new ArrayList<>();
+    for (int directionId = 0; directionId <= 1; directionId++) {
+      for (VehicleState state : vehicleStateService.getVehicleStates(routeId, directionId)) {
+        if (state.isOnShape() && state.getNextStopIndex() < state.getGeometry().getStopCount()
+            && isVehicleDataFresh(state.getPosition())) {
+          states.add(state);
+        }
+      }
+    }
+
+    ScheduledArrivalService.DelayBatch delays = new ScheduledArrivalService.DelayBatch(states.size());
+    for (VehicleState state : states) {
+      TripGeometry geometry = state.getGeometry();
+      int stopIndex = state.getNextStopIndex();
+      TripPrediction prediction = tripUpdateStore.getPrediction(geometry.getTripId());
+      Integer predictedEta = prediction != null ? predictedEtaSeconds(prediction, geometry, stopIndex) : null;
+      int etaSeconds = predictedEta != null
+          ? predictedEta
+          : etaCalculationService.calculateEtaSeconds(state.distanceToStopM(stopIndex));
+      delays.add(geometry.getTripId(), geometry.getStopId(stopIndex),
+          geometry.getScheduledArrivalSeconds(stopIndex), etaSeconds);
+    }
+    scheduledArrivalService.calculateDelays(delays);
+
+    List<VehicleDelay> vehicles = new ArrayList<>(states.size());
+    int[] statusCounts = new int[ScheduledArrivalService.DelayStatus.values().length];
+    long totalDelaySeconds = 0;
+    for (int i = 0; i < delays.size(); i++) {
+      VehicleState state = states.get(i);
+      ScheduledArrivalService.DelayStatus status = delays.getStatus(i);
+      statusCounts[status.ordinal()]++;
+      totalDelaySeconds += delays.getDelaySeconds(i);
+      vehicles.add(new VehicleDelay(state.getVehicleId(), state.getTripId(), state.getDirectionId(),
+          state.getGeometry().getStopId(state.getNextStopIndex()), delays.getDelaySeconds(i), status.getDisplayName()));
+    }
+
+    return new RouteDelays(routeId, delays.getComputedAtEpochSecond(), vehicles,
+        statusCounts[ScheduledArrivalService.DelayStatus.ON_TIME.ordinal()],
+        statusCounts[ScheduledArrivalService.DelayStatus.EARLY.ordinal()],
+        statusCounts[ScheduledArrivalService.DelayStatus.DELAYED.ordinal()],
+        vehicles.isEmpty() ? 0 : (int) (totalDelaySeconds / vehicles.size()));
+  }
+
   /**
    * Container class for vehicles approaching a stop with ETA information
    */
@@ -170,18 +314,27 @@ public class VehicleCorrelationService {
     private final VehiclePosition vehicle;
     private final Stop targetStop;
     private final EtaCalculationService.EtaResult etaResult;
+    private final ScheduledArrivalService.ScheduledArrival scheduledArrival;
     private final Instant calculatedAt;
 
     public ApproachingVehicle(VehiclePosition vehicle, Stop targetStop, EtaCalculationService.EtaResult etaResult) {
+      this(vehicle, targetStop, etaResult, null);
+    }
+
+    public ApproachingVehicle(VehiclePosition vehicle, Stop targetStop, EtaCalculationService.EtaResult etaResult,
+        ScheduledArrivalService.ScheduledArrival scheduledArrival) {
       this.vehicle = vehicle;
       this.targetStop = targetStop;
       this.etaResult = etaResult;
+      this.scheduledArrival = scheduledArrival;
       this.calculatedAt = Instant.now();
     }
 
     public VehiclePosition getVehicle() { return vehicle; }
     public Stop getTargetStop() { return targetStop; }
     public EtaCalculationService.EtaResult getEtaResult() { return etaResult; }
+    public ScheduledArrivalService.ScheduledArrival getScheduledArrival() { return scheduledArrival; }
+    public boolean hasScheduledArrival() { return scheduledArrival != null; }
     public Instant getCalculatedAt() { return calculatedAt; }
 
     @Override
@@ -219,4 +372,71 @@ public class VehicleCorrelationService {
           totalVehicles, freshVehicles, direction0Count, direction1Count);
     }
   }
+
+  /**
+   * Delay of one vehicle at its next stop (positive = late)
+   */
+  public static class VehicleDelay {
+    private final String vehicleId;
+    private final String tripId;
+    private final Integer directionId;
+    private final String nextStopId;
+    private final int delaySeconds;
+    private final String status;
+
+    public VehicleDelay(String vehicleId, String tripId, Integer directionId, String nextStopId,
+        int delaySeconds, String status) {
+      this.vehicleId = vehicleId;
+      this.tripId = tripId;
+      this.directionId = directionId;
+      this.nextStopId = nextStopId;
+      this.delaySeconds = delaySeconds;
+      this.status = status;
+    }
+
+    public String getVehicleId() { return vehicleId; }
+    public String getTripId() { return tripId; }
+    public Integer getDirectionId() { return directionId; }
+    public String getNextStopId() { return nextStopId; }
+    public int getDelaySeconds() { return delaySeconds; }
+    public String getStatus() { return status; }
+  }
+
+  /**
+   * Schedule adherence summary for a route
+   */
+  public static class RouteDelays {
+    private final String routeId;
+    private final long computedAt;
+    private final List<VehicleDelay> vehicles;
+    private final int onTimeCount;
+    private final int earlyCount;
+    private final int delayedCount;
+    private final int averageDelaySeconds;
+
+    public RouteDelays(String routeId, long computedAt, List<VehicleDelay> vehicles,
+        int onTimeCount, int earlyCount, int delayedCount, int averageDelaySeconds) {
+      this.routeId = routeId;
+      this.computedAt = computedAt;
+      this.vehicles = vehicles;
+      this.onTimeCount = onTimeCount;
+      this.earlyCount = earlyCount;
+      this.delayedCount = delayedCount;
+      this.averageDelaySeconds = averageDelaySeconds;
+    }
+
+    public String getRouteId() { return routeId; }
+    public long getComputedAt() { return computedAt; }
+    public List<VehicleDelay> getVehicles() { return vehicles; }
+    public int getOnTimeCount() { return onTimeCount; }
+    public int getEarlyCount() { return earlyCount; }
+    public int getDelayedCount() { return delayedCount; }
+    public int getAverageDelaySeconds() { return averageDelaySeconds; }
+
+    @Override
+    public String toString() {
+      return String.format("RouteDelays{route=%s, vehicles=%d, onTime=%d, early=%d, delayed=%d, avgDelay=%ds}",
+          routeId, vehicles.size(), onTimeCount, earlyCount, delayedCount, averageDelaySeconds);
+    }
+  }
 }
@@ -0,0 +1,127 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.shared.model.VehiclePosition;
+
+/**
+ * Fixed-capacity ring buffer of recent fixes for one vehicle
+ * Stores timestamp, lat, lon, speed and bearing in parallel primitive arrays
+ * so recording a fix never allocates. Missing speed/bearing are stored as NaN.
+ */
+public class VehiclePositionHistory {
+
+  private final long[] timestamps;
+  private final double[] latitudes;
+  private final double[] longitudes;
+  private final float[] speeds;
+  private final float[] bearings;
+
+  private int next; // index of the slot written next
+  private int size;
+
+  public VehiclePositionHistory(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("History capacity must be positive: " + capacity);
+    }
+    this.timestamps = new long[capacity];
+    this.latitudes = new double[capacity];
+    this.longitudes = new double[capacity];
+    this.speeds = new float[capacity];
+    this.bearings = new float[capacity];
+  }
+
+  /**
+   * Record a fix, overwriting the oldest one when full
+   * Fixes that are not newer than the latest recorded one (republished or
+   * out-of-order messages) are ignored
+   * @return true if the fix was recorded
+   */
+  public synchronized boolean record(VehiclePosition position) {
+    if (size > 0 && position.getTimestamp() <= timestamps[newestIndex()]) {
+      return false;
+    }
+
+    timestamps[next] = position.getTimestamp();
+    latitudes[next] = position.getLatitude();
+    longitudes[next] = position.getLongitude();
+    speeds[next] = position.getSpeed() != null ? position.getSpeed() : Float.NaN;
+    bearings[next] = position.getBearing() != null ? position.getBearing() : Float.NaN;
+
+    next = (next + 1) % timestamps.length;
+    if (size < timestamps.length) {
+      size++;
+    }
+    return true;
+  }
+
+  /**
+   * Timestamp of the newest recorded fix, or -1 when empty
+   */
+  public synchronized long getLatestTimestamp() {
+    return size > 0 ? timestamps[newestIndex()] : -1;
+  }
+
+  public int getCapacity() {
+    return timestamps.length;
+  }
+
+  /**
+   * Copy the recorded fixes, oldest first
+   */
+  public synchronized Snapshot snapshot() {
+    long[] ts = new long[size];
+    double[] lat = new double[size];
+    double[] lon = new double[size];
+    float[] spd = new float[size];
+    float[] brg = new float[size];
+
+    int start = (next - size + timestamps.length) % timestamps.length;
+    for (int i = 0; i < size; i++) {
+      int slot = (start + i) % timestamps.length;
+      ts[i] = timestamps[slot];
+      lat[i] = latitudes[slot];
+      lon[i] = longitudes[slot];
+      spd[i] = speeds[slot];
+      brg[i] = bearings[slot];
+    }
+    return new Snapshot(ts, lat, lon, spd, brg);
+  }
+
+  private int newestIndex() {
+    return (next - 1 + timestamps.length) % timestamps.length;
+  }
+
+  /**
+   * Immutable copy of a vehicle's recent fixes, ordered oldest to newest
+   */
+  public static class Snapshot {
+    private final long[] timestamps;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final float[] speeds;
+    private final float[] bearings;
+
+    Snapshot(long[] timestamps, double[] latitudes, double[] longitudes, float[] speeds, float[] bearings) {
+      this.timestamps = timestamps;
+      this.latitudes = latitudes;
+      this.longitudes = longitudes;
+      this.speeds = speeds;
+      this.bearings = bearings;
+    }
+
+    public int size() { return timestamps.length; }
+    public boolean isEmpty() { return timestamps.length == 0; }
+    public long getTimestamp(int index) { return timestamps[index]; }
+    public double getLatitude(int index) { return latitudes[index]; }
+    public double getLongitude(int index) { return longitudes[index]; }
+    public float getSpeed(int index) { return speeds[index]; }
+    public float getBearing(int index) { return bearings[index]; }
+    public boolean hasSpeed(int index) { return !Float.isNaN(speeds[index]); }
+    public boolean hasBearing(int index) { return !Float.isNaN(bearings[index]); }
+
+    @Override
+    public String toString() {
+      return String.format("HistorySnapshot{fixes=%d, from=%d, to=%d}",
+          size(), isEmpty() ? 0 : timestamps[0], isEmpty() ? 0 : timestamps[size() - 1]);
+    }
+  }
+}
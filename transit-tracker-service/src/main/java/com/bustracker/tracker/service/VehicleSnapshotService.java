@@ -0,0 +1,263 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.shared.model.VehiclePosition;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Periodic local checkpoint of live vehicle state for warm restarts
+ *
+ * The vehicle map is written to a compact binary file on the scheduler thread,
+ * never on the Kafka listener thread. Each checkpoint is written sequentially to a
+ * temporary file, fsync'ed and then atomically renamed over the previous one, so a
+ * crash mid-write always leaves the last complete snapshot in place.
+ *
+ * Each vehicle's recent fixes are saved with its position, since they cannot be
+ * recovered from the latest position alone. Matched trip state (VehicleState) is
+ * not saved: it is a pure function of the position and the GTFS geometry, which
+ * may have changed across the restart, so it is recomputed after the restore
+ * (VehicleStateService.rebuildFromStorage).
+ *
+ * File layout (big-endian):
+ *   int magic, byte version, long createdAtMillis, int vehicleCount,
+ *   then one record per vehicle (see writeVehicle) followed by its history (see writeHistory)
+ */
+@Service
+public class VehicleSnapshotService {
+
+  private static final Logger logger = LoggerFactory.getLogger(VehicleSnapshotService.class);
+
+  private static final int MAGIC = 0x56534E50; // "VSNP"
+  private static final byte FORMAT_VERSION = 2;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final VehicleStorageService storageService;
+  private final boolean enabled;
+  private final Path snapshotPath;
+  private final long maxAgeSeconds;
+
+  // Storage update time covered by the last written snapshot
+  private volatile long lastSnapshotUpdateTime = -1;
+
+  @Autowired
+  public VehicleSnapshotService(VehicleStorageService storageService,
+      @Value("${tracker.snapshot.enabled:true}") boolean enabled,
+      @Value("${tracker.snapshot.path:state/vehicle-state.snapshot}") String snapshotPath,
+      @Value("${tracker.snapshot.max-age-seconds:300}") long maxAgeSeconds) {
+    this.storageService = storageService;
+    this.enabled = enabled;
+    this.snapshotPath = Paths.get(snapshotPath);
+    this.maxAgeSeconds = maxAgeSeconds;
+  }
+
+  /**
+   * Reload the last snapshot if it exists and is fresh enough
+   * @return number of vehicles restored
+   */
+  public int restore() {
+    if (!enabled) {
+      return 0;
+    }
+    if (!Files.exists(snapshotPath)) {
+      logger.info("No vehicle state snapshot at {}, starting cold", snapshotPath);
+      return 0;
+    }
+
+    long startedAt = System.currentTimeMillis();
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(snapshotPath), BUFFER_SIZE))) {
+
+      if (in.readInt() != MAGIC) {
+        logger.warn("Ignoring vehicle state snapshot {}: bad magic", snapshotPath);
+        return 0;
+      }
+      byte version = in.readByte();
+      if (version != FORMAT_VERSION) {
+        logger.warn("Ignoring vehicle state snapshot {}: unsupported version {}", snapshotPath, version);
+        return 0;
+      }
+
+      long createdAt = in.readLong();
+      long ageSeconds = (startedAt - createdAt) / 1000;
+      if (ageSeconds > maxAgeSeconds) {
+        logger.info("Vehicle state snapshot is {}s old (max {}s), starting cold", ageSeconds, maxAgeSeconds);
+        return 0;
+      }
+
+      int count = in.readInt();
+      List<VehiclePosition> positions = new ArrayList<>(count);
+      List<VehiclePosition> fixes = new ArrayList<>();
+      for (int i = 0; i < count; i++) {
+        VehiclePosition vehicle = readVehicle(in);
+        positions.add(vehicle);
+        readHistory(in, vehicle.getVehicleId(), fixes);
+      }
+
+      // Older fixes first; the history ignores anything not newer than what live updates recorded
+      storageService.loadHistory(fixes);
+      int restored = storageService.loadVehiclePositions(positions);
+      logger.info("Restored {} vehicles from snapshot ({}s old) in {}ms",
+          restored, ageSeconds, System.currentTimeMillis() - startedAt);
+      return restored;
+
+    } catch (Exception e) {
+      logger.warn("Failed to restore vehicle state snapshot {}: {}", snapshotPath, e.getMessage());
+      return 0;
+    }
+  }
+
+  /**
+   * Scheduled checkpoint - skipped when nothing changed since the last one
+   */
+  @Scheduled(fixedDelayString = "#{${tracker.snapshot.interval-seconds:15} * 1000}",
+      initialDelayString = "#{${tracker.snapshot.interval-seconds:15} * 1000}")
+  public void checkpoint() {
+    if (!enabled) {
+      return;
+    }
+
+    long updateTime = storageService.getLastUpdateTime();
+    if (updateTime == lastSnapshotUpdateTime) {
+      logger.debug("Vehicle state unchanged since last snapshot, skipping");
+      return;
+    }
+
+    try {
+      int written = writeSnapshot(storageService.getAllVehicles());
+      lastSnapshotUpdateTime = updateTime;
+      logger.debug("Wrote vehicle state snapshot with {} vehicles to {}", written, snapshotPath);
+    } catch (Exception e) {
+      logger.error("Failed to write vehicle state snapshot {}: {}", snapshotPath, e.getMessage());
+    }
+  }
+
+  @PreDestroy
+  public void checkpointOnShutdown() {
+    checkpoint();
+  }
+
+  private int writeSnapshot(List<VehiclePosition> vehicles) throws IOException {
+    Path parent = snapshotPath.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    Path tempPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+
+    try (FileChannel channel = FileChannel.open(tempPath,
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+      DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+      out.writeInt(MAGIC);
+      out.writeByte(FORMAT_VERSION);
+      out.writeLong(System.currentTimeMillis());
+      out.writeInt(vehicles.size());
+      for (VehiclePosition vehicle : vehicles) {
+        writeVehicle(out, vehicle);
+        writeHistory(out, storageService.getPositionHistory(vehicle.getVehicleId()));
+      }
+      out.flush();
+
+      // Make the bytes durable before the rename publishes them
+      channel.force(true);
+    }
+
+    Files.move(tempPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    return vehicles.size();
+  }
+
+  private static void writeVehicle(DataOutputStream out, VehiclePosition vehicle) throws IOException {
+    writeNullableString(out, vehicle.getVehicleId());
+    writeNullableString(out, vehicle.getTripId());
+    writeNullableString(out, vehicle.getRouteId());
+    out.writeDouble(vehicle.getLatitude());
+    out.writeDouble(vehicle.getLongitude());
+    out.writeFloat(vehicle.getBearing() != null ? vehicle.getBearing() : Float.NaN);
+    out.writeFloat(vehicle.getSpeed() != null ? vehicle.getSpeed() : Float.NaN);
+    writeNullableString(out, vehicle.getStopId());
+    writeNullableString(out, vehicle.getCurrentStatus());
+    out.writeLong(vehicle.getTimestamp());
+    out.writeByte(vehicle.getDirectionId() != null ? vehicle.getDirectionId() : -1);
+  }
+
+  private static VehiclePosition readVehicle(DataInputStream in) throws IOException {
+    VehiclePosition vehicle = new VehiclePosition();
+    vehicle.setVehicleId(readNullableString(in));
+    vehicle.setTripId(readNullableString(in));
+    vehicle.setRouteId(readNullableString(in));
+    vehicle.setLatitude(in.readDouble());
+    vehicle.setLongitude(in.readDouble());
+    float bearing = in.readFloat();
+    vehicle.setBearing(Float.isNaN(bearing) ? null : bearing);
+    float speed = in.readFloat();
+    vehicle.setSpeed(Float.isNaN(speed) ? null : speed);
+    vehicle.setStopId(readNullableString(in));
+    vehicle.setCurrentStatus(readNullableString(in));
+    vehicle.setTimestamp(in.readLong());
+    byte directionId = in.readByte();
+    vehicle.setDirectionId(directionId >= 0 ? (int) directionId : null);
+    return vehicle;
+  }
+
+  /**
+   * int fixCount, then per fix: long timestamp, double lat, double lon, float speed, float bearing (NaN if absent)
+   */
+  private static void writeHistory(DataOutputStream out, VehiclePositionHistory.Snapshot history) throws IOException {
+    int size = history != null ? history.size() : 0;
+    out.writeInt(size);
+    for (int i = 0; i < size; i++) {
+      out.writeLong(history.getTimestamp(i));
+      out.writeDouble(history.getLatitude(i));
+      out.writeDouble(history.getLongitude(i));
+      out.writeFloat(history.getSpeed(i));
+      out.writeFloat(history.getBearing(i));
+    }
+  }
+
+  private static void readHistory(DataInputStream in, String vehicleId, List<VehiclePosition> fixes) throws IOException {
+    int size = in.readInt();
+    for (int i = 0; i < size; i++) {
+      VehiclePosition fix = new VehiclePosition();
+      fix.setVehicleId(vehicleId);
+      fix.setTimestamp(in.readLong());
+      fix.setLatitude(in.readDouble());
+      fix.setLongitude(in.readDouble());
+      float speed = in.readFloat();
+      fix.setSpeed(Float.isNaN(speed) ? null : speed);
+      float bearing = in.readFloat();
+      fix.setBearing(Float.isNaN(bearing) ? null : bearing);
+      fixes.add(fix);
+    }
+  }
+
+  private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeUTF(value);
+    }
+  }
+
+  private static String readNullableString(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+}
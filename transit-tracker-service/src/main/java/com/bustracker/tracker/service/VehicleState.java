@@ -0,0 +1,73 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.shared.model.VehiclePosition;
+
+/**
+ * Derived per-vehicle state, computed once per position update at ingest time
+ * Holds the matched trip geometry, progress along the shape, the next stop
+ * not yet reached and the current schedule deviation at that stop.
+ */
+public class VehicleState {
+
+  private final VehiclePosition position;
+  private final TripGeometry geometry;
+  private final double shapeDistanceM;
+  private final double distanceFromShapeM;
+  private final int segmentIndex;
+  private final int nextStopIndex;
+  private final Integer delaySeconds;
+  private final long computedAtMillis;
+
+  public VehicleState(VehiclePosition position, TripGeometry geometry, double shapeDistanceM,
+      double distanceFromShapeM, int segmentIndex, int nextStopIndex, Integer delaySeconds) {
+    this.position = position;
+    this.geometry = geometry;
+    this.shapeDistanceM = shapeDistanceM;
+    this.distanceFromShapeM = distanceFromShapeM;
+    this.segmentIndex = segmentIndex;
+    this.nextStopIndex = nextStopIndex;
+    this.delaySeconds = delaySeconds;
+    this.computedAtMillis = System.currentTimeMillis();
+  }
+
+  /**
+   * State for a vehicle that could not be matched onto a trip shape
+   */
+  public static VehicleState unmatched(VehiclePosition position) {
+    return new VehicleState(position, null, Double.NaN, Double.NaN, -1, -1, null);
+  }
+
+  /**
+   * True when the vehicle is matched onto its trip's shape
+   */
+  public boolean isOnShape() {
+    return geometry != null;
+  }
+
+  /**
+   * Remaining distance along the shape to a stop of this trip (0 if already passed)
+   */
+  public double distanceToStopM(int stopIndex) {
+    return Math.max(0.0, geometry.getStopOffsetM(stopIndex) - shapeDistanceM);
+  }
+
+  public VehiclePosition getPosition() { return position; }
+  public String getVehicleId() { return position.getVehicleId(); }
+  public String getRouteId() { return position.getRouteId(); }
+  public Integer getDirectionId() { return position.getDirectionId(); }
+  public String getTripId() { return position.getTripId(); }
+  public TripGeometry getGeometry() { return geometry; }
+  public double getShapeDistanceM() { return shapeDistanceM; }
+  public double getDistanceFromShapeM() { return distanceFromShapeM; }
+  public int getSegmentIndex() { return segmentIndex; }
+  public int getNextStopIndex() { return nextStopIndex; }
+  public Integer getDelaySeconds() { return delaySeconds; }
+  public long getComputedAtMillis() { return computedAtMillis; }
+
+  @Override
+  public String toString() {
+    return String.format("VehicleState{vehicleId='%s', tripId='%s', onShape=%s, along=%.0fm, nextStop=%d, delay=%s}",
+        getVehicleId(), getTripId(), isOnShape(), shapeDistanceM, nextStopIndex,
+        delaySeconds != null ? delaySeconds + "s" : "N/A");
+  }
+}
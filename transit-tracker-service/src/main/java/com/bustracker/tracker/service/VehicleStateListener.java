@@ -0,0 +1,22 @@
+package com.bustracker.tracker.service;
+
+/**
+ * Callback for consumers of derived vehicle state
+ * Invoked on the ingest thread right after a vehicle's state was recomputed,
+ * so implementations should only do incremental, bounded work.
+ */
+public interface VehicleStateListener {
+
+  /**
+   * @param previous state before this update, or null for a newly seen vehicle
+   * @param current freshly computed state
+   */
+  void onVehicleStateChanged(VehicleState previous, VehicleState current);
+
+  /**
+   * The vehicle stopped reporting and its state was evicted
+   * @param last the evicted state
+   */
+  default void onVehicleStateRemoved(VehicleState last) {
+  }
+}
@@ -0,0 +1,256 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.shared.model.VehiclePosition;
+import com.bustracker.tracker.domain.ServiceTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Ingest-time pipeline stage behind the Kafka consumer
+ *
+ * For every new vehicle position it resolves the trip geometry, map-matches the
+ * position onto the shape, finds the next stop and computes the current delay.
+ * Arrivals queries then only read these states and do arithmetic, so the work
+ * scales with vehicle updates rather than with user traffic.
+ */
+@Service
+public class VehicleStateService {
+
+  private static final Logger logger = LoggerFactory.getLogger(VehicleStateService.class);
+
+  // Vancouver timezone for GTFS data
+  private static final ZoneId VANCOUVER_TIMEZONE = ZoneId.of("America/Vancouver");
+
+  // Max distance to consider vehicle on its route shape (same as ShapeDistanceCalculationService)
+  private static final double MAX_DISTANCE_FROM_SHAPE_M = 500.0;
+
+  // A stop counts as reached once the vehicle is this close to it along the shape
+  private static final double STOP_REACHED_TOLERANCE_M = 25.0;
+
+  // Map matching: how far behind the previous progress we still accept (GPS jitter)
+  private static final double BACKTRACK_TOLERANCE_M = 100.0;
+  // ...and how much worse a forward match may be than the global best before we jump backwards
+  private static final double FORWARD_MATCH_SLACK_M = 30.0;
+
+  private final TripGeometryService tripGeometryService;
+  private final EtaCalculationService etaCalculationService;
+  private final VehicleStorageService vehicleStorageService;
+  private final long retentionSeconds;
+
+  private final Map<String, VehicleState> statesByVehicle = new ConcurrentHashMap<>();
+  private final Map<String, Map<String, VehicleState>> statesByRouteDirection = new ConcurrentHashMap<>();
+  private final List<VehicleStateListener> listeners = new CopyOnWriteArrayList<>();
+
+  @Autowired
+  public VehicleStateService(TripGeometryService tripGeometryService,
+      EtaCalculationService etaCalculationService,
+      VehicleStorageService vehicleStorageService,
+      @Value("${tracker.history.retention-seconds:900}") long retentionSeconds) {
+    this.tripGeometryService = tripGeometryService;
+    this.etaCalculationService = etaCalculationService;
+    this.vehicleStorageService = vehicleStorageService;
+    this.retentionSeconds = retentionSeconds;
+  }
+
+  /**
+   * Compute and store the derived state for a new vehicle position
+   * The update is atomic per vehicle, so the live consumer and a startup rebuild
+   * never interleave; a position older than the held one is dropped. Listeners
+   * receive exactly the (previous, current) pair this update produced.
+   * @return the vehicle's state, the held newer one if the position was dropped
+   */
+  public VehicleState process(VehiclePosition position) {
+    VehicleState[] replaced = new VehicleState[1];
+    boolean[] updated = new boolean[1];
+
+    VehicleState current = statesByVehicle.compute(position.getVehicleId(), (vehicleId, previous) -> {
+      if (previous != null && position.getTimestamp() < previous.getPosition().getTimestamp()) {
+        return previous;
+      }
+      VehicleState state = computeState(position, previous);
+      if (previous != null && !routeDirectionKey(previous).equals(routeDirectionKey(state))) {
+        Map<String, VehicleState> oldGroup = statesByRouteDirection.get(routeDirectionKey(previous));
+        if (oldGroup != null) {
+          oldGroup.remove(vehicleId);
+        }
+      }
+      statesByRouteDirection
+          .computeIfAbsent(routeDirectionKey(state), k -> new ConcurrentHashMap<>())
+          .put(vehicleId, state);
+      replaced[0] = previous;
+      updated[0] = true;
+      return state;
+    });
+
+    if (!updated[0]) {
+      logger.debug("Dropped out-of-order position of {} at {}, holding {}",
+          position.getVehicleId(), position.getTimestamp(), current.getPosition().getTimestamp());
+      return current;
+    }
+    logger.debug("Processed {}", current);
+    notifyListeners(replaced[0], current);
+    return current;
+  }
+
+  /**
+   * Register a listener for derived state changes
+   */
+  public void addListener(VehicleStateListener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Recompute states for every stored vehicle (after startup bulk loads)
+   * Safe while the live consumer runs: a vehicle it already moved on keeps its newer state
+   */
+  public void rebuildFromStorage() {
+    long startedAt = System.currentTimeMillis();
+    var vehicles = vehicleStorageService.getAllVehicles();
+    vehicles.forEach(this::process);
+    logger.info("Computed derived state for {} vehicles in {}ms",
+        vehicles.size(), System.currentTimeMillis() - startedAt);
+  }
+
+  /**
+   * Evict states of vehicles that have not reported within the history retention
+   * window (the same window VehicleStorageService keeps their fixes for)
+   */
+  @Scheduled(cron = "45 * * * * *")
+  public void evictStale() {
+    long cutoff = System.currentTimeMillis() / 1000 - retentionSeconds;
+    int evicted = 0;
+    for (VehicleState state : statesByVehicle.values()) {
+      // Conditional removes: a position processed since the scan read the state keeps it
+      if (state.getPosition().getTimestamp() < cutoff && removeState(state)) {
+        evicted++;
+      }
+    }
+    if (evicted > 0) {
+      logger.debug("Evicted {} stale vehicle states, {} remaining", evicted, statesByVehicle.size());
+    }
+  }
+
+  /**
+   * Drop a vehicle's state (the vehicle left the fleet)
+   * @return true if the vehicle had a state
+   */
+  public boolean remove(String vehicleId) {
+    VehicleState state = statesByVehicle.get(vehicleId);
+    return state != null && removeState(state);
+  }
+
+  private boolean removeState(VehicleState state) {
+    if (!statesByVehicle.remove(state.getVehicleId(), state)) {
+      return false;
+    }
+    Map<String, VehicleState> group = statesByRouteDirection.get(routeDirectionKey(state));
+    if (group != null) {
+      group.remove(state.getVehicleId(), state);
+    }
+    notifyRemoved(state);
+    return true;
+  }
+
+  public VehicleState getVehicleState(String vehicleId) {
+    return statesByVehicle.get(vehicleId);
+  }
+
+  /**
+   * Current states of all vehicles on a route and direction
+   */
+  public Collection<VehicleState> getVehicleStates(String routeId, int directionId) {
+    Map<String, VehicleState> group = statesByRouteDirection.get(routeId + ":" + directionId);
+    return group != null ? group.values() : Collections.emptyList();
+  }
+
+  private VehicleState computeState(VehiclePosition position, VehicleState previous) {
+    Optional<TripGeometry> geometryOpt = tripGeometryService.getTripGeometry(position.getTripId());
+    if (geometryOpt.isEmpty()) {
+      return VehicleState.unmatched(position);
+    }
+    TripGeometry geometry = geometryOpt.get();
+    ShapeGeometry shape = geometry.getShape();
+
+    ShapeGeometry.Projection projection = shape.project(position.getLatitude(), position.getLongitude(), 0);
+
+    // Prefer continuing forward from the last match on the same trip, so a route
+    // that passes near itself (loops, out-and-back) doesn't make the bus jump back
+    if (previous != null && previous.isOnShape() && geometry.getTripId().equals(previous.getTripId())) {
+      int fromSegment = shape.segmentAt(previous.getShapeDistanceM() - BACKTRACK_TOLERANCE_M);
+      if (projection.getSegmentIndex() < fromSegment) {
+        ShapeGeometry.Projection forward = shape.project(position.getLatitude(), position.getLongitude(), fromSegment);
+        if (forward.getDistanceFromShapeM() <= projection.getDistanceFromShapeM() + FORWARD_MATCH_SLACK_M) {
+          projection = forward;
+        }
+      }
+    }
+
+    if (projection.getDistanceFromShapeM() > MAX_DISTANCE_FROM_SHAPE_M) {
+      logger.debug("Vehicle {} is {}m from its trip shape, leaving unmatched",
+          position.getVehicleId(), Math.round(projection.getDistanceFromShapeM()));
+      return VehicleState.unmatched(position);
+    }
+
+    double along = projection.getDistanceAlongM();
+    int nextStopIndex = geometry.nextStopIndex(along, STOP_REACHED_TOLERANCE_M);
+    Integer delaySeconds = nextStopIndex < geometry.getStopCount()
+        ? calculateDelaySeconds(position, geometry, nextStopIndex, geometry.getStopOffsetM(nextStopIndex) - along)
+        : null;
+
+    return new VehicleState(position, geometry, along, projection.getDistanceFromShapeM(),
+        projection.getSegmentIndex(), nextStopIndex, delaySeconds);
+  }
+
+  /**
+   * Delay at the next stop: predicted arrival (fix time + ETA) minus scheduled arrival
+   */
+  private Integer calculateDelaySeconds(VehiclePosition position, TripGeometry geometry,
+      int stopIndex, double remainingM) {
+    int scheduled = geometry.getScheduledArrivalSeconds(stopIndex);
+    long predicted = position.getTimestamp() + etaCalculationService.calculateEtaSeconds(Math.max(0.0, remainingM));
+
+    // The trip run (service date) whose scheduled time is nearest the prediction
+    long scheduledEpoch = ServiceTime.toEpochSecond(scheduled,
+        ServiceTime.nearestServiceDate(scheduled, predicted, VANCOUVER_TIMEZONE), VANCOUVER_TIMEZONE);
+    return (int) (predicted - scheduledEpoch);
+  }
+
+  private void notifyListeners(VehicleState previous, VehicleState current) {
+    for (VehicleStateListener listener : listeners) {
+      try {
+        listener.onVehicleStateChanged(previous, current);
+      } catch (Exception e) {
+        logger.error("Vehicle state listener {} failed for vehicle {}: {}",
+            listener.getClass().getSimpleName(), current.getVehicleId(), e.getMessage());
+      }
+    }
+  }
+
+  private void notifyRemoved(VehicleState last) {
+    for (VehicleStateListener listener : listeners) {
+      try {
+        listener.onVehicleStateRemoved(last);
+      } catch (Exception e) {
+        logger.error("Vehicle state listener {} failed removing vehicle {}: {}",
+            listener.getClass().getSimpleName(), last.getVehicleId(), e.getMessage());
+      }
+    }
+  }
+
+  private static String routeDirectionKey(VehicleState state) {
+    return state.getRouteId() + ":" + state.getDirectionId();
+  }
+}
@@ -3,11 +3,15 @@ package com.bustracker.tracker.service;
 import com.bustracker.shared.model.VehiclePosition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 
@@ -19,14 +23,39 @@ public class VehicleStorageService {
   // Store vehicles by vehicleId -> VehiclePosition
   private final Map<String, VehiclePosition> vehicles = new ConcurrentHashMap<>();
 
+  // Recent fixes per vehicle: vehicleId -> ring buffer
+  private final Map<String, VehiclePositionHistory> histories = new ConcurrentHashMap<>();
+
+  // Once the history budget is full, how often untracked vehicles may trigger a stale-history sweep
+  private static final long HISTORY_SWEEP_INTERVAL_MILLIS = 10_000;
+
+  // Earliest time the next sweep may run, claimed by CAS so only one thread scans
+  private final AtomicLong nextHistorySweepMillis = new AtomicLong();
+
   // Track when we last updated
   private volatile long lastUpdateTime = System.currentTimeMillis();
 
+  // History memory budget: fixes per vehicle x max tracked vehicles
+  private final int historyCapacity;
+  private final int maxHistoryVehicles;
+  private final long historyRetentionSeconds;
+
+  @Autowired
+  public VehicleStorageService(
+      @Value("${tracker.history.capacity:10}") int historyCapacity,
+      @Value("${tracker.history.max-vehicles:5000}") int maxHistoryVehicles,
+      @Value("${tracker.history.retention-seconds:900}") long historyRetentionSeconds) {
+    this.historyCapacity = historyCapacity;
+    this.maxHistoryVehicles = maxHistoryVehicles;
+    this.historyRetentionSeconds = historyRetentionSeconds;
+  }
+
   /**
    * Store or update a vehicle position
    */
   public void storeVehiclePosition(VehiclePosition vehiclePosition) {
     vehicles.put(vehiclePosition.getVehicleId(), vehiclePosition);
+    recordHistory(vehiclePosition);
     lastUpdateTime = System.currentTimeMillis();
 
     // Log storage stats every 50 vehicles
@@ -35,6 +64,107 @@ public class VehicleStorageService {
     }
   }
 
+  /**
+   * Bulk-load vehicle positions (startup bootstrap)
+   * Keeps whichever position is newer, so a bulk load never overwrites
+   * live data the Kafka listener already stored
+   * @return number of positions actually stored
+   */
+  public int loadVehiclePositions(Collection<VehiclePosition> vehiclePositions) {
+    int stored = 0;
+    for (VehiclePosition vehiclePosition : vehiclePositions) {
+      if (storeIfNewer(vehiclePosition)) {
+        stored++;
+      }
+    }
+    lastUpdateTime = System.currentTimeMillis();
+
+    logger.info("Bulk-loaded {} of {} vehicle positions ({} vehicles in memory)",
+        stored, vehiclePositions.size(), vehicles.size());
+    return stored;
+  }
+
+  /**
+   * Bulk-load recorded fixes into the vehicles' histories (snapshot restore)
+   * Fixes must be oldest first per vehicle; ones not newer than a vehicle's
+   * latest recorded fix are ignored
+   */
+  public void loadHistory(Collection<VehiclePosition> fixes) {
+    fixes.forEach(this::recordHistory);
+  }
+
+  /**
+   * Store a vehicle position unless a newer one is already held
+   * @return true if the position was stored
+   */
+  public boolean storeIfNewer(VehiclePosition vehiclePosition) {
+    VehiclePosition result = vehicles.merge(vehiclePosition.getVehicleId(), vehiclePosition,
+        (existing, incoming) -> incoming.getTimestamp() >= existing.getTimestamp() ? incoming : existing);
+    recordHistory(vehiclePosition);
+    return result == vehiclePosition;
+  }
+
+  /**
+   * Remove a vehicle and its history, unless it was updated since it was read
+   * @param expected the position the caller decided to remove
+   * @return true if removed
+   */
+  public boolean removeVehicle(VehiclePosition expected) {
+    if (!vehicles.remove(expected.getVehicleId(), expected)) {
+      return false;
+    }
+    histories.remove(expected.getVehicleId());
+    return true;
+  }
+
+  /**
+   * Append a fix to the vehicle's ring buffer
+   * The hot path (existing vehicle) is a map lookup plus primitive array writes
+   */
+  private void recordHistory(VehiclePosition vehiclePosition) {
+    VehiclePositionHistory history = histories.get(vehiclePosition.getVehicleId());
+    if (history == null) {
+      if (histories.size() >= maxHistoryVehicles && evictStaleHistories() == 0) {
+        logger.debug("History budget of {} vehicles exhausted, not tracking vehicle {}",
+            maxHistoryVehicles, vehiclePosition.getVehicleId());
+        return;
+      }
+      history = histories.computeIfAbsent(vehiclePosition.getVehicleId(),
+          id -> new VehiclePositionHistory(historyCapacity));
+    }
+    history.record(vehiclePosition);
+  }
+
+  /**
+   * Drop histories of vehicles that have not reported within the retention window
+   * Only runs when the fleet-wide budget is reached, and at most once per sweep
+   * interval, so a full budget does not turn every untracked fix into a full scan
+   */
+  private int evictStaleHistories() {
+    long now = System.currentTimeMillis();
+    long next = nextHistorySweepMillis.get();
+    if (now < next || !nextHistorySweepMillis.compareAndSet(next, now + HISTORY_SWEEP_INTERVAL_MILLIS)) {
+      return 0;
+    }
+    long cutoff = now / 1000 - historyRetentionSeconds;
+    int before = histories.size();
+    histories.values().removeIf(history -> history.getLatestTimestamp() < cutoff);
+    int evicted = before - histories.size();
+    if (evicted > 0) {
+      logger.debug("Evicted {} stale vehicle histories", evicted);
+    }
+    return evicted;
+  }
+
+  /**
+   * Get a copy of the recent fixes for a vehicle, oldest first
+   * @return snapshot, or null if the vehicle has no history
+   */
+  public VehiclePositionHistory.Snapshot getPositionHistory(String vehicleId) {
+    VehiclePositionHistory history = histories.get(vehicleId);
+    return history != null ? history.snapshot() : null;
+  }
+
   /**
    * Get all vehicles
    */
@@ -58,6 +188,13 @@ public class VehicleStorageService {
     return vehicles.get(vehicleId);
   }
 
+  /**
+   * Time of the last store operation (epoch millis)
+   */
+  public long getLastUpdateTime() {
+    return lastUpdateTime;
+  }
+
   /**
    * Get storage statistics
    */
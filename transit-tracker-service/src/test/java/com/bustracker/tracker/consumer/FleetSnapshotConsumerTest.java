@@ -0,0 +1,86 @@
+package com.bustracker.tracker.consumer;
+
+import com.bustracker.shared.codec.FleetSnapshotChunk;
+import com.bustracker.shared.codec.FleetSnapshotCodec;
+import com.bustracker.shared.model.VehiclePosition;
+import com.bustracker.tracker.repository.InMemoryGtfsRepository;
+import com.bustracker.tracker.service.TripGeometryService;
+import com.bustracker.tracker.service.VehicleStateService;
+import com.bustracker.tracker.service.VehicleStorageService;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FleetSnapshotConsumerTest {
+
+  private final FleetSnapshotCodec codec = new FleetSnapshotCodec();
+  private final VehicleStorageService storageService = new VehicleStorageService(10, 100, 900);
+  private final VehicleStateService vehicleStateService = new VehicleStateService(
+      new TripGeometryService(new InMemoryGtfsRepository()), null, storageService, 900);
+  private final FleetSnapshotConsumer consumer = new FleetSnapshotConsumer(storageService, vehicleStateService);
+
+  @Test
+  public void testVehiclesAbsentFromTheNextRouteSnapshotAreRemoved() throws Exception {
+    // Arrange
+    consume(chunk(1, List.of("R1"), vehicle("V1", "R1", 100), vehicle("V2", "R1", 100)));
+
+    // Act
+    consume(chunk(2, List.of("R1"), vehicle("V1", "R1", 130)));
+
+    // Assert
+    assertEquals(130, storageService.getVehicle("V1").getTimestamp());
+    assertNull(storageService.getVehicle("V2"));
+    assertNull(vehicleStateService.getVehicleState("V2"));
+    assertEquals(1, vehicleStateService.getVehicleStates("R1", 0).size());
+  }
+
+  @Test
+  public void testStaleChunkDoesNotRollARouteBack() throws Exception {
+    // Arrange
+    consume(chunk(3, List.of("R1"), vehicle("V1", "R1", 130), vehicle("V3", "R1", 130)));
+
+    // Act - redelivered older snapshot without V3
+    consume(chunk(2, List.of("R1"), vehicle("V1", "R1", 100)));
+
+    // Assert
+    assertEquals(130, storageService.getVehicle("V1").getTimestamp());
+    assertNotNull(storageService.getVehicle("V3"));
+  }
+
+  @Test
+  public void testVehicleThatMovedToAnotherRouteIsKept() throws Exception {
+    // Arrange
+    consume(chunk(1, List.of("R1"), vehicle("V1", "R1", 100)));
+
+    // Act - the new route's chunk arrives before the old route's (now empty) one
+    consume(chunk(2, List.of("R2"), vehicle("V1", "R2", 130)));
+    consume(chunk(2, List.of("R1")));
+
+    // Assert
+    assertEquals("R2", storageService.getVehicle("V1").getRouteId());
+    assertEquals("R2", vehicleStateService.getVehicleState("V1").getRouteId());
+    assertEquals(3, consumer.getChunkCount());
+  }
+
+  private void consume(FleetSnapshotChunk chunk) throws Exception {
+    consumer.consumeSnapshotChunk("chunk-" + chunk.getChunkIndex(), codec.encode(chunk));
+  }
+
+  private static FleetSnapshotChunk chunk(long snapshotSeq, List<String> routeIds, VehiclePosition... vehicles) {
+    return new FleetSnapshotChunk(snapshotSeq, 0, 1, snapshotSeq, routeIds, List.of(vehicles));
+  }
+
+  private static VehiclePosition vehicle(String vehicleId, String routeId, long timestamp) {
+    VehiclePosition vehicle = new VehiclePosition();
+    vehicle.setVehicleId(vehicleId);
+    vehicle.setTripId("T-" + routeId);
+    vehicle.setRouteId(routeId);
+    vehicle.setDirectionId(0);
+    vehicle.setLatitude(49.28);
+    vehicle.setLongitude(-123.12);
+    vehicle.setTimestamp(timestamp);
+    return vehicle;
+  }
+}
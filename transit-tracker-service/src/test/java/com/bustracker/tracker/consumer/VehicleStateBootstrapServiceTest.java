@@ -0,0 +1,127 @@
+package com.bustracker.tracker.consumer;
+
+import com.bustracker.shared.codec.VehiclePositionCodec;
+import com.bustracker.shared.model.VehiclePosition;
+import com.bustracker.tracker.service.VehicleStorageService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.ConsumerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class VehicleStateBootstrapServiceTest {
+
+  private static final String LATEST_TOPIC = "vehicle-positions-latest";
+  private static final TopicPartition P0 = new TopicPartition(LATEST_TOPIC, 0);
+  private static final TopicPartition P1 = new TopicPartition(LATEST_TOPIC, 1);
+
+  private final VehiclePositionCodec codec = new VehiclePositionCodec();
+  private final VehicleStorageService storageService = new VehicleStorageService(10, 100, 900);
+  private final MockConsumer<String, byte[]> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+
+  @Test
+  public void testCompactedTopicLoadsTheNewestPositionPerLiveVehicle() {
+    // Arrange - V1 twice (older first), V2 written then deleted, V3 on another partition in proto
+    givenTopic(Map.of(P0, 4L, P1, 1L));
+    consumer.schedulePollTask(() -> {
+      consumer.addRecord(record(P0, 0, "V1", payload(position("V1", 100), VehiclePositionCodec.Format.JSON), null));
+      consumer.addRecord(record(P0, 1, "V2", payload(position("V2", 110), VehiclePositionCodec.Format.JSON), null));
+      consumer.addRecord(record(P0, 2, "V1", payload(position("V1", 130), VehiclePositionCodec.Format.JSON), null));
+      consumer.addRecord(record(P0, 3, "V2", null, null));
+      consumer.addRecord(record(P1, 0, "V3", payload(position("V3", 120), VehiclePositionCodec.Format.PROTO),
+          VehiclePositionCodec.Format.PROTO));
+    });
+
+    // Act
+    int loaded = service("compacted").bootstrap();
+
+    // Assert
+    assertEquals(2, loaded);
+    assertEquals(130, storageService.getVehicle("V1").getTimestamp());
+    assertNull(storageService.getVehicle("V2"), "tombstoned vehicle must not be restored");
+    assertEquals(120, storageService.getVehicle("V3").getTimestamp());
+  }
+
+  @Test
+  public void testBootstrapNeverOverwritesNewerLiveData() {
+    // Arrange - the live listener already stored a newer V1
+    storageService.storeVehiclePosition(position("V1", 200));
+    givenTopic(Map.of(P0, 1L, P1, 0L));
+    consumer.schedulePollTask(() ->
+        consumer.addRecord(record(P0, 0, "V1", payload(position("V1", 130), VehiclePositionCodec.Format.JSON), null)));
+
+    // Act
+    int loaded = service("compacted").bootstrap();
+
+    // Assert
+    assertEquals(0, loaded);
+    assertEquals(200, storageService.getVehicle("V1").getTimestamp());
+  }
+
+  @Test
+  public void testNoneModeSkipsBootstrap() {
+    // Act
+    int loaded = service("none").bootstrap();
+
+    // Assert
+    assertEquals(0, loaded);
+    assertTrue(consumer.assignment().isEmpty());
+  }
+
+  @SuppressWarnings("unchecked")
+  private VehicleStateBootstrapService service(String mode) {
+    ConsumerFactory<String, byte[]> consumerFactory = mock(ConsumerFactory.class);
+    when(consumerFactory.createConsumer(any(), any(), any(), any(Properties.class))).thenReturn(consumer);
+    return new VehicleStateBootstrapService(consumerFactory, storageService, mode,
+        "vehicle-positions", LATEST_TOPIC, 120, 5);
+  }
+
+  private void givenTopic(Map<TopicPartition, Long> endOffsets) {
+    consumer.updatePartitions(LATEST_TOPIC, List.of(
+        new PartitionInfo(LATEST_TOPIC, 0, null, null, null),
+        new PartitionInfo(LATEST_TOPIC, 1, null, null, null)));
+    consumer.updateBeginningOffsets(Map.of(P0, 0L, P1, 0L));
+    consumer.updateEndOffsets(endOffsets);
+  }
+
+  private static ConsumerRecord<String, byte[]> record(TopicPartition partition, long offset, String key,
+      byte[] value, VehiclePositionCodec.Format format) {
+    ConsumerRecord<String, byte[]> record = new ConsumerRecord<>(partition.topic(), partition.partition(), offset, key, value);
+    if (format != null) {
+      record.headers().add(VehiclePositionCodec.FORMAT_HEADER, format.getHeaderValue().getBytes(StandardCharsets.UTF_8));
+    }
+    return record;
+  }
+
+  private byte[] payload(VehiclePosition position, VehiclePositionCodec.Format format) {
+    try {
+      return codec.encode(position, format);
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static VehiclePosition position(String vehicleId, long timestamp) {
+    VehiclePosition position = new VehiclePosition();
+    position.setVehicleId(vehicleId);
+    position.setTripId("T1");
+    position.setRouteId("R1");
+    position.setDirectionId(0);
+    position.setLatitude(49.28);
+    position.setLongitude(-123.12);
+    position.setTimestamp(timestamp);
+    return position;
+  }
+}
@@ -0,0 +1,103 @@
+package com.bustracker.tracker.controller;
+
+import com.bustracker.tracker.domain.Calendar;
+import com.bustracker.tracker.domain.Route;
+import com.bustracker.tracker.domain.ServiceTime;
+import com.bustracker.tracker.domain.StopTime;
+import com.bustracker.tracker.domain.Trip;
+import com.bustracker.tracker.repository.InMemoryGtfsRepository;
+import com.bustracker.tracker.service.ArrivalsBoardService;
+import com.bustracker.tracker.service.DailyTimetableService;
+import com.bustracker.tracker.service.HeadwayAnalyticsService;
+import com.bustracker.tracker.service.ServiceAlertStore;
+import com.bustracker.tracker.service.ServiceCalendarService;
+import com.bustracker.tracker.service.VehicleCorrelationService;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class RouteControllerTest {
+
+  private static final ZoneId VANCOUVER = ZoneId.of("America/Vancouver");
+  private static final String TIMETABLE = "/api/routes/R1/directions/0/timetable";
+
+  private final long now = System.currentTimeMillis() / 1000;
+  private final LocalDate today = LocalDate.now(VANCOUVER);
+  private final InMemoryGtfsRepository repository = new InMemoryGtfsRepository();
+  private DailyTimetableService dailyTimetableService;
+
+  @BeforeEach
+  public void setUp() {
+    // T1 reaches S1 in ten minutes and S2 in twenty
+    int inTenMinutes = ServiceTime.fromEpochSecond(now, today, VANCOUVER) + 600;
+    repository.loadRoutes(List.of(new Route("R1", "99", "UBC - Commercial", 3)));
+    repository.loadTrips(List.of(new Trip("T1", "R1", "DAILY", null, 0, null)));
+    repository.loadStopTimes(List.of(
+        new StopTime("T1", "S1", inTenMinutes, -1, 1),
+        new StopTime("T1", "S2", inTenMinutes + 600, -1, 2)));
+    repository.loadCalendars(List.of(new Calendar("DAILY", today.minusYears(1), today.plusYears(1),
+        true, true, true, true, true, true, true)));
+    ServiceCalendarService calendarService = new ServiceCalendarService(repository, 1);
+    calendarService.rebuildServiceDays();
+    dailyTimetableService = new DailyTimetableService(repository, calendarService);
+    dailyTimetableService.rebuild();
+  }
+
+  @Test
+  public void testTimetableListsEachTripsStopArrivals() throws Exception {
+    // Arrange
+    MockMvc mockMvc = mockMvc(now);
+    long s1 = ServiceTime.toEpochSecond(ServiceTime.fromEpochSecond(now, today, VANCOUVER) + 600, today, VANCOUVER);
+
+    // Act + Assert
+    mockMvc.perform(get(TIMETABLE))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(1)))
+        .andExpect(jsonPath("$[0].tripId").value("T1"))
+        .andExpect(jsonPath("$[0].serviceDate").value(today.toString()))
+        .andExpect(jsonPath("$[0].stops", hasSize(2)))
+        .andExpect(jsonPath("$[0].stops[0].stopId").value("S1"))
+        .andExpect(jsonPath("$[0].stops[0].arrivalEpochSecond").value(s1))
+        .andExpect(jsonPath("$[0].stops[1].stopId").value("S2"))
+        .andExpect(jsonPath("$[0].stops[1].arrivalEpochSecond").value(s1 + 600));
+  }
+
+  @Test
+  public void testTimetableUsesTheInjectedClock() throws Exception {
+    // Arrange - an hour from now T1 has finished
+    MockMvc mockMvc = mockMvc(now + 3600);
+
+    // Act + Assert
+    mockMvc.perform(get(TIMETABLE))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(0)));
+  }
+
+  private MockMvc mockMvc(long epochSecond) {
+    RouteController controller = new RouteController(repository, mock(VehicleCorrelationService.class),
+        mock(ArrivalsBoardService.class), mock(ServiceAlertStore.class), dailyTimetableService,
+        mock(HeadwayAnalyticsService.class), Clock.fixed(Instant.ofEpochSecond(epochSecond), VANCOUVER));
+    // Dates as ISO strings, as with Spring Boot's auto-configured ObjectMapper
+    return MockMvcBuilders.standaloneSetup(controller)
+        .setMessageConverters(new MappingJackson2HttpMessageConverter(Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build()))
+        .build();
+  }
+}
@@ -0,0 +1,58 @@
+package com.bustracker.tracker.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServiceTimeTest {
+
+  private static final ZoneId VANCOUVER = ZoneId.of("America/Vancouver");
+
+  @Test
+  public void testTimesPastMidnightKeepTheirServiceDay() {
+    // Arrange
+    int lateEvening = ServiceTime.parse("23:50:00");
+    int afterMidnight = ServiceTime.parse("25:30:00");
+    LocalDate friday = LocalDate.of(2025, 7, 4);
+
+    // Act
+    Instant instant = ServiceTime.toInstant(afterMidnight, friday, VANCOUVER);
+
+    // Assert
+    assertEquals(91_800, afterMidnight);
+    assertTrue(lateEvening < afterMidnight);
+    assertEquals(Instant.parse("2025-07-05T08:30:00Z"), instant); // 01:30 PDT Saturday
+    assertEquals("25:30:00", ServiceTime.format(afterMidnight));
+    assertEquals(afterMidnight, ServiceTime.fromEpochSecond(instant.getEpochSecond(), friday, VANCOUVER));
+  }
+
+  @Test
+  public void testServiceDayStartsAtNoonMinusTwelveHoursOnDstChange() {
+    // Arrange - clocks spring forward at 02:00 on 2025-03-09 in Vancouver
+    LocalDate springForward = LocalDate.of(2025, 3, 9);
+
+    // Act
+    Instant eightAm = ServiceTime.toInstant(ServiceTime.parse("08:00:00"), springForward, VANCOUVER);
+
+    // Assert - 08:00 PDT, not the 09:00 a midnight-based day would give
+    assertEquals(Instant.parse("2025-03-09T15:00:00Z"), eightAm);
+  }
+
+  @Test
+  public void testNearestServiceDateAroundMidnight() {
+    // Arrange
+    LocalDate saturday = LocalDate.of(2025, 7, 5);
+    long saturday0120 = saturday.atTime(1, 20).atZone(VANCOUVER).toEpochSecond();
+    long friday2355 = saturday.minusDays(1).atTime(23, 55).atZone(VANCOUVER).toEpochSecond();
+
+    // Act + Assert
+    assertEquals(saturday.minusDays(1), ServiceTime.nearestServiceDate(ServiceTime.parse("25:30:00"), saturday0120, VANCOUVER));
+    assertEquals(saturday.minusDays(1), ServiceTime.nearestServiceDate(ServiceTime.parse("23:50:00"), saturday0120, VANCOUVER));
+    assertEquals(saturday, ServiceTime.nearestServiceDate(ServiceTime.parse("01:45:00"), saturday0120, VANCOUVER));
+    assertEquals(saturday, ServiceTime.nearestServiceDate(ServiceTime.parse("00:10:00"), friday2355, VANCOUVER));
+  }
+}
@@ -0,0 +1,84 @@
+package com.bustracker.tracker.repository;
+
+import com.bustracker.tracker.domain.StopTime;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryGtfsRepositoryTest {
+
+  @Test
+  public void testFindStopTimeByTripAndStopReturnsFirstVisit() {
+    // Arrange - loop trip visiting S1 at both ends, loaded out of sequence order
+    InMemoryGtfsRepository repository = new InMemoryGtfsRepository();
+    repository.loadStopTimes(List.of(
+        new StopTime("LOOP", "S1", 3600 + 1800, -1, 4),
+        new StopTime("LOOP", "S2", 3600 + 600, -1, 2),
+        new StopTime("LOOP", "S1", 3600, -1, 1),
+        new StopTime("LOOP", "S3", 3600 + 1200, -1, 3),
+        new StopTime("OTHER", "S4", 7200, -1, 1)));
+
+    // Act
+    var firstVisit = repository.findStopTimeByTripIdAndStopId("LOOP", "S1");
+    var middle = repository.findStopTimeByTripIdAndStopId("LOOP", "S3");
+
+    // Assert
+    assertEquals(1, firstVisit.orElseThrow().getStopSequence());
+    assertEquals(3, middle.orElseThrow().getStopSequence());
+    assertTrue(repository.findStopTimeByTripIdAndStopId("LOOP", "S4").isEmpty());
+    assertTrue(repository.findStopTimeByTripIdAndStopId("LOOP", "UNKNOWN").isEmpty());
+    assertTrue(repository.findStopTimeByTripIdAndStopId("UNKNOWN", "S1").isEmpty());
+  }
+
+  @Test
+  public void testEveryStopOfALongTripIsFound() {
+    // Arrange - enough stops to fill many table slots and force probing
+    InMemoryGtfsRepository repository = new InMemoryGtfsRepository();
+    List<StopTime> stopTimes = new ArrayList<>();
+    for (int i = 0; i < 300; i++) {
+      stopTimes.add(new StopTime("LONG", "S" + i, 3600 + i * 60, -1, i + 1));
+    }
+    repository.loadStopTimes(stopTimes);
+
+    // Act + Assert
+    for (int i = 0; i < 300; i++) {
+      assertEquals(i + 1, repository.findStopTimeByTripIdAndStopId("LONG", "S" + i).orElseThrow().getStopSequence());
+    }
+    assertTrue(repository.findStopTimeByTripIdAndStopId("LONG", "S300").isEmpty());
+  }
+
+  @Test
+  public void testLookupsNeverMissWhileStopTimesReload() throws Exception {
+    // Arrange - every reload contains the looked-up stop time
+    InMemoryGtfsRepository repository = new InMemoryGtfsRepository();
+    List<StopTime> stopTimes = List.of(
+        new StopTime("T1", "S1", 3600, -1, 1),
+        new StopTime("T1", "S2", 3600 + 600, -1, 2));
+    repository.loadStopTimes(stopTimes);
+    AtomicBoolean reloading = new AtomicBoolean(true);
+    AtomicInteger misses = new AtomicInteger();
+    Thread reader = new Thread(() -> {
+      while (reloading.get()) {
+        if (repository.findStopTimeByTripIdAndStopId("T1", "S2").isEmpty()) {
+          misses.incrementAndGet();
+        }
+      }
+    });
+    reader.start();
+
+    // Act
+    for (int i = 0; i < 2000; i++) {
+      repository.loadStopTimes(stopTimes);
+    }
+    reloading.set(false);
+    reader.join(5000);
+
+    // Assert
+    assertEquals(0, misses.get());
+  }
+}
@@ -0,0 +1,175 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.shared.model.VehiclePosition;
+import com.bustracker.tracker.domain.Calendar;
+import com.bustracker.tracker.domain.ServiceTime;
+import com.bustracker.tracker.domain.Stop;
+import com.bustracker.tracker.domain.StopTime;
+import com.bustracker.tracker.domain.Trip;
+import com.bustracker.tracker.dto.ArrivalsResponseDto;
+import com.bustracker.tracker.dto.RealTimeBusDto;
+import com.bustracker.tracker.dto.ScheduledBusDto;
+import com.bustracker.tracker.repository.InMemoryGtfsRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class ArrivalsBoardServiceTest {
+
+  private static final ZoneId VANCOUVER = ZoneId.of("America/Vancouver");
+  private static final Stop STOP = new Stop("S2", "Second Stop", 49.28, -123.12);
+  private static final ArrivalsResponseDto.RouteInfoDto ROUTE_INFO = new ArrivalsResponseDto.RouteInfoDto("99", "UBC");
+
+  private final CountDownLatch buildStarted = new CountDownLatch(1);
+  private final CountDownLatch releaseBuild = new CountDownLatch(1);
+  private volatile boolean blockBuild;
+
+  /**
+   * Reports V1 approaching at build time and every updated vehicle as approaching
+   */
+  private final VehicleCorrelationService correlation = new VehicleCorrelationService(
+      new InMemoryGtfsRepository(), null, null, null, null, null) {
+    @Override
+    public List<ApproachingVehicle> findVehiclesApproachingStop(String routeId, int directionId, String stopId) {
+      if (blockBuild) {
+        buildStarted.countDown();
+        try {
+          releaseBuild.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return List.of(approach(position("V1"), 1500));
+    }
+
+    @Override
+    public Optional<ApproachingVehicle> findApproach(VehicleState state, Stop targetStop) {
+      return Optional.of(approach(state.getPosition(), 800));
+    }
+  };
+
+  private final ArrivalsBoardService service = service(new InMemoryGtfsRepository());
+
+  @Test
+  public void testBoardIsBuiltThenUpdatedIncrementally() {
+    // Arrange
+    ArrivalsBoardService.BoardSnapshot built = service.createBoard("R1", 0, STOP, ROUTE_INFO);
+
+    // Act
+    service.onVehicleStateChanged(null, state("V2"));
+
+    // Assert
+    ArrivalsBoardService.BoardSnapshot updated = service.getBoard("R1", 0, "S2").orElseThrow();
+    assertEquals(List.of("V1"), vehicleIds(built));
+    assertEquals(List.of("V2", "V1"), vehicleIds(updated));
+    assertNotEquals(built.getETag(), updated.getETag());
+  }
+
+  @Test
+  public void testETagIsStableWhileContentIsUnchanged() {
+    // Arrange
+    ArrivalsBoardService.BoardSnapshot built = service.createBoard("R1", 0, STOP, ROUTE_INFO);
+
+    // Act
+    service.refreshBoards();
+    service.refreshBoards();
+
+    // Assert - nothing changed, so nothing was republished
+    ArrivalsBoardService.BoardSnapshot refreshed = service.getBoard("R1", 0, "S2").orElseThrow();
+    assertSame(built, refreshed);
+    assertTrue(refreshed.matches(built.getETag()));
+  }
+
+  @Test
+  public void testUpdateDuringBuildIsNotLost() throws Exception {
+    // Arrange - the build blocks after the board is registered
+    blockBuild = true;
+    Thread builder = new Thread(() -> service.createBoard("R1", 0, STOP, ROUTE_INFO));
+    builder.start();
+    assertTrue(buildStarted.await(5, TimeUnit.SECONDS));
+    assertTrue(service.getBoard("R1", 0, "S2").isEmpty());
+
+    // Act - an update arrives mid-build and waits on the board
+    Thread updater = new Thread(() -> service.onVehicleStateChanged(null, state("V2")));
+    updater.start();
+    long deadline = System.currentTimeMillis() + 5000;
+    while (updater.getState() != Thread.State.BLOCKED && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    releaseBuild.countDown();
+    builder.join(5000);
+    updater.join(5000);
+
+    // Assert
+    assertEquals(List.of("V2", "V1"), vehicleIds(service.getBoard("R1", 0, "S2").orElseThrow()));
+  }
+
+  @Test
+  public void testScheduledRowsAreScopedToTheBoardsRouteAndDirection() {
+    // Arrange - three trips reach S2 in ten minutes, only one on route R1 direction 0
+    LocalDate today = LocalDate.now(VANCOUVER);
+    int inTenMinutes = ServiceTime.fromEpochSecond(System.currentTimeMillis() / 1000, today, VANCOUVER) + 600;
+    InMemoryGtfsRepository repository = new InMemoryGtfsRepository();
+    repository.loadTrips(List.of(
+        new Trip("MINE", "R1", "DAILY", null, 0, null),
+        new Trip("OPPOSITE", "R1", "DAILY", null, 1, null),
+        new Trip("OTHER-ROUTE", "R2", "DAILY", null, 0, null)));
+    repository.loadStopTimes(List.of(
+        new StopTime("MINE", "S2", inTenMinutes, -1, 1),
+        new StopTime("OPPOSITE", "S2", inTenMinutes - 60, -1, 1),
+        new StopTime("OTHER-ROUTE", "S2", inTenMinutes + 60, -1, 1)));
+    repository.loadCalendars(List.of(new Calendar("DAILY", today.minusYears(1), today.plusYears(1),
+        true, true, true, true, true, true, true)));
+    ArrivalsBoardService scheduledService = service(repository);
+
+    // Act
+    ArrivalsBoardService.BoardSnapshot board = scheduledService.createBoard("R1", 0, STOP, ROUTE_INFO);
+
+    // Assert
+    assertEquals(List.of(LocalTime.ofInstant(ServiceTime.toInstant(inTenMinutes, today, VANCOUVER), VANCOUVER)),
+        board.getResponse().getScheduledBuses().stream().map(ScheduledBusDto::getScheduledArrival).toList());
+  }
+
+  private ArrivalsBoardService service(InMemoryGtfsRepository repository) {
+    ServiceCalendarService calendarService = new ServiceCalendarService(repository, 1);
+    calendarService.rebuildServiceDays(LocalDate.now(VANCOUVER));
+    StopDepartureIndex departureIndex = new StopDepartureIndex(repository,
+        new DailyTimetableService(repository, calendarService));
+    departureIndex.rebuild();
+    return new ArrivalsBoardService(correlation, new ScheduledArrivalService(repository, departureIndex, Clock.systemUTC()),
+        departureIndex, mock(VehicleStateService.class), 600);
+  }
+
+  private static List<String> vehicleIds(ArrivalsBoardService.BoardSnapshot snapshot) {
+    return snapshot.getResponse().getRealTimeBuses().stream().map(RealTimeBusDto::getVehicleId).toList();
+  }
+
+  private static VehicleCorrelationService.ApproachingVehicle approach(VehiclePosition position, double distance) {
+    return new VehicleCorrelationService.ApproachingVehicle(position, STOP,
+        new EtaCalculationService.EtaResult(distance, (int) distance / 5, (int) distance / 300));
+  }
+
+  private static VehicleState state(String vehicleId) {
+    return new VehicleState(position(vehicleId), null, 0, 0, 0, 0, null);
+  }
+
+  private static VehiclePosition position(String vehicleId) {
+    VehiclePosition position = new VehiclePosition();
+    position.setVehicleId(vehicleId);
+    position.setTripId("T-" + vehicleId);
+    position.setRouteId("R1");
+    position.setDirectionId(0);
+    position.setTimestamp(System.currentTimeMillis() / 1000);
+    return position;
+  }
+}
@@ -0,0 +1,70 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.tracker.domain.Calendar;
+import com.bustracker.tracker.domain.CalendarDate;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompiledCalendarsTest {
+
+  private static final LocalDate CANADA_DAY = LocalDate.of(2025, 7, 1);
+
+  private static final Calendar WEEKDAY = new Calendar("WEEKDAY", LocalDate.of(2025, 1, 1), LocalDate.of(2025, 12, 31),
+      true, true, true, true, true, false, false);
+  private static final Calendar WEEKEND = new Calendar("WEEKEND", LocalDate.of(2025, 6, 1), LocalDate.of(2025, 9, 1),
+      false, false, false, false, false, true, true);
+  private static final List<CalendarDate> EXCEPTIONS = List.of(
+      new CalendarDate("WEEKDAY", CANADA_DAY, CalendarDate.ExceptionType.SERVICE_REMOVED),
+      new CalendarDate("WEEKEND", CANADA_DAY, CalendarDate.ExceptionType.SERVICE_ADDED),
+      new CalendarDate("SPECIAL", LocalDate.of(2025, 7, 4), CalendarDate.ExceptionType.SERVICE_ADDED));
+
+  @Test
+  public void testMatchesCalendarWithExceptionsOverAYear() {
+    // Arrange
+    CompiledCalendars compiled = CompiledCalendars.compile(List.of(WEEKDAY, WEEKEND), EXCEPTIONS);
+
+    // Act + Assert
+    for (LocalDate date = LocalDate.of(2024, 12, 30); date.isBefore(LocalDate.of(2026, 1, 2)); date = date.plusDays(1)) {
+      for (Calendar calendar : List.of(WEEKDAY, WEEKEND)) {
+        boolean expected = exceptionFor(calendar.getServiceId(), date)
+            .map(CalendarDate::isServiceAdded)
+            .orElse(calendar.isActiveOnDate(date));
+        assertEquals(expected, compiled.isActive(calendar.getServiceId(), date), calendar.getServiceId() + " on " + date);
+      }
+      assertEquals(date.equals(LocalDate.of(2025, 7, 4)), compiled.isActive("SPECIAL", date));
+    }
+    assertFalse(compiled.isActive("UNKNOWN", CANADA_DAY));
+  }
+
+  @Test
+  public void testBulkEvaluationAndExceptionCounts() {
+    // Arrange
+    CompiledCalendars compiled = CompiledCalendars.compile(List.of(WEEKDAY, WEEKEND), EXCEPTIONS);
+    BitSet active = new BitSet();
+
+    // Act
+    compiled.evaluate(CANADA_DAY, active);
+
+    // Assert
+    assertEquals(2, compiled.getCalendarServiceCount());
+    assertEquals(3, compiled.getServiceCount());
+    assertFalse(active.get(compiled.ordinal("WEEKDAY")));
+    assertTrue(active.get(compiled.ordinal("WEEKEND")));
+    assertFalse(active.get(compiled.ordinal("SPECIAL")));
+    assertEquals(-1, compiled.ordinal("UNKNOWN"));
+    assertEquals(2, compiled.countExceptions(CANADA_DAY));
+    assertEquals(0, compiled.countExceptions(CANADA_DAY.plusDays(1)));
+  }
+
+  private static Optional<CalendarDate> exceptionFor(String serviceId, LocalDate date) {
+    return EXCEPTIONS.stream()
+        .filter(exception -> exception.getServiceId().equals(serviceId) && exception.getDate().equals(date))
+        .findFirst();
+  }
+}
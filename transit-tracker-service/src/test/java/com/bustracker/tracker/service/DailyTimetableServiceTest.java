@@ -0,0 +1,107 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.tracker.domain.Calendar;
+import com.bustracker.tracker.domain.ServiceTime;
+import com.bustracker.tracker.domain.StopTime;
+import com.bustracker.tracker.domain.Trip;
+import com.bustracker.tracker.repository.InMemoryGtfsRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DailyTimetableServiceTest {
+
+  private static final ZoneId VANCOUVER = ZoneId.of("America/Vancouver");
+  private static final LocalDate FRIDAY = LocalDate.of(2025, 7, 4);
+  private static final LocalDate SATURDAY = FRIDAY.plusDays(1);
+
+  @Test
+  public void testRolloverKeepsOvernightTailUntilItEnds() {
+    // Arrange
+    InMemoryGtfsRepository repository = repository();
+    ServiceCalendarService calendar = new ServiceCalendarService(repository, 2);
+    calendar.rebuildServiceDays(FRIDAY);
+    DailyTimetableService service = new DailyTimetableService(repository, calendar);
+    service.rebuild(FRIDAY, epoch(FRIDAY, "12:00:00"));
+
+    // Act
+    service.rollover(SATURDAY);
+    List<DailyTimetableService.TimetableTrip> atOne = service.getTrips("R1", 0, epoch(FRIDAY, "25:00:00"));
+    service.releaseFinishedDay(epoch(FRIDAY, "25:00:00"));
+    DailyTimetableService.DailyTimetable keptPrevious = service.getPrevious();
+    service.releaseFinishedDay(epoch(FRIDAY, "25:45:00"));
+
+    // Assert
+    assertEquals(SATURDAY, service.getCurrent().getServiceDate());
+    assertEquals(List.of("LATE", "DAY"), atOne.stream().map(DailyTimetableService.TimetableTrip::getTripId).toList());
+    assertEquals(FRIDAY, atOne.get(0).getServiceDate());
+    assertEquals(epoch(FRIDAY, "25:30:00"), atOne.get(0).getLastArrivalEpochSecond());
+    assertEquals(FRIDAY, keptPrevious.getServiceDate());
+    assertNull(service.getPrevious());
+  }
+
+  @Test
+  public void testOnlyTripsRunningOnTheDateAreMaterialized() {
+    // Arrange
+    InMemoryGtfsRepository repository = repository();
+    ServiceCalendarService calendar = new ServiceCalendarService(repository, 2);
+    calendar.rebuildServiceDays(FRIDAY);
+    DailyTimetableService service = new DailyTimetableService(repository, calendar);
+
+    // Act
+    DailyTimetableService.DailyTimetable friday = service.build(FRIDAY);
+    DailyTimetableService.DailyTimetable saturday = service.build(SATURDAY);
+
+    // Assert
+    assertEquals(List.of("DAY", "LATE"),
+        friday.getTrips("R1", 0).stream().map(DailyTimetableService.TimetableTrip::getTripId).toList());
+    assertEquals(List.of("DAY"),
+        saturday.getTrips("R1", 0).stream().map(DailyTimetableService.TimetableTrip::getTripId).toList());
+    assertEquals("S2", friday.getTrips("R1", 0).get(1).getStopId(1));
+    assertTrue(friday.getTrips("R1", 1).isEmpty());
+  }
+
+  @Test
+  public void testTripActivityIsAnsweredFromTheMaterializedDays() {
+    // Arrange - the calendar window is built for another month, so only the timetable knows Friday
+    InMemoryGtfsRepository repository = repository();
+    ServiceCalendarService calendar = new ServiceCalendarService(repository, 2);
+    calendar.rebuildServiceDays(FRIDAY.plusMonths(1));
+    DailyTimetableService service = new DailyTimetableService(repository, calendar);
+    service.rebuild(SATURDAY, epoch(FRIDAY, "25:00:00"));
+    repository.loadCalendars(List.of());
+    calendar.rebuildServiceDays(FRIDAY.plusMonths(1));
+
+    // Act + Assert - Friday and Saturday come from the timetable, Sunday from the (now empty) calendar
+    assertTrue(service.isTripActiveOnDate("LATE", FRIDAY));
+    assertTrue(service.isTripActiveOnDate("DAY", SATURDAY));
+    assertFalse(service.isTripActiveOnDate("LATE", SATURDAY));
+    assertFalse(service.isTripActiveOnDate("DAY", SATURDAY.plusDays(1)));
+  }
+
+  private static long epoch(LocalDate serviceDate, String time) {
+    return ServiceTime.toEpochSecond(ServiceTime.parse(time), serviceDate, VANCOUVER);
+  }
+
+  private static InMemoryGtfsRepository repository() {
+    InMemoryGtfsRepository repository = new InMemoryGtfsRepository();
+    repository.loadTrips(List.of(
+        new Trip("DAY", "R1", "DAILY", null, 0, null),
+        new Trip("LATE", "R1", "WEEKDAY", null, 0, null)));
+    repository.loadStopTimes(List.of(
+        new StopTime("DAY", "S1", ServiceTime.parse("08:00:00"), -1, 1),
+        new StopTime("DAY", "S2", ServiceTime.parse("08:20:00"), -1, 2),
+        new StopTime("LATE", "S1", ServiceTime.parse("24:50:00"), -1, 1),
+        new StopTime("LATE", "S2", ServiceTime.parse("25:30:00"), -1, 2)));
+    repository.loadCalendars(List.of(
+        new Calendar("DAILY", LocalDate.of(2025, 1, 1), LocalDate.of(2025, 12, 31),
+            true, true, true, true, true, true, true),
+        new Calendar("WEEKDAY", LocalDate.of(2025, 1, 1), LocalDate.of(2025, 12, 31),
+            true, true, true, true, true, false, false)));
+    return repository;
+  }
+}
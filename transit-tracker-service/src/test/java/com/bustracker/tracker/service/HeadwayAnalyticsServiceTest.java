@@ -0,0 +1,167 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.shared.model.VehiclePosition;
+import com.bustracker.tracker.domain.ServiceTime;
+import com.bustracker.tracker.domain.StopTime;
+import com.bustracker.tracker.domain.Trip;
+import com.bustracker.tracker.repository.InMemoryGtfsRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class HeadwayAnalyticsServiceTest {
+
+  private static final ZoneId VANCOUVER = ZoneId.of("America/Vancouver");
+  private static final int EIGHT_AM = 8 * 3600;
+
+  private final long eightAm = ServiceTime.toEpochSecond(EIGHT_AM, LocalDate.now(VANCOUVER), VANCOUVER);
+
+  @Test
+  public void testVehiclesOrderedByProgressAndBunchingDetected() {
+    // Arrange - trips every 10 minutes; B runs 6 minutes late, right behind C
+    HeadwayAnalyticsService service = service(repository());
+
+    // Act - updates arrive out of order
+    service.onVehicleStateChanged(null, state("B", "T2", 2500, 360));
+    service.onVehicleStateChanged(null, state("A", "T1", 4000, 0));
+    service.onVehicleStateChanged(null, state("C", "T3", 2200, 0));
+    HeadwayAnalyticsService.DirectionHeadways direction = service.getRouteHeadways("R1", eightAm).getDirections().get(0);
+
+    // Assert
+    assertEquals(3, direction.getVehicleCount());
+    List<HeadwayAnalyticsService.Headway> headways = direction.getHeadways();
+    assertEquals("A", headways.get(0).getLeaderVehicleId());
+    assertEquals("B", headways.get(0).getFollowerVehicleId());
+    assertEquals(960, headways.get(0).getActualSeconds());
+    assertEquals(HeadwayAnalyticsService.HeadwayStatus.GAP, headways.get(0).getStatus());
+    assertEquals("C", headways.get(1).getFollowerVehicleId());
+    assertEquals(600, headways.get(1).getScheduledSeconds());
+    assertEquals(240, headways.get(1).getActualSeconds());
+    assertEquals(HeadwayAnalyticsService.HeadwayStatus.BUNCHED, headways.get(1).getStatus());
+    assertEquals(1, direction.getBunchedCount());
+    assertEquals(1, direction.getGapCount());
+  }
+
+  @Test
+  public void testVehicleLeavesOrderWhenItChangesDirection() {
+    // Arrange
+    HeadwayAnalyticsService service = service(repository());
+    VehicleState before = state("A", "T1", 4000, 0);
+    service.onVehicleStateChanged(null, before);
+    service.onVehicleStateChanged(null, state("B", "T2", 2500, 0));
+
+    // Act
+    service.onVehicleStateChanged(before, VehicleState.unmatched(before.getPosition()));
+
+    // Assert
+    HeadwayAnalyticsService.DirectionHeadways direction = service.getRouteHeadways("R1", eightAm).getDirections().get(0);
+    assertEquals(1, direction.getVehicleCount());
+    assertTrue(direction.getHeadways().isEmpty());
+  }
+
+  @Test
+  public void testScheduledHeadwayAcrossServiceDates() {
+    // Arrange - yesterday's 24:05 trip is followed by today's 00:20 trip
+    InMemoryGtfsRepository repository = new InMemoryGtfsRepository();
+    repository.loadStopTimes(List.of(
+        new StopTime("OWL", "S2", ServiceTime.parse("24:05:00"), -1, 2),
+        new StopTime("EARLY", "S2", ServiceTime.parse("00:20:00"), -1, 2)));
+    HeadwayAnalyticsService service = service(repository);
+    long now = ServiceTime.toEpochSecond(ServiceTime.parse("00:02:00"), LocalDate.now(VANCOUVER), VANCOUVER);
+
+    // Act
+    service.onVehicleStateChanged(null, state("A", "OWL", "SH1", 2000, 0, ServiceTime.parse("24:05:00") - 300));
+    service.onVehicleStateChanged(null, state("B", "EARLY", "SH1", 1000, 0, ServiceTime.parse("00:20:00") - 300));
+    HeadwayAnalyticsService.Headway headway = service.getRouteHeadways("R1", now).getDirections().get(0)
+        .getHeadways().get(0);
+
+    // Assert
+    assertEquals(900, headway.getScheduledSeconds());
+    assertEquals(HeadwayAnalyticsService.HeadwayStatus.NORMAL, headway.getStatus());
+  }
+
+  @Test
+  public void testVehiclesOnDifferentShapesAreNotCompared() {
+    // Arrange
+    HeadwayAnalyticsService service = service(repository());
+
+    // Act
+    service.onVehicleStateChanged(null, state("A", "T1", "SH1", 4000, 0, EIGHT_AM));
+    service.onVehicleStateChanged(null, state("B", "T2", "SH2", 2500, 0, EIGHT_AM + 600));
+    HeadwayAnalyticsService.DirectionHeadways direction = service.getRouteHeadways("R1", eightAm).getDirections().get(0);
+
+    // Assert
+    assertEquals(2, direction.getVehicleCount());
+    assertTrue(direction.getHeadways().isEmpty());
+  }
+
+  @Test
+  public void testEvictedVehicleLeavesOrder() {
+    // Arrange
+    HeadwayAnalyticsService service = service(repository());
+    VehicleState evicted = state("A", "T1", 4000, 0);
+    service.onVehicleStateChanged(null, evicted);
+    service.onVehicleStateChanged(null, state("B", "T2", 2500, 0));
+
+    // Act
+    service.onVehicleStateRemoved(evicted);
+
+    // Assert
+    HeadwayAnalyticsService.DirectionHeadways direction = service.getRouteHeadways("R1", eightAm).getDirections().get(0);
+    assertEquals(1, direction.getVehicleCount());
+    assertTrue(direction.getHeadways().isEmpty());
+  }
+
+  private static HeadwayAnalyticsService service(InMemoryGtfsRepository repository) {
+    VehicleCorrelationService correlation = mock(VehicleCorrelationService.class);
+    when(correlation.isVehicleDataFresh(any())).thenReturn(true);
+    return new HeadwayAnalyticsService(repository, mock(VehicleStateService.class), correlation,
+        new EtaCalculationService(repository, mock(ShapeDistanceCalculationService.class)));
+  }
+
+  private static VehicleState state(String vehicleId, String tripId, double shapeDistanceM, int delaySeconds) {
+    return state(vehicleId, tripId, "SH1", shapeDistanceM, delaySeconds,
+        EIGHT_AM + (Integer.parseInt(tripId.substring(1)) - 1) * 600);
+  }
+
+  /**
+   * Vehicle on a three-stop trip 3km apart, scheduled 5 minutes apart from firstArrival
+   */
+  private static VehicleState state(String vehicleId, String tripId, String shapeId, double shapeDistanceM,
+      int delaySeconds, int firstArrival) {
+    VehiclePosition position = new VehiclePosition();
+    position.setVehicleId(vehicleId);
+    position.setTripId(tripId);
+    position.setRouteId("R1");
+    position.setDirectionId(0);
+    position.setTimestamp(System.currentTimeMillis() / 1000);
+
+    TripGeometry geometry = new TripGeometry(new Trip(tripId, "R1", "DAILY", shapeId, 0, null), null,
+        new String[] {"S1", "S2", "S3"}, new int[] {1, 2, 3}, new double[] {0, 3000, 6000},
+        new int[] {firstArrival, firstArrival + 300, firstArrival + 600},
+        new int[] {firstArrival, firstArrival + 300, firstArrival + 600});
+    int nextStopIndex = shapeDistanceM < 3000 ? 1 : 2;
+    return new VehicleState(position, geometry, shapeDistanceM, 0, 0, nextStopIndex, delaySeconds);
+  }
+
+  private static InMemoryGtfsRepository repository() {
+    InMemoryGtfsRepository repository = new InMemoryGtfsRepository();
+    List<StopTime> stopTimes = new ArrayList<>();
+    for (int trip = 1; trip <= 3; trip++) {
+      int offset = (trip - 1) * 600;
+      stopTimes.add(new StopTime("T" + trip, "S1", EIGHT_AM + offset, -1, 1));
+      stopTimes.add(new StopTime("T" + trip, "S2", EIGHT_AM + offset + 300, -1, 2));
+      stopTimes.add(new StopTime("T" + trip, "S3", EIGHT_AM + offset + 600, -1, 3));
+    }
+    repository.loadStopTimes(stopTimes);
+    return repository;
+  }
+}
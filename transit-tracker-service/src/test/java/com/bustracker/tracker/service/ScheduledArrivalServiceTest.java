@@ -0,0 +1,74 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.tracker.domain.ServiceTime;
+import com.bustracker.tracker.domain.StopTime;
+import com.bustracker.tracker.repository.InMemoryGtfsRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScheduledArrivalServiceTest {
+
+  private static final ZoneId VANCOUVER = ZoneId.of("America/Vancouver");
+  private static final LocalDate FRIDAY = LocalDate.of(2025, 7, 4);
+
+  @Test
+  public void testBulkDelaysMatchSingleVehicleCalculation() {
+    // Arrange - 12:00 on Friday
+    long now = ServiceTime.toEpochSecond(ServiceTime.parse("12:00:00"), FRIDAY, VANCOUVER);
+    int inTenMinutes = ServiceTime.parse("12:10:00");
+    int inTwentyMinutes = ServiceTime.parse("12:20:00");
+
+    InMemoryGtfsRepository repository = new InMemoryGtfsRepository();
+    repository.loadStopTimes(List.of(new StopTime("T2", "S1", inTwentyMinutes, -1, 1)));
+    ScheduledArrivalService service = new ScheduledArrivalService(repository, null, clockAt(now));
+
+    ScheduledArrivalService.DelayBatch batch = new ScheduledArrivalService.DelayBatch(1);
+    batch.add("T1", "S1", inTenMinutes, 900);
+    batch.add("T2", "S1", ScheduledArrivalService.DelayBatch.UNSCHEDULED, 1200);
+    batch.add("T3", "S1", ScheduledArrivalService.DelayBatch.UNSCHEDULED, 60);
+
+    // Act
+    service.calculateDelays(batch);
+    var single = service.calculateDelay(new ScheduledArrivalService.ScheduledArrival("T1", "S1", inTenMinutes, 1), 900);
+
+    // Assert
+    assertEquals(3, batch.size());
+    assertEquals(5, batch.getDelayMinutes(0));
+    assertEquals(single.getDelayMinutes(), batch.getDelayMinutes(0));
+    assertEquals(ScheduledArrivalService.DelayStatus.DELAYED, batch.getStatus(0));
+    assertEquals(inTwentyMinutes, batch.getScheduledSeconds(1));
+    assertEquals(ScheduledArrivalService.DelayStatus.ON_TIME, batch.getStatus(1));
+    assertFalse(batch.hasSchedule(2));
+    assertEquals(now, batch.getComputedAtEpochSecond());
+  }
+
+  @Test
+  public void testDelaysAcrossMidnightUseTheNearestServiceDate() {
+    // Arrange - 23:55 on Friday: Friday's 24:10 run and Saturday's 00:05 run are both minutes away
+    long now = ServiceTime.toEpochSecond(ServiceTime.parse("23:55:00"), FRIDAY, VANCOUVER);
+    ScheduledArrivalService service = new ScheduledArrivalService(new InMemoryGtfsRepository(), null, clockAt(now));
+
+    ScheduledArrivalService.DelayBatch batch = new ScheduledArrivalService.DelayBatch(2);
+    batch.add("OWL", "S1", ServiceTime.parse("24:10:00"), 1200);
+    batch.add("EARLY", "S1", ServiceTime.parse("00:05:00"), 720);
+
+    // Act
+    service.calculateDelays(batch);
+
+    // Assert
+    assertEquals(300, batch.getDelaySeconds(0));
+    assertEquals(120, batch.getDelaySeconds(1));
+    assertEquals(ScheduledArrivalService.DelayStatus.DELAYED, batch.getStatus(0));
+  }
+
+  private static Clock clockAt(long epochSecond) {
+    return Clock.fixed(Instant.ofEpochSecond(epochSecond), VANCOUVER);
+  }
+}
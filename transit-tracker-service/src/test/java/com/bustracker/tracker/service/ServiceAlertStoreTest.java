@@ -0,0 +1,68 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.shared.gtfs.GtfsRealtime;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServiceAlertStoreTest {
+
+  @Test
+  public void testAlertsMatchedByRouteStopAndAgency() {
+    // Arrange
+    ServiceAlertStore store = new ServiceAlertStore();
+    long now = System.currentTimeMillis() / 1000;
+
+    // Act
+    store.replaceAll(feed(1_000,
+        alert("ROUTE", GtfsRealtime.EntitySelector.newBuilder().setRouteId("R1"), 0, 0),
+        alert("STOP", GtfsRealtime.EntitySelector.newBuilder().setStopId("S1"), 0, 0),
+        alert("AGENCY", GtfsRealtime.EntitySelector.newBuilder().setAgencyId("TL"), 0, 0),
+        alert("EXPIRED", GtfsRealtime.EntitySelector.newBuilder().setRouteId("R1"), now - 7_200, now - 3_600),
+        alert("OTHER", GtfsRealtime.EntitySelector.newBuilder().setRouteId("R2"), 0, 0)));
+
+    // Assert
+    assertEquals(List.of("AGENCY", "ROUTE"), ids(store.getActiveAlerts("R1", null)));
+    assertEquals(List.of("AGENCY", "ROUTE", "STOP"), ids(store.getActiveAlerts("R1", "S1")));
+    assertEquals(5, store.size());
+  }
+
+  @Test
+  public void testEachFeedReplacesTheWholeSetUnlessOlder() {
+    // Arrange
+    ServiceAlertStore store = new ServiceAlertStore();
+    store.replaceAll(feed(2_000, alert("A1", GtfsRealtime.EntitySelector.newBuilder().setRouteId("R1"), 0, 0)));
+
+    // Act
+    store.replaceAll(feed(1_000, alert("OLD", GtfsRealtime.EntitySelector.newBuilder().setRouteId("R1"), 0, 0)));
+    List<ServiceAlert> afterOlder = store.getActiveAlerts("R1", null);
+    store.replaceAll(feed(3_000, alert("A2", GtfsRealtime.EntitySelector.newBuilder().setRouteId("R2"), 0, 0)));
+
+    // Assert
+    assertEquals(List.of("A1"), ids(afterOlder));
+    assertTrue(store.getActiveAlerts("R1", null).isEmpty());
+    assertEquals(List.of("A2"), ids(store.getActiveAlerts("R2", null)));
+  }
+
+  private static List<String> ids(List<ServiceAlert> alerts) {
+    return alerts.stream().map(ServiceAlert::getAlertId).toList();
+  }
+
+  private static GtfsRealtime.FeedMessage feed(long timestamp, GtfsRealtime.FeedEntity... alerts) {
+    return GtfsRealtime.FeedMessage.newBuilder()
+        .setHeader(GtfsRealtime.FeedHeader.newBuilder().setGtfsRealtimeVersion("2.0").setTimestamp(timestamp))
+        .addAllEntity(List.of(alerts))
+        .build();
+  }
+
+  private static GtfsRealtime.FeedEntity alert(String id, GtfsRealtime.EntitySelector.Builder informed,
+      long start, long end) {
+    GtfsRealtime.Alert.Builder alert = GtfsRealtime.Alert.newBuilder().addInformedEntity(informed);
+    if (start > 0 || end > 0) {
+      alert.addActivePeriod(GtfsRealtime.TimeRange.newBuilder().setStart(start).setEnd(end));
+    }
+    return GtfsRealtime.FeedEntity.newBuilder().setId(id).setAlert(alert).build();
+  }
+}
@@ -0,0 +1,78 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.tracker.domain.Calendar;
+import com.bustracker.tracker.domain.CalendarDate;
+import com.bustracker.tracker.domain.StopTime;
+import com.bustracker.tracker.domain.Trip;
+import com.bustracker.tracker.repository.InMemoryGtfsRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServiceCalendarServiceTest {
+
+  private static final LocalDate MONDAY = LocalDate.of(2025, 6, 30);
+  private static final LocalDate CANADA_DAY = LocalDate.of(2025, 7, 1);
+
+  @Test
+  public void testServiceDaysApplyExceptionsOverWeeklyCalendar() {
+    // Arrange
+    ServiceCalendarService service = new ServiceCalendarService(repository(), 2);
+
+    // Act
+    service.rebuildServiceDays(MONDAY);
+    ServiceCalendarService.ServiceDay monday = service.getServiceDay(MONDAY);
+    ServiceCalendarService.ServiceDay holiday = service.getServiceDay(CANADA_DAY);
+
+    // Assert
+    assertNotNull(service.getServiceDay(MONDAY.minusDays(1)));
+    assertNotNull(service.getServiceDay(MONDAY.plusDays(2)));
+    assertNull(service.getServiceDay(MONDAY.plusDays(3)));
+
+    assertTrue(monday.isTripActive("WEEKDAY-TRIP"));
+    assertFalse(monday.isTripActive("HOLIDAY-TRIP"));
+    assertFalse(holiday.isTripActive("WEEKDAY-TRIP"));
+    assertTrue(holiday.isTripActive("HOLIDAY-TRIP"));
+    assertFalse(holiday.isTripActive("UNKNOWN-TRIP"));
+    assertTrue(service.isServiceActiveOnDate("HOLIDAY", CANADA_DAY));
+  }
+
+  @Test
+  public void testPrecomputedDaysMatchDirectEvaluation() {
+    // Arrange
+    ServiceCalendarService precomputed = new ServiceCalendarService(repository(), 2);
+    ServiceCalendarService direct = new ServiceCalendarService(repository(), 2);
+
+    // Act
+    precomputed.rebuildServiceDays(MONDAY);
+
+    // Assert
+    for (LocalDate date = MONDAY.minusDays(1); !date.isAfter(MONDAY.plusDays(2)); date = date.plusDays(1)) {
+      for (String serviceId : List.of("WEEKDAY", "HOLIDAY", "NONE")) {
+        assertEquals(direct.isServiceActiveOnDate(serviceId, date),
+            precomputed.isServiceActiveOnDate(serviceId, date), serviceId + " on " + date);
+      }
+    }
+  }
+
+  private static InMemoryGtfsRepository repository() {
+    InMemoryGtfsRepository repository = new InMemoryGtfsRepository();
+    repository.loadTrips(List.of(
+        new Trip("WEEKDAY-TRIP", "R1", "WEEKDAY", null, 0, null),
+        new Trip("HOLIDAY-TRIP", "R1", "HOLIDAY", null, 0, null)));
+    repository.loadStopTimes(List.of(
+        new StopTime("WEEKDAY-TRIP", "S1", LocalTime.of(8, 0), null, 1),
+        new StopTime("HOLIDAY-TRIP", "S1", LocalTime.of(9, 0), null, 1)));
+    repository.loadCalendars(List.of(
+        new Calendar("WEEKDAY", LocalDate.of(2025, 1, 1), LocalDate.of(2025, 12, 31),
+            true, true, true, true, true, false, false)));
+    repository.loadCalendarDates(List.of(
+        new CalendarDate("WEEKDAY", CANADA_DAY, CalendarDate.ExceptionType.SERVICE_REMOVED),
+        new CalendarDate("HOLIDAY", CANADA_DAY, CalendarDate.ExceptionType.SERVICE_ADDED)));
+    return repository;
+  }
+}
@@ -0,0 +1,83 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.tracker.domain.Calendar;
+import com.bustracker.tracker.domain.StopTime;
+import com.bustracker.tracker.domain.Trip;
+import com.bustracker.tracker.repository.InMemoryGtfsRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StopDepartureIndexTest {
+
+  private static final ZoneId VANCOUVER = ZoneId.of("America/Vancouver");
+  private static final LocalDate SATURDAY = LocalDate.of(2025, 7, 5);
+
+  private StopDepartureIndex index;
+
+  @BeforeEach
+  public void setUp() {
+    InMemoryGtfsRepository repository = new InMemoryGtfsRepository();
+    repository.loadTrips(List.of(
+        new Trip("WEEKDAY-EVENING", "R1", "WEEKDAY", null, 0, null),
+        new Trip("WEEKDAY-OWL", "R1", "WEEKDAY", null, 0, null),
+        new Trip("WEEKEND-EARLY", "R1", "WEEKEND", null, 0, null),
+        new Trip("WEEKEND-OTHER-DIRECTION", "R1", "WEEKEND", null, 1, null)));
+    repository.loadStopTimes(List.of(
+        new StopTime("WEEKDAY-EVENING", "S1", StopTime.parseGtfsSeconds("23:40:00"), -1, 1),
+        new StopTime("WEEKDAY-OWL", "S1", StopTime.parseGtfsSeconds("25:30:00"), -1, 1),
+        new StopTime("WEEKEND-EARLY", "S1", StopTime.parseGtfsSeconds("01:45:00"), -1, 1),
+        new StopTime("WEEKEND-OTHER-DIRECTION", "S1", StopTime.parseGtfsSeconds("01:35:00"), -1, 1)));
+    repository.loadCalendars(List.of(
+        new Calendar("WEEKDAY", LocalDate.of(2025, 1, 1), LocalDate.of(2025, 12, 31),
+            true, true, true, true, true, false, false),
+        new Calendar("WEEKEND", LocalDate.of(2025, 1, 1), LocalDate.of(2025, 12, 31),
+            false, false, false, false, false, true, true)));
+
+    ServiceCalendarService calendarService = new ServiceCalendarService(repository, 2);
+    calendarService.rebuildServiceDays(SATURDAY);
+    index = new StopDepartureIndex(repository, new DailyTimetableService(repository, calendarService));
+    index.rebuild();
+  }
+
+  @Test
+  public void testFindsOvernightTripsOfPreviousServiceDay() {
+    // Arrange - 01:20 Saturday: Friday's 25:30 trip is still to come
+    ZonedDateTime now = SATURDAY.atTime(1, 20).atZone(VANCOUVER);
+
+    // Act
+    List<StopDepartureIndex.Departure> departures = index.findDepartures("S1", now, 3600, 10);
+
+    // Assert
+    assertEquals(List.of("WEEKDAY-OWL", "WEEKEND-OTHER-DIRECTION", "WEEKEND-EARLY"),
+        departures.stream().map(departure -> departure.getStopTime().getTripId()).toList());
+    assertEquals(SATURDAY.minusDays(1), departures.get(0).getServiceDate());
+    assertEquals(600, departures.get(0).getSecondsUntil());
+    assertEquals(1500, departures.get(2).getSecondsUntil());
+  }
+
+  @Test
+  public void testRouteDirectionScopeWindowAndLimit() {
+    // Arrange
+    ZonedDateTime now = SATURDAY.atTime(1, 20).atZone(VANCOUVER);
+
+    // Act
+    List<StopDepartureIndex.Departure> direction0 = index.findDepartures("R1", 0, "S1", now, 3600, 10);
+    List<StopDepartureIndex.Departure> limited = index.findDepartures("S1", now, 3600, 1);
+    List<StopDepartureIndex.Departure> shortWindow = index.findDepartures("S1", now, 300, 10);
+
+    // Assert
+    assertEquals(List.of("WEEKDAY-OWL", "WEEKEND-EARLY"),
+        direction0.stream().map(departure -> departure.getStopTime().getTripId()).toList());
+    assertEquals(1, limited.size());
+    assertEquals("WEEKDAY-OWL", limited.get(0).getStopTime().getTripId());
+    assertTrue(shortWindow.isEmpty());
+    assertTrue(index.findDepartures("UNKNOWN", now, 3600, 10).isEmpty());
+  }
+}
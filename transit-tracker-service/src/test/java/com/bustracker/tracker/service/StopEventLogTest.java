@@ -0,0 +1,67 @@
+package com.bustracker.tracker.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StopEventLogTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  public void testSegmentsRollWhenFullAndOnScheduleAndAreTruncated() throws Exception {
+    // Arrange - a minimal 4KB segment holds about a hundred events
+    StopEventLog log = new StopEventLog(true, directory.toString(), 4096);
+
+    // Act
+    for (int i = 0; i < 200; i++) {
+      assertTrue(log.append(event(i)));
+    }
+    log.rollover();
+    assertNull(log.getCurrentSegment());
+    log.append(event(200));
+    log.close();
+
+    // Assert
+    List<Path> segments;
+    try (Stream<Path> files = Files.list(directory)) {
+      segments = files.sorted().toList();
+    }
+    assertTrue(segments.size() >= 3);
+    long events = 0;
+    for (Path segment : segments) {
+      List<String> lines = Files.readAllLines(segment);
+      assertEquals(StopEvent.LOG_HEADER, lines.get(0));
+      assertFalse(Files.readString(segment).contains("\0"));
+      events += lines.size() - 1;
+    }
+    assertEquals(201, events);
+    assertEquals(201, log.getAppendedEvents());
+    assertTrue(Files.readString(segments.get(segments.size() - 1)).contains("1200,ARRIVED,V1,T1,R1,0,S200,200,1000,200"));
+  }
+
+  @Test
+  public void testDisabledLogWritesNothing() throws Exception {
+    // Arrange
+    StopEventLog log = new StopEventLog(false, directory.resolve("disabled").toString(), 4096);
+
+    // Act
+    boolean written = log.append(event(1));
+    log.close();
+
+    // Assert
+    assertFalse(written);
+    assertFalse(Files.exists(directory.resolve("disabled")));
+  }
+
+  private static StopEvent event(int i) {
+    return new StopEvent(StopEvent.Type.ARRIVED, 1000 + i, "V1", "T1", "R1", 0, "S" + i, i, 1000);
+  }
+}
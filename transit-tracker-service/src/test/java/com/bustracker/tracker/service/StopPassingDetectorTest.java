@@ -0,0 +1,66 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.shared.model.VehiclePosition;
+import com.bustracker.tracker.domain.Trip;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class StopPassingDetectorTest {
+
+  private static final TripGeometry GEOMETRY = new TripGeometry(new Trip("T1", "R1", "DAILY", "SH1", 0, null), null,
+      new String[] {"S1", "S2", "S3"}, new int[] {1, 2, 3}, new double[] {0, 1000, 2000},
+      new int[] {8 * 3600, 8 * 3600 + 300, 8 * 3600 + 600},
+      new int[] {8 * 3600, 8 * 3600 + 360, 8 * 3600 + 600});
+
+  @Test
+  public void testArrivalAndDepartureInterpolatedBetweenPositions() {
+    // Arrange
+    StopPassingDetector detector = new StopPassingDetector(mock(VehicleStateService.class), mock(StopEventLog.class));
+    VehicleState previous = state("T1", 900, 1_000);
+    VehicleState current = state("T1", 1100, 1_040);
+
+    // Act
+    List<StopEvent> events = detector.detect(previous, current);
+
+    // Assert - S2 at 1000m: arrival at 970m, departure at 1030m
+    assertEquals(2, events.size());
+    assertEquals(StopEvent.Type.ARRIVED, events.get(0).getType());
+    assertEquals("S2", events.get(0).getStopId());
+    assertEquals(1_014, events.get(0).getEpochSecond());
+    assertEquals(StopEvent.Type.DEPARTED, events.get(1).getType());
+    assertEquals(1_026, events.get(1).getEpochSecond());
+    assertEquals(2, events.get(1).getStopSequence());
+    // S2 dwells a minute: arrival against 08:05, departure against 08:06
+    assertEquals(60, events.get(1).getScheduledEpochSecond() - events.get(0).getScheduledEpochSecond());
+  }
+
+  @Test
+  public void testNoEventsWithoutForwardProgressOnTheSameTrip() {
+    // Arrange
+    StopPassingDetector detector = new StopPassingDetector(mock(VehicleStateService.class), mock(StopEventLog.class));
+
+    // Act + Assert
+    assertTrue(detector.detect(null, state("T1", 1100, 1_040)).isEmpty());
+    assertTrue(detector.detect(state("T1", 1100, 1_000), state("T1", 900, 1_040)).isEmpty());
+    assertTrue(detector.detect(state("T0", 900, 1_000), state("T1", 1100, 1_040)).isEmpty());
+    assertTrue(detector.detect(state("T1", 900, 1_000), state("T1", 1100, 5_000)).isEmpty());
+    assertEquals(4, detector.detect(state("T1", 500, 1_000), state("T1", 2500, 1_100)).size());
+  }
+
+  private static VehicleState state(String tripId, double shapeDistanceM, long timestamp) {
+    VehiclePosition position = new VehiclePosition();
+    position.setVehicleId("V1");
+    position.setTripId(tripId);
+    position.setRouteId("R1");
+    position.setDirectionId(0);
+    position.setTimestamp(timestamp);
+    TripGeometry geometry = tripId.equals("T1") ? GEOMETRY : new TripGeometry(
+        new Trip(tripId, "R1", "DAILY", "SH1", 0, null), null, new String[] {"S1"}, new int[] {1},
+        new double[] {0}, new int[] {8 * 3600}, new int[] {8 * 3600});
+    return new VehicleState(position, geometry, shapeDistanceM, 0, 0, 0, null);
+  }
+}
@@ -0,0 +1,130 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.tracker.domain.ShapePoint;
+import com.bustracker.tracker.domain.Stop;
+import com.bustracker.tracker.domain.StopTime;
+import com.bustracker.tracker.domain.Trip;
+import com.bustracker.tracker.repository.InMemoryGtfsRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TripGeometryServiceTest {
+
+  // A straight shape heading east along 49N: three points 0.01 degrees (~730m) apart
+  static final double LAT = 49.0;
+  static final double SEGMENT_M = 729.5;
+
+  @Test
+  public void testProjectionOntoShape() {
+    // Arrange
+    ShapeGeometry shape = new ShapeGeometry("SH1", shapePoints());
+
+    // Act - 100m north of the middle of the first segment
+    ShapeGeometry.Projection projection = shape.project(LAT + 100 / 111_195.0, -122.995, 0);
+    ShapeGeometry.Projection fromSecond = shape.project(LAT, -122.995, 1);
+
+    // Assert
+    assertEquals(0, projection.getSegmentIndex());
+    assertEquals(SEGMENT_M / 2, projection.getDistanceAlongM(), 1.0);
+    assertEquals(100, projection.getDistanceFromShapeM(), 1.0);
+    assertEquals(1, fromSecond.getSegmentIndex());
+    assertEquals(SEGMENT_M, fromSecond.getDistanceAlongM(), 1.0);
+    assertEquals(2 * SEGMENT_M, shape.getTotalLengthM(), 2.0);
+  }
+
+  @Test
+  public void testSegmentAtDistance() {
+    // Arrange
+    ShapeGeometry shape = new ShapeGeometry("SH1", shapePoints());
+
+    // Act + Assert - clamped to the first and last segment
+    assertEquals(0, shape.segmentAt(-50));
+    assertEquals(0, shape.segmentAt(300));
+    assertEquals(1, shape.segmentAt(800));
+    assertEquals(1, shape.segmentAt(10_000));
+  }
+
+  @Test
+  public void testStopsIndexedInOrderAlongShape() {
+    // Arrange
+    TripGeometryService service = new TripGeometryService(repository(120));
+
+    // Act
+    TripGeometry geometry = service.getTripGeometry("T1").orElseThrow();
+
+    // Assert
+    assertEquals(3, geometry.getStopCount());
+    assertEquals(0, geometry.getStopOffsetM(0), 1.0);
+    assertEquals(SEGMENT_M, geometry.getStopOffsetM(1), 1.0);
+    assertEquals(2 * SEGMENT_M, geometry.getStopOffsetM(2), 2.0);
+    assertEquals(1, geometry.indexOfStop("S2", 0));
+    assertEquals(-1, geometry.indexOfStop("S2", 2));
+    assertEquals(8 * 3600 + 120, geometry.getScheduledArrivalSeconds(1));
+    assertEquals(8 * 3600 + 150, geometry.getScheduledDepartureSeconds(1));
+    assertEquals(8 * 3600, geometry.getScheduledDepartureSeconds(0));
+    assertTrue(service.getTripGeometry("UNKNOWN").isEmpty());
+    assertTrue(service.getTripGeometry(null).isEmpty());
+  }
+
+  @Test
+  public void testNextStopIndexWithTolerance() {
+    // Arrange
+    TripGeometry geometry = new TripGeometryService(repository(120)).getTripGeometry("T1").orElseThrow();
+
+    // Act + Assert - a stop stays next until the vehicle is 25m past it
+    assertEquals(0, geometry.nextStopIndex(0, 25));
+    assertEquals(1, geometry.nextStopIndex(30, 25));
+    assertEquals(1, geometry.nextStopIndex(750, 25));
+    assertEquals(2, geometry.nextStopIndex(760, 25));
+    assertEquals(3, geometry.nextStopIndex(2 * SEGMENT_M + 30, 25)); // trip complete
+  }
+
+  @Test
+  public void testClearRebuildsFromReloadedData() {
+    // Arrange
+    InMemoryGtfsRepository repository = repository(120);
+    TripGeometryService service = new TripGeometryService(repository);
+    assertEquals(8 * 3600 + 120, service.getTripGeometry("T1").orElseThrow().getScheduledArrivalSeconds(1));
+    repository.loadStopTimes(stopTimes(240));
+
+    // Act
+    int beforeClear = service.getTripGeometry("T1").orElseThrow().getScheduledArrivalSeconds(1);
+    service.clear();
+    int afterClear = service.getTripGeometry("T1").orElseThrow().getScheduledArrivalSeconds(1);
+
+    // Assert
+    assertEquals(8 * 3600 + 120, beforeClear);
+    assertEquals(8 * 3600 + 240, afterClear);
+  }
+
+  static List<ShapePoint> shapePoints() {
+    return List.of(new ShapePoint("SH1", LAT, -123.00, 1), new ShapePoint("SH1", LAT, -122.99, 2),
+        new ShapePoint("SH1", LAT, -122.98, 3));
+  }
+
+  /**
+   * Trip T1 on route R1 direction 0 serving S1-S3 along the shape, stepSeconds apart from 08:00
+   */
+  static InMemoryGtfsRepository repository(int stepSeconds) {
+    InMemoryGtfsRepository repository = new InMemoryGtfsRepository();
+    repository.loadStops(List.of(new Stop("S1", "First", LAT, -123.00), new Stop("S2", "Second", LAT, -122.99),
+        new Stop("S3", "Third", LAT, -122.98)));
+    repository.loadTrips(List.of(new Trip("T1", "R1", "DAILY", "SH1", 0, null)));
+    repository.loadShapePoints(shapePoints());
+    repository.loadStopTimes(stopTimes(stepSeconds));
+    return repository;
+  }
+
+  static List<StopTime> stopTimes(int stepSeconds) {
+    return stopTimes(8 * 3600, stepSeconds);
+  }
+
+  static List<StopTime> stopTimes(int firstArrivalSeconds, int stepSeconds) {
+    return List.of(new StopTime("T1", "S1", firstArrivalSeconds, -1, 1),
+        new StopTime("T1", "S2", firstArrivalSeconds + stepSeconds, firstArrivalSeconds + stepSeconds + 30, 2),
+        new StopTime("T1", "S3", firstArrivalSeconds + 2 * stepSeconds, -1, 3));
+  }
+}
@@ -0,0 +1,61 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.shared.gtfs.GtfsRealtime;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TripPredictionTest {
+
+  @Test
+  public void testDelayPropagatesToLaterStops() {
+    // Arrange
+    GtfsRealtime.TripUpdate update = tripUpdate()
+        .addStopTimeUpdate(stopTimeUpdate(3, "S3").setArrival(delay(120)))
+        .addStopTimeUpdate(stopTimeUpdate(7, "S7").setArrival(delay(300)))
+        .build();
+
+    // Act
+    TripPrediction prediction = TripPrediction.from(update, 1000);
+
+    // Assert
+    assertNull(prediction.getDelayAt(2, "S2"));
+    assertEquals(120, prediction.getDelayAt(3, "S3"));
+    assertEquals(120, prediction.getDelayAt(5, "S5"));
+    assertEquals(300, prediction.getDelayAt(9, "S9"));
+  }
+
+  @Test
+  public void testAbsoluteTimeAndSkippedStops() {
+    // Arrange
+    GtfsRealtime.TripUpdate update = tripUpdate()
+        .addStopTimeUpdate(stopTimeUpdate(4, "S4").setArrival(
+            GtfsRealtime.TripUpdate.StopTimeEvent.newBuilder().setTime(1_760_000_600L)))
+        .addStopTimeUpdate(stopTimeUpdate(5, "S5").setScheduleRelationship(
+            GtfsRealtime.TripUpdate.StopTimeUpdate.ScheduleRelationship.SKIPPED))
+        .build();
+
+    // Act
+    TripPrediction prediction = TripPrediction.from(update, 1000);
+
+    // Assert
+    assertEquals(1_760_000_600L, prediction.getArrivalTimeAt(4, "S4"));
+    assertEquals(0, prediction.getArrivalTimeAt(6, "S6"));
+    assertTrue(prediction.isSkippedAt(5, "S5"));
+    assertFalse(prediction.isSkippedAt(4, "S4"));
+    assertEquals(1000, prediction.getTimestamp());
+  }
+
+  private static GtfsRealtime.TripUpdate.Builder tripUpdate() {
+    return GtfsRealtime.TripUpdate.newBuilder()
+        .setTrip(GtfsRealtime.TripDescriptor.newBuilder().setTripId("TRIP-1").setRouteId("R1").setDirectionId(0));
+  }
+
+  private static GtfsRealtime.TripUpdate.StopTimeUpdate.Builder stopTimeUpdate(int stopSequence, String stopId) {
+    return GtfsRealtime.TripUpdate.StopTimeUpdate.newBuilder().setStopSequence(stopSequence).setStopId(stopId);
+  }
+
+  private static GtfsRealtime.TripUpdate.StopTimeEvent.Builder delay(int seconds) {
+    return GtfsRealtime.TripUpdate.StopTimeEvent.newBuilder().setDelay(seconds);
+  }
+}
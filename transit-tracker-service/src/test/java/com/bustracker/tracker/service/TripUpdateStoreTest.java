@@ -0,0 +1,68 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.shared.gtfs.GtfsRealtime;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TripUpdateStoreTest {
+
+  @Test
+  public void testEqualOrOlderUpdatesAreIgnored() {
+    // Arrange
+    TripUpdateStore store = new TripUpdateStore(900);
+    store.update(tripUpdate("T1", "R1", 2_000, 60));
+
+    // Act
+    boolean older = store.update(tripUpdate("T1", "R1", 1_000, 120));
+    boolean equal = store.update(tripUpdate("T1", "R1", 2_000, 180));
+    boolean newer = store.update(tripUpdate("T1", "R1", 3_000, 240));
+
+    // Assert
+    assertFalse(older);
+    assertFalse(equal);
+    assertTrue(newer);
+    assertEquals(3_000, store.getPrediction("T1").getTimestamp());
+    assertEquals(240, store.getPrediction("T1").getDelayAt(1, "S1"));
+  }
+
+  @Test
+  public void testRouteIndexFollowsTheLatestUpdate() {
+    // Arrange
+    TripUpdateStore store = new TripUpdateStore(900);
+    store.update(tripUpdate("T1", "R1", 1_000, 60));
+
+    // Act - the trip is reassigned to another route
+    store.update(tripUpdate("T1", "R2", 2_000, 60));
+
+    // Assert
+    assertTrue(store.getPredictions("R1", 0).isEmpty());
+    assertEquals(1, store.getPredictions("R2", 0).size());
+    assertEquals(1, store.size());
+  }
+
+  @Test
+  public void testStalePredictionsAreEvicted() {
+    // Arrange
+    long now = System.currentTimeMillis() / 1000;
+    TripUpdateStore store = new TripUpdateStore(900);
+    store.update(tripUpdate("OLD", "R1", now - 1_000, 60));
+    store.update(tripUpdate("NEW", "R1", now, 60));
+
+    // Act
+    store.evictStale();
+
+    // Assert
+    assertNull(store.getPrediction("OLD"));
+    assertNotNull(store.getPrediction("NEW"));
+    assertEquals(1, store.getPredictions("R1", 0).size());
+  }
+
+  private static GtfsRealtime.TripUpdate tripUpdate(String tripId, String routeId, long timestamp, int delay) {
+    return GtfsRealtime.TripUpdate.newBuilder()
+        .setTrip(GtfsRealtime.TripDescriptor.newBuilder().setTripId(tripId).setRouteId(routeId).setDirectionId(0))
+        .setTimestamp(timestamp)
+        .setDelay(delay)
+        .build();
+  }
+}
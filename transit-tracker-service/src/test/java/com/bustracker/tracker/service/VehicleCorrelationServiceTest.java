@@ -0,0 +1,94 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.shared.gtfs.GtfsRealtime;
+import com.bustracker.shared.model.VehiclePosition;
+import com.bustracker.tracker.domain.ServiceTime;
+import com.bustracker.tracker.domain.Stop;
+import com.bustracker.tracker.domain.Trip;
+import com.bustracker.tracker.repository.InMemoryGtfsRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VehicleCorrelationServiceTest {
+
+  private static final ZoneId VANCOUVER_TIMEZONE = ZoneId.of("America/Vancouver");
+
+  private static final Stop STOP_2 = new Stop("S2", "Second Stop", 49.28, -123.12);
+
+  private final long now = System.currentTimeMillis() / 1000;
+  private final TripUpdateStore tripUpdateStore = new TripUpdateStore(900);
+  private final VehicleCorrelationService service = new VehicleCorrelationService(new InMemoryGtfsRepository(),
+      null, new EtaCalculationService(new InMemoryGtfsRepository(), null), null, tripUpdateStore, null);
+
+  @Test
+  public void testAgencyArrivalTimeOverridesDistanceEta() {
+    // Arrange
+    VehicleState state = state(0);
+    int distanceEta = service.findApproach(state, STOP_2).orElseThrow().getEtaResult().getEtaSeconds();
+    tripUpdateStore.update(tripUpdate()
+        .addStopTimeUpdate(GtfsRealtime.TripUpdate.StopTimeUpdate.newBuilder().setStopSequence(2).setStopId("S2")
+            .setArrival(GtfsRealtime.TripUpdate.StopTimeEvent.newBuilder().setTime(now + 900)))
+        .build());
+
+    // Act
+    int predictedEta = service.findApproach(state, STOP_2).orElseThrow().getEtaResult().getEtaSeconds();
+
+    // Assert
+    assertNotEquals(distanceEta, predictedEta);
+    assertTrue(Math.abs(predictedEta - 900) <= 1);
+  }
+
+  @Test
+  public void testTripLevelDelayShiftsTheScheduleWithoutStopUpdates() {
+    // Arrange - S2 is scheduled 10 minutes from now; the trip runs 2 minutes late
+    VehicleState state = state(600);
+    tripUpdateStore.update(tripUpdate().setDelay(120).build());
+
+    // Act
+    int eta = service.findApproach(state, STOP_2).orElseThrow().getEtaResult().getEtaSeconds();
+
+    // Assert
+    assertTrue(Math.abs(eta - 720) <= 1);
+  }
+
+  @Test
+  public void testSkippedStopIsNotApproached() {
+    // Arrange
+    VehicleState state = state(0);
+    tripUpdateStore.update(tripUpdate()
+        .addStopTimeUpdate(GtfsRealtime.TripUpdate.StopTimeUpdate.newBuilder().setStopSequence(2).setStopId("S2")
+            .setScheduleRelationship(GtfsRealtime.TripUpdate.StopTimeUpdate.ScheduleRelationship.SKIPPED))
+        .build());
+
+    // Act + Assert
+    assertTrue(service.findApproach(state, STOP_2).isEmpty());
+  }
+
+  private GtfsRealtime.TripUpdate.Builder tripUpdate() {
+    return GtfsRealtime.TripUpdate.newBuilder()
+        .setTrip(GtfsRealtime.TripDescriptor.newBuilder().setTripId("T1").setRouteId("R1").setDirectionId(0))
+        .setTimestamp(now);
+  }
+
+  /**
+   * Vehicle 1km before S2, which is scheduled secondsUntilS2 from now (today's service day)
+   */
+  private VehicleState state(int secondsUntilS2) {
+    VehiclePosition position = new VehiclePosition();
+    position.setVehicleId("V1");
+    position.setTripId("T1");
+    position.setRouteId("R1");
+    position.setDirectionId(0);
+    position.setTimestamp(now);
+
+    int s2 = ServiceTime.fromEpochSecond(now + secondsUntilS2, LocalDate.now(VANCOUVER_TIMEZONE), VANCOUVER_TIMEZONE);
+    TripGeometry geometry = new TripGeometry(new Trip("T1", "R1", "DAILY", "SH1", 0, null), null,
+        new String[] {"S1", "S2"}, new int[] {1, 2}, new double[] {0, 2000}, new int[] {s2 - 300, s2},
+        new int[] {s2 - 300, s2});
+    return new VehicleState(position, geometry, 1000, 0, 0, 1, null);
+  }
+}
@@ -0,0 +1,71 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.shared.model.VehiclePosition;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VehiclePositionHistoryTest {
+
+  @Test
+  public void testSnapshotIsOldestFirstAfterWrapAround() {
+    // Arrange
+    VehiclePositionHistory history = new VehiclePositionHistory(3);
+
+    // Act
+    for (long ts = 100; ts <= 500; ts += 100) {
+      history.record(createFix(ts, 49.0 + ts / 1000.0, 5.0f));
+    }
+    VehiclePositionHistory.Snapshot snapshot = history.snapshot();
+
+    // Assert
+    assertEquals(3, snapshot.size());
+    assertEquals(300, snapshot.getTimestamp(0));
+    assertEquals(400, snapshot.getTimestamp(1));
+    assertEquals(500, snapshot.getTimestamp(2));
+    assertEquals(49.5, snapshot.getLatitude(2), 1e-9);
+    assertEquals(500, history.getLatestTimestamp());
+  }
+
+  @Test
+  public void testIgnoresDuplicateAndOutOfOrderFixes() {
+    // Arrange
+    VehiclePositionHistory history = new VehiclePositionHistory(4);
+    history.record(createFix(200, 49.2, 5.0f));
+
+    // Act & Assert
+    assertFalse(history.record(createFix(200, 49.3, 5.0f)));
+    assertFalse(history.record(createFix(100, 49.1, 5.0f)));
+    assertTrue(history.record(createFix(300, 49.3, null)));
+    assertEquals(2, history.snapshot().size());
+  }
+
+  @Test
+  public void testMissingSpeedIsReportedAsAbsent() {
+    // Arrange
+    VehiclePositionHistory history = new VehiclePositionHistory(2);
+
+    // Act
+    history.record(createFix(100, 49.2, null));
+    VehiclePositionHistory.Snapshot snapshot = history.snapshot();
+
+    // Assert
+    assertFalse(snapshot.hasSpeed(0));
+    assertFalse(snapshot.hasBearing(0));
+  }
+
+  @Test
+  public void testEmptySnapshot() {
+    VehiclePositionHistory history = new VehiclePositionHistory(2);
+
+    assertTrue(history.snapshot().isEmpty());
+    assertEquals(-1, history.getLatestTimestamp());
+  }
+
+  private VehiclePosition createFix(long timestamp, double latitude, Float speed) {
+    VehiclePosition vehicle = new VehiclePosition("TEST-001", "TRIP-001", "ROUTE-001",
+        latitude, -123.1207, timestamp);
+    vehicle.setSpeed(speed);
+    return vehicle;
+  }
+}
@@ -0,0 +1,92 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.shared.model.VehiclePosition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VehicleSnapshotServiceTest {
+
+  @TempDir
+  Path directory;
+
+  private final long now = System.currentTimeMillis() / 1000;
+
+  @Test
+  public void testCheckpointRestoresPositionsAndHistories() {
+    // Arrange - V1 with three fixes, V2 with one fix missing optional fields
+    VehicleStorageService written = new VehicleStorageService(10, 100, 900);
+    written.storeVehiclePosition(position("V1", now - 60, 49.20, 2.0f));
+    written.storeVehiclePosition(position("V1", now - 30, 49.21, null));
+    written.storeVehiclePosition(position("V1", now, 49.22, 6.5f));
+    VehiclePosition sparse = new VehiclePosition();
+    sparse.setVehicleId("V2");
+    sparse.setTimestamp(now);
+    written.storeVehiclePosition(sparse);
+    String path = directory.resolve("vehicles.snapshot").toString();
+    new VehicleSnapshotService(written, true, path, 300).checkpoint();
+
+    // Act
+    VehicleStorageService restored = new VehicleStorageService(10, 100, 900);
+    int count = new VehicleSnapshotService(restored, true, path, 300).restore();
+
+    // Assert
+    assertEquals(2, count);
+    VehiclePosition v1 = restored.getVehicle("V1");
+    assertEquals("T1", v1.getTripId());
+    assertEquals("R1", v1.getRouteId());
+    assertEquals(1, v1.getDirectionId());
+    assertEquals("IN_TRANSIT_TO", v1.getCurrentStatus());
+    assertEquals(49.22, v1.getLatitude());
+    assertEquals(6.5f, v1.getSpeed());
+
+    VehiclePositionHistory.Snapshot history = restored.getPositionHistory("V1");
+    assertEquals(3, history.size());
+    assertEquals(now - 60, history.getTimestamp(0));
+    assertEquals(49.21, history.getLatitude(1));
+    assertFalse(history.hasSpeed(1));
+    assertEquals(6.5f, history.getSpeed(2));
+
+    VehiclePosition v2 = restored.getVehicle("V2");
+    assertNull(v2.getRouteId());
+    assertNull(v2.getDirectionId());
+    assertNull(v2.getSpeed());
+    assertEquals(1, restored.getPositionHistory("V2").size());
+  }
+
+  @Test
+  public void testRestoreNeverOverwritesNewerLiveData() {
+    // Arrange
+    VehicleStorageService written = new VehicleStorageService(10, 100, 900);
+    written.storeVehiclePosition(position("V1", now - 60, 49.20, null));
+    String path = directory.resolve("vehicles.snapshot").toString();
+    new VehicleSnapshotService(written, true, path, 300).checkpoint();
+    VehicleStorageService live = new VehicleStorageService(10, 100, 900);
+    live.storeVehiclePosition(position("V1", now, 49.30, null));
+
+    // Act
+    int count = new VehicleSnapshotService(live, true, path, 300).restore();
+
+    // Assert
+    assertEquals(0, count);
+    assertEquals(49.30, live.getVehicle("V1").getLatitude());
+    assertEquals(1, live.getPositionHistory("V1").size());
+  }
+
+  private static VehiclePosition position(String vehicleId, long timestamp, double latitude, Float speed) {
+    VehiclePosition position = new VehiclePosition();
+    position.setVehicleId(vehicleId);
+    position.setTripId("T1");
+    position.setRouteId("R1");
+    position.setDirectionId(1);
+    position.setCurrentStatus("IN_TRANSIT_TO");
+    position.setLatitude(latitude);
+    position.setLongitude(-123.1);
+    position.setSpeed(speed);
+    position.setTimestamp(timestamp);
+    return position;
+  }
+}
@@ -0,0 +1,127 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.shared.model.VehiclePosition;
+import com.bustracker.tracker.domain.ServiceTime;
+import com.bustracker.tracker.repository.InMemoryGtfsRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VehicleStateServiceTest {
+
+  private static final ZoneId VANCOUVER_TIMEZONE = ZoneId.of("America/Vancouver");
+
+  private final long now = System.currentTimeMillis() / 1000;
+
+  @Test
+  public void testPositionMatchedOntoShapeWithNextStopAndDelay() {
+    // Arrange - S3 is scheduled 10 minutes from now
+    int s3 = ServiceTime.fromEpochSecond(now + 600, LocalDate.now(VANCOUVER_TIMEZONE), VANCOUVER_TIMEZONE);
+    InMemoryGtfsRepository repository = TripGeometryServiceTest.repository(120);
+    repository.loadStopTimes(TripGeometryServiceTest.stopTimes(s3 - 600, 300));
+    EtaCalculationService etaCalculationService = new EtaCalculationService(repository, null);
+    VehicleStateService service = service(repository, etaCalculationService);
+
+    // Act - 20m north of the shape, halfway between S2 and S3
+    VehicleState state = service.process(position("V1", TripGeometryServiceTest.LAT + 20 / 111_195.0, -122.985, now));
+
+    // Assert
+    assertTrue(state.isOnShape());
+    assertEquals(1, state.getSegmentIndex());
+    assertEquals(1.5 * TripGeometryServiceTest.SEGMENT_M, state.getShapeDistanceM(), 1.0);
+    assertEquals(20, state.getDistanceFromShapeM(), 1.0);
+    assertEquals(2, state.getNextStopIndex());
+    int eta = etaCalculationService.calculateEtaSeconds(state.distanceToStopM(2));
+    assertEquals(eta - 600, state.getDelaySeconds());
+    assertSame(state, service.getVehicleState("V1"));
+    assertEquals(1, service.getVehicleStates("R1", 0).size());
+  }
+
+  @Test
+  public void testPositionFarFromShapeIsUnmatched() {
+    // Arrange
+    InMemoryGtfsRepository repository = TripGeometryServiceTest.repository(120);
+    VehicleStateService service = service(repository, new EtaCalculationService(repository, null));
+
+    // Act - 1km north of the shape
+    VehicleState state = service.process(position("V1", TripGeometryServiceTest.LAT + 1000 / 111_195.0, -122.985, now));
+
+    // Assert
+    assertFalse(state.isOnShape());
+    assertNull(state.getDelaySeconds());
+  }
+
+  @Test
+  public void testStaleStatesEvictedAndListenersNotified() {
+    // Arrange
+    InMemoryGtfsRepository repository = TripGeometryServiceTest.repository(120);
+    VehicleStateService service = service(repository, new EtaCalculationService(repository, null));
+    List<String> removed = new ArrayList<>();
+    service.addListener(new VehicleStateListener() {
+      @Override
+      public void onVehicleStateChanged(VehicleState previous, VehicleState current) {
+      }
+
+      @Override
+      public void onVehicleStateRemoved(VehicleState last) {
+        removed.add(last.getVehicleId());
+      }
+    });
+    service.process(position("OLD", TripGeometryServiceTest.LAT, -122.995, now - 1_000));
+    service.process(position("NEW", TripGeometryServiceTest.LAT, -122.995, now));
+
+    // Act
+    service.evictStale();
+
+    // Assert
+    assertEquals(List.of("OLD"), removed);
+    assertNull(service.getVehicleState("OLD"));
+    assertNotNull(service.getVehicleState("NEW"));
+    assertEquals(1, service.getVehicleStates("R1", 0).size());
+  }
+
+  @Test
+  public void testOlderPositionAfterNewerIsDropped() {
+    // Arrange
+    InMemoryGtfsRepository repository = TripGeometryServiceTest.repository(120);
+    VehicleStateService service = service(repository, new EtaCalculationService(repository, null));
+    List<VehicleState[]> changes = new ArrayList<>();
+    service.addListener((previous, current) -> changes.add(new VehicleState[] {previous, current}));
+    VehicleState first = service.process(position("V1", TripGeometryServiceTest.LAT, -122.995, now - 60));
+    VehicleState newer = service.process(position("V1", TripGeometryServiceTest.LAT, -122.985, now));
+
+    // Act - a late fix from between the two, e.g. replayed from storage at startup
+    VehicleState result = service.process(position("V1", TripGeometryServiceTest.LAT, -122.990, now - 30));
+
+    // Assert
+    assertSame(newer, result);
+    assertSame(newer, service.getVehicleState("V1"));
+    assertEquals(2, changes.size());
+    assertNull(changes.get(0)[0]);
+    assertSame(first, changes.get(1)[0]);
+    assertSame(newer, changes.get(1)[1]);
+  }
+
+  private static VehicleStateService service(InMemoryGtfsRepository repository,
+      EtaCalculationService etaCalculationService) {
+    return new VehicleStateService(new TripGeometryService(repository), etaCalculationService,
+        new VehicleStorageService(10, 100, 900), 900);
+  }
+
+  private static VehiclePosition position(String vehicleId, double lat, double lon, long timestamp) {
+    VehiclePosition position = new VehiclePosition();
+    position.setVehicleId(vehicleId);
+    position.setTripId("T1");
+    position.setRouteId("R1");
+    position.setDirectionId(0);
+    position.setLatitude(lat);
+    position.setLongitude(lon);
+    position.setTimestamp(timestamp);
+    return position;
+  }
+}
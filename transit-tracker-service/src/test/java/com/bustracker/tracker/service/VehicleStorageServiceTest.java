@@ -0,0 +1,39 @@
+package com.bustracker.tracker.service;
+
+import com.bustracker.shared.model.VehiclePosition;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VehicleStorageServiceTest {
+
+  private final long now = System.currentTimeMillis() / 1000;
+
+  @Test
+  public void testFullHistoryBudgetSweepsStaleHistoriesAtMostOncePerInterval() {
+    // Arrange - a budget of two vehicles, both stale
+    VehicleStorageService service = new VehicleStorageService(10, 2, 900);
+    service.storeVehiclePosition(position("V1", now - 1000));
+    service.storeVehiclePosition(position("V2", now - 1000));
+
+    // Act - V3 triggers a sweep; V5 arrives within the sweep interval
+    service.storeVehiclePosition(position("V3", now));
+    service.storeVehiclePosition(position("V4", now - 1000));
+    service.storeVehiclePosition(position("V5", now));
+
+    // Assert - V4 is stale too, but is only swept on the next interval
+    assertNull(service.getPositionHistory("V1"));
+    assertNull(service.getPositionHistory("V2"));
+    assertNotNull(service.getPositionHistory("V3"));
+    assertNotNull(service.getPositionHistory("V4"));
+    assertNull(service.getPositionHistory("V5"));
+    assertNotNull(service.getVehicle("V5"));
+  }
+
+  private static VehiclePosition position(String vehicleId, long timestamp) {
+    VehiclePosition position = new VehiclePosition();
+    position.setVehicleId(vehicleId);
+    position.setTimestamp(timestamp);
+    return position;
+  }
+}